@@ -26,6 +26,21 @@ dependencies {
     implementation ("net.lingala.zip4j","zip4j","2.11.4")
 
     compileOnly("org.projectlombok","lombok","1.18.20")
+
+    testImplementation("junit","junit","4.13.2")
+}
+
+// The headless benchmark, shipped to the simulation projects as a jar of the lowest Java version of OIS projects, see SimulationBenchmark
+val benchmarkClasses by tasks.registering(JavaCompile::class) {
+    source = fileTree("src/main/java") { include("org/ois/idea/simulation/benchmark/HeadlessBenchmark.java") }
+    classpath = files()
+    destinationDirectory.set(layout.buildDirectory.dir("benchmark/classes"))
+    options.release.set(11)
+}
+val benchmarkJar by tasks.registering(Jar::class) {
+    archiveFileName.set("ois-benchmark.jar")
+    destinationDirectory.set(layout.buildDirectory.dir("benchmark/libs"))
+    from(benchmarkClasses)
 }
 
 tasks {
@@ -38,6 +53,13 @@ tasks {
         kotlinOptions.jvmTarget = "17"
     }
 
+    processResources {
+        // Written into the simulation projects with the benchmark init script, see SimulationBenchmark
+        from(benchmarkJar) {
+            into("simulation")
+        }
+    }
+
     patchPluginXml {
         sinceBuild.set("232")
         untilBuild.set("242.*")
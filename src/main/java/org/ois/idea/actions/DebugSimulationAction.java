@@ -7,6 +7,7 @@ import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 import org.ois.core.runner.RunnerConfiguration;
 import org.ois.idea.simulation.SimulationManager;
+import org.ois.idea.simulation.profiler.SimulationProfiler;
 
 public class DebugSimulationAction extends AnAction {
 
@@ -16,8 +17,14 @@ public class DebugSimulationAction extends AnAction {
         if (project == null) {
             return;
         }
-        SimulationManager.getInstance(project).run(RunnerConfiguration.RunnerType.Desktop);
+        SimulationManager.getInstance(project).run(getPlatform(), SimulationProfiler.getInstance(project).isEnabled());
+    }
 
+    /**
+     * @return the platform the simulation is running on
+     */
+    protected RunnerConfiguration.RunnerType getPlatform() {
+        return RunnerConfiguration.RunnerType.Desktop;
     }
 
     @Override
@@ -26,7 +33,7 @@ public class DebugSimulationAction extends AnAction {
         if (project == null) {
             return;
         }
-        boolean isInProgress = SimulationManager.getInstance(project).isSimulationRunning();
+        boolean isInProgress = SimulationManager.getInstance(project).isSimulationRunning(getPlatform());
         e.getPresentation().setVisible(!isInProgress);
     }
 
@@ -5,6 +5,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
+import org.ois.core.runner.RunnerConfiguration;
 import org.ois.idea.simulation.SimulationManager;
 
 public class DevModeSimulationAction extends AnAction {
@@ -24,7 +25,7 @@ public class DevModeSimulationAction extends AnAction {
         if (project == null) {
             return;
         }
-        boolean isInProgress = SimulationManager.getInstance(project).isSimulationRunning();
+        boolean isInProgress = SimulationManager.getInstance(project).isSimulationRunning(RunnerConfiguration.RunnerType.Desktop);
         e.getPresentation().setEnabled(!isInProgress);
     }
 
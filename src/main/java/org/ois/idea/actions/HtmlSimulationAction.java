@@ -0,0 +1,11 @@
+package org.ois.idea.actions;
+
+import org.ois.core.runner.RunnerConfiguration;
+
+public class HtmlSimulationAction extends DebugSimulationAction {
+
+    @Override
+    protected RunnerConfiguration.RunnerType getPlatform() {
+        return RunnerConfiguration.RunnerType.Html;
+    }
+}
@@ -0,0 +1,25 @@
+package org.ois.idea.actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.utils.ProjectUtils;
+
+public class ToggleGradleToolingApiAction extends ToggleAction {
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+        return ProjectUtils.getGradleBackend() == ProjectUtils.GradleBackend.ToolingApi;
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        ProjectUtils.setGradleBackend(state ? ProjectUtils.GradleBackend.ToolingApi : ProjectUtils.GradleBackend.Cli);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
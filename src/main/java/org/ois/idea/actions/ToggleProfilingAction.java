@@ -0,0 +1,31 @@
+package org.ois.idea.actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.simulation.profiler.SimulationProfiler;
+
+public class ToggleProfilingAction extends ToggleAction {
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        return project != null && SimulationProfiler.getInstance(project).isEnabled();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        SimulationProfiler.getInstance(project).setEnabled(state);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
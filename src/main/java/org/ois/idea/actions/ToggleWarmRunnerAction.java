@@ -0,0 +1,28 @@
+package org.ois.idea.actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.simulation.SimulationManager;
+
+public class ToggleWarmRunnerAction extends ToggleAction {
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+        return SimulationManager.getLaunchMode() == SimulationManager.LaunchMode.WarmRunner;
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        SimulationManager.setLaunchMode(state ? SimulationManager.LaunchMode.WarmRunner : SimulationManager.LaunchMode.Gradle);
+        if (state && e.getProject() != null) {
+            SimulationManager.getInstance(e.getProject()).prepare();
+        }
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,16 @@
+package org.ois.idea.events;
+
+import com.intellij.util.messages.Topic;
+import org.ois.idea.simulation.SimulationSession;
+
+public interface SimulationSessionEvents {
+
+    Topic<SimulationSessionEvents> ON_SESSION_STATE_CHANGED = Topic.create("OIS simulation session state changed", SimulationSessionEvents.class);
+
+    /**
+     * Called when the state of a simulation session is changed
+     *
+     * @param session - The session, holding its new state.
+     */
+    void update(SimulationSession session);
+}
@@ -1,6 +1,7 @@
 package org.ois.idea.log;
 
 import com.intellij.notification.*;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.Balloon;
@@ -9,16 +10,27 @@ import com.intellij.openapi.wm.StatusBar;
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.awt.RelativePoint;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.plexus.util.ExceptionUtils;
 import org.ois.core.utils.log.ILogger;
 import org.ois.idea.utils.IconUtils;
+import org.ois.idea.utils.command.LineOutputStream;
 
 import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static javax.swing.event.HyperlinkEvent.EventType.ACTIVATED;
 
-public class Logger {
+/**
+ * Logs to the IDE log right away, and to the OIS notifications asynchronously.
+ * Notifications are queued (lock-free) and delivered in batches by a timer: duplicates in a batch are coalesced,
+ * each level is rate limited (the rest is summarized in a single notification, see {@link NotificationBatcher})
+ * and only the latest notifications are kept in the event log.
+ */
+public class Logger implements Disposable {
 
     private static final NotificationGroup EVENT_LOG_NOTIFIER = NotificationGroupManager.getInstance().getNotificationGroup("OIS Log");
     private static final NotificationGroup BALLOON_NOTIFIER = NotificationGroupManager.getInstance().getNotificationGroup("OIS Errors");
@@ -29,9 +41,28 @@ public class Logger {
     private static final String INFO_TITLE = "OIS";
     private static final String ERROR_TITLE = "OIS Error";
 
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    // Notifications waiting for delivery, the rest is dropped
+    private static final int MAX_PENDING = 10_000;
+    // Notifications kept in the event log, older ones are expired
+    private static final int MAX_RETAINED = 200;
+    // Notifications per second of each level
+    private static final Map<NotificationType, Integer> RATE_LIMITS = Map.of(
+            NotificationType.INFORMATION, 10,
+            NotificationType.WARNING, 10,
+            NotificationType.ERROR, 5
+    );
+
+    private final NotificationBatcher batcher = new NotificationBatcher(MAX_PENDING, RATE_LIMITS, System::nanoTime);
+    // Used by the drain only
+    private final Deque<Notification> retained = new ArrayDeque<>();
+    private final ScheduledFuture<?> drainer;
+
     public static Logger getInstance() { return ApplicationManager.getApplication().getService(Logger.class); }
 
-    private Logger(){}
+    private Logger() {
+        drainer = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
     public void debug(String message, Throwable throwable) {
         debug(message + System.lineSeparator() + ExceptionUtils.getStackTrace(throwable));
@@ -41,12 +72,12 @@ public class Logger {
 
     public void info(String message) {
         ideaLogger.info(message);
-        log(INFO_TITLE, message, NotificationType.INFORMATION);
+        log(INFO_TITLE, message, NotificationType.INFORMATION, null);
     }
 
     public void warn(String message) {
         ideaLogger.warn(message);
-        log(INFO_TITLE, message, NotificationType.WARNING);
+        log(INFO_TITLE, message, NotificationType.WARNING, null);
     }
 
     public void warn(String message, Throwable throwable) {
@@ -56,42 +87,68 @@ public class Logger {
     public void error(String message) {
         // We log to IntelliJ log in "warn" log level to avoid popup annoying fatal errors
         ideaLogger.warn(message);
-        NotificationType notificationType = NotificationType.ERROR;
-        popupBalloon(message, notificationType);
-        log(ERROR_TITLE, message, notificationType);
+        log(ERROR_TITLE, message, NotificationType.ERROR, message);
     }
 
     public void error(String message, Throwable throwable) {
-        NotificationType notificationType = NotificationType.ERROR;
-        popupBalloon(message, notificationType);
+        ideaLogger.warn(message, throwable);
         String title = StringUtils.defaultIfBlank(throwable.getMessage(), ERROR_TITLE);
-        log(title, message + System.lineSeparator() + ExceptionUtils.getStackTrace(throwable), notificationType);
+        log(title, message + System.lineSeparator() + ExceptionUtils.getStackTrace(throwable), NotificationType.ERROR, message);
     }
 
     public OutputStream getLogOutputStream(ILogger.Level level) {
-        return new OutputStream() {
-            private final StringBuilder buffer = new StringBuilder();
+        return new LineOutputStream() {
             @Override
-            public void write(int b) {
-                if (b == '\n') {
-                    switch (level) {
-                        case Info -> info(buffer.toString());
-                        case Debug -> debug(buffer.toString());
-                        case Warn, Error -> warn(buffer.toString());
-                    }
-                    buffer.setLength(0);
-                } else {
-                    buffer.append((char) b);
+            protected void onLine(String line) {
+                switch (level) {
+                    case Info -> info(line);
+                    case Debug -> debug(line);
+                    case Warn, Error -> warn(line);
                 }
             }
         };
     }
 
-    private static void log(String title, String details, NotificationType notificationType) {
+    /**
+     * Queue a notification for the next drain.
+     *
+     * @param balloon - Content of the error balloon to pop up if the notification is delivered, null for none.
+     */
+    private void log(String title, String details, NotificationType notificationType, String balloon) {
         if (StringUtils.isBlank(details)) {
             details = title;
         }
-        Notifications.Bus.notify(EVENT_LOG_NOTIFIER.createNotification(title, prependPrefix(details, notificationType), notificationType));
+        batcher.offer(title, details, notificationType, balloon);
+    }
+
+    /**
+     * Deliver the queued notifications.
+     */
+    private void drain() {
+        try {
+            NotificationBatcher.Batch batch = batcher.drain();
+            for (NotificationBatcher.Delivery delivery : batch.getDelivered()) {
+                notify(EVENT_LOG_NOTIFIER.createNotification(delivery.getTitle(), prependPrefix(delivery.getDetails(), delivery.getType()), delivery.getType()));
+            }
+            if (batch.getSuppressed() > 0) {
+                notify(EVENT_LOG_NOTIFIER.createNotification(INFO_TITLE, String.format("[WARN] %d messages were not shown, see the IDE log for the details", batch.getSuppressed()), NotificationType.WARNING));
+            }
+            // A single balloon per batch, for the last delivered error
+            if (batch.getBalloon() != null) {
+                popupBalloon(batch.getBalloon(), NotificationType.ERROR);
+            }
+        } catch (RuntimeException e) {
+            // Keep the drain scheduled
+            ideaLogger.warn("Can't deliver OIS notifications", e);
+        }
+    }
+
+    private void notify(Notification notification) {
+        Notifications.Bus.notify(notification);
+        retained.addLast(notification);
+        while (retained.size() > MAX_RETAINED) {
+            retained.pollFirst().expire();
+        }
     }
 
     private static String prependPrefix(String message, NotificationType notificationType) {
@@ -114,6 +171,12 @@ public class Logger {
         Notifications.Bus.notify(notification);
     }
 
+    @Override
+    public void dispose() {
+        drainer.cancel(false);
+        batcher.clear();
+    }
+
     public static void showActionableBalloon(Project project, String content, Runnable action) {
         StatusBar statusBar = WindowManager.getInstance().getStatusBar(project);
         JBPopupFactory.getInstance().createHtmlTextBalloonBuilder(content,
@@ -0,0 +1,201 @@
+package org.ois.idea.log;
+
+import com.intellij.notification.NotificationType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The notification queue of the {@link Logger}.
+ * Any thread offers notifications (lock-free, bounded), a single thread drains them in batches:
+ * duplicates in a batch are coalesced and each level is rate limited, with a token bucket refilled between drains.
+ */
+class NotificationBatcher {
+
+    private final int maxPending;
+    private final Map<NotificationType, Integer> rateLimits;
+    private final LongSupplier nanoClock;
+
+    private final Queue<PendingNotification> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    // Used by the drain only
+    private final Map<NotificationType, Double> tokens = new EnumMap<>(NotificationType.class);
+    private long lastDrainNanos;
+
+    /**
+     * @param maxPending - Notifications waiting for the next drain, the rest is dropped.
+     * @param rateLimits - Notifications per second of each level.
+     * @param nanoClock  - The clock refilling the rate limits, {@link System#nanoTime()} outside tests.
+     */
+    NotificationBatcher(int maxPending, Map<NotificationType, Integer> rateLimits, LongSupplier nanoClock) {
+        this.maxPending = maxPending;
+        this.rateLimits = rateLimits;
+        this.nanoClock = nanoClock;
+        rateLimits.forEach((type, limit) -> tokens.put(type, (double) limit));
+        lastDrainNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Queue a notification for the next drain.
+     *
+     * @param balloon - Content of the error balloon to pop up if the notification is delivered, null for none.
+     * @return false if the queue is full and the notification was dropped
+     */
+    boolean offer(String title, String details, NotificationType type, String balloon) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        pending.add(new PendingNotification(title, details, type, balloon));
+        return true;
+    }
+
+    /**
+     * Take the queued notifications. Called by a single thread.
+     */
+    Batch drain() {
+        // Coalesce the duplicates of the batch, in order of first appearance
+        Map<PendingNotification, Group> groups = new LinkedHashMap<>();
+        int order = 0;
+        // What was queued so far only, busy producers can't keep the drain running
+        for (int i = pendingCount.get(); i > 0; i--) {
+            PendingNotification notification = pending.poll();
+            if (notification == null) {
+                break;
+            }
+            pendingCount.decrementAndGet();
+            Group group = groups.computeIfAbsent(notification, key -> new Group());
+            group.count++;
+            if (notification.balloon != null) {
+                group.balloon = notification.balloon;
+                group.balloonOrder = order;
+            }
+            order++;
+        }
+        refillTokens();
+        long suppressed = dropped.getAndSet(0);
+        List<Delivery> delivered = new ArrayList<>();
+        String balloon = null;
+        int balloonOrder = -1;
+        for (Map.Entry<PendingNotification, Group> entry : groups.entrySet()) {
+            PendingNotification batched = entry.getKey();
+            Group group = entry.getValue();
+            double available = tokens.get(batched.type);
+            if (available < 1) {
+                suppressed += group.count;
+                continue;
+            }
+            tokens.put(batched.type, available - 1);
+            delivered.add(new Delivery(batched.title, batched.details, batched.type, group.count));
+            // The balloon of the last delivered error, errors that were rate limited away have no balloon
+            if (group.balloon != null && group.balloonOrder > balloonOrder) {
+                balloon = group.balloon;
+                balloonOrder = group.balloonOrder;
+            }
+        }
+        return new Batch(delivered, suppressed, balloon);
+    }
+
+    void clear() {
+        pending.clear();
+        pendingCount.set(0);
+    }
+
+    private void refillTokens() {
+        long now = nanoClock.getAsLong();
+        double elapsedSeconds = (now - lastDrainNanos) / 1e9;
+        lastDrainNanos = now;
+        rateLimits.forEach((type, limit) -> tokens.put(type, Math.min(limit, tokens.get(type) + limit * elapsedSeconds)));
+    }
+
+    private static class Group {
+        private int count;
+        private String balloon;
+        private int balloonOrder = -1;
+    }
+
+    /**
+     * A notification to deliver, standing for its coalesced duplicates.
+     */
+    static class Delivery {
+        private final String title;
+        private final String details;
+        private final NotificationType type;
+        private final int count;
+
+        Delivery(String title, String details, NotificationType type, int count) {
+            this.title = title;
+            this.details = details;
+            this.type = type;
+            this.count = count;
+        }
+
+        String getTitle() { return title; }
+
+        /**
+         * @return the details, with the number of duplicates when coalesced
+         */
+        String getDetails() { return count > 1 ? String.format("%s (x%d)", details, count) : details; }
+
+        NotificationType getType() { return type; }
+
+        int getCount() { return count; }
+    }
+
+    static class Batch {
+        private final List<Delivery> delivered;
+        private final long suppressed;
+        private final String balloon;
+
+        Batch(List<Delivery> delivered, long suppressed, String balloon) {
+            this.delivered = delivered;
+            this.suppressed = suppressed;
+            this.balloon = balloon;
+        }
+
+        List<Delivery> getDelivered() { return delivered; }
+
+        /**
+         * @return the number of notifications dropped or rate limited since the previous drain
+         */
+        long getSuppressed() { return suppressed; }
+
+        /**
+         * @return the balloon of the last delivered error of the batch, null for none
+         */
+        String getBalloon() { return balloon; }
+    }
+
+    private static class PendingNotification {
+        private final String title;
+        private final String details;
+        private final NotificationType type;
+        private final String balloon;
+
+        PendingNotification(String title, String details, NotificationType type, String balloon) {
+            this.title = title;
+            this.details = details;
+            this.type = type;
+            this.balloon = balloon;
+        }
+
+        // Equal notifications are coalesced, regardless of the balloon
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PendingNotification other)) {
+                return false;
+            }
+            return type == other.type && title.equals(other.title) && details.equals(other.details);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(title, details, type);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.ois.idea.project;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.utils.Version;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.ProjectUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Metadata of the OIS project build scripts: the OIS Gradle plugin version and the debug mode.
+ * Reads build.gradle, build.gradle.kts, gradle.properties and the gradle/libs.versions.toml version catalog.
+ * Each file is parsed once and cached by its VFS modification stamp (or its modification time and size if it is not in the VFS),
+ * when a file changes only that file is parsed again.
+ */
+public class BuildScriptManager implements Disposable {
+
+    private static final String OIS_PLUGIN_ID = "org.ois.simulation";
+
+    // id 'org.ois.simulation' version '1.0' / id("org.ois.simulation") version "1.0" / id 'org.ois.simulation' version oisVersion
+    private static final Pattern pluginVersionPattern = Pattern.compile("id\\s*\\(?\\s*['\"]" + Pattern.quote(OIS_PLUGIN_ID) + "['\"]\\s*\\)?\\s+version\\s*\\(?\\s*(?:['\"]([^'\"]+)['\"]|([\\w.]+))");
+    // debugMode = true / debugMode.set(true), not commented out
+    private static final Pattern debugModePattern = Pattern.compile("(?m)^\\s*(?!//)\\s*debugMode\\s*(?:=|\\.set\\()\\s*['\"]?([\\w.]+)");
+    // ${property} or $property
+    private static final Pattern propertyReferencePattern = Pattern.compile("^\\$\\{?([\\w.]+)}?$");
+
+    private static final List<String> BUILD_SCRIPTS = List.of("build.gradle", "build.gradle.kts");
+    private static final String PROPERTIES_FILE = "gradle.properties";
+    private static final String VERSION_CATALOG = "gradle/libs.versions.toml";
+
+    /**
+     * The facts found in a single file.
+     */
+    private static class FileFacts {
+        private final long stamp;
+        private String pluginVersion;
+        private String debugMode;
+        private final Map<String, String> properties = new HashMap<>();
+
+        private FileFacts(long stamp) {
+            this.stamp = stamp;
+        }
+    }
+
+    public static class Metadata {
+        private final Version pluginVersion;
+        private final boolean debugMode;
+
+        private Metadata(Version pluginVersion, boolean debugMode) {
+            this.pluginVersion = pluginVersion;
+            this.debugMode = debugMode;
+        }
+
+        /**
+         * @return the OIS Gradle plugin version the project applies, null if not found
+         */
+        public Version getPluginVersion() { return pluginVersion; }
+
+        public boolean isDebugMode() { return debugMode; }
+    }
+
+    private final Project ideaProject;
+    private final Map<Path, FileFacts> cache = new ConcurrentHashMap<>();
+
+    private BuildScriptManager(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+        ideaProject.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    // Parsed again (only the changed file) on the next query
+                    cache.remove(Paths.get(event.getPath()));
+                }
+            }
+        });
+    }
+
+    public static BuildScriptManager getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(BuildScriptManager.class);
+    }
+
+    /**
+     * @return the build scripts metadata, parsing only the files that changed since the last query
+     */
+    public Metadata getMetadata() {
+        Path projectPath = ProjectUtils.getProjectBasePath(ideaProject);
+        FileFacts properties = getFacts(projectPath.resolve(PROPERTIES_FILE), FileType.Properties);
+        FileFacts catalog = getFacts(projectPath.resolve(VERSION_CATALOG), FileType.VersionCatalog);
+
+        String pluginVersion = null;
+        String debugMode = null;
+        for (String buildScript : BUILD_SCRIPTS) {
+            FileFacts script = getFacts(projectPath.resolve(buildScript), FileType.BuildScript);
+            pluginVersion = pluginVersion != null ? pluginVersion : script.pluginVersion;
+            debugMode = debugMode != null ? debugMode : script.debugMode;
+        }
+        if (pluginVersion == null) {
+            pluginVersion = catalog.pluginVersion;
+        }
+        if (debugMode == null) {
+            debugMode = properties.properties.get("debugMode");
+        }
+        pluginVersion = resolveProperty(pluginVersion, properties);
+        debugMode = resolveProperty(debugMode, properties);
+        return new Metadata(pluginVersion != null ? new Version(pluginVersion) : null, Boolean.parseBoolean(debugMode));
+    }
+
+    private static String resolveProperty(String value, FileFacts properties) {
+        if (value == null) {
+            return null;
+        }
+        Matcher reference = propertyReferencePattern.matcher(value);
+        return reference.matches() ? properties.properties.get(reference.group(1)) : value;
+    }
+
+    private enum FileType {
+        BuildScript, Properties, VersionCatalog
+    }
+
+    private FileFacts getFacts(Path file, FileType type) {
+        VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByNioFile(file);
+        long stamp = virtualFile != null ? virtualFile.getModificationStamp() : diskStamp(file);
+        FileFacts cached = cache.get(file);
+        if (cached != null && cached.stamp == stamp) {
+            return cached;
+        }
+        FileFacts facts = new FileFacts(stamp);
+        String content = readContent(file, virtualFile);
+        if (content != null) {
+            switch (type) {
+                case BuildScript -> parseBuildScript(content, facts);
+                case Properties -> parseProperties(content, facts);
+                case VersionCatalog -> parseVersionCatalog(content, facts);
+            }
+        }
+        cache.put(file, facts);
+        return facts;
+    }
+
+    private static long diskStamp(Path file) {
+        try {
+            return Files.exists(file) ? Objects.hash(Files.getLastModifiedTime(file).toMillis(), Files.size(file)) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String readContent(Path file, VirtualFile virtualFile) {
+        try {
+            if (virtualFile != null) {
+                return ReadAction.compute(() -> new String(virtualFile.contentsToByteArray(), virtualFile.getCharset()));
+            }
+            return Files.exists(file) ? Files.readString(file) : null;
+        } catch (IOException e) {
+            Logger.getInstance().debug("Can't read build file " + file, e);
+            return null;
+        }
+    }
+
+    private static void parseBuildScript(String content, FileFacts facts) {
+        Matcher versionMatcher = pluginVersionPattern.matcher(content);
+        if (versionMatcher.find()) {
+            // A bare identifier, i.e. 'version oisVersion', is a property
+            facts.pluginVersion = versionMatcher.group(1) != null ? versionMatcher.group(1) : "${" + versionMatcher.group(2) + "}";
+        }
+        Matcher debugModeMatcher = debugModePattern.matcher(content);
+        if (debugModeMatcher.find()) {
+            String debugMode = debugModeMatcher.group(1);
+            facts.debugMode = debugMode.equals("true") || debugMode.equals("false") ? debugMode : "${" + debugMode + "}";
+        }
+    }
+
+    private static void parseProperties(String content, FileFacts facts) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(content));
+        } catch (IOException e) {
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            facts.properties.put(name, properties.getProperty(name).trim());
+        }
+    }
+
+    /**
+     * Minimal parsing of the [versions] and [plugins] tables of a version catalog, looking for the OIS plugin entry:
+     * <pre>
+     * ois = { id = "org.ois.simulation", version = "1.0" }
+     * ois = { id = "org.ois.simulation", version.ref = "ois" }
+     * ois = "org.ois.simulation:1.0"
+     * </pre>
+     */
+    private static void parseVersionCatalog(String content, FileFacts facts) {
+        Map<String, String> versions = new HashMap<>();
+        String section = "";
+        String versionRef = null;
+        for (String rawLine : content.split("\\R")) {
+            String line = rawLine.replaceAll("#.*$", "").trim();
+            if (line.startsWith("[") && line.endsWith("]")) {
+                section = line.substring(1, line.length() - 1).trim();
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String key = line.substring(0, separator).trim();
+            String value = line.substring(separator + 1).trim();
+            if (section.equals("versions")) {
+                versions.put(key, unquote(value));
+            } else if (section.equals("plugins") && value.contains(OIS_PLUGIN_ID)) {
+                if (value.startsWith("{")) {
+                    String version = inlineTableValue(value, "version");
+                    versionRef = inlineTableValue(value, "version.ref");
+                    facts.pluginVersion = version;
+                } else {
+                    String notation = unquote(value);
+                    facts.pluginVersion = notation.substring(notation.lastIndexOf(':') + 1);
+                }
+            }
+        }
+        if (facts.pluginVersion == null && versionRef != null) {
+            facts.pluginVersion = versions.get(versionRef);
+        }
+    }
+
+    private static String inlineTableValue(String table, String key) {
+        Matcher matcher = Pattern.compile("(?:^|[{,\\s])" + Pattern.quote(key) + "\\s*=\\s*['\"]([^'\"]+)['\"]").matcher(table);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String unquote(String value) {
+        return value.replaceAll("^['\"]|['\"]$", "");
+    }
+
+    @Override
+    public void dispose() {
+        cache.clear();
+    }
+}
@@ -1,18 +1,23 @@
 package org.ois.idea.project;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.ois.core.utils.Version;
 import org.ois.idea.events.ProjectStateEvents;
 import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.SimulationManager;
 import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.TaskPipeline;
 import org.ois.idea.utils.Utils;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,9 +26,15 @@ public class DependencyManager {
     private final static String PLUGIN_GIT_REPO = "https://github.com/attiasas/ois-gradle-plugin.git";
     private final static String CORE_GIT_REPO = "https://github.com/attiasas/ois-core.git";
 
-    private final static Pattern pluginVersionPattern = Pattern.compile("id\\s+['\"]" + Pattern.quote("org.ois.simulation") + "['\"]\\s+version\\s+['\"]([^'\"]+)['\"]");
     private final static Pattern coreVersionPattern =Pattern.compile("OIS_CORE_VERSION\\s*=\\s*new Version\\(\"([^\"]+)\"\\);");
 
+    // Directory in the plugin repository of the file holding the injected core version, the only file needed to resolve the core version
+    private final static String PLUGIN_CONST_DIRECTORY = "src/main/java/org/ois/plugin";
+    private final static String PLUGIN_CONST_FILE = "Const.java";
+
+    private final static String PLUGIN_LOCATOR = "org.ois.open-interactive-simulation";
+    private final static String CORE_LOCATOR = "org.ois.open-interactive-simulation-core";
+
     private final static String LOG_PREFIX = "Can't update OIS dependencies: ";
 
     private final Project ideaProject;
@@ -57,41 +68,12 @@ public class DependencyManager {
             @Override
             public void run(Utils.@NotNull OISProgressIndicator indicator) {
                 try {
-                    // Resolve and download phase
-                    indicator.state("Resolving OIS Plugin version", 0);
-                    Version pluginVersion = findOisPluginVersion(ProjectUtils.getProjectBasePath(ideaProject));
-                    if (pluginVersion == null) {
-                        Logger.getInstance().warn(LOG_PREFIX + "Can't resolve OIS plugin version");
-                        return;
-                    }
-                    projectManager.setPluginVersion(pluginVersion);
-                    if (!isOisPluginExistsLocally(pluginVersion)) {
-                        indicator.state( "Downloading OIS Plugin: v" + pluginVersion, 0.175);
-                        downloadPluginDependency(pluginVersion);
-                    }
-                    indicator.state( "Resolving OIS Core version", 0.35);
-                    Version coreVersion = findOisCoreVersion(pluginVersion);
-                    if (coreVersion == null) {
-                        Logger.getInstance().warn(LOG_PREFIX + "Can't resolve OIS core version");
-                        return;
-                    }
-                    projectManager.setCoreVersion(coreVersion);
-                    if (!isOisCoreExistsLocally(coreVersion)) {
-                        indicator.state( "Downloading OIS Core: v" + coreVersion, 0.525);
-                        downloadCoreDependency(coreVersion);
-                    }
-                    // Install phase (optional)
-                    if (forceInstall || !pluginExistsInLocalRegistry()) {
-                        indicator.state( "Installing OIS Plugin", 0.7);
-                        installOisPlugin(pluginVersion);
-                    }
-                    if (forceInstall || !coreExistsInLocalRegistry()) {
-                        indicator.state( "Installing OIS Plugin", 0.875);
-                        installOisCore(coreVersion);
-                    }
-                    // Done
-                    indicator.done();
+                    createRefreshPipeline(projectManager, forceInstall).run(indicator, AppExecutorUtil.getAppExecutorService());
                     Logger.getInstance().info("OIS Dependencies are ready");
+                    DependencyStore.getInstance().collectGarbage();
+                    SimulationManager.getInstance(ideaProject).prepare();
+                } catch (TaskPipeline.AbortException e) {
+                    Logger.getInstance().warn(LOG_PREFIX + e.getMessage());
                 } catch (Exception e) {
                     Logger.getInstance().error(LOG_PREFIX + "Refresh failed", e);
                     indicator.cancel();
@@ -104,24 +86,56 @@ public class DependencyManager {
         refreshTask.runInBackground();
     }
 
-    private static Version findOisPluginVersion(Path projectPath) throws IOException {
-        Path buildFilePath = projectPath.resolve("build.gradle");
-        if (!Files.exists(buildFilePath)) {
-            return null;
-        }
-        // Read the contents of the file
-        String buildFileContent = Files.readString(buildFilePath);
-        Matcher matcher = pluginVersionPattern.matcher(buildFileContent);
-        if (!matcher.find()) {
-            return null;
-        }
-        return new Version(matcher.group(1));
+    /**
+     * Resolve, download and install phases of the plugin and core dependencies.
+     * Resolving the core version needs the plugin sources. The plugin is installed once the core version is resolved,
+     * so nothing is installed if it can't be; it is then installed concurrently with the core download.
+     */
+    private TaskPipeline createRefreshPipeline(OisProjectManager projectManager, boolean forceInstall) {
+        AtomicReference<Version> pluginVersion = new AtomicReference<>();
+        AtomicReference<Version> coreVersion = new AtomicReference<>();
+        return new TaskPipeline("OIS dependencies refresh")
+                .stage("resolve-plugin", "Resolving OIS Plugin version", () -> {
+                    pluginVersion.set(BuildScriptManager.getInstance(ideaProject).getMetadata().getPluginVersion());
+                    if (pluginVersion.get() == null) {
+                        throw new TaskPipeline.AbortException("Can't resolve OIS plugin version");
+                    }
+                    projectManager.setPluginVersion(pluginVersion.get());
+                })
+                .stage("download-plugin", "Downloading OIS Plugin", () -> {
+                    if (!isOisPluginExistsLocally(pluginVersion.get())) {
+                        downloadPluginDependency(pluginVersion.get());
+                    }
+                    DependencyStore.getInstance().touch(getPluginDirectory(pluginVersion.get()));
+                }, "resolve-plugin")
+                .stage("resolve-core", "Resolving OIS Core version", () -> {
+                    coreVersion.set(findOisCoreVersion(pluginVersion.get()));
+                    if (coreVersion.get() == null) {
+                        throw new TaskPipeline.AbortException("Can't resolve OIS core version");
+                    }
+                    projectManager.setCoreVersion(coreVersion.get());
+                }, "download-plugin")
+                .stage("install-plugin", "Installing OIS Plugin", () -> {
+                    Path versionDirectory = getPluginDirectory(pluginVersion.get());
+                    Path checkout = versionDirectory.resolve("ois-gradle-plugin");
+                    installIfStale(versionDirectory, checkout, PLUGIN_LOCATOR, pluginVersion.get(), forceInstall, () -> installOisPlugin(pluginVersion.get()));
+                }, "resolve-core")
+                .stage("download-core", "Downloading OIS Core", () -> {
+                    if (!isOisCoreExistsLocally(coreVersion.get())) {
+                        downloadCoreDependency(coreVersion.get());
+                    }
+                    DependencyStore.getInstance().touch(getCoreDirectory(coreVersion.get()));
+                }, "resolve-core")
+                .stage("install-core", "Installing OIS Core", () -> {
+                    Path versionDirectory = getCoreDirectory(coreVersion.get());
+                    Path checkout = versionDirectory.resolve("ois-core");
+                    installIfStale(versionDirectory, checkout, CORE_LOCATOR, coreVersion.get(), forceInstall, () -> installOisCore(coreVersion.get()));
+                }, "download-core");
     }
 
     private static Version findOisCoreVersion(Version pluginVersion) throws IOException {
-        // Get File in plugin repository pointing to the core version injected
-        Path pluginSrcDirectory = getPluginDirectory(pluginVersion).resolve("ois-gradle-plugin").resolve("src").resolve("main").resolve("java");
-        Path pluginConstFile = pluginSrcDirectory.resolve("org").resolve("ois").resolve("plugin").resolve("Const.java");
+        // Get File in plugin repository pointing to the core version injected, available in the sparse checkout
+        Path pluginConstFile = getPluginDirectory(pluginVersion).resolve("ois-gradle-plugin").resolve(PLUGIN_CONST_DIRECTORY).resolve(PLUGIN_CONST_FILE);
         // Extract version from file
         String content = new String(Files.readAllBytes(pluginConstFile));
         Matcher matcher = coreVersionPattern.matcher(content);
@@ -141,55 +155,74 @@ public class DependencyManager {
         return localDirectory.toFile().exists() && localDirectory.toFile().isDirectory();
     }
 
-    private static boolean pluginExistsInLocalRegistry() {
-        return existsInLocalRegistry("org.ois.open-interactive-simulation");
-    }
-
-    private static boolean coreExistsInLocalRegistry() {
-        return existsInLocalRegistry("org.ois.open-interactive-simulation-core");
+    /**
+     * Install a dependency version unless its install stamp shows it is already installed.
+     * On a forced refresh the stamp is verified with the artifacts checksums, otherwise with a few file reads only.
+     * After a successful install a new stamp is written.
+     */
+    private static void installIfStale(Path versionDirectory, Path checkout, String locator, Version version, boolean forceInstall, TaskPipeline.StageAction install) throws Exception {
+        InstallStamp stamp = InstallStamp.load(versionDirectory);
+        if (stamp != null && stamp.matches(checkout, getLocalRegistryDirectory(locator, version), forceInstall)) {
+            Logger.getInstance().debug(String.format("%s:%s is already installed from commit %s", locator, version, stamp.getCommit()));
+            return;
+        }
+        install.run();
+        // Resolved after the install, the version directory might not exist before
+        Path artifactDirectory = getLocalRegistryDirectory(locator, version);
+        if (!Files.isDirectory(artifactDirectory)) {
+            Logger.getInstance().warn(String.format("Installed artifacts of %s:%s not found at %s", locator, version, artifactDirectory));
+            return;
+        }
+        InstallStamp.create(checkout, artifactDirectory).save(versionDirectory);
     }
 
-    private static boolean existsInLocalRegistry(String locator) {
-        Path repository = Utils.USER_HOME_PATH.resolve(".m2").resolve("repository");
-        String[] packages = locator.split("\\.");
-        Path location = repository;
-        for (String p : packages) {
+    /**
+     * @return the directory of the version artifacts in the local Maven repository, or the directory of all the versions if the version was not published
+     */
+    private static Path getLocalRegistryDirectory(String locator, Version version) {
+        Path location = Utils.USER_HOME_PATH.resolve(".m2").resolve("repository");
+        for (String p : locator.split("\\.")) {
             location = location.resolve(p);
         }
-        return location.toFile().exists() && location.toFile().isDirectory();
+        Path versionLocation = location.resolve(version.toString());
+        return Files.isDirectory(versionLocation) ? versionLocation : location;
     }
 
     private static Path getPluginDirectory(Version pluginVersion) {
-        return Utils.HOME_PATH.resolve("dependencies").resolve("plugin").resolve(pluginVersion.toString());
+        return DependencyStore.getVersionDirectory("plugin", pluginVersion);
     }
 
     private static Path getCoreDirectory(Version coreVersion) {
-        return Utils.HOME_PATH.resolve("dependencies").resolve("core").resolve(coreVersion.toString());
+        return DependencyStore.getVersionDirectory("core", coreVersion);
     }
 
-    private static void downloadDependency(String repository, Version version, Path destination) throws IOException, InterruptedException {
-        destination.toFile().mkdirs();
+    private static void downloadDependency(String repository, Version version, Path destination, List<String> sparseDirectories) throws IOException, InterruptedException {
+        // Checked out from the shared store, into the same location a clone into the destination would have created
+        Path checkout = destination.resolve(ProjectUtils.getRepositoryName(repository));
+        DependencyStore store = DependencyStore.getInstance();
         try {
-            ProjectUtils.cloneRepository(repository, version.toString(), destination);
+            store.checkout(repository, version.toString(), checkout, sparseDirectories);
             return;
         } catch (Exception e) {
             Logger.getInstance().warn("Can't download '" + repository + ":" + version + "', using default branch" ,e);
         }
-        ProjectUtils.cloneRepository(repository, destination);
+        store.checkout(repository, null, checkout, sparseDirectories);
     }
 
     private static void downloadPluginDependency(Version pluginVersion) throws IOException, InterruptedException {
         Path destination = getPluginDirectory(pluginVersion);
-        downloadDependency(PLUGIN_GIT_REPO, pluginVersion, destination);
+        // Only the core version is needed at first, the rest of the tree is checked out on install
+        downloadDependency(PLUGIN_GIT_REPO, pluginVersion, destination, List.of(PLUGIN_CONST_DIRECTORY));
     }
 
     private static void downloadCoreDependency(Version coreVersion) throws IOException, InterruptedException {
         Path destination = getCoreDirectory(coreVersion);
-        downloadDependency(CORE_GIT_REPO, coreVersion, destination);
+        downloadDependency(CORE_GIT_REPO, coreVersion, destination, List.of());
     }
 
     private static void installOisPlugin(Version pluginVersion) throws IOException, InterruptedException {
         Path localDirectory = getPluginDirectory(pluginVersion).resolve("ois-gradle-plugin");
+        ProjectUtils.materializeRepository(localDirectory);
         ProjectUtils.runGradleTasks(localDirectory, new Hashtable<>(), true, "publishToMavenLocal");
     }
 
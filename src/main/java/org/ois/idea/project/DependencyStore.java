@@ -0,0 +1,314 @@
+package org.ois.idea.project;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.apache.commons.lang3.StringUtils;
+import org.ois.core.utils.Version;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Shared store of the OIS dependencies sources.
+ * Each repository is fetched once into a single bare (partial, shallow) mirror, and every version is a 'git worktree' of that mirror.
+ * The versions share the git objects, so adding a new version only costs its changed files.
+ * Versions that are not referenced by an open project are evicted, least recently used first, when the store exceeds its size cap.
+ */
+public class DependencyStore {
+
+    public static final Path DEPENDENCIES_PATH = Utils.HOME_PATH.resolve("dependencies");
+    // Each type directory holds a directory per version
+    private static final List<String> VERSIONED_TYPES = List.of("plugin", "core");
+
+    private static final long DEFAULT_MAX_SIZE_BYTES = 2L * 1024 * 1024 * 1024;
+    // Versions used recently may belong to a project that is still resolving its versions, they are not evicted
+    private static final Duration EVICTION_GRACE_PERIOD = Duration.ofHours(1);
+
+    private final Path dependenciesPath;
+    private final Path mirrorsPath;
+    // Git operations on the same mirror must not run concurrently
+    private final Map<String, Object> mirrorLocks = new ConcurrentHashMap<>();
+    private volatile long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+
+    private DependencyStore() {
+        this(DEPENDENCIES_PATH);
+    }
+
+    /**
+     * @param dependenciesPath - The root directory of the store.
+     */
+    DependencyStore(Path dependenciesPath) {
+        this.dependenciesPath = dependenciesPath;
+        this.mirrorsPath = dependenciesPath.resolve("mirrors");
+    }
+
+    public static DependencyStore getInstance() { return ApplicationManager.getApplication().getService(DependencyStore.class); }
+
+    public long getMaxSizeBytes() { return maxSizeBytes; }
+
+    public void setMaxSizeBytes(long maxSizeBytes) { this.maxSizeBytes = maxSizeBytes; }
+
+    public static Path getVersionDirectory(String type, Version version) {
+        return DEPENDENCIES_PATH.resolve(type).resolve(version.toString());
+    }
+
+    /**
+     * Check out a branch or tag of a repository from the shared mirror into a new worktree.
+     *
+     * @param repositoryUrl     - The repository to check out.
+     * @param ref               - The branch or tag, null for the default branch.
+     * @param destination       - The worktree directory, must not exist.
+     * @param sparseDirectories - If not empty, only these directories (relative to the repository root) and the root files are checked out.
+     *                            Use {@link ProjectUtils#materializeRepository(Path)} to check out the full tree later.
+     */
+    public void checkout(String repositoryUrl, String ref, Path destination, List<String> sparseDirectories) throws IOException, InterruptedException {
+        String repositoryName = ProjectUtils.getRepositoryName(repositoryUrl);
+        Path mirror = mirrorsPath.resolve(repositoryName + ".git");
+        Object mirrorLock = mirrorLocks.computeIfAbsent(repositoryName, name -> new Object());
+        boolean existed = Files.exists(destination);
+        try {
+            synchronized (mirrorLock) {
+                String commit = fetch(repositoryUrl, ref, mirror);
+                Files.createDirectories(destination.getParent());
+                String description = String.format("create %s worktree at %s", repositoryName, destination);
+                if (sparseDirectories.isEmpty()) {
+                    ProjectUtils.runGitCommand(mirror, description, "worktree", "add", "--detach", destination.toString(), commit);
+                } else {
+                    ProjectUtils.runGitCommand(mirror, description, "worktree", "add", "--detach", "--no-checkout", destination.toString(), commit);
+                }
+            }
+            if (!sparseDirectories.isEmpty()) {
+                List<String> sparseArgs = new ArrayList<>(List.of("sparse-checkout", "set"));
+                sparseArgs.addAll(sparseDirectories);
+                ProjectUtils.runGitCommand(destination, String.format("sparse checkout %s", String.join(",", sparseDirectories)), sparseArgs.toArray(new String[0]));
+                ProjectUtils.runGitCommand(destination, "check out " + destination, "checkout");
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (!existed) {
+                // A partial worktree would fail the next checkout (i.e. the retry with another ref) into the same destination
+                synchronized (mirrorLock) {
+                    removeFailedCheckout(mirror, destination);
+                }
+            }
+            throw e;
+        }
+        touch(destination.getParent());
+    }
+
+    private static void removeFailedCheckout(Path mirror, Path destination) {
+        try {
+            deleteRecursively(destination);
+            if (Files.isDirectory(mirror)) {
+                ProjectUtils.runGitCommand(mirror, "prune worktrees of " + mirror, "worktree", "prune");
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Logger.getInstance().warn("Can't clean up the failed checkout at " + destination, e);
+        }
+    }
+
+    /**
+     * Fetch a ref into the mirror, creating the mirror if needed.
+     *
+     * @return the fetched commit
+     */
+    private static String fetch(String repositoryUrl, String ref, Path mirror) throws IOException, InterruptedException {
+        String fetchRef = ref != null ? ref : "HEAD";
+        if (!Files.isDirectory(mirror)) {
+            Files.createDirectories(mirror.getParent());
+            List<String> args = new ArrayList<>(List.of("clone", "--bare", "--filter=blob:none", "--depth", "1", "--single-branch"));
+            if (ref != null) {
+                args.addAll(List.of("--branch", ref));
+            }
+            args.addAll(List.of(repositoryUrl, mirror.toString()));
+            try {
+                ProjectUtils.runGitCommand(mirror.getParent(), String.format("mirror %s:%s", repositoryUrl, fetchRef), args.toArray(new String[0]));
+                return ProjectUtils.runGitCommand(mirror, "resolve mirror HEAD", "rev-parse", "HEAD").trim();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                // A partial mirror would be fetched into by the next checkout
+                deleteRecursively(mirror);
+                throw e;
+            }
+        }
+        // The partial clone filter of the mirror is applied to the fetch as well
+        ProjectUtils.runGitCommand(mirror, String.format("fetch %s:%s", repositoryUrl, fetchRef), "fetch", "--depth", "1", "origin", fetchRef);
+        return ProjectUtils.runGitCommand(mirror, "resolve fetched commit", "rev-parse", "FETCH_HEAD").trim();
+    }
+
+    /**
+     * Mark a version directory as used now, for the least recently used eviction order.
+     *
+     * @param versionDirectory - The version directory.
+     */
+    public void touch(Path versionDirectory) {
+        try {
+            if (Files.isDirectory(versionDirectory)) {
+                Files.setLastModifiedTime(versionDirectory, FileTime.from(Instant.now()));
+            }
+        } catch (IOException e) {
+            Logger.getInstance().debug("Can't update last used time of " + versionDirectory, e);
+        }
+    }
+
+    /**
+     * Evict versions, least recently used first, until the store (the versions and the mirrors) is smaller than its size cap.
+     * Versions referenced by an open project, or used in the last hour, are never evicted.
+     * The mirrors are then compacted: the objects of the evicted versions are released, and a mirror without versions is deleted.
+     */
+    public void collectGarbage() {
+        Set<Path> referenced = getReferencedVersionDirectories();
+        List<Path> versions = new ArrayList<>();
+        for (String type : VERSIONED_TYPES) {
+            try (Stream<Path> typeVersions = Files.list(dependenciesPath.resolve(type))) {
+                typeVersions.filter(Files::isDirectory).forEach(versions::add);
+            } catch (NoSuchFileException e) {
+                // No versions of this type
+            } catch (IOException e) {
+                Logger.getInstance().warn("Can't list OIS dependencies versions", e);
+                return;
+            }
+        }
+        Map<Path, Long> sizes = new HashMap<>();
+        // The objects of the versions are in the mirrors, released once the versions are evicted
+        long totalSize = sizeOf(mirrorsPath);
+        for (Path version : versions) {
+            long size = sizeOf(version);
+            sizes.put(version, size);
+            totalSize += size;
+        }
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+        Instant graceLimit = Instant.now().minus(EVICTION_GRACE_PERIOD);
+        versions.sort(Comparator.comparing(DependencyStore::lastUsed));
+        for (Path version : versions) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            if (referenced.contains(version) || lastUsed(version).isAfter(graceLimit)) {
+                continue;
+            }
+            try {
+                evict(version);
+                totalSize -= sizes.get(version);
+                Logger.getInstance().debug("Evicted OIS dependency " + version);
+            } catch (IOException e) {
+                Logger.getInstance().warn("Can't evict OIS dependency " + version, e);
+            }
+        }
+        compactMirrors();
+    }
+
+    private static Set<Path> getReferencedVersionDirectories() {
+        Set<Path> referenced = new HashSet<>();
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project.isDisposed()) {
+                continue;
+            }
+            OisProject oisProject = OisProjectManager.getInstance(project).getProject();
+            if (oisProject == null) {
+                continue;
+            }
+            if (oisProject.getPluginVersion() != null) {
+                referenced.add(getVersionDirectory("plugin", oisProject.getPluginVersion()));
+            }
+            if (oisProject.getCoreVersion() != null) {
+                referenced.add(getVersionDirectory("core", oisProject.getCoreVersion()));
+            }
+        }
+        return referenced;
+    }
+
+    private void evict(Path versionDirectory) throws IOException {
+        // Worktrees metadata of deleted checkouts is released from the mirror when compacting it
+        deleteRecursively(versionDirectory);
+    }
+
+    private void compactMirrors() {
+        List<Path> mirrors;
+        try (Stream<Path> mirrorDirectories = Files.list(mirrorsPath)) {
+            mirrors = mirrorDirectories.filter(Files::isDirectory).toList();
+        } catch (NoSuchFileException e) {
+            // No mirrors
+            return;
+        } catch (IOException e) {
+            Logger.getInstance().debug("Can't list OIS dependencies mirrors", e);
+            return;
+        }
+        for (Path mirror : mirrors) {
+            String repositoryName = StringUtils.removeEnd(mirror.getFileName().toString(), ".git");
+            synchronized (mirrorLocks.computeIfAbsent(repositoryName, name -> new Object())) {
+                try {
+                    compactMirror(mirror);
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    Logger.getInstance().debug("Can't compact OIS dependencies mirror " + mirror, e);
+                }
+            }
+        }
+    }
+
+    private static void compactMirror(Path mirror) throws IOException, InterruptedException {
+        ProjectUtils.runGitCommand(mirror, "prune worktrees of " + mirror, "worktree", "prune");
+        boolean hasWorktrees = ProjectUtils.runGitCommand(mirror, "list worktrees of " + mirror, "worktree", "list", "--porcelain")
+                .lines()
+                .filter(line -> line.startsWith("worktree "))
+                // The first one is the mirror itself
+                .count() > 1;
+        if (!hasWorktrees) {
+            deleteRecursively(mirror);
+            Logger.getInstance().debug("Deleted unused OIS dependencies mirror " + mirror);
+            return;
+        }
+        // The commits of the evicted versions are only reachable from the reflogs and the fetch head
+        ProjectUtils.runGitCommand(mirror, "expire reflogs of " + mirror, "reflog", "expire", "--expire=now", "--all");
+        Files.deleteIfExists(mirror.resolve("FETCH_HEAD"));
+        ProjectUtils.runGitCommand(mirror, "repack " + mirror, "gc", "--prune=now", "--quiet");
+    }
+
+    private static Instant lastUsed(Path versionDirectory) {
+        try {
+            return Files.getLastModifiedTime(versionDirectory).toInstant();
+        } catch (IOException e) {
+            return Instant.EPOCH;
+        }
+    }
+
+    private static long sizeOf(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                file.toFile().setWritable(true);
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,168 @@
+package org.ois.idea.project;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Manifest of a successful install of a dependency version into the local Maven repository.
+ * Holds the source commit that was installed and the checksums of the published artifacts, so the next refresh can tell
+ * with a few file reads if the install is still valid, instead of re-running it.
+ */
+public class InstallStamp {
+
+    public static final String FILE_NAME = "install-stamp.json";
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static class Artifact {
+        private String sha256;
+        private long size;
+        private long lastModified;
+    }
+
+    private String commit;
+    private long timestamp;
+    private Map<String, Artifact> artifacts = new TreeMap<>();
+
+    /**
+     * Create a stamp of the current state of an installed dependency.
+     *
+     * @param checkout          - The source checkout that was installed.
+     * @param artifactDirectory - The local Maven repository directory holding the published artifacts.
+     */
+    public static InstallStamp create(Path checkout, Path artifactDirectory) throws IOException {
+        InstallStamp stamp = new InstallStamp();
+        stamp.commit = readHeadCommit(checkout);
+        stamp.timestamp = System.currentTimeMillis();
+        try (Stream<Path> files = Files.walk(artifactDirectory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Artifact artifact = new Artifact();
+                artifact.sha256 = Utils.sha256(file);
+                artifact.size = Files.size(file);
+                artifact.lastModified = Files.getLastModifiedTime(file).toMillis();
+                stamp.artifacts.put(artifactDirectory.relativize(file).toString(), artifact);
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * Load the stamp of a dependency version.
+     *
+     * @param versionDirectory - The dependency version directory.
+     * @return the stamp, or null if the version was never installed successfully
+     */
+    public static InstallStamp load(Path versionDirectory) {
+        Path stampFile = versionDirectory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(stampFile)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(Files.readString(stampFile), InstallStamp.class);
+        } catch (IOException | JsonParseException e) {
+            Logger.getInstance().debug("Can't read install stamp " + stampFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the stamp atomically, a partially written stamp is never observed.
+     *
+     * @param versionDirectory - The dependency version directory.
+     */
+    public void save(Path versionDirectory) throws IOException {
+        Path tempFile = Files.createTempFile(versionDirectory, FILE_NAME, ".tmp");
+        try {
+            Files.writeString(tempFile, gson.toJson(this), StandardCharsets.UTF_8);
+            Files.move(tempFile, versionDirectory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Check if the installed dependency still matches this stamp.
+     *
+     * @param checkout          - The source checkout of the dependency.
+     * @param artifactDirectory - The local Maven repository directory holding the published artifacts.
+     * @param verifyChecksums   - False to compare the artifacts size and modification time only, true to compare their content checksums.
+     * @return true if the checkout is at the installed commit and all the installed artifacts are unchanged
+     */
+    public boolean matches(Path checkout, Path artifactDirectory, boolean verifyChecksums) {
+        try {
+            if (artifacts.isEmpty() || !Objects.equals(commit, readHeadCommit(checkout))) {
+                return false;
+            }
+            for (Map.Entry<String, Artifact> entry : artifacts.entrySet()) {
+                Path file = artifactDirectory.resolve(entry.getKey());
+                Artifact artifact = entry.getValue();
+                if (!Files.isRegularFile(file) || Files.size(file) != artifact.size) {
+                    return false;
+                }
+                if (verifyChecksums ? !Utils.sha256(file).equals(artifact.sha256) : Files.getLastModifiedTime(file).toMillis() != artifact.lastModified) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public String getCommit() { return commit; }
+
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Read the commit checked out in a git working tree, without running git.
+     *
+     * @param checkout - A git working tree, a clone or a worktree.
+     * @return the commit hash, or null if it can't be resolved
+     */
+    static String readHeadCommit(Path checkout) throws IOException {
+        Path gitDir = checkout.resolve(".git");
+        if (Files.isRegularFile(gitDir)) {
+            // Worktree, the '.git' file points to its git directory
+            String content = Files.readString(gitDir).trim();
+            if (!content.startsWith("gitdir:")) {
+                return null;
+            }
+            gitDir = checkout.resolve(content.substring("gitdir:".length()).trim());
+        }
+        Path headFile = gitDir.resolve("HEAD");
+        if (!Files.isRegularFile(headFile)) {
+            return null;
+        }
+        String head = Files.readString(headFile).trim();
+        if (!head.startsWith("ref:")) {
+            // Detached HEAD
+            return head;
+        }
+        String ref = head.substring("ref:".length()).trim();
+        Path refFile = gitDir.resolve(ref);
+        if (Files.isRegularFile(refFile)) {
+            return Files.readString(refFile).trim();
+        }
+        Path packedRefs = gitDir.resolve("packed-refs");
+        if (!Files.isRegularFile(packedRefs)) {
+            return null;
+        }
+        for (String line : Files.readAllLines(packedRefs)) {
+            if (line.endsWith(" " + ref)) {
+                return line.substring(0, line.indexOf(' '));
+            }
+        }
+        return null;
+    }
+}
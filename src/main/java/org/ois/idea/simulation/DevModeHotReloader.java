@@ -0,0 +1,213 @@
+package org.ois.idea.simulation;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.compiler.CompilerPaths;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.task.ProjectTaskManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.gradle.settings.GradleProjectSettings;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.ProjectUtils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Hot reload loop of a DevMode simulation.
+ * Watches the project source roots through the VFS, compiles only the changed classes with the IDE compiler and writes them into the devModeDir.
+ * Then the reload callback is called, with the time the first change was detected, to relaunch the simulation with the new classes.
+ * <p>
+ * Reloads compile within a second only when the IDE builds the project: when the build is delegated to Gradle
+ * (the default of Gradle projects), the compilation runs a Gradle build and a reload takes seconds.
+ */
+public class DevModeHotReloader implements Disposable {
+
+    // Editors save in bursts, wait for the burst to end before compiling
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final Project ideaProject;
+    private final Path devModeDir;
+    private final LongConsumer onReload;
+    // Changed source file -> time the change was detected, for the edit to reload latency
+    private final Map<VirtualFile, Long> pendingChanges = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledReload;
+    private volatile boolean disposed;
+
+    /**
+     * @param onReload - Called once changed classes were written into the devModeDir, with the {@link System#nanoTime()} the first change was detected.
+     */
+    public DevModeHotReloader(@NotNull Project ideaProject, @NotNull Path devModeDir, @NotNull LongConsumer onReload) {
+        this.ideaProject = ideaProject;
+        this.devModeDir = devModeDir;
+        this.onReload = onReload;
+    }
+
+    public void start() {
+        ideaProject.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                onFilesChanged(events);
+            }
+        });
+        Logger.getInstance().info("DevMode hot reload is watching the project sources");
+        if (isBuildDelegatedToGradle()) {
+            Logger.getInstance().warn("The project build is delegated to Gradle, each DevMode hot reload runs a Gradle build. " +
+                    "Build and run using IntelliJ IDEA (Gradle settings) for faster reloads");
+        }
+    }
+
+    private boolean isBuildDelegatedToGradle() {
+        for (Module module : ModuleManager.getInstance(ideaProject).getModules()) {
+            if (GradleProjectSettings.isDelegatedBuildEnabled(module)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onFilesChanged(List<? extends VFileEvent> events) {
+        long detectedAt = System.nanoTime();
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(ideaProject);
+        synchronized (pendingChanges) {
+            for (VFileEvent event : events) {
+                VirtualFile file = event.getFile();
+                if (file == null || !file.isValid() || !"java".equals(file.getExtension()) || !fileIndex.isInSourceContent(file) || fileIndex.isInTestSourceContent(file)) {
+                    continue;
+                }
+                pendingChanges.putIfAbsent(file, detectedAt);
+            }
+            if (pendingChanges.isEmpty() || disposed) {
+                return;
+            }
+            if (scheduledReload != null) {
+                scheduledReload.cancel(false);
+            }
+            scheduledReload = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::reload, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reload() {
+        Map<VirtualFile, Long> changes;
+        synchronized (pendingChanges) {
+            changes = new LinkedHashMap<>(pendingChanges);
+            pendingChanges.clear();
+        }
+        if (changes.isEmpty() || disposed) {
+            return;
+        }
+        long firstDetected = Collections.min(changes.values());
+        VirtualFile[] files = changes.keySet().toArray(VirtualFile.EMPTY_ARRAY);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (disposed) {
+                return;
+            }
+            ProjectTaskManager.getInstance(ideaProject).compile(files).onSuccess(result -> {
+                if (result.isAborted() || result.hasErrors()) {
+                    Logger.getInstance().warn("DevMode hot reload skipped, compilation failed");
+                    return;
+                }
+                AppExecutorUtil.getAppExecutorService().execute(() -> publish(files, firstDetected));
+            });
+        }, ideaProject.getDisposed());
+    }
+
+    /**
+     * Copy the compiled classes of the changed sources into the devModeDir and reload the simulation.
+     */
+    private void publish(VirtualFile[] sources, long firstDetected) {
+        Set<String> changedClasses = new HashSet<>();
+        try {
+            for (VirtualFile source : sources) {
+                String className = ReadAction.compute(() -> getClassName(source));
+                Path outputDir = ReadAction.compute(() -> getOutputDirectory(source));
+                if (className == null || outputDir == null) {
+                    continue;
+                }
+                copyClassFiles(outputDir, className);
+                changedClasses.add(className.replace('/', '.'));
+            }
+            if (changedClasses.isEmpty() || disposed) {
+                return;
+            }
+            long compiledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstDetected);
+            Logger.getInstance().info(String.format("DevMode hot reload: %d classes compiled %dms from edit, relaunching the simulation", changedClasses.size(), compiledMillis));
+            onReload.accept(firstDetected);
+        } catch (IOException e) {
+            Logger.getInstance().warn("DevMode hot reload failed", e);
+        }
+    }
+
+    /**
+     * @return the class name (with '/' separators) of a source file, based on its path relative to its source root
+     */
+    private String getClassName(VirtualFile source) {
+        VirtualFile sourceRoot = ProjectFileIndex.getInstance(ideaProject).getSourceRootForFile(source);
+        if (sourceRoot == null) {
+            return null;
+        }
+        String relativePath = VfsUtilCore.getRelativePath(source, sourceRoot, '/');
+        return relativePath == null ? null : relativePath.substring(0, relativePath.length() - ".java".length());
+    }
+
+    private Path getOutputDirectory(VirtualFile source) {
+        Module module = ProjectFileIndex.getInstance(ideaProject).getModuleForFile(source);
+        String outputPath = module != null ? CompilerPaths.getModuleOutputPath(module, false) : null;
+        if (outputPath != null && Files.isDirectory(Paths.get(outputPath))) {
+            return Paths.get(outputPath);
+        }
+        // Builds delegated to Gradle
+        Path gradleOutput = ProjectUtils.getProjectBasePath(ideaProject).resolve("build").resolve("classes").resolve("java").resolve("main");
+        return Files.isDirectory(gradleOutput) ? gradleOutput : null;
+    }
+
+    /**
+     * Copy the class file of a top level class and its nested classes.
+     */
+    private void copyClassFiles(Path outputDir, String className) throws IOException {
+        Path classFile = outputDir.resolve(className + ".class");
+        Path packageDir = classFile.getParent();
+        String simpleName = classFile.getFileName().toString().replace(".class", "");
+        Path destinationDir = devModeDir.resolve(outputDir.relativize(packageDir));
+        Files.createDirectories(destinationDir);
+        try (Stream<Path> classFiles = Files.list(packageDir)) {
+            for (Path file : classFiles.toList()) {
+                String name = file.getFileName().toString();
+                if (name.equals(simpleName + ".class") || (name.startsWith(simpleName + "$") && name.endsWith(".class"))) {
+                    Files.copy(file, destinationDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        Disposer.dispose(this);
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        synchronized (pendingChanges) {
+            if (scheduledReload != null) {
+                scheduledReload.cancel(false);
+            }
+            pendingChanges.clear();
+        }
+    }
+}
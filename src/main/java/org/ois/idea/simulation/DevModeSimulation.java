@@ -0,0 +1,191 @@
+package org.ois.idea.simulation;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessTerminatedListener;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.console.SimulationConsole;
+import org.ois.idea.simulation.runner.WarmRunnerBootstrap;
+import org.ois.idea.simulation.runner.WarmRunnerManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+
+/**
+ * A DevMode simulation on the warm runner, relaunched by the {@link DevModeHotReloader} on each change of the project sources.
+ * The runners load the classes of the devModeDir before the build output, so a relaunch runs the changed classes.
+ * The simulation state is not kept across a reload: the simulation starts again from its initial state.
+ * <p>
+ * The reload latency (from the first detected change to the start of the relaunched simulation) is measured for each reload
+ * and summarized when the session ends, with a warning when the median reload exceeds {@link #RELOAD_LATENCY_BUDGET_MILLIS}.
+ */
+class DevModeSimulation {
+
+    static final long RELOAD_LATENCY_BUDGET_MILLIS = 1000;
+
+    private final Project ideaProject;
+    private final SimulationSession session;
+    private final SimulationSessionScheduler.SessionScope scope;
+    private final Path devModeDir;
+    private final DevModeHotReloader hotReloader;
+    private final List<Long> reloadLatencies = Collections.synchronizedList(new ArrayList<>());
+
+    // The process of the current launch, null while relaunching
+    private ProcessHandler current;
+    private boolean ended;
+
+    DevModeSimulation(@NotNull Project ideaProject, @NotNull SimulationSession session, @NotNull SimulationSessionScheduler.SessionScope scope, @NotNull Path devModeDir) {
+        this.ideaProject = ideaProject;
+        this.session = session;
+        this.scope = scope;
+        this.devModeDir = devModeDir;
+        this.hotReloader = new DevModeHotReloader(ideaProject, devModeDir, this::reload);
+    }
+
+    /**
+     * Launch the simulation and start watching the project sources.
+     *
+     * @return false if the project has no warm runner and the simulation should be launched with Gradle
+     */
+    boolean start() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        if (!launch("DevMode", System.nanoTime(), elapsed -> {})) {
+            return false;
+        }
+        scope.onCancel(this::end);
+        hotReloader.start();
+        Logger.getInstance().info("DevMode Simulation output is shown in the Console view");
+        return true;
+    }
+
+    private boolean launch(String launchMode, long since, LongConsumer onStarted) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        ProcessHandler handler = WarmRunnerManager.getInstance(ideaProject).launch(devModeDir, Map.of(
+                "org.ois.runner.debugMode", "true",
+                "org.ois.runner.devModeDir", devModeDir.toString()
+        ), List.of(), runner -> {
+            runner.addProcessListener(new SimulationStartTimer(launchMode, WarmRunnerBootstrap.STARTED, since, onStarted));
+            runner.addProcessListener(SimulationConsole.getInstance(ideaProject).newProcessListener());
+            runner.addProcessListener(new ProcessAdapter() {
+                @Override
+                public void processTerminated(@NotNull ProcessEvent event) {
+                    onTerminated(runner, event.getExitCode());
+                }
+            });
+            ProcessTerminatedListener.attach(runner);
+            synchronized (this) {
+                if (ended) {
+                    runner.destroyProcess();
+                    return;
+                }
+                current = runner;
+            }
+            session.attach(runner);
+        });
+        return handler != null;
+    }
+
+    /**
+     * Replace the running simulation with a new launch, running the changed classes.
+     */
+    private void reload(long firstDetected) {
+        ProcessHandler previous;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            previous = current;
+            current = null;
+        }
+        session.detach();
+        if (previous != null) {
+            previous.destroyProcess();
+        }
+        try {
+            if (!launch("DevMode hot reload", firstDetected, reloadLatencies::add)) {
+                Logger.getInstance().warn("Can't relaunch the DevMode Simulation, no warm runner is available");
+                end();
+            }
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            Logger.getInstance().warn("Can't relaunch the DevMode Simulation", e);
+            end();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            end();
+        }
+    }
+
+    private void onTerminated(ProcessHandler runner, int exitCode) {
+        synchronized (this) {
+            // Destroyed by a reload
+            if (runner != current) {
+                return;
+            }
+            current = null;
+        }
+        Logger.getInstance().info("DevMode Simulation finished with exit code: " + exitCode);
+        end();
+    }
+
+    private void end() {
+        ProcessHandler running;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            running = current;
+            current = null;
+        }
+        hotReloader.stop();
+        if (running != null) {
+            running.destroyProcess();
+        }
+        logReloadLatencies();
+        session.detach();
+        // Replace the runner waiting with the DevMode classes by a regular one
+        WarmRunnerManager.getInstance(ideaProject).prepare();
+        scope.complete();
+    }
+
+    private void logReloadLatencies() {
+        List<Long> latencies;
+        synchronized (reloadLatencies) {
+            latencies = new ArrayList<>(reloadLatencies);
+        }
+        if (latencies.isEmpty()) {
+            return;
+        }
+        Collections.sort(latencies);
+        long median = getMedian(latencies);
+        Logger.getInstance().info(String.format("DevMode hot reload latency (edit to simulation start) over %d reloads: p50 %dms, max %dms",
+                latencies.size(), median, latencies.get(latencies.size() - 1)));
+        if (isOverBudget(latencies)) {
+            Logger.getInstance().warn(String.format("DevMode hot reload p50 %dms is over the %dms budget, check that the project is built by the IDE and not delegated to Gradle",
+                    median, RELOAD_LATENCY_BUDGET_MILLIS));
+        }
+    }
+
+    /**
+     * @param sortedLatencies - The reload latencies in millis, sorted.
+     */
+    static long getMedian(List<Long> sortedLatencies) {
+        return sortedLatencies.get((sortedLatencies.size() - 1) / 2);
+    }
+
+    /**
+     * @param sortedLatencies - The reload latencies in millis, sorted.
+     * @return true if the median reload is slower than the budget, a single slow reload (the first compilation) is tolerated
+     */
+    static boolean isOverBudget(List<Long> sortedLatencies) {
+        return !sortedLatencies.isEmpty() && getMedian(sortedLatencies) > RELOAD_LATENCY_BUDGET_MILLIS;
+    }
+}
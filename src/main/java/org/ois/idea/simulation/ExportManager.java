@@ -1,31 +1,55 @@
 package org.ois.idea.simulation;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnector;
 import org.jetbrains.annotations.NotNull;
+import org.ois.core.project.SimulationManifest;
+import org.ois.core.runner.RunnerConfiguration;
 import org.ois.idea.events.ProjectStateEvents;
 import org.ois.idea.log.Logger;
+import org.ois.idea.project.BuildScriptManager;
 import org.ois.idea.project.OisProject;
 import org.ois.idea.project.OisProjectManager;
+import org.ois.idea.simulation.assets.AssetPipeline;
+import org.ois.idea.simulation.export.DistributionAnalyzer;
+import org.ois.idea.simulation.export.DistributionPackager;
+import org.ois.idea.simulation.export.ExportCache;
+import org.ois.idea.simulation.export.ExportInputs;
+import org.ois.idea.simulation.export.PlatformExportJob;
 import org.ois.idea.utils.ProjectUtils;
 import org.ois.idea.utils.Utils;
 
 import java.awt.*;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * Exports the simulation for distribution, incrementally.
+ * The resources are processed into the assets of each platform first (see {@link AssetPipeline}).
+ * The inputs of each platform are fingerprinted (see {@link ExportInputs}), the project is exported with Gradle only if the
+ * artifacts of a platform for its inputs are not in the distribution directory already, nor in the {@link ExportCache}.
+ * The 'export' task exports all the platforms in one build, then each platform is brought up to date and cached in its own
+ * {@link PlatformExportJob}, and the distribution is packaged into archives and analyzed.
+ */
 public class ExportManager {
 
     private final static String LOG_PREFIX = "Can't export OIS project: ";
+    private final static long PROGRESS_INTERVAL_MILLIS = 200;
 
-    private final static Pattern debugModePattern = Pattern.compile("(?m)^\\s*(?!//)\\s*debugMode\\s*=\\s*(\\w+)");
-
+    // Maximum platforms restored or cached at the same time
+    private static volatile int exportParallelism = Math.max(1, Math.min(RunnerConfiguration.RunnerType.values().length, Runtime.getRuntime().availableProcessors() / 2));
 
     private final Project ideaProject;
+    private final ExportInputs inputs = new ExportInputs();
 
     private final AtomicBoolean exporting = new AtomicBoolean(false);
 
@@ -37,6 +61,10 @@ public class ExportManager {
         return ideaProject.getService(ExportManager.class);
     }
 
+    public static int getExportParallelism() { return exportParallelism; }
+
+    public static void setExportParallelism(int parallelism) { exportParallelism = Math.max(1, parallelism); }
+
     public void exportSimulation() {
         if (isExportInProgress()) {
             Logger.getInstance().info("project export already in progress...");
@@ -59,17 +87,43 @@ public class ExportManager {
             @Override
             public void run(Utils.@NotNull OISProgressIndicator indicator) {
                 try {
-                    boolean debugMode = findOisProjectDebugMode(ProjectUtils.getProjectBasePath(ideaProject));
+                    boolean debugMode = BuildScriptManager.getInstance(ideaProject).getMetadata().isDebugMode();
                     if (debugMode) {
                         indicator.state("Exporting Simulation (Debug mode)");
                     } else {
                         indicator.state("Exporting Simulation");
                     }
-                    ProjectUtils.runGradleTasks(projectDirectory, new HashMap<>(), false, "export", "-D", String.format("org.ois.runner.debugMode=%b", debugMode));
+                    SortedSet<RunnerConfiguration.RunnerType> platforms = new TreeSet<>(oisProject.getManifest().getPlatforms());
+                    AssetPipeline assetPipeline = AssetPipeline.getInstance(ideaProject);
+                    indicator.state("Processing assets");
+                    assetPipeline.build(platforms, indicator::isCanceled);
+                    Map<String, String> parameters = Map.of(
+                            "debugMode", String.valueOf(debugMode),
+                            "pluginVersion", String.valueOf(projectManager.getPluginVersion()),
+                            "coreVersion", String.valueOf(projectManager.getCoreVersion()),
+                            "assetProcessors", assetPipeline.getProcessorIds()
+                    );
+                    List<PlatformExportJob> jobs = exportPlatforms(projectDirectory, platforms, parameters, indicator);
+                    List<PlatformExportJob> failed = jobs.stream().filter(job -> job.getStatus() == PlatformExportJob.Status.Failed).toList();
+                    failed.forEach(job -> Logger.getInstance().error(String.format("%sexport of '%s' failed: %s", LOG_PREFIX, job.getPlatform(), job.getFailure())));
+                    if (jobs.stream().anyMatch(job -> job.getStatus() == PlatformExportJob.Status.Cancelled)) {
+                        Logger.getInstance().warn("OIS project export cancelled");
+                        indicator.cancel();
+                        return;
+                    }
+                    if (!failed.isEmpty()) {
+                        indicator.cancel();
+                        return;
+                    }
+                    packageDistribution(projectDirectory, jobs, indicator);
+                    analyzeDistribution(projectDirectory, platforms, oisProject.getManifest(), indicator);
                     // Done
                     indicator.done();
                     Logger.getInstance().info("OIS project exported");
-                    askToOpenDistributionDirectory(projectDirectory.resolve("build").resolve("ois").resolve("distribution"));
+                    askToOpenDistributionDirectory(getDistributionDirectory(projectDirectory));
+                } catch (CancellationException e) {
+                    Logger.getInstance().warn("OIS project export cancelled");
+                    indicator.cancel();
                 } catch (Exception e) {
                     Logger.getInstance().error(LOG_PREFIX + "export failed", e);
                     indicator.cancel();
@@ -82,6 +136,177 @@ public class ExportManager {
         exportTask.runInBackground();
     }
 
+    /**
+     * Bring the distribution of each platform up to date with its inputs.
+     * If a platform is neither up to date nor cached, the 'export' task runs first, it exports all the platforms and may rewrite
+     * the whole distribution directory. Then each platform is checked in its own job (see {@link PlatformExportJob}): kept, restored
+     * from the cache, or cached if it was exported. The jobs write their own platform directory, at most {@link #getExportParallelism()}
+     * of them at a time. A failed or cancelled job does not stop the others.
+     *
+     * @return the jobs, once all of them are done
+     */
+    private List<PlatformExportJob> exportPlatforms(Path projectDirectory, SortedSet<RunnerConfiguration.RunnerType> platforms, Map<String, String> parameters, Utils.OISProgressIndicator indicator) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ExportCache cache = ExportCache.getInstance();
+        Path distribution = getDistributionDirectory(projectDirectory);
+
+        indicator.state("Fingerprinting export inputs");
+        Map<RunnerConfiguration.RunnerType, String> keys = new EnumMap<>(RunnerConfiguration.RunnerType.class);
+        for (RunnerConfiguration.RunnerType platform : platforms) {
+            keys.put(platform, inputs.fingerprint(projectDirectory, platform, parameters));
+        }
+        long fingerprintMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<RunnerConfiguration.RunnerType> stale = platforms.stream()
+                .filter(platform -> !cache.matches(keys.get(platform), getPlatformDistribution(distribution, platform)) && !cache.contains(keys.get(platform)))
+                .toList();
+        long exportMillis = 0;
+        boolean exported = false;
+        if (!stale.isEmpty()) {
+            long exportStart = System.nanoTime();
+            exported = exportWithGradle(projectDirectory, stale, parameters, indicator);
+            exportMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - exportStart);
+        }
+
+        Semaphore exportSlots = new Semaphore(exportParallelism);
+        List<PlatformExportJob> jobs = new ArrayList<>();
+        List<CompletableFuture<PlatformExportJob>> done = new ArrayList<>();
+        for (RunnerConfiguration.RunnerType platform : platforms) {
+            PlatformExportJob job = new PlatformExportJob(getPlatformDistribution(distribution, platform), platform, keys.get(platform), AssetPipeline.getInstance(ideaProject), exportSlots, exported);
+            CompletableFuture<PlatformExportJob> jobDone = new CompletableFuture<>();
+            jobs.add(job);
+            done.add(jobDone);
+            new Utils.BackgroundTask(ideaProject, String.format("Exporting '%s'", platform), true) {
+                @Override
+                public void run(Utils.@NotNull OISProgressIndicator jobIndicator) {
+                    try {
+                        job.run(jobIndicator);
+                    } finally {
+                        jobDone.complete(job);
+                    }
+                }
+            }.runInBackground();
+        }
+
+        // Wait for the jobs, cancelling them all if the export is cancelled
+        CompletableFuture<Void> all = CompletableFuture.allOf(done.toArray(new CompletableFuture[0]));
+        while (!all.isDone()) {
+            if (indicator.isCanceled()) {
+                jobs.forEach(PlatformExportJob::cancel);
+            } else {
+                long finished = done.stream().filter(CompletableFuture::isDone).count();
+                indicator.state(String.format("Exporting platforms (%d of %d done)", finished, jobs.size()), (double) finished / jobs.size());
+            }
+            try {
+                all.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Jobs never complete exceptionally, keep waiting
+            }
+        }
+
+        cache.collectGarbage();
+
+        Logger.getInstance().info(String.format("Export took %dms (inputs fingerprinted in %dms, Gradle export of %s in %dms): %s", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), fingerprintMillis,
+                stale.isEmpty() ? "no platform" : stale, exportMillis,
+                jobs.stream().map(job -> String.format("%s %s in %dms", job.getPlatform(), job.getStatus(), job.getDurationMillis())).collect(Collectors.joining(", "))));
+        return jobs;
+    }
+
+    /**
+     * Export all the platforms with Gradle, in a single build: the 'export' task exports every platform of the manifest.
+     *
+     * @param stale - The platforms the export is needed for.
+     * @return false if the export failed, the failure is logged
+     */
+    private boolean exportWithGradle(Path projectDirectory, List<RunnerConfiguration.RunnerType> stale, Map<String, String> parameters, Utils.OISProgressIndicator indicator) throws InterruptedException {
+        indicator.state(String.format("Exporting %s with Gradle", stale));
+        CancellationTokenSource cancellation = GradleConnector.newCancellationTokenSource();
+        ScheduledFuture<?> cancelPoller = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            if (indicator.isCanceled()) {
+                cancellation.cancel();
+            }
+        }, PROGRESS_INTERVAL_MILLIS, PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            ProjectUtils.runGradleTasks(projectDirectory, new HashMap<>(), false, cancellation.token(), "export",
+                    "--parallel", String.format("--max-workers=%d", Runtime.getRuntime().availableProcessors()),
+                    "-D", String.format("org.ois.runner.debugMode=%s", parameters.get("debugMode")));
+            return true;
+        } catch (BuildCancelledException e) {
+            throw new CancellationException("Gradle export cancelled");
+        } catch (IOException | RuntimeException e) {
+            if (indicator.isCanceled()) {
+                throw new CancellationException("Gradle export cancelled");
+            }
+            Logger.getInstance().error(LOG_PREFIX + "the Gradle export failed", e);
+            return false;
+        } finally {
+            cancelPoller.cancel(false);
+        }
+    }
+
+    /**
+     * Package the exported distribution into an archive per platform (see {@link DistributionPackager}).
+     * The platform files are known from the export cache, they are hashed again only if they do not match the cache.
+     */
+    private void packageDistribution(Path projectDirectory, List<PlatformExportJob> jobs, Utils.OISProgressIndicator indicator) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        indicator.state("Packaging distribution");
+        ExportCache cache = ExportCache.getInstance();
+        Map<RunnerConfiguration.RunnerType, SortedMap<String, String>> files = new EnumMap<>(RunnerConfiguration.RunnerType.class);
+        // Files not matching their cache entry are hashed from the disk
+        jobs.forEach(job -> files.put(job.getPlatform(), cache.matches(job.getKey(), job.getDistribution()) ? cache.getFiles(job.getKey()) : null));
+        new DistributionPackager(Runtime.getRuntime().availableProcessors()).pack(getDistributionDirectory(projectDirectory), getPackagesDirectory(projectDirectory), files, indicator::isCanceled);
+        Logger.getInstance().info(String.format("Distribution packaged in %dms at %s", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getPackagesDirectory(projectDirectory)));
+    }
+
+    /**
+     * Report the size and startup cost of the distribution, and their changes since the previous export (see {@link DistributionAnalyzer}).
+     * A failed analysis does not fail the export.
+     */
+    private void analyzeDistribution(Path projectDirectory, SortedSet<RunnerConfiguration.RunnerType> platforms, SimulationManifest manifest, Utils.OISProgressIndicator indicator) {
+        indicator.state("Analyzing distribution");
+        List<String> entryClasses = new ArrayList<>();
+        if (manifest.getStates() != null && manifest.getInitialState() != null && manifest.getStates().get(manifest.getInitialState()) != null) {
+            entryClasses.add(manifest.getStates().get(manifest.getInitialState()));
+        }
+        try {
+            DistributionAnalyzer.Report report = new DistributionAnalyzer().analyze(getDistributionDirectory(projectDirectory), getReportsDirectory(projectDirectory), platforms, entryClasses);
+            report.getPlatforms().forEach((platform, analysis) -> {
+                DistributionAnalyzer.Changes changes = analysis.getChanges();
+                Logger.getInstance().info(String.format("%s distribution: %s, %d startup classes, %d duplicate entries%s", platform, StringUtil.formatFileSize(analysis.getTotalBytes()),
+                        analysis.getStartupClasses(), analysis.getDuplicates().size(),
+                        changes == null ? "" : String.format(" (%s%s, %+d startup classes since the previous export)", changes.getTotalBytes() < 0 ? "-" : "+", StringUtil.formatFileSize(Math.abs(changes.getTotalBytes())), changes.getStartupClasses())));
+            });
+        } catch (IOException | RuntimeException e) {
+            Logger.getInstance().warn("Can't analyze the exported distribution", e);
+        }
+    }
+
+    public static Path getDistributionDirectory(Path projectDirectory) {
+        return projectDirectory.resolve("build").resolve("ois").resolve("distribution");
+    }
+
+    /**
+     * @return the directory of the distribution analysis reports
+     */
+    public static Path getReportsDirectory(Path projectDirectory) {
+        return projectDirectory.resolve("build").resolve("ois").resolve("reports");
+    }
+
+    /**
+     * @return the directory of the distribution archives and their index
+     */
+    public static Path getPackagesDirectory(Path projectDirectory) {
+        return projectDirectory.resolve("build").resolve("ois").resolve("packages");
+    }
+
+    /**
+     * @return the directory the 'export' task writes the artifacts of a platform into
+     */
+    public static Path getPlatformDistribution(Path distribution, RunnerConfiguration.RunnerType platform) {
+        return distribution.resolve(platform.name().toLowerCase(Locale.ROOT));
+    }
+
     private void askToOpenDistributionDirectory(Path location) {
         Logger.showActionableBalloon(ideaProject, "OIS Project exported successfully.\nClick <a href=\"here\">here</a> to open the distribution directory.", () -> {
             try {
@@ -93,19 +318,5 @@ public class ExportManager {
         });
     }
 
-    private static boolean findOisProjectDebugMode(Path projectPath) throws IOException {
-        Path buildFilePath = projectPath.resolve("build.gradle");
-        if (!Files.exists(buildFilePath)) {
-            return false;
-        }
-        // Read the contents of the file
-        String buildFileContent = Files.readString(buildFilePath);
-        Matcher matcher = debugModePattern.matcher(buildFileContent);
-        if (!matcher.find()) {
-            return false;
-        }
-        return Boolean.parseBoolean(matcher.group(1));
-    }
-
     public boolean isExportInProgress() { return exporting.get(); }
 }
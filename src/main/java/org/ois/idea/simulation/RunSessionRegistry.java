@@ -0,0 +1,120 @@
+package org.ois.idea.simulation;
+
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.gradle.service.execution.GradleExternalTaskConfigurationType;
+import org.jetbrains.plugins.gradle.service.execution.GradleRunConfiguration;
+import org.ois.idea.log.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run configurations and execution listeners of the simulation launches of a project.
+ * Launches of the same Gradle tasks reuse one run configuration, and each launch listens to the execution events
+ * only until its process terminates (or fails to start).
+ */
+public class RunSessionRegistry implements Disposable {
+
+    private final Project ideaProject;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    private RunSessionRegistry(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+    }
+
+    public static RunSessionRegistry getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(RunSessionRegistry.class);
+    }
+
+    /**
+     * Get the Gradle run configuration of a task line, creating it on the first launch.
+     * Configurations are named after their task line, so configurations created by previous IDE sessions are reused as well.
+     *
+     * @param gradleTaskName   - The Gradle task and its arguments.
+     * @param workingDirectory - The Gradle project directory.
+     */
+    public synchronized RunnerAndConfigurationSettings getConfiguration(String gradleTaskName, String workingDirectory) {
+        RunManager runManager = RunManager.getInstance(ideaProject);
+        GradleExternalTaskConfigurationType gradleType = GradleExternalTaskConfigurationType.getInstance();
+
+        RunnerAndConfigurationSettings settings = runManager.findConfigurationByTypeAndName(gradleType, gradleTaskName);
+        if (settings == null) {
+            settings = runManager.createConfiguration(gradleTaskName, gradleType.getFactory());
+            runManager.addConfiguration(settings);
+            Logger.getInstance().debug("Created run configuration: " + gradleTaskName);
+        }
+        // Set even on reused configurations, in case they were edited
+        var gradleRunConfig = (GradleRunConfiguration) settings.getConfiguration();
+        gradleRunConfig.getSettings().setTaskNames(List.of(gradleTaskName));
+        gradleRunConfig.getSettings().setExternalProjectPath(workingDirectory);
+        return settings;
+    }
+
+    /**
+     * Listen to the execution events of a single launch.
+     * The listener is called only with the events of the launch environment, and is removed once the launch is over or the registry is disposed.
+     *
+     * @param environment - The environment of the launch.
+     * @param listener    - The listener of the launch events.
+     * @return the session disposable, dispose it to stop listening before the launch is over
+     */
+    public Disposable openSession(@NotNull ExecutionEnvironment environment, @NotNull ExecutionListener listener) {
+        Disposable session = Disposer.newDisposable(this, "OIS run session");
+        activeSessions.incrementAndGet();
+        Disposer.register(session, activeSessions::decrementAndGet);
+
+        ideaProject.getMessageBus().connect(session).subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+            private final AtomicBoolean closed = new AtomicBoolean(false);
+
+            @Override
+            public void processStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler) {
+                if (env.equals(environment)) {
+                    listener.processStarted(executorId, env, handler);
+                }
+            }
+
+            @Override
+            public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+                if (env.equals(environment)) {
+                    listener.processNotStarted(executorId, env);
+                    close();
+                }
+            }
+
+            @Override
+            public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler, int exitCode) {
+                if (env.equals(environment)) {
+                    listener.processTerminated(executorId, env, handler, exitCode);
+                    close();
+                }
+            }
+
+            private void close() {
+                if (closed.compareAndSet(false, true)) {
+                    Disposer.dispose(session);
+                }
+            }
+        });
+        return session;
+    }
+
+    /**
+     * @return the number of launches still listening to execution events
+     */
+    public int getActiveSessionCount() { return activeSessions.get(); }
+
+    @Override
+    public void dispose() {
+        // Open sessions are children of the registry and are disposed with it
+    }
+}
@@ -3,42 +3,64 @@ package org.ois.idea.simulation;
 import com.intellij.execution.*;
 import com.intellij.execution.executors.DefaultDebugExecutor;
 import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.process.ProcessTerminatedListener;
 import com.intellij.execution.runners.ExecutionEnvironment;
 import com.intellij.execution.runners.ExecutionEnvironmentBuilder;
-import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.execution.ParametersListUtil;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.plugins.gradle.service.execution.GradleExternalTaskConfigurationType;
-import org.jetbrains.plugins.gradle.service.execution.GradleRunConfiguration;
 import org.ois.core.runner.RunnerConfiguration;
 import org.ois.idea.events.ProjectStateEvents;
 import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.console.SimulationConsole;
+import org.ois.idea.simulation.profiler.SimulationProfiler;
+import org.ois.idea.simulation.runner.WarmRunnerBootstrap;
+import org.ois.idea.simulation.runner.WarmRunnerManager;
+import org.ois.idea.simulation.telemetry.SimulationTelemetry;
+import org.ois.idea.simulation.telemetry.TelemetryProtocol;
+import org.ois.idea.simulation.telemetry.TelemetryServer;
 import org.ois.idea.utils.ProjectUtils;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SimulationManager {
 
-    private final static String LOG_PREFIX = "Simulation failed: ";
+    /**
+     * The way a simulation is launched.
+     * Gradle runs the 'runDesktop' task for each launch, WarmRunner hands the launch to a runner JVM started ahead of time.
+     */
+    public enum LaunchMode {
+        Gradle, WarmRunner
+    }
 
-    private final Project ideaProject;
+    // Printed by Gradle (with '--info') right before it starts the runner JVM
+    private final static String GRADLE_RUNNER_START_MARKER = "Starting process 'command";
+
+    private static volatile LaunchMode launchMode = LaunchMode.WarmRunner;
+    // Maximum time a simulation session may run, null for no limit
+    private static volatile Duration sessionDeadline;
 
-    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Project ideaProject;
 
-    private ExecutorService executor;
-    private static ProcessHandler currentProcessHandler;
+    // At most one session per platform, sessions of different platforms run side by side
+    private final Map<RunnerConfiguration.RunnerType, SimulationSession> sessions = new ConcurrentHashMap<>();
 
     private SimulationManager(@NotNull Project ideaProject) {
         this.ideaProject = ideaProject;
@@ -48,96 +70,203 @@ public class SimulationManager {
         return ideaProject.getService(SimulationManager.class);
     }
 
+    public static LaunchMode getLaunchMode() { return launchMode; }
+
+    public static void setLaunchMode(LaunchMode mode) { launchMode = mode; }
+
+    public static Duration getSessionDeadline() { return sessionDeadline; }
+
+    public static void setSessionDeadline(Duration deadline) { sessionDeadline = deadline; }
+
+    /**
+     * Prepare the next launch ahead of time, when launching with a warm runner.
+     */
+    public void prepare() {
+        if (launchMode == LaunchMode.WarmRunner) {
+            WarmRunnerManager.getInstance(ideaProject).prepare();
+        }
+    }
+
     public void run(RunnerConfiguration.RunnerType platform) {
-        runWithStrategy((latch) -> {
+        run(platform, false);
+    }
+
+    /**
+     * @param profile - Sample the simulation thread into a new profile of the {@link SimulationProfiler}.
+     */
+    public void run(RunnerConfiguration.RunnerType platform, boolean profile) {
+        runWithStrategy(platform, false, (session, scope) -> {
             Logger.getInstance().info(String.format("Running '%s' Simulation...", platform));
-            addGradleTaskAndRun(ideaProject, "runDesktop --info -D org.ois.runner.debugMode=true", ProjectUtils.getProjectBasePath(ideaProject).toString(), false, latch);
+            // The warm runner is a desktop JVM
+            if (platform == RunnerConfiguration.RunnerType.Desktop && launchMode == LaunchMode.WarmRunner && runWithWarmRunner(session, scope, profile)) {
+                return;
+            }
+            if (profile) {
+                Logger.getInstance().warn("Profiling is supported only for Desktop simulations launched on the warm runner, running without profiling");
+            }
+            runGradleTask(session, scope, getRunTask(platform) + " --info -D org.ois.runner.debugMode=true", false);
         });
     }
 
+    /**
+     * Run the Desktop simulation in DevMode: it is relaunched on the warm runner with the changed classes whenever the project sources change.
+     * When launching with Gradle, or without a warm runner, the simulation is launched with Gradle and is not reloaded.
+     */
     public void runDevMode() {
-        runWithStrategy(latch -> {
+        runWithStrategy(RunnerConfiguration.RunnerType.Desktop, true, (session, scope) -> {
             Logger.getInstance().info("Running DevMode Simulation...");
             Path devModeDir = Files.createTempDirectory(String.format("ois_%s_dev", ideaProject.getName()));
-            ProjectUtils.runGradleTasks(ProjectUtils.getProjectBasePath(ideaProject), new Hashtable<>(), false,"runDesktop", "--info", "-D", String.format("org.ois.runner.devModeDir='%s'", devModeDir));
-            latch.countDown();
+            if (launchMode == LaunchMode.WarmRunner) {
+                try {
+                    // The runner loads the project classes from the build output, bring it up to date as 'runDesktop' does
+                    ProjectUtils.runGradleTasks(ProjectUtils.getProjectBasePath(ideaProject), new Hashtable<>(), false, "classes");
+                    if (new DevModeSimulation(ideaProject, session, scope, devModeDir).start()) {
+                        return;
+                    }
+                } catch (ExecutionException | TimeoutException e) {
+                    Logger.getInstance().warn("Can't launch the DevMode Simulation on a warm runner", e);
+                }
+            }
+            Logger.getInstance().warn("DevMode Simulation is launched with Gradle, it will not be reloaded on changes");
+            runGradleTask(session, scope, getDevModeTask(devModeDir), false);
         });
     }
 
+    /**
+     * @return the Gradle task line of a DevMode launch, with the devModeDir quoted as the task line is split on whitespaces
+     */
+    static String getDevModeTask(Path devModeDir) {
+        return ParametersListUtil.join("runDesktop", "--info", "-D", "org.ois.runner.devModeDir=" + devModeDir);
+    }
+
+    /**
+     * Launch the simulation on the warm runner of the project.
+     *
+     * @return false if the project has no warm runner and the simulation should be launched with Gradle
+     */
+    private boolean runWithWarmRunner(SimulationSession session, SimulationSessionScheduler.SessionScope scope, boolean profile) throws IOException, InterruptedException {
+        long launchStart = System.nanoTime();
+        AtomicBoolean attached = new AtomicBoolean(false);
+        // The warm runner streams its telemetry to the Inspector view
+        TelemetryServer telemetry = SimulationTelemetry.getInstance(ideaProject).openChannel(String.format("'%s' Simulation", session.getPlatform()));
+        scope.onCancel(telemetry::close);
+        try {
+            // The runner loads the project classes from the build output, bring it up to date as 'runDesktop' does
+            ProjectUtils.runGradleTasks(ProjectUtils.getProjectBasePath(ideaProject), new Hashtable<>(), false, "classes");
+            Map<String, String> systemProperties = new HashMap<>(Map.of(
+                    "org.ois.runner.debugMode", "true",
+                    TelemetryProtocol.PORT_PROPERTY, String.valueOf(telemetry.getPort())
+            ));
+            if (profile) {
+                systemProperties.putAll(SimulationProfiler.getInstance(ideaProject).startProfile(ideaProject.getName()));
+            }
+            ProcessHandler handler = WarmRunnerManager.getInstance(ideaProject).launch(systemProperties, List.of(), runner -> {
+                attached.set(true);
+                runner.addProcessListener(new SimulationStartTimer("warm runner", WarmRunnerBootstrap.STARTED, launchStart));
+                runner.addProcessListener(SimulationConsole.getInstance(ideaProject).newProcessListener());
+                runner.addProcessListener(new ProcessAdapter() {
+                    @Override
+                    public void processTerminated(@NotNull ProcessEvent event) {
+                        Logger.getInstance().info("Simulation finished with exit code: " + event.getExitCode());
+                        session.detach();
+                        telemetry.close();
+                        scope.complete();
+                    }
+                });
+                ProcessTerminatedListener.attach(runner);
+                session.attach(runner);
+                ApplicationManager.getApplication().invokeAndWait(() -> new RunContentExecutor(ideaProject, runner)
+                        .withTitle("OIS Simulation")
+                        .withStop(runner::destroyProcess, () -> !runner.isProcessTerminated())
+                        .run());
+            });
+            if (handler == null) {
+                telemetry.close();
+            }
+            return handler != null;
+        } catch (ExecutionException | TimeoutException e) {
+            if (attached.get()) {
+                throw new IOException("Can't hand the simulation to the warm runner", e);
+            }
+            telemetry.close();
+            Logger.getInstance().warn("Can't launch the simulation on a warm runner, launching with Gradle", e);
+            return false;
+        }
+    }
+
+    private static String getRunTask(RunnerConfiguration.RunnerType platform) {
+        return switch (platform) {
+            case Desktop -> "runDesktop";
+            case Html -> "runHtml";
+            case Android -> "runAndroid";
+        };
+    }
+
     private interface SimulationRunStrategy {
-        void run(CountDownLatch latch) throws ExecutionException, IOException, InterruptedException;
+        void run(SimulationSession session, SimulationSessionScheduler.SessionScope scope) throws ExecutionException, IOException, InterruptedException;
     }
 
-    private void runWithStrategy(SimulationRunStrategy strategy) {
+    private void runWithStrategy(RunnerConfiguration.RunnerType platform, boolean devMode, SimulationRunStrategy strategy) {
         if (DumbService.isDumb(ideaProject)) {
             Logger.getInstance().warn("Intellij is still indexing the project, can't run simulation...");
             return;
         }
-        if (isSimulationRunning()) {
-            Logger.getInstance().warn("Simulation already running, please exit the current before rerunning...");
+        SimulationSession session = new SimulationSession(ideaProject, platform, devMode);
+        if (sessions.putIfAbsent(platform, session) != null) {
+            Logger.getInstance().warn(String.format("'%s' Simulation already running, please exit the current before rerunning...", platform));
             return;
         }
 
-        running.set(true);
+        session.start();
         ideaProject.getMessageBus().syncPublisher(ProjectStateEvents.ON_PROJECT_DEBUG_STARTED).update();
 
-        Thread runSimulationThread = new Thread(() -> {
-            executor = Executors.newFixedThreadPool(3);
-            try {
-                ProgressManager.checkCanceled();
-
-                // Wait for the task to complete
-                CountDownLatch latch = new CountDownLatch(1);
-                strategy.run(latch);
-                latch.await(); // Wait for the strategy to finish
-
-                executor.shutdown();
-                if (!executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MINUTES)) {
-                    Logger.getInstance().error(LOG_PREFIX + "Simulation timeout elapsed.");
-                }
-            } catch (IOException | InterruptedException | ExecutionException e) {
-                Logger.getInstance().error(LOG_PREFIX, e);
-            } finally {
-                Logger.getInstance().info("Done");
-                executor.shutdownNow();
-                running.set(false);
-                ideaProject.getMessageBus().syncPublisher(ProjectStateEvents.ON_PROJECT_DEBUG_ENDED).update();
-            }
+        String title = String.format("Running '%s' %s", platform, devMode ? "DevMode Simulation" : "Simulation");
+        SimulationSessionScheduler.getInstance(ideaProject).schedule(title, sessionDeadline, scope -> {
+            session.bind(scope);
+            strategy.run(session, scope);
+        }, () -> {
+            Logger.getInstance().info("Done");
+            sessions.remove(platform, session);
+            session.end();
+            ideaProject.getMessageBus().syncPublisher(ProjectStateEvents.ON_PROJECT_DEBUG_ENDED).update();
         });
-        runSimulationThread.start();
     }
 
+    /**
+     * Stop all the running simulation sessions.
+     */
     public void stop() {
-        if (currentProcessHandler != null && !currentProcessHandler.isProcessTerminated()) {
-            Logger.getInstance().info("Stopping the simulation process...");
-            currentProcessHandler.destroyProcess();
-        } else {
+        if (sessions.isEmpty()) {
             Logger.getInstance().warn("No running process to stop.");
+            return;
+        }
+        for (SimulationSession session : sessions.values()) {
+            session.stop();
         }
     }
 
-    public boolean isSimulationRunning() { return running.get(); }
-
-    public static void addGradleTaskAndRun(Project project, String gradleTaskName, String workingDirectory, boolean debug, CountDownLatch latch) throws ExecutionException {
-        // Access the RunManager for the current project
-        RunManager runManager = RunManager.getInstance(project);
+    public void stop(RunnerConfiguration.RunnerType platform) {
+        SimulationSession session = sessions.get(platform);
+        if (session == null) {
+            Logger.getInstance().warn(String.format("No running '%s' simulation to stop.", platform));
+            return;
+        }
+        session.stop();
+    }
 
-        // Get the Gradle configuration type
-        GradleExternalTaskConfigurationType gradleType = GradleExternalTaskConfigurationType.getInstance();
+    public boolean isSimulationRunning() { return !sessions.isEmpty(); }
 
-        // Create a new RunnerAndConfigurationSettings instance
-        RunnerAndConfigurationSettings settings = runManager.createConfiguration(gradleTaskName, gradleType.getFactory());
+    public boolean isSimulationRunning(RunnerConfiguration.RunnerType platform) { return sessions.containsKey(platform); }
 
-        // Set up the Gradle run configuration
-        var gradleRunConfig = (GradleRunConfiguration) settings.getConfiguration();
-        gradleRunConfig.getSettings().setTaskNames(List.of(gradleTaskName));
-        gradleRunConfig.getSettings().setExternalProjectPath(workingDirectory);
+    public List<SimulationSession> getSessions() { return List.copyOf(sessions.values()); }
 
-        // Add the configuration to the RunManager
-        runManager.addConfiguration(settings);
+    private void runGradleTask(SimulationSession session, SimulationSessionScheduler.SessionScope scope, String gradleTaskName, boolean debug) throws ExecutionException {
+        long launchStart = System.nanoTime();
+        RunSessionRegistry sessionRegistry = RunSessionRegistry.getInstance(ideaProject);
 
-        // Optionally, set the newly created configuration as the selected one
-        runManager.setSelectedConfiguration(settings);
+        // Reuse the configuration of previous launches of the same tasks
+        RunnerAndConfigurationSettings settings = sessionRegistry.getConfiguration(gradleTaskName, ProjectUtils.getProjectBasePath(ideaProject).toString());
+        RunManager.getInstance(ideaProject).setSelectedConfiguration(settings);
 
         // Choose the executor (run or debug)
         Executor executor = debug ? DefaultDebugExecutor.getDebugExecutorInstance() : DefaultRunExecutor.getRunExecutorInstance();
@@ -145,31 +274,40 @@ public class SimulationManager {
         // Build the execution environment
         ExecutionEnvironment environment = ExecutionEnvironmentBuilder.create(executor, settings).build();
 
-        // Attach a listener to monitor the execution lifecycle
-        environment.getProject().getMessageBus().connect().subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+        // Monitor the execution lifecycle of this launch only, the listener is removed when the launch is over
+        Disposable launchRegistration = sessionRegistry.openSession(environment, new ExecutionListener() {
             @Override
             public void processStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler) {
-                if (env.equals(environment)) {
-                    Logger.getInstance().info("Gradle task started: " + gradleTaskName);
-                    currentProcessHandler = handler;
+                Logger.getInstance().info("Gradle task started: " + gradleTaskName);
+                session.attach(handler);
+                handler.addProcessListener(new SimulationStartTimer("Gradle", GRADLE_RUNNER_START_MARKER, launchStart));
+                handler.addProcessListener(SimulationConsole.getInstance(ideaProject).newProcessListener());
 
-                    // Attach a process terminated listener
-                    ProcessTerminatedListener.attach(handler);
-                }
+                // Attach a process terminated listener
+                ProcessTerminatedListener.attach(handler);
+            }
+
+            @Override
+            public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+                Logger.getInstance().warn("Gradle task not started: " + gradleTaskName);
+                scope.complete();
             }
 
             @Override
             public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler, int exitCode) {
-                if (env.equals(environment)) {
-                    Logger.getInstance().info("Gradle task finished with exit code: " + exitCode);
-                    currentProcessHandler = null; // Clear the handler reference
-                    latch.countDown(); // Notify that the process is finished
-                }
+                Logger.getInstance().info("Gradle task finished with exit code: " + exitCode);
+                session.detach(); // Clear the handler reference
+                scope.complete(); // Notify that the process is finished
             }
         });
 
         // Execute the run/debug configuration
-        ExecutionManager.getInstance(project).restartRunProfile(environment);
+        try {
+            ExecutionManager.getInstance(ideaProject).restartRunProfile(environment);
+        } catch (RuntimeException e) {
+            Disposer.dispose(launchRegistration);
+            throw e;
+        }
     }
 
 }
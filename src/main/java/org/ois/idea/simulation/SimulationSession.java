@@ -0,0 +1,94 @@
+package org.ois.idea.simulation;
+
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.events.SimulationSessionEvents;
+import org.ois.idea.log.Logger;
+
+/**
+ * A simulation running on a single platform.
+ * Sessions of different platforms run side by side, each with its own process and stop control.
+ * State changes are published with {@link SimulationSessionEvents#ON_SESSION_STATE_CHANGED}.
+ */
+public class SimulationSession {
+
+    public enum State {
+        Starting, Running, Stopping, Ended
+    }
+
+    private final Project ideaProject;
+    private final RunnerConfiguration.RunnerType platform;
+    private final boolean devMode;
+
+    private volatile State state = State.Starting;
+    private volatile ProcessHandler processHandler;
+    private volatile SimulationSessionScheduler.SessionScope scope;
+
+    SimulationSession(@NotNull Project ideaProject, @NotNull RunnerConfiguration.RunnerType platform, boolean devMode) {
+        this.ideaProject = ideaProject;
+        this.platform = platform;
+        this.devMode = devMode;
+    }
+
+    void start() {
+        setState(State.Starting);
+    }
+
+    /**
+     * Bind the session to the scheduler scope running it, stopping the session cancels the scope.
+     */
+    void bind(@NotNull SimulationSessionScheduler.SessionScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Attach the process running the simulation of this session, the process is destroyed when the session is cancelled.
+     */
+    void attach(@NotNull ProcessHandler handler) {
+        processHandler = handler;
+        setState(State.Running);
+        SimulationSessionScheduler.SessionScope sessionScope = scope;
+        if (sessionScope != null) {
+            sessionScope.onCancel(handler::destroyProcess);
+        }
+    }
+
+    void detach() {
+        processHandler = null;
+    }
+
+    void end() {
+        processHandler = null;
+        setState(State.Ended);
+    }
+
+    public void stop() {
+        SimulationSessionScheduler.SessionScope sessionScope = scope;
+        if (sessionScope == null || state == State.Ended || sessionScope.isCancelled()) {
+            Logger.getInstance().warn(String.format("No running '%s' simulation to stop.", platform));
+            return;
+        }
+        Logger.getInstance().info(String.format("Stopping the '%s' simulation...", platform));
+        setState(State.Stopping);
+        sessionScope.cancel();
+    }
+
+    private void setState(State newState) {
+        state = newState;
+        if (!ideaProject.isDisposed()) {
+            ideaProject.getMessageBus().syncPublisher(SimulationSessionEvents.ON_SESSION_STATE_CHANGED).update(this);
+        }
+    }
+
+    public RunnerConfiguration.RunnerType getPlatform() { return platform; }
+
+    public boolean isDevMode() { return devMode; }
+
+    public State getState() { return state; }
+
+    public ProcessHandler getProcessHandler() { return processHandler; }
+
+    public boolean isRunning() { return state != State.Ended; }
+}
@@ -0,0 +1,192 @@
+package org.ois.idea.simulation;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.Utils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the simulation sessions of a project as structured tasks.
+ * A session is supervised by a background task with a progress indicator: it ends only after its body returned and what the body launched ended.
+ * A session is cancelled from its progress indicator, when its deadline elapses or when the project is closed.
+ * Session bodies run on virtual threads when running on JDK 21+, otherwise each on its own daemon thread. No threads are kept between sessions.
+ */
+public class SimulationSessionScheduler implements Disposable {
+
+    private static final String THREAD_NAME_PREFIX = "OIS-Simulation-Session-";
+    private static final long POLL_MILLIS = 100;
+    // Time a cancelled session has to end before it is abandoned
+    private static final long CANCEL_GRACE_MILLIS = 10_000;
+
+    private final Project ideaProject;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final Executor executor;
+    private final Set<SessionScope> activeScopes = ConcurrentHashMap.newKeySet();
+    private volatile boolean disposed;
+
+    private SimulationSessionScheduler(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+        this.executor = createExecutor();
+    }
+
+    public static SimulationSessionScheduler getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(SimulationSessionScheduler.class);
+    }
+
+    /**
+     * The body of a session, runs until it launched the simulation (or until the simulation ended, if launching blocks).
+     */
+    public interface SessionBody {
+        void run(SessionScope scope) throws Exception;
+    }
+
+    /**
+     * The scope of a running session. The body signals the end of what it launched with {@link #complete()},
+     * and registers how to stop it with {@link #onCancel(Runnable)}.
+     */
+    public static class SessionScope {
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private final List<Runnable> cancelHandlers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        public void complete() {
+            ended.countDown();
+        }
+
+        /**
+         * Register an action stopping the session. Runs immediately if the session was already cancelled.
+         */
+        public void onCancel(Runnable handler) {
+            cancelHandlers.add(handler);
+            if (cancelled.get() && cancelHandlers.remove(handler)) {
+                handler.run();
+            }
+        }
+
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            for (Runnable handler : cancelHandlers) {
+                if (cancelHandlers.remove(handler)) {
+                    try {
+                        handler.run();
+                    } catch (RuntimeException e) {
+                        Logger.getInstance().debug("Failed to stop the simulation session", e);
+                    }
+                }
+            }
+        }
+
+        public boolean isCancelled() { return cancelled.get(); }
+
+        public boolean isEnded() { return ended.getCount() == 0; }
+
+        private boolean awaitEnd(long millis) throws InterruptedException {
+            return ended.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Run a session in the background.
+     *
+     * @param title    - The title of the session progress indicator.
+     * @param deadline - The maximum time the session is allowed to run, null for no deadline.
+     * @param body     - The body of the session.
+     * @param onEnd    - Called once the session ended, whatever the reason.
+     */
+    public void schedule(@NotNull String title, @Nullable Duration deadline, @NotNull SessionBody body, @NotNull Runnable onEnd) {
+        new Utils.BackgroundTask(ideaProject, title, true) {
+            @Override
+            public void run(Utils.@NotNull OISProgressIndicator indicator) {
+                supervise(title, deadline, body, indicator, onEnd);
+            }
+        }.runInBackground();
+    }
+
+    private void supervise(String title, Duration deadline, SessionBody body, Utils.OISProgressIndicator indicator, Runnable onEnd) {
+        SessionScope scope = new SessionScope();
+        activeScopes.add(scope);
+        long deadlineNanos = deadline != null ? System.nanoTime() + deadline.toNanos() : Long.MAX_VALUE;
+        long lastRunningNanos = System.nanoTime();
+        try {
+            if (disposed) {
+                return;
+            }
+            CompletableFuture<Void> bodyFuture = CompletableFuture.runAsync(() -> {
+                try {
+                    body.run(scope);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+            while (!bodyFuture.isCompletedExceptionally() && !(bodyFuture.isDone() && scope.isEnded())) {
+                if (!scope.isCancelled()) {
+                    if (indicator.isCanceled() || disposed) {
+                        scope.cancel();
+                    } else if (System.nanoTime() - deadlineNanos > 0) {
+                        Logger.getInstance().warn(String.format("%s: deadline of %ds elapsed, stopping the simulation", title, deadline.toSeconds()));
+                        scope.cancel();
+                    }
+                    // The grace period of a cancelled session starts from the last time it was seen running
+                    lastRunningNanos = System.nanoTime();
+                } else if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastRunningNanos) > CANCEL_GRACE_MILLIS) {
+                    Logger.getInstance().warn(title + ": the simulation did not stop after it was cancelled");
+                    break;
+                }
+                scope.awaitEnd(POLL_MILLIS);
+            }
+            bodyFuture.getNow(null);
+        } catch (CompletionException e) {
+            Logger.getInstance().error(title + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Nothing launched by the session outlives it
+            scope.cancel();
+            activeScopes.remove(scope);
+            onEnd.run();
+        }
+    }
+
+    /**
+     * @return the number of sessions that did not end yet
+     */
+    public int getActiveSessionCount() { return activeScopes.size(); }
+
+    private Executor createExecutor() {
+        try {
+            // The plugin targets JDK 17, look up virtual threads at runtime
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Sessions are few and long, a thread per session that ends with it
+            return task -> {
+                Thread thread = new Thread(task, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            };
+        }
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (SessionScope scope : activeScopes) {
+            scope.cancel();
+        }
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.ois.idea.simulation;
+
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.log.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Logs the time from a launch request until the simulation process prints the line marking the simulation start.
+ */
+class SimulationStartTimer extends ProcessAdapter {
+
+    private final String launchMode;
+    private final String startMarker;
+    private final long launchStartNanos;
+    private final LongConsumer onStarted;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    SimulationStartTimer(String launchMode, String startMarker, long launchStartNanos) {
+        this(launchMode, startMarker, launchStartNanos, elapsed -> {});
+    }
+
+    /**
+     * @param onStarted - Called with the elapsed millis once the simulation started.
+     */
+    SimulationStartTimer(String launchMode, String startMarker, long launchStartNanos, LongConsumer onStarted) {
+        this.launchMode = launchMode;
+        this.startMarker = startMarker;
+        this.launchStartNanos = launchStartNanos;
+        this.onStarted = onStarted;
+    }
+
+    @Override
+    public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+        if (!started.get() && event.getText().contains(startMarker) && started.compareAndSet(false, true)) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchStartNanos);
+            Logger.getInstance().info(String.format("Simulation started %dms after launch (%s)", elapsed, launchMode));
+            onStarted.accept(elapsed);
+        }
+    }
+}
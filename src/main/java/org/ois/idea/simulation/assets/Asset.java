@@ -0,0 +1,48 @@
+package org.ois.idea.simulation.assets;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SortedMap;
+
+/**
+ * A unit of the asset pipeline: a resource file, or a directory processed as a whole (e.g. the images of an atlas).
+ */
+public class Asset {
+
+    private final String path;
+    private final Path location;
+    private final SortedMap<String, Path> files;
+    private final String hash;
+
+    /**
+     * @param path     - The path of the asset, relative to the resources directory, with '/' separators.
+     * @param location - The asset file or directory.
+     * @param files    - The files of the asset by their path relative to the location, a single empty path for a file asset.
+     * @param hash     - The hash of the asset files content.
+     */
+    public Asset(String path, Path location, SortedMap<String, Path> files, String hash) {
+        this.path = path;
+        this.location = location;
+        this.files = files;
+        this.hash = hash;
+    }
+
+    public String getPath() { return path; }
+
+    public Path getLocation() { return location; }
+
+    public SortedMap<String, Path> getFiles() { return files; }
+
+    public String getHash() { return hash; }
+
+    public boolean isDirectory() { return !files.containsKey(""); }
+
+    /**
+     * @return the lower case extension of the asset name, empty if it has none
+     */
+    public String getExtension() {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int extension = name.lastIndexOf('.');
+        return extension < 0 ? "" : name.substring(extension + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,492 @@
+package org.ois.idea.simulation.assets;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.export.ExportCache;
+import org.ois.idea.simulation.export.ExportInputs;
+import org.ois.idea.utils.ProjectUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes the simulation resources ('src/main/resources') into the assets shipped for each platform, at 'build/ois/assets/[platform]'.
+ * Each asset is processed by the first registered {@link AssetProcessor} accepting it, or copied as is if none does.
+ * <p>
+ * Processed assets are stored in the {@link ExportCache}, keyed by the processor, the platform and the asset content:
+ * an asset is processed again only if it changed. The assets are processed concurrently, and once built, the outputs
+ * are kept up to date with the resources changes of the VFS.
+ * <p>
+ * The 'export' task ships the raw resources, the processed assets replace them in the exported distribution with {@link #install}.
+ */
+public class AssetPipeline implements Disposable {
+
+    // Editors save in bursts, wait for the burst to end before processing
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private enum Outcome {
+        Copied, Cached, Processed
+    }
+
+    private record Result(Set<String> outputs, Outcome outcome) {}
+
+    private final Project ideaProject;
+    private final List<AssetProcessor> processors = new CopyOnWriteArrayList<>(List.of(new AtlasPacker(), new ImageDownscaler()));
+    private final ExportInputs hashes = new ExportInputs();
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("OIS Assets", Runtime.getRuntime().availableProcessors());
+    // One build at a time, full or incremental
+    private final ReentrantLock building = new ReentrantLock();
+    // Platform -> asset path -> output paths, of the built platforms
+    private final Map<RunnerConfiguration.RunnerType, Map<String, Set<String>>> outputs = new ConcurrentHashMap<>();
+    private final Set<String> pendingChanges = new LinkedHashSet<>();
+    private ScheduledFuture<?> scheduledUpdate;
+    private volatile boolean disposed;
+
+    private AssetPipeline(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+        ideaProject.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                onFilesChanged(events);
+            }
+        });
+    }
+
+    public static AssetPipeline getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(AssetPipeline.class);
+    }
+
+    /**
+     * Register a processor, it takes precedence over the ones registered before.
+     */
+    public void registerProcessor(AssetProcessor processor) {
+        processors.add(0, processor);
+    }
+
+    /**
+     * @return the ids of the registered processors, they change the processed assets
+     */
+    public String getProcessorIds() {
+        return processors.stream().map(AssetProcessor::getId).collect(Collectors.joining(","));
+    }
+
+    public static Path getResourcesDirectory(Path projectDirectory) {
+        return projectDirectory.resolve("src").resolve("main").resolve("resources");
+    }
+
+    public static Path getOutputDirectory(Path projectDirectory, RunnerConfiguration.RunnerType platform) {
+        return projectDirectory.resolve("build").resolve("ois").resolve("assets").resolve(platform.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Process all the resources for the platforms, and delete the outputs of the resources that no longer exist.
+     *
+     * @param cancelled - Checked between assets, the build throws a {@link CancellationException} once it returns true.
+     */
+    public void build(Collection<RunnerConfiguration.RunnerType> platforms, BooleanSupplier cancelled) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path projectDirectory = ProjectUtils.getProjectBasePath(ideaProject);
+        building.lock();
+        try {
+            Map<String, Asset> assets = scan(getResourcesDirectory(projectDirectory));
+            Map<RunnerConfiguration.RunnerType, Map<String, Future<Result>>> results = new EnumMap<>(RunnerConfiguration.RunnerType.class);
+            for (RunnerConfiguration.RunnerType platform : platforms) {
+                Path output = getOutputDirectory(projectDirectory, platform);
+                Map<String, Future<Result>> platformResults = new TreeMap<>();
+                for (Asset asset : assets.values()) {
+                    platformResults.put(asset.getPath(), executor.submit(() -> {
+                        if (disposed || cancelled.getAsBoolean()) {
+                            throw new CancellationException("Assets processing cancelled");
+                        }
+                        return process(asset, platform, output);
+                    }));
+                }
+                results.put(platform, platformResults);
+            }
+
+            Map<Outcome, AtomicInteger> outcomes = new EnumMap<>(Outcome.class);
+            for (Map.Entry<RunnerConfiguration.RunnerType, Map<String, Future<Result>>> platform : results.entrySet()) {
+                Map<String, Set<String>> platformOutputs = new ConcurrentHashMap<>();
+                for (Map.Entry<String, Future<Result>> asset : platform.getValue().entrySet()) {
+                    Result result = get(asset.getValue(), results);
+                    platformOutputs.put(asset.getKey(), result.outputs());
+                    outcomes.computeIfAbsent(result.outcome(), key -> new AtomicInteger()).incrementAndGet();
+                }
+                deleteStaleOutputs(getOutputDirectory(projectDirectory, platform.getKey()), platformOutputs);
+                outputs.put(platform.getKey(), platformOutputs);
+            }
+            Logger.getInstance().info(String.format("Assets processed in %dms: %d assets for %s, %s", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    assets.size(), platforms, outcomes.entrySet().stream().map(outcome -> outcome.getValue() + " " + outcome.getKey().name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", "))));
+        } finally {
+            building.unlock();
+        }
+    }
+
+    /**
+     * Replace the raw resources of an exported platform distribution with the processed assets of the platform.
+     * The assets are installed where the 'export' task put the resources files, or into an 'assets' directory if it put none.
+     * Resources packed into archives by the export (e.g. the desktop jar) are left as is.
+     *
+     * @param platformDistribution - The directory of the exported artifacts of the platform.
+     */
+    public void install(RunnerConfiguration.RunnerType platform, Path platformDistribution) throws IOException {
+        Path projectDirectory = ProjectUtils.getProjectBasePath(ideaProject);
+        Path output = getOutputDirectory(projectDirectory, platform);
+        if (!Files.isDirectory(output)) {
+            return;
+        }
+        building.lock();
+        try {
+            Set<String> resources = listFiles(getResourcesDirectory(projectDirectory));
+            Set<String> processed = listFiles(output);
+            Path root = findResourcesRoot(platformDistribution, resources);
+            for (String resource : resources) {
+                if (!processed.contains(resource)) {
+                    deleteWithEmptyParents(root, root.resolve(resource));
+                }
+            }
+            for (String asset : processed) {
+                Path target = root.resolve(asset);
+                Files.createDirectories(target.getParent());
+                Files.copy(output.resolve(asset), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Logger.getInstance().debug(String.format("Installed %d processed assets of %s at %s", processed.size(), platform, root));
+        } finally {
+            building.unlock();
+        }
+    }
+
+    /**
+     * @return the directory of a distribution holding the most resources files at their resources path, or its 'assets' directory if none does
+     */
+    private static Path findResourcesRoot(Path distribution, Set<String> resources) throws IOException {
+        Map<String, Integer> roots = new HashMap<>();
+        for (String file : listFiles(distribution)) {
+            for (int separator = file.indexOf('/'); separator >= 0; separator = file.indexOf('/', separator + 1)) {
+                if (resources.contains(file.substring(separator + 1))) {
+                    roots.merge(file.substring(0, separator), 1, Integer::sum);
+                }
+            }
+            if (resources.contains(file)) {
+                roots.merge("", 1, Integer::sum);
+            }
+        }
+        return roots.entrySet().stream().max(Map.Entry.comparingByValue())
+                .map(root -> root.getKey().isEmpty() ? distribution : distribution.resolve(root.getKey()))
+                .orElse(distribution.resolve("assets"));
+    }
+
+    /**
+     * @return the paths of the files of a directory, relative to it with '/' separators
+     */
+    private static Set<String> listFiles(Path directory) throws IOException {
+        Set<String> files = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.filter(Files::isRegularFile).forEach(file -> files.add(directory.relativize(file).toString().replace('\\', '/')));
+        }
+        return files;
+    }
+
+    private static void deleteWithEmptyParents(Path root, Path file) throws IOException {
+        if (!Files.deleteIfExists(file)) {
+            return;
+        }
+        for (Path parent = file.getParent(); parent != null && !parent.equals(root) && parent.startsWith(root); parent = parent.getParent()) {
+            try (Stream<Path> children = Files.list(parent)) {
+                if (children.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(parent);
+        }
+    }
+
+    /**
+     * @return the result of a processing, the pending ones are cancelled if it failed
+     */
+    private static Result get(Future<Result> result, Map<RunnerConfiguration.RunnerType, Map<String, Future<Result>>> results) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            results.values().forEach(platform -> platform.values().forEach(pending -> pending.cancel(false)));
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof CancellationException cancellation) {
+                throw cancellation;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Result process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException {
+        AssetProcessor processor = processors.stream().filter(candidate -> candidate.accepts(asset, platform)).findFirst().orElse(null);
+        if (processor == null) {
+            return new Result(copy(asset, output), Outcome.Copied);
+        }
+        ExportCache cache = ExportCache.getInstance();
+        String key = getKey(processor, asset, platform);
+        if (cache.copyTo(key, output)) {
+            return new Result(cache.getFiles(key).keySet(), Outcome.Cached);
+        }
+        Files.createDirectories(output);
+        Path processed = Files.createTempDirectory(output.getParent(), "asset");
+        try {
+            processor.process(asset, platform, processed);
+            cache.store(key, processed);
+            if (!cache.copyTo(key, output)) {
+                throw new IOException(String.format("Can't copy the processed asset %s from the cache", asset.getPath()));
+            }
+            return new Result(cache.getFiles(key).keySet(), Outcome.Processed);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException(String.format("Can't process asset %s for %s with %s: %s", asset.getPath(), platform, processor.getId(), e.getMessage()), e);
+        } finally {
+            ExportCache.deleteDirectory(processed);
+        }
+    }
+
+    /**
+     * Copy the files of an asset that no processor accepts, unless the output is already a copy of the same size and time.
+     */
+    private static Set<String> copy(Asset asset, Path output) throws IOException {
+        Set<String> copied = new HashSet<>();
+        for (Map.Entry<String, Path> file : asset.getFiles().entrySet()) {
+            String path = file.getKey().isEmpty() ? asset.getPath() : asset.getPath() + "/" + file.getKey();
+            Path target = output.resolve(path);
+            copied.add(path);
+            if (Files.isRegularFile(target) && Files.size(target) == Files.size(file.getValue())
+                    && Files.getLastModifiedTime(target).equals(Files.getLastModifiedTime(file.getValue()))) {
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.copy(file.getValue(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return copied;
+    }
+
+    private static String getKey(AssetProcessor processor, Asset asset, RunnerConfiguration.RunnerType platform) {
+        MessageDigest digest = newDigest();
+        update(digest, "processor=" + processor.getId());
+        update(digest, "platform=" + platform);
+        update(digest, "asset=" + asset.getPath());
+        update(digest, "hash=" + asset.getHash());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the assets of the resources directory by path: its files, and its atlas directories as a whole
+     */
+    private Map<String, Asset> scan(Path resources) throws IOException {
+        Map<String, Asset> assets = new TreeMap<>();
+        if (!Files.isDirectory(resources)) {
+            return assets;
+        }
+        Set<String> paths = new TreeSet<>();
+        try (Stream<Path> walk = Files.walk(resources)) {
+            walk.filter(Files::isRegularFile).forEach(file -> paths.add(getAssetPath(resources.relativize(file).toString().replace('\\', '/'))));
+        }
+        for (String path : paths) {
+            Asset asset = load(resources, path);
+            if (asset != null) {
+                assets.put(path, asset);
+            }
+        }
+        return assets;
+    }
+
+    /**
+     * @return the asset at a path of the resources directory, null if it does not exist
+     */
+    private Asset load(Path resources, String path) throws IOException {
+        Path location = resources.resolve(path);
+        SortedMap<String, Path> files = new TreeMap<>();
+        if (Files.isRegularFile(location)) {
+            files.put("", location);
+            return new Asset(path, location, files, hashes.hash(location));
+        }
+        if (!Files.isDirectory(location)) {
+            return null;
+        }
+        try (Stream<Path> walk = Files.walk(location)) {
+            walk.filter(Files::isRegularFile).forEach(file -> files.put(location.relativize(file).toString().replace('\\', '/'), file));
+        }
+        MessageDigest digest = newDigest();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            update(digest, file.getKey() + "=" + hashes.hash(file.getValue()));
+        }
+        return new Asset(path, location, files, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * @return the path of the asset a resource belongs to: its atlas directory if it is in one, itself otherwise
+     */
+    private static String getAssetPath(String resourcePath) {
+        String[] segments = resourcePath.split("/");
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (segments[i].endsWith("." + AtlasPacker.ATLAS_EXTENSION)) {
+                return String.join("/", Arrays.copyOfRange(segments, 0, i + 1));
+            }
+        }
+        return resourcePath;
+    }
+
+    private static void deleteStaleOutputs(Path output, Map<String, Set<String>> platformOutputs) throws IOException {
+        if (!Files.isDirectory(output)) {
+            return;
+        }
+        Set<String> expected = new HashSet<>();
+        platformOutputs.values().forEach(expected::addAll);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(output)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            if (!expected.contains(output.relativize(file).toString().replace('\\', '/'))) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void onFilesChanged(List<? extends VFileEvent> events) {
+        if (outputs.isEmpty() || disposed) {
+            return;
+        }
+        Path resources = getResourcesDirectory(ProjectUtils.getProjectBasePath(ideaProject));
+        synchronized (pendingChanges) {
+            for (VFileEvent event : events) {
+                Path path = Paths.get(event.getPath());
+                if (path.startsWith(resources) && !path.equals(resources)) {
+                    pendingChanges.add(resources.relativize(path).toString().replace('\\', '/'));
+                }
+            }
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            if (scheduledUpdate != null) {
+                scheduledUpdate.cancel(false);
+            }
+            scheduledUpdate = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::processChanges, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Process the changed resources for the built platforms, and delete the outputs of the removed ones.
+     */
+    private void processChanges() {
+        List<String> changes;
+        synchronized (pendingChanges) {
+            changes = new ArrayList<>(pendingChanges);
+            pendingChanges.clear();
+        }
+        if (changes.isEmpty() || disposed) {
+            return;
+        }
+        long start = System.nanoTime();
+        Path projectDirectory = ProjectUtils.getProjectBasePath(ideaProject);
+        Path resources = getResourcesDirectory(projectDirectory);
+        building.lock();
+        try {
+            if (disposed) {
+                return;
+            }
+            Set<String> changedAssets = new TreeSet<>();
+            for (String change : changes) {
+                changedAssets.add(getAssetPath(change));
+                // A removed or renamed directory, its assets are gone too
+                outputs.values().forEach(platformOutputs -> platformOutputs.keySet().stream().filter(asset -> asset.startsWith(change + "/")).forEach(changedAssets::add));
+            }
+            Map<String, Asset> assets = new HashMap<>();
+            for (String path : changedAssets) {
+                assets.put(path, load(resources, path));
+            }
+            List<Future<?>> updates = new ArrayList<>();
+            for (Map.Entry<RunnerConfiguration.RunnerType, Map<String, Set<String>>> platform : outputs.entrySet()) {
+                Path output = getOutputDirectory(projectDirectory, platform.getKey());
+                for (String path : changedAssets) {
+                    Asset asset = assets.get(path);
+                    updates.add(executor.submit(() -> {
+                        if (disposed) {
+                            return null;
+                        }
+                        Set<String> previous = platform.getValue().remove(path);
+                        Set<String> current = asset != null ? process(asset, platform.getKey(), output).outputs() : Set.of();
+                        if (asset != null) {
+                            platform.getValue().put(path, current);
+                        }
+                        if (previous != null) {
+                            for (String stale : previous) {
+                                if (!current.contains(stale)) {
+                                    Files.deleteIfExists(output.resolve(stale));
+                                }
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> assetUpdate : updates) {
+                assetUpdate.get();
+            }
+            Logger.getInstance().debug(String.format("Assets updated in %dms: %s", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), changedAssets));
+        } catch (IOException | ExecutionException e) {
+            Logger.getInstance().warn("Can't update the processed assets, they are processed again on the next export", e);
+            outputs.clear();
+        } catch (CancellationException | RejectedExecutionException e) {
+            // Disposed while updating
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            building.unlock();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        synchronized (pendingChanges) {
+            if (scheduledUpdate != null) {
+                scheduledUpdate.cancel(false);
+            }
+            pendingChanges.clear();
+        }
+        // The pending processing never runs, its waiters are released
+        for (Runnable pending : executor.shutdownNow()) {
+            if (pending instanceof Future<?> future) {
+                future.cancel(false);
+            }
+        }
+    }
+}
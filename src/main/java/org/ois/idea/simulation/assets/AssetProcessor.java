@@ -0,0 +1,28 @@
+package org.ois.idea.simulation.assets;
+
+import org.ois.core.runner.RunnerConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A step of the asset pipeline, turning an asset into the files shipped for a platform.
+ * Processors are registered in the {@link AssetPipeline}, the first one accepting an asset processes it.
+ */
+public interface AssetProcessor {
+
+    /**
+     * @return the id of the processor and its version, part of the cache key of its outputs: changing it processes the assets again
+     */
+    String getId();
+
+    boolean accepts(Asset asset, RunnerConfiguration.RunnerType platform);
+
+    /**
+     * Process an asset for a platform.
+     * Called concurrently for different assets and platforms, implementations must be thread safe.
+     *
+     * @param output - The directory of the outputs, written at their path relative to the resources directory.
+     */
+    void process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException;
+}
@@ -0,0 +1,155 @@
+package org.ois.idea.simulation.assets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.ois.core.runner.RunnerConfiguration;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Packs the images of a '.atlas' directory into a single texture, with its regions.
+ * The directory 'ui/buttons.atlas' is packed into 'ui/buttons.png' and 'ui/buttons.atlas.json', mapping the name of each image
+ * (its path in the directory, without extension) to its region in the texture.
+ * <p>
+ * Images are placed on shelves, tallest first, in the smallest power of two texture they fit in.
+ */
+public class AtlasPacker implements AssetProcessor {
+
+    public static final String ATLAS_EXTENSION = "atlas";
+
+    private static final int MAX_SIZE = 4096;
+    private static final int PADDING = 2;
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg");
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private static class Region {
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        Region(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static class Atlas {
+        private final String texture;
+        private final int width;
+        private final int height;
+        private final SortedMap<String, Region> regions;
+
+        Atlas(String texture, int width, int height, SortedMap<String, Region> regions) {
+            this.texture = texture;
+            this.width = width;
+            this.height = height;
+            this.regions = regions;
+        }
+    }
+
+    @Override
+    public String getId() { return "atlas-packer-1"; }
+
+    @Override
+    public boolean accepts(Asset asset, RunnerConfiguration.RunnerType platform) {
+        return asset.isDirectory() && ATLAS_EXTENSION.equals(asset.getExtension());
+    }
+
+    @Override
+    public void process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException {
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> file : asset.getFiles().entrySet()) {
+            int extension = file.getKey().lastIndexOf('.');
+            if (extension < 0 || !IMAGE_EXTENSIONS.contains(file.getKey().substring(extension + 1).toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            BufferedImage image = ImageIO.read(file.getValue().toFile());
+            if (image == null) {
+                throw new IOException("Can't read atlas image " + file.getValue());
+            }
+            images.put(file.getKey().substring(0, extension), image);
+        }
+
+        // Tallest first, then widest, names keep the layout stable
+        List<String> names = new ArrayList<>(images.keySet());
+        names.sort(Comparator.<String>comparingInt(name -> images.get(name).getHeight()).reversed()
+                .thenComparing(Comparator.<String>comparingInt(name -> images.get(name).getWidth()).reversed())
+                .thenComparing(Comparator.naturalOrder()));
+        long area = 0;
+        int maxWidth = 1;
+        for (BufferedImage image : images.values()) {
+            area += (long) (image.getWidth() + PADDING) * (image.getHeight() + PADDING);
+            maxWidth = Math.max(maxWidth, image.getWidth() + PADDING);
+        }
+        int width = nextPowerOfTwo(Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area))));
+        SortedMap<String, Region> regions = null;
+        while (width <= MAX_SIZE && (regions = place(names, images, width)) == null) {
+            width *= 2;
+        }
+        if (regions == null) {
+            throw new IOException(String.format("Atlas %s does not fit in a %dx%d texture", asset.getPath(), MAX_SIZE, MAX_SIZE));
+        }
+        int height = 1;
+        for (Region region : regions.values()) {
+            height = Math.max(height, region.y + region.height);
+        }
+        height = nextPowerOfTwo(height);
+
+        BufferedImage texture = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = texture.createGraphics();
+        try {
+            for (Map.Entry<String, Region> region : regions.entrySet()) {
+                graphics.drawImage(images.get(region.getKey()), region.getValue().x, region.getValue().y, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        String name = asset.getPath().substring(0, asset.getPath().length() - ATLAS_EXTENSION.length() - 1);
+        Path texturePath = output.resolve(name + ".png");
+        Files.createDirectories(texturePath.getParent());
+        ImageIO.write(texture, "png", texturePath.toFile());
+        String textureName = texturePath.getFileName().toString();
+        Files.writeString(output.resolve(name + "." + ATLAS_EXTENSION + ".json"), gson.toJson(new Atlas(textureName, width, height, regions)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the regions of the images on shelves of the given width, null if they do not fit in the maximum height
+     */
+    private static SortedMap<String, Region> place(List<String> names, Map<String, BufferedImage> images, int width) {
+        SortedMap<String, Region> regions = new TreeMap<>();
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (String name : names) {
+            BufferedImage image = images.get(name);
+            if (x + image.getWidth() > width) {
+                x = 0;
+                y += shelfHeight + PADDING;
+                shelfHeight = 0;
+            }
+            if (y + image.getHeight() > MAX_SIZE) {
+                return null;
+            }
+            regions.put(name, new Region(x, y, image.getWidth(), image.getHeight()));
+            x += image.getWidth() + PADDING;
+            shelfHeight = Math.max(shelfHeight, image.getHeight());
+        }
+        return regions;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
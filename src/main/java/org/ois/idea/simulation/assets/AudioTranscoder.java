@@ -0,0 +1,46 @@
+package org.ois.idea.simulation.assets;
+
+import org.ois.core.runner.RunnerConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Base of the audio steps of the asset pipeline.
+ * No encoder is bundled with the plugin, so none is registered by default and audio files are shipped as they are.
+ * A transcoder is plugged in by implementing this class and registering it with {@link AssetPipeline#registerProcessor(AssetProcessor)}.
+ */
+public abstract class AudioTranscoder implements AssetProcessor {
+
+    private static final Set<String> AUDIO_EXTENSIONS = Set.of("wav", "ogg", "mp3", "flac", "m4a");
+
+    @Override
+    public boolean accepts(Asset asset, RunnerConfiguration.RunnerType platform) {
+        return !asset.isDirectory() && AUDIO_EXTENSIONS.contains(asset.getExtension());
+    }
+
+    @Override
+    public final void process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException {
+        String extension = asset.getExtension();
+        String targetExtension = getTargetExtension(platform, extension);
+        String path = asset.getPath();
+        if (!targetExtension.equals(extension)) {
+            path = path.substring(0, path.length() - extension.length()) + targetExtension;
+        }
+        Path target = output.resolve(path);
+        Files.createDirectories(target.getParent());
+        transcode(asset.getLocation(), target, platform);
+    }
+
+    /**
+     * @return the audio format (extension) shipped for the platform
+     */
+    protected abstract String getTargetExtension(RunnerConfiguration.RunnerType platform, String sourceExtension);
+
+    /**
+     * Write the source audio into the target file, in the format of its extension.
+     */
+    protected abstract void transcode(Path source, Path target, RunnerConfiguration.RunnerType platform) throws IOException;
+}
@@ -0,0 +1,71 @@
+package org.ois.idea.simulation.assets;
+
+import org.ois.core.runner.RunnerConfiguration;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+
+/**
+ * Downscales the images of the Html target, browsers load every texture over the network.
+ * Images larger than {@link #getMaxDimension()} are scaled down (keeping their aspect ratio) in halving steps, for a smooth result.
+ * Smaller images are copied as is.
+ */
+public class ImageDownscaler implements AssetProcessor {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg");
+    private static final int DEFAULT_MAX_DIMENSION = 1024;
+
+    private volatile int maxDimension = DEFAULT_MAX_DIMENSION;
+
+    @Override
+    public String getId() { return "html-downscaler-1-" + maxDimension; }
+
+    public int getMaxDimension() { return maxDimension; }
+
+    public void setMaxDimension(int maxDimension) { this.maxDimension = Math.max(1, maxDimension); }
+
+    @Override
+    public boolean accepts(Asset asset, RunnerConfiguration.RunnerType platform) {
+        return platform == RunnerConfiguration.RunnerType.Html && !asset.isDirectory() && IMAGE_EXTENSIONS.contains(asset.getExtension());
+    }
+
+    @Override
+    public void process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException {
+        Path target = output.resolve(asset.getPath());
+        Files.createDirectories(target.getParent());
+        BufferedImage image = ImageIO.read(asset.getLocation().toFile());
+        int limit = maxDimension;
+        if (image == null || Math.max(image.getWidth(), image.getHeight()) <= limit) {
+            Files.copy(asset.getLocation(), target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        double scale = (double) limit / Math.max(image.getWidth(), image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = image;
+        while (scaled.getWidth() != width || scaled.getHeight() != height) {
+            scaled = resize(scaled, Math.max(width, scaled.getWidth() / 2), Math.max(height, scaled.getHeight() / 2), image.getColorModel().hasAlpha());
+        }
+        String format = "png".equals(asset.getExtension()) ? "png" : "jpg";
+        ImageIO.write(scaled, format, target.toFile());
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage resized = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+}
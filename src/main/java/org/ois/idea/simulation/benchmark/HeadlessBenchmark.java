@@ -0,0 +1,314 @@
+package org.ois.idea.simulation.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runner side headless benchmark of a simulation state.
+ * Creates the state, enters it (without parameters, as the initial state of a simulation), resizes it to the benchmark
+ * screen size and steps it with a fixed delta time for a number of frames, then writes the timing and allocation
+ * statistics of the frames as a JSON report (and the raw frames as CSV) into the report directory.
+ * Only the update of the state is measured: nothing is rendered, the render lifecycle method needs a graphics backend
+ * and is never called, so no display or GPU is needed. The report is labeled as such ({@link #MEASURED}).
+ * <p>
+ * The report is compared with a baseline report, a run is a regression if one of the {@link #COMPARED_METRICS} grew
+ * by more than the threshold. Without a baseline, the run is saved as the baseline.
+ * <p>
+ * Runs in the runner JVM and is shipped to the simulation projects as a Java 11 jar: only the JDK, up to Java 11, can be used here.
+ */
+public final class HeadlessBenchmark {
+
+    /** Class name of the state to benchmark */
+    public static final String STATE_PROPERTY = "org.ois.benchmark.state";
+    /** Number of measured frames */
+    public static final String FRAMES_PROPERTY = "org.ois.benchmark.frames";
+    /** Frames to run before measuring, to let the JIT compile the hot paths */
+    public static final String WARMUP_PROPERTY = "org.ois.benchmark.warmup";
+    /** Fixed delta time (seconds) of each frame */
+    public static final String DT_PROPERTY = "org.ois.benchmark.dt";
+    /** Screen size the state is resized to before the frames, as 'width'x'height' */
+    public static final String SCREEN_SIZE_PROPERTY = "org.ois.benchmark.screenSize";
+    /** Directory of the reports */
+    public static final String REPORT_DIR_PROPERTY = "org.ois.benchmark.reportDir";
+    /** Baseline report to compare with */
+    public static final String BASELINE_PROPERTY = "org.ois.benchmark.baseline";
+    /** Allowed relative growth of a compared metric, 0.1 for 10% */
+    public static final String THRESHOLD_PROPERTY = "org.ois.benchmark.threshold";
+    /** If true (default), the benchmark exits with {@link #REGRESSION_EXIT_CODE} on regressions, failing the Gradle task */
+    public static final String FAIL_ON_REGRESSION_PROPERTY = "org.ois.benchmark.failOnRegression";
+
+    /** Default report directory, relative to the project directory */
+    public static final String DEFAULT_REPORT_DIR = "build/ois/benchmarks";
+    /** Default baseline, relative to the project directory: it can be committed and used to gate merges */
+    public static final String DEFAULT_BASELINE = "simulation/benchmark-baseline.json";
+    /** File name of the last report written in the report directory */
+    public static final String LATEST_REPORT = "latest.json";
+    public static final int REGRESSION_EXIT_CODE = 2;
+
+    public static final int DEFAULT_FRAMES = 600;
+    public static final int DEFAULT_WARMUP = 120;
+    public static final float DEFAULT_DT = 1f / 60;
+    public static final double DEFAULT_THRESHOLD = 0.1;
+    public static final String DEFAULT_SCREEN_SIZE = "1280x720";
+    /** The part of a frame that is measured */
+    public static final String MEASURED = "update";
+    public static final String STATE_INTERFACE = "org.ois.core.state.IState";
+
+    // Metric -> the smallest growth that counts as a regression, below it the difference is noise
+    private static final Map<String, Double> COMPARED_METRICS = Map.of(
+            "frameTimeMeanMicros", 1.0,
+            "frameTimeP50Micros", 1.0,
+            "frameTimeP99Micros", 5.0,
+            "allocatedBytesPerFrame", 64.0
+    );
+    private static final Pattern NUMBER_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)");
+    private static final Pattern REGRESSIONS_FIELD = Pattern.compile("\"regressions\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL);
+    private static final Pattern STRING_VALUE = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final DateTimeFormatter REPORT_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private HeadlessBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String stateClass = System.getProperty(STATE_PROPERTY);
+        if (stateClass == null || stateClass.isBlank()) {
+            throw new IllegalArgumentException("The state to benchmark is not set, use -D" + STATE_PROPERTY + "=<state class>");
+        }
+        int frames = Integer.getInteger(FRAMES_PROPERTY, DEFAULT_FRAMES);
+        int warmup = Integer.getInteger(WARMUP_PROPERTY, DEFAULT_WARMUP);
+        float dt = Float.parseFloat(System.getProperty(DT_PROPERTY, String.valueOf(DEFAULT_DT)));
+        double threshold = Double.parseDouble(System.getProperty(THRESHOLD_PROPERTY, String.valueOf(DEFAULT_THRESHOLD)));
+        String[] screenSize = System.getProperty(SCREEN_SIZE_PROPERTY, DEFAULT_SCREEN_SIZE).split("x");
+        if (screenSize.length != 2) {
+            throw new IllegalArgumentException("The screen size should be <width>x<height>, got: " + System.getProperty(SCREEN_SIZE_PROPERTY));
+        }
+        Path reportDir = Paths.get(System.getProperty(REPORT_DIR_PROPERTY, DEFAULT_REPORT_DIR)).toAbsolutePath();
+        Path baseline = Paths.get(System.getProperty(BASELINE_PROPERTY, DEFAULT_BASELINE)).toAbsolutePath();
+
+        long[] frameNanos = new long[frames];
+        long[] frameBytes = new long[frames];
+        Map<String, Number> metrics = run(Class.forName(stateClass), frames, warmup, dt, Integer.parseInt(screenSize[0].trim()), Integer.parseInt(screenSize[1].trim()), frameNanos, frameBytes);
+
+        List<String> regressions = new ArrayList<>();
+        boolean hasBaseline = Files.isRegularFile(baseline);
+        if (hasBaseline) {
+            regressions = compare(readMetrics(baseline), metrics, threshold);
+        }
+
+        Files.createDirectories(reportDir);
+        String name = String.format("%s-%s", stateClass.substring(stateClass.lastIndexOf('.') + 1), LocalDateTime.now().format(REPORT_NAME_FORMAT));
+        Path report = reportDir.resolve(name + ".json");
+        writeReport(report, stateClass, dt, hasBaseline ? baseline : null, metrics, regressions);
+        writeFrames(reportDir.resolve(name + ".csv"), frameNanos, frameBytes);
+        Files.copy(report, reportDir.resolve(LATEST_REPORT), StandardCopyOption.REPLACE_EXISTING);
+
+        System.out.printf("Benchmark of %s (" + MEASURED + " only): %d frames, p50 %.1fus, p99 %.1fus, %d bytes/frame. Report: %s%n", stateClass, frames,
+                metrics.get("frameTimeP50Micros").doubleValue(), metrics.get("frameTimeP99Micros").doubleValue(), metrics.get("allocatedBytesPerFrame").longValue(), report);
+        if (!hasBaseline) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(report, baseline);
+            System.out.println("No baseline found, saved this run as the baseline: " + baseline);
+            return;
+        }
+        for (String regression : regressions) {
+            System.err.println("Regression: " + regression);
+        }
+        if (!regressions.isEmpty() && Boolean.parseBoolean(System.getProperty(FAIL_ON_REGRESSION_PROPERTY, "true"))) {
+            System.exit(REGRESSION_EXIT_CODE);
+        }
+    }
+
+    static Map<String, Number> run(Class<?> stateClass, int frames, int warmup, float dt, int width, int height, long[] frameNanos, long[] frameBytes) throws ReflectiveOperationException {
+        ClassLoader loader = stateClass.getClassLoader() != null ? stateClass.getClassLoader() : HeadlessBenchmark.class.getClassLoader();
+        Class<?> stateInterface = Class.forName(STATE_INTERFACE, false, loader);
+        if (!stateInterface.isAssignableFrom(stateClass)) {
+            throw new IllegalArgumentException(String.format("%s is not a state, it does not implement %s", stateClass.getName(), STATE_INTERFACE));
+        }
+        // The lifecycle methods of the interface, called with the arguments the simulation would pass
+        Method enter = stateInterface.getMethod("enter", Object[].class);
+        Method resize = stateInterface.getMethod("resize", int.class, int.class);
+        Method update = stateInterface.getMethod("update", float.class);
+        Method exit = stateInterface.getMethod("exit");
+        Method dispose = stateInterface.getMethod("dispose");
+
+        Object state = stateClass.getDeclaredConstructor().newInstance();
+        enter.invoke(state, (Object) new Object[0]);
+        resize.invoke(state, width, height);
+        // Boxed once, so the measured allocations are the state's only
+        Object[] updateArgs = {dt};
+
+        for (int i = 0; i < warmup; i++) {
+            update.invoke(state, updateArgs);
+        }
+
+        com.sun.management.ThreadMXBean threads = getAllocationCounter();
+        long threadId = Thread.currentThread().getId();
+        long gcCount = getGcCount();
+        long gcMillis = getGcMillis();
+        long total = 0;
+        for (int i = 0; i < frames; i++) {
+            long bytes = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+            update.invoke(state, updateArgs);
+            frameNanos[i] = System.nanoTime() - start;
+            frameBytes[i] = threads != null ? threads.getThreadAllocatedBytes(threadId) - bytes : 0;
+            total += frameNanos[i];
+        }
+        gcCount = getGcCount() - gcCount;
+        gcMillis = getGcMillis() - gcMillis;
+
+        exit.invoke(state);
+        dispose.invoke(state);
+
+        long[] sorted = frameNanos.clone();
+        Arrays.sort(sorted);
+        long allocated = 0;
+        for (long bytes : frameBytes) {
+            allocated += bytes;
+        }
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("frames", frames);
+        metrics.put("warmupFrames", warmup);
+        metrics.put("frameTimeMinMicros", sorted.length > 0 ? sorted[0] / 1000.0 : 0);
+        metrics.put("frameTimeMeanMicros", frames > 0 ? total / 1000.0 / frames : 0);
+        metrics.put("frameTimeP50Micros", percentile(sorted, 0.5) / 1000.0);
+        metrics.put("frameTimeP90Micros", percentile(sorted, 0.9) / 1000.0);
+        metrics.put("frameTimeP99Micros", percentile(sorted, 0.99) / 1000.0);
+        metrics.put("frameTimeMaxMicros", sorted.length > 0 ? sorted[sorted.length - 1] / 1000.0 : 0);
+        metrics.put("allocatedBytesPerFrame", frames > 0 ? allocated / frames : 0);
+        metrics.put("allocationRateMBPerSecond", total > 0 ? allocated / (1024.0 * 1024.0) / (total / 1e9) : 0);
+        metrics.put("gcCount", gcCount);
+        metrics.put("gcTimeMillis", gcMillis);
+        return metrics;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        // Nearest rank
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationCounter() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    static List<String> compare(Map<String, Double> baseline, Map<String, Number> metrics, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> metric : new TreeMap<>(COMPARED_METRICS).entrySet()) {
+            Double expected = baseline.get(metric.getKey());
+            if (expected == null) {
+                continue;
+            }
+            double actual = metrics.get(metric.getKey()).doubleValue();
+            if (actual - expected > metric.getValue() && actual > expected * (1 + threshold)) {
+                regressions.add(String.format(Locale.ROOT, "%s %.1f > %.1f (+%.0f%%)", metric.getKey(), actual, expected, expected > 0 ? (actual / expected - 1) * 100 : 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @param report - A benchmark report.
+     * @return the numeric metrics of the report
+     */
+    public static Map<String, Double> readMetrics(Path report) throws IOException {
+        Map<String, Double> metrics = new HashMap<>();
+        Matcher matcher = NUMBER_FIELD.matcher(Files.readString(report, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            metrics.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+        }
+        return metrics;
+    }
+
+    /**
+     * @param report - A benchmark report.
+     * @return the regressions found when the report was compared with its baseline
+     */
+    public static List<String> readRegressions(Path report) throws IOException {
+        List<String> regressions = new ArrayList<>();
+        Matcher field = REGRESSIONS_FIELD.matcher(Files.readString(report, StandardCharsets.UTF_8));
+        if (!field.find()) {
+            return regressions;
+        }
+        Matcher value = STRING_VALUE.matcher(field.group(1));
+        while (value.find()) {
+            regressions.add(value.group(1).replace("\\\"", "\"").replace("\\\\", "\\"));
+        }
+        return regressions;
+    }
+
+    private static void writeReport(Path report, String stateClass, float dt, Path baseline, Map<String, Number> metrics, List<String> regressions) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write(String.format("  \"state\": %s,\n", quote(stateClass)));
+            writer.write(String.format("  \"measured\": %s,\n", quote(MEASURED)));
+            writer.write(String.format("  \"timestamp\": %s,\n", quote(LocalDateTime.now().toString())));
+            writer.write(String.format("  \"java\": %s,\n", quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))));
+            writer.write(String.format("  \"os\": %s,\n", quote(System.getProperty("os.name") + " " + System.getProperty("os.arch"))));
+            writer.write(String.format(Locale.ROOT, "  \"dt\": %s,\n", dt));
+            for (Map.Entry<String, Number> metric : metrics.entrySet()) {
+                writer.write(String.format(Locale.ROOT, "  %s: %s,\n", quote(metric.getKey()), metric.getValue()));
+            }
+            writer.write(String.format("  \"baseline\": %s,\n", baseline != null ? quote(baseline.toString()) : "null"));
+            StringJoiner values = new StringJoiner(", ", "[", "]");
+            for (String regression : regressions) {
+                values.add(quote(regression));
+            }
+            writer.write(String.format("  \"regressions\": %s\n", values));
+            writer.write("}\n");
+        }
+    }
+
+    private static void writeFrames(Path csv, long[] frameNanos, long[] frameBytes) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("frame,updateNanos,allocatedBytes\n");
+            for (int i = 0; i < frameNanos.length; i++) {
+                writer.write(i + "," + frameNanos[i] + "," + frameBytes[i] + "\n");
+            }
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
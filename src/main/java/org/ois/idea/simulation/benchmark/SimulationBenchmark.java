@@ -0,0 +1,170 @@
+package org.ois.idea.simulation.benchmark;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnector;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.project.SimulationManifest;
+import org.ois.idea.log.Logger;
+import org.ois.idea.project.OisProject;
+import org.ois.idea.project.OisProjectManager;
+import org.ois.idea.simulation.SimulationManager;
+import org.ois.idea.simulation.SimulationSessionScheduler;
+import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Headless benchmark of the initial state of the project simulation (see {@link HeadlessBenchmark}).
+ * Runs the 'oisBenchmark' task, registered with a Gradle init script, and reports the result and the regressions found
+ * against the baseline of the project.
+ * <p>
+ * The init script and the benchmark jar are written into the project 'gradle' directory, so they can be committed with the baseline
+ * and used to gate merges: running the same task on CI fails it on regressions (see the init script for the command).
+ */
+public class SimulationBenchmark {
+
+    private static final String INIT_SCRIPT_RESOURCE = "/simulation/ois-benchmark.gradle";
+    private static final String BENCHMARK_JAR_RESOURCE = "/simulation/ois-benchmark.jar";
+    private static final String BENCHMARK_TASK = "oisBenchmark";
+
+    private final Project ideaProject;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile int frames = HeadlessBenchmark.DEFAULT_FRAMES;
+    private volatile float dt = HeadlessBenchmark.DEFAULT_DT;
+
+    private SimulationBenchmark(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+    }
+
+    public static SimulationBenchmark getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(SimulationBenchmark.class);
+    }
+
+    public int getFrames() { return frames; }
+
+    public void setFrames(int frames) { this.frames = Math.max(1, frames); }
+
+    public float getDt() { return dt; }
+
+    public void setDt(float dt) { this.dt = dt; }
+
+    public Path getReportsDirectory() {
+        return ProjectUtils.getProjectBasePath(ideaProject).resolve(HeadlessBenchmark.DEFAULT_REPORT_DIR);
+    }
+
+    public Path getBaseline() {
+        return ProjectUtils.getProjectBasePath(ideaProject).resolve(HeadlessBenchmark.DEFAULT_BASELINE);
+    }
+
+    public Path getInitScript() {
+        return ProjectUtils.getProjectBasePath(ideaProject).resolve("gradle").resolve("ois-benchmark.gradle");
+    }
+
+    /**
+     * Write the init script and the benchmark jar of this plugin version into the project.
+     */
+    private void installInitScript() throws IOException {
+        Path initScript = getInitScript();
+        boolean installed = Files.isRegularFile(initScript);
+        Files.createDirectories(initScript.getParent());
+        Utils.generateFromTemplate(INIT_SCRIPT_RESOURCE, initScript, Map.of());
+        try (InputStream benchmarkJar = SimulationBenchmark.class.getResourceAsStream(BENCHMARK_JAR_RESOURCE)) {
+            if (benchmarkJar == null) {
+                throw new IllegalArgumentException(String.format("Resource '%s' not found", BENCHMARK_JAR_RESOURCE));
+            }
+            Files.copy(benchmarkJar, initScript.resolveSibling("ois-benchmark.jar"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        // The benchmark source written by previous versions, replaced by the jar
+        Path benchmarkSources = initScript.resolveSibling("ois-benchmark");
+        Files.deleteIfExists(benchmarkSources.resolve("HeadlessBenchmark.java"));
+        if (Files.isDirectory(benchmarkSources)) {
+            try (Stream<Path> files = Files.list(benchmarkSources)) {
+                if (files.findAny().isEmpty()) {
+                    Files.delete(benchmarkSources);
+                }
+            }
+        }
+        if (!installed) {
+            Logger.getInstance().info(String.format("Benchmark init script written to %s, commit it to run the benchmark on CI", initScript));
+        }
+    }
+
+    public void run() {
+        if (DumbService.isDumb(ideaProject)) {
+            Logger.getInstance().warn("Intellij is still indexing the project, can't run benchmark...");
+            return;
+        }
+        String stateClass = getInitialStateClass();
+        if (stateClass == null) {
+            Logger.getInstance().warn("Can't benchmark the simulation: the manifest has no initial state");
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            Logger.getInstance().warn("Simulation benchmark already running, please wait for it to finish...");
+            return;
+        }
+        SimulationSessionScheduler.getInstance(ideaProject).schedule("Benchmarking Simulation", SimulationManager.getSessionDeadline(), scope -> {
+            CancellationTokenSource cancellation = GradleConnector.newCancellationTokenSource();
+            scope.onCancel(cancellation::cancel);
+            try {
+                installInitScript();
+                Logger.getInstance().info(String.format("Benchmarking '%s' for %d frames...", stateClass, frames));
+                ProjectUtils.runGradleTasks(ProjectUtils.getProjectBasePath(ideaProject), new Hashtable<>(), false, cancellation.token(),
+                        "--init-script", getInitScript().toAbsolutePath().toString(), BENCHMARK_TASK,
+                        "-D", String.format("%s=%s", HeadlessBenchmark.STATE_PROPERTY, stateClass),
+                        "-D", String.format("%s=%d", HeadlessBenchmark.FRAMES_PROPERTY, frames),
+                        "-D", String.format(Locale.ROOT, "%s=%s", HeadlessBenchmark.DT_PROPERTY, dt),
+                        // Regressions are reported here, the task fails on them only when gating
+                        "-D", String.format("%s=false", HeadlessBenchmark.FAIL_ON_REGRESSION_PROPERTY));
+                report(getReportsDirectory().resolve(HeadlessBenchmark.LATEST_REPORT));
+            } catch (BuildCancelledException e) {
+                Logger.getInstance().info("Simulation benchmark stopped");
+            } finally {
+                scope.complete();
+            }
+        }, () -> running.set(false));
+    }
+
+    private void report(Path report) throws Exception {
+        if (!Files.isRegularFile(report)) {
+            Logger.getInstance().warn("Simulation benchmark finished without a report");
+            return;
+        }
+        Map<String, Double> metrics = HeadlessBenchmark.readMetrics(report);
+        Logger.getInstance().info(String.format(Locale.ROOT, "Simulation benchmark (" + HeadlessBenchmark.MEASURED + " only): mean %.1fus, p50 %.1fus, p99 %.1fus, %.0f bytes/frame (%.1f MB/s), %.0f GCs. Reports at %s",
+                metrics.getOrDefault("frameTimeMeanMicros", 0d), metrics.getOrDefault("frameTimeP50Micros", 0d), metrics.getOrDefault("frameTimeP99Micros", 0d),
+                metrics.getOrDefault("allocatedBytesPerFrame", 0d), metrics.getOrDefault("allocationRateMBPerSecond", 0d), metrics.getOrDefault("gcCount", 0d),
+                getReportsDirectory()));
+        List<String> regressions = HeadlessBenchmark.readRegressions(report);
+        if (regressions.isEmpty()) {
+            Logger.getInstance().info("No regressions against the baseline " + getBaseline());
+            return;
+        }
+        Logger.getInstance().warn(String.format("Simulation benchmark regressed against the baseline %s:\n%s", getBaseline(), String.join("\n", regressions)));
+    }
+
+    private String getInitialStateClass() {
+        OisProject project = OisProjectManager.getInstance(ideaProject).getProject();
+        SimulationManifest manifest = project != null ? project.getManifest() : null;
+        if (manifest == null || manifest.getInitialState() == null || manifest.getStates() == null) {
+            return null;
+        }
+        return manifest.getStates().get(manifest.getInitialState());
+    }
+
+    public boolean isRunning() { return running.get(); }
+}
@@ -0,0 +1,53 @@
+package org.ois.idea.simulation.console;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ois.core.utils.log.ILogger;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Which records of the simulation log are shown: the levels, a single state (or any) and a text to search for.
+ */
+public final class LogFilter {
+
+    public static final int ANY_STATE = -2;
+
+    private final int levelsMask;
+    private final int stateId;
+    private final String text;
+
+    public LogFilter(Set<ILogger.Level> levels, int stateId, String text) {
+        int mask = 0;
+        for (ILogger.Level level : levels) {
+            mask |= 1 << level.ordinal();
+        }
+        this.levelsMask = mask;
+        this.stateId = stateId;
+        this.text = StringUtils.defaultString(text);
+    }
+
+    public static LogFilter all() {
+        return new LogFilter(EnumSet.allOf(ILogger.Level.class), ANY_STATE, "");
+    }
+
+    boolean acceptsLevel(int level) {
+        return (levelsMask & (1 << level)) != 0;
+    }
+
+    boolean acceptsAllLevels() {
+        return levelsMask == (1 << ILogger.Level.values().length) - 1;
+    }
+
+    boolean acceptsState(int state) {
+        return stateId == ANY_STATE || stateId == state;
+    }
+
+    boolean acceptsText(String line) {
+        return text.isEmpty() || StringUtils.containsIgnoreCase(line, text);
+    }
+
+    boolean hasText() { return !text.isEmpty(); }
+
+    int getStateId() { return stateId; }
+}
@@ -0,0 +1,36 @@
+package org.ois.idea.simulation.console;
+
+import org.ois.core.utils.log.ILogger;
+
+/**
+ * A record of the simulation log, as read from the {@link SimulationLogBuffer}.
+ */
+public class LogRecord {
+
+    private final long sequence;
+    private final ILogger.Level level;
+    private final String state;
+    private final long timestamp;
+    private final String text;
+
+    LogRecord(long sequence, ILogger.Level level, String state, long timestamp, String text) {
+        this.sequence = sequence;
+        this.level = level;
+        this.state = state;
+        this.timestamp = timestamp;
+        this.text = text;
+    }
+
+    public long getSequence() { return sequence; }
+
+    public ILogger.Level getLevel() { return level; }
+
+    /**
+     * @return the key of the state the record was logged in, null if unknown
+     */
+    public String getState() { return state; }
+
+    public long getTimestamp() { return timestamp; }
+
+    public String getText() { return text; }
+}
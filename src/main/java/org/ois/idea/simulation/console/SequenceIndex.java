@@ -0,0 +1,63 @@
+package org.ois.idea.simulation.console;
+
+/**
+ * Growable ring of increasing record sequences, the records of one level or one state.
+ * Sequences are added at the end and removed from the start when their records are evicted.
+ */
+final class SequenceIndex {
+
+    private long[] sequences = new long[16];
+    private int head;
+    private int size;
+
+    void add(long sequence) {
+        if (size == sequences.length) {
+            long[] grown = new long[sequences.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = get(i);
+            }
+            sequences = grown;
+            head = 0;
+        }
+        sequences[(head + size) & (sequences.length - 1)] = sequence;
+        size++;
+    }
+
+    /**
+     * Remove the first sequence if it is the given one.
+     */
+    void removeFirst(long sequence) {
+        if (size > 0 && sequences[head] == sequence) {
+            head = (head + 1) & (sequences.length - 1);
+            size--;
+        }
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    int size() { return size; }
+
+    long get(int index) {
+        return sequences[(head + index) & (sequences.length - 1)];
+    }
+
+    /**
+     * @return the index of the first sequence that is not smaller than the given one, {@link #size()} if there is none
+     */
+    int lowerBound(long sequence) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle) < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
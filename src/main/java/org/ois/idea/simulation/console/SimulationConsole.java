@@ -0,0 +1,168 @@
+package org.ois.idea.simulation.console;
+
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessListener;
+import com.intellij.execution.process.ProcessOutputType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.project.SimulationManifest;
+import org.ois.core.utils.log.ILogger;
+import org.ois.idea.project.OisProject;
+import org.ois.idea.project.OisProjectManager;
+import org.ois.idea.simulation.telemetry.SimulationTelemetry;
+import org.ois.idea.simulation.telemetry.TelemetryModel;
+import org.ois.idea.utils.command.LineOutputStream;
+
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the output of the project simulations into a {@link SimulationLogBuffer}, shown by the Console view.
+ * Each line is parsed into a record: the level and the state are taken from the bracketed tags at the start of the line
+ * (e.g. '[WARN] [menu] ...'), a line without a state tag is attributed to the state the telemetry reports as running.
+ * <p>
+ * Lines are only appended to the buffer here, the view reads them in batches.
+ */
+public class SimulationConsole {
+
+    public static final int CAPACITY = 1 << 20;
+
+    // Tags are looked for in the start of the line only
+    private static final int TAGS_REGION = 128;
+    private static final Pattern TAG = Pattern.compile("\\[([^\\[\\]]{1,64})]");
+    private static final Map<String, ILogger.Level> LEVEL_TAGS = Map.of(
+            "DEBUG", ILogger.Level.Debug,
+            "INFO", ILogger.Level.Info,
+            "WARN", ILogger.Level.Warn,
+            "WARNING", ILogger.Level.Warn,
+            "ERROR", ILogger.Level.Error
+    );
+
+    private final Project ideaProject;
+    private final SimulationLogBuffer buffer = new SimulationLogBuffer(CAPACITY);
+
+    private SimulationConsole(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+    }
+
+    public static SimulationConsole getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(SimulationConsole.class);
+    }
+
+    public SimulationLogBuffer getBuffer() { return buffer; }
+
+    /**
+     * @param defaultLevel - The level of the lines without a level tag.
+     * @return a stream splitting the written bytes into lines and appending them to the console
+     */
+    public OutputStream newOutputStream(ILogger.Level defaultLevel) {
+        Map<String, String> states = getStates();
+        return new LineOutputStream() {
+            @Override
+            protected void onLine(String line) {
+                append(line, defaultLevel, states);
+            }
+        };
+    }
+
+    /**
+     * @return a listener appending the output of a simulation process to the console, standard error lines default to the Error level
+     */
+    public ProcessListener newProcessListener() {
+        Map<String, String> states = getStates();
+        return new ProcessAdapter() {
+            // Text events are not guaranteed to end with a line terminator, keep the partial line of each stream
+            private final StringBuilder partialOut = new StringBuilder();
+            private final StringBuilder partialErr = new StringBuilder();
+
+            @Override
+            public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+                if (ProcessOutputType.isStderr(outputType)) {
+                    split(event.getText(), partialErr, ILogger.Level.Error);
+                } else if (ProcessOutputType.isStdout(outputType)) {
+                    split(event.getText(), partialOut, ILogger.Level.Info);
+                }
+            }
+
+            @Override
+            public void processTerminated(@NotNull ProcessEvent event) {
+                flush(partialOut, ILogger.Level.Info);
+                flush(partialErr, ILogger.Level.Error);
+            }
+
+            private synchronized void split(String text, StringBuilder partial, ILogger.Level defaultLevel) {
+                int lineStart = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c != '\n' && c != '\r') {
+                        continue;
+                    }
+                    partial.append(text, lineStart, i);
+                    // '\r\n' is a single terminator
+                    if (c == '\n' || i + 1 >= text.length() || text.charAt(i + 1) != '\n') {
+                        flush(partial, defaultLevel);
+                    }
+                    lineStart = i + 1;
+                }
+                partial.append(text, lineStart, text.length());
+            }
+
+            private synchronized void flush(StringBuilder partial, ILogger.Level defaultLevel) {
+                if (partial.length() > 0) {
+                    append(partial.toString(), defaultLevel, states);
+                    partial.setLength(0);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param states - The states of the simulation, key to class name.
+     */
+    private void append(String line, ILogger.Level defaultLevel, Map<String, String> states) {
+        ILogger.Level level = null;
+        String state = null;
+        Matcher tag = TAG.matcher(line).region(0, Math.min(line.length(), TAGS_REGION));
+        while (tag.find() && (level == null || state == null)) {
+            String value = tag.group(1).trim();
+            if (level == null) {
+                level = LEVEL_TAGS.get(value.toUpperCase(Locale.ROOT));
+                if (level != null) {
+                    continue;
+                }
+            }
+            if (state == null && states.containsKey(value)) {
+                state = value;
+            }
+        }
+        if (state == null) {
+            state = getRunningState(states);
+        }
+        buffer.append(level != null ? level : defaultLevel, state != null ? buffer.getStateId(state) : SimulationLogBuffer.NO_STATE, line);
+    }
+
+    private String getRunningState(Map<String, String> states) {
+        TelemetryModel telemetry = SimulationTelemetry.getInstance(ideaProject).getLatest();
+        String stateClass = telemetry != null && telemetry.isConnected() ? telemetry.getCurrentState() : null;
+        if (stateClass == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> state : states.entrySet()) {
+            if (stateClass.equals(state.getValue())) {
+                return state.getKey();
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> getStates() {
+        OisProject project = OisProjectManager.getInstance(ideaProject).getProject();
+        SimulationManifest manifest = project != null ? project.getManifest() : null;
+        return manifest != null && manifest.getStates() != null ? Map.copyOf(manifest.getStates()) : Map.of();
+    }
+}
@@ -0,0 +1,249 @@
+package org.ois.idea.simulation.console;
+
+import org.ois.core.utils.log.ILogger;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded ring buffer of the simulation log records, indexed by level and by state.
+ * Records are stored in columns (no object per record) and identified by an increasing sequence number.
+ * Once the capacity is reached, every new record evicts the oldest one.
+ * <p>
+ * Queries hold the buffer lock for a chunk of records at a time only, so the writers are never blocked for long,
+ * and the text of the candidates is matched outside the lock.
+ */
+public class SimulationLogBuffer {
+
+    public static final int NO_STATE = -1;
+
+    private static final int QUERY_CHUNK = 64 * 1024;
+    private static final ILogger.Level[] LEVELS = ILogger.Level.values();
+
+    private final int capacity;
+    private final String[] texts;
+    private final byte[] levels;
+    private final int[] states;
+    private final long[] timestamps;
+    private final SequenceIndex[] levelIndexes = new SequenceIndex[LEVELS.length];
+    private final List<SequenceIndex> stateIndexes = new ArrayList<>();
+    private final List<String> stateKeys = new ArrayList<>();
+    private final Map<String, Integer> stateIds = new HashMap<>();
+
+    private long firstSequence;
+    private long nextSequence;
+
+    public SimulationLogBuffer(int capacity) {
+        this.capacity = capacity;
+        this.texts = new String[capacity];
+        this.levels = new byte[capacity];
+        this.states = new int[capacity];
+        this.timestamps = new long[capacity];
+        for (int i = 0; i < levelIndexes.length; i++) {
+            levelIndexes[i] = new SequenceIndex();
+        }
+    }
+
+    /**
+     * @return the sequence of the record
+     */
+    public synchronized long append(ILogger.Level level, int stateId, String text) {
+        if (nextSequence - firstSequence == capacity) {
+            evictFirst();
+        }
+        long sequence = nextSequence++;
+        int slot = slot(sequence);
+        texts[slot] = text;
+        levels[slot] = (byte) level.ordinal();
+        states[slot] = stateId;
+        timestamps[slot] = System.currentTimeMillis();
+        levelIndexes[level.ordinal()].add(sequence);
+        if (stateId != NO_STATE) {
+            stateIndexes.get(stateId).add(sequence);
+        }
+        return sequence;
+    }
+
+    private void evictFirst() {
+        int slot = slot(firstSequence);
+        levelIndexes[levels[slot]].removeFirst(firstSequence);
+        if (states[slot] != NO_STATE) {
+            stateIndexes.get(states[slot]).removeFirst(firstSequence);
+        }
+        texts[slot] = null;
+        firstSequence++;
+    }
+
+    /**
+     * @param key - The key of a simulation state.
+     * @return the id of the state in this buffer, registered if needed
+     */
+    public synchronized int getStateId(String key) {
+        return stateIds.computeIfAbsent(key, k -> {
+            stateKeys.add(k);
+            stateIndexes.add(new SequenceIndex());
+            return stateKeys.size() - 1;
+        });
+    }
+
+    public synchronized List<String> getStateKeys() { return List.copyOf(stateKeys); }
+
+    /**
+     * @return the sequence of the oldest record in the buffer
+     */
+    public synchronized long getFirstSequence() { return firstSequence; }
+
+    /**
+     * @return the sequence the next record will have
+     */
+    public synchronized long getNextSequence() { return nextSequence; }
+
+    /**
+     * @return the record, null if it was evicted
+     */
+    public synchronized LogRecord get(long sequence) {
+        if (sequence < firstSequence || sequence >= nextSequence) {
+            return null;
+        }
+        int slot = slot(sequence);
+        int state = states[slot];
+        return new LogRecord(sequence, LEVELS[levels[slot]], state != NO_STATE ? stateKeys.get(state) : null, timestamps[slot], texts[slot]);
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(texts, null);
+        for (SequenceIndex index : levelIndexes) {
+            index.clear();
+        }
+        for (SequenceIndex index : stateIndexes) {
+            index.clear();
+        }
+        firstSequence = nextSequence;
+    }
+
+    /**
+     * Find the records matching a filter.
+     *
+     * @param filter    - The filter of the records.
+     * @param from      - The first sequence to look at.
+     * @param to        - The sequence to stop at, excluded.
+     * @param cancelled - Checked between chunks, stops the query when true.
+     * @return the increasing sequences of the matching records, null if the query was cancelled
+     */
+    public long[] query(LogFilter filter, long from, long to, BooleanSupplier cancelled) {
+        long[] result = new long[256];
+        int count = 0;
+        Chunk chunk = new Chunk();
+        String[] candidateTexts = new String[QUERY_CHUNK];
+        long cursor = from;
+        while (cursor < to) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            synchronized (this) {
+                cursor = Math.max(cursor, firstSequence);
+                long end = Math.min(to, nextSequence);
+                if (cursor >= end) {
+                    break;
+                }
+                collect(filter, cursor, end, chunk);
+                cursor = chunk.next;
+                if (filter.hasText()) {
+                    for (int i = 0; i < chunk.size; i++) {
+                        candidateTexts[i] = texts[slot(chunk.sequences[i])];
+                    }
+                }
+            }
+            for (int i = 0; i < chunk.size; i++) {
+                if (filter.hasText() && !filter.acceptsText(candidateTexts[i])) {
+                    continue;
+                }
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                result[count++] = chunk.sequences[i];
+            }
+            Arrays.fill(candidateTexts, 0, chunk.size, null);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * The candidates of a query chunk, and the sequence the next chunk starts at.
+     */
+    private static class Chunk {
+        private final long[] sequences = new long[QUERY_CHUNK];
+        private int size;
+        private long next;
+    }
+
+    /**
+     * Collect the sequences of [from, to) that match the level and state of the filter, using the smallest index that covers the filter.
+     * At most {@link #QUERY_CHUNK} records or index entries are looked at, whatever the path, so the lock is held for a bounded time.
+     */
+    private void collect(LogFilter filter, long from, long to, Chunk chunk) {
+        chunk.size = 0;
+        if (filter.getStateId() != LogFilter.ANY_STATE) {
+            if (filter.getStateId() == NO_STATE || filter.getStateId() >= stateIndexes.size()) {
+                // Records without a state are not indexed
+                scan(filter, from, to, chunk);
+                return;
+            }
+            SequenceIndex index = stateIndexes.get(filter.getStateId());
+            int start = index.lowerBound(from);
+            int end = Math.min(index.size(), start + QUERY_CHUNK);
+            for (int i = start; i < end; i++) {
+                long sequence = index.get(i);
+                if (sequence >= to) {
+                    break;
+                }
+                if (filter.acceptsLevel(levels[slot(sequence)])) {
+                    chunk.sequences[chunk.size++] = sequence;
+                }
+            }
+            chunk.next = end < index.size() ? Math.min(to, index.get(end)) : to;
+            return;
+        }
+        if (filter.acceptsAllLevels()) {
+            scan(filter, from, to, chunk);
+            return;
+        }
+        // Merge the indexes of the accepted levels, in sequence order: every entry looked at is a candidate
+        int[] positions = new int[levelIndexes.length];
+        for (int level = 0; level < levelIndexes.length; level++) {
+            positions[level] = filter.acceptsLevel(level) ? levelIndexes[level].lowerBound(from) : levelIndexes[level].size();
+        }
+        chunk.next = to;
+        while (chunk.size < QUERY_CHUNK) {
+            int next = -1;
+            long nextSequence = to;
+            for (int level = 0; level < levelIndexes.length; level++) {
+                if (positions[level] < levelIndexes[level].size() && levelIndexes[level].get(positions[level]) < nextSequence) {
+                    next = level;
+                    nextSequence = levelIndexes[level].get(positions[level]);
+                }
+            }
+            if (next < 0) {
+                return;
+            }
+            positions[next]++;
+            chunk.sequences[chunk.size++] = nextSequence;
+        }
+        chunk.next = chunk.sequences[chunk.size - 1] + 1;
+    }
+
+    private void scan(LogFilter filter, long from, long to, Chunk chunk) {
+        long end = Math.min(to, from + QUERY_CHUNK);
+        for (long sequence = from; sequence < end; sequence++) {
+            int slot = slot(sequence);
+            if (filter.acceptsLevel(levels[slot]) && filter.acceptsState(states[slot])) {
+                chunk.sequences[chunk.size++] = sequence;
+            }
+        }
+        chunk.next = end;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
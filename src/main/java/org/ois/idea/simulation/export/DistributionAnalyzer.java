@@ -0,0 +1,332 @@
+package org.ois.idea.simulation.export;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.ExportManager;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Size and startup cost report of the exported distribution, per platform:
+ * <ul>
+ *     <li>The size of each package of classes and of each asset (the other files, loose or in the jars).</li>
+ *     <li>The classes and resources found in more than one jar.</li>
+ *     <li>An estimate of the classes loaded at start: the classes reachable through the constant pool class references from
+ *     the entry points (the jar 'Main-Class' and the initial state). An upper bound, classes of unused branches are counted too.</li>
+ * </ul>
+ * The report is compared with the one of the previous export, its size and startup changes are part of the report.
+ */
+public class DistributionAnalyzer {
+
+    public static final String REPORT_FILE = "distribution-analysis.json";
+
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of("jar", "war", "zip");
+    private static final String CLASS_EXTENSION = ".class";
+    private static final int MAX_CHANGES = 20;
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static class Report {
+        private long createdAt;
+        private SortedMap<String, PlatformReport> platforms = new TreeMap<>();
+
+        public SortedMap<String, PlatformReport> getPlatforms() { return platforms; }
+    }
+
+    public static class PlatformReport {
+        private long totalBytes;
+        private int files;
+        // Package -> its classes
+        private SortedMap<String, PackageSize> packages = new TreeMap<>();
+        // Asset path (prefixed by its jar, if in one) -> size
+        private SortedMap<String, Long> assets = new TreeMap<>();
+        private List<Duplicate> duplicates = new ArrayList<>();
+        private List<String> entryPoints = new ArrayList<>();
+        private int startupClasses;
+        // Referenced at startup, not in the distribution (JDK or platform classes)
+        private int startupExternalClasses;
+        private Changes changes;
+
+        public long getTotalBytes() { return totalBytes; }
+
+        public int getStartupClasses() { return startupClasses; }
+
+        public List<Duplicate> getDuplicates() { return duplicates; }
+
+        public Changes getChanges() { return changes; }
+    }
+
+    public static class PackageSize {
+        private int classes;
+        private long bytes;
+        private long compressedBytes;
+    }
+
+    public static class Duplicate {
+        private String entry;
+        private List<String> jars = new ArrayList<>();
+        private boolean sameContent = true;
+    }
+
+    /**
+     * Changes since the previous export, null in the first report of a platform.
+     */
+    public static class Changes {
+        private long totalBytes;
+        private int startupClasses;
+        private int duplicates;
+        // The largest package and asset size changes, 'package:' and 'asset:' prefixed
+        private SortedMap<String, Long> largest = new TreeMap<>();
+
+        public long getTotalBytes() { return totalBytes; }
+
+        public int getStartupClasses() { return startupClasses; }
+    }
+
+    // Where a class of the distribution is
+    private record ClassLocation(ZipFile jar, ZipEntry entry) {}
+
+    /**
+     * Analyze the distribution and write the report, the report of the previous export is kept next to it.
+     *
+     * @param distribution - The distribution directory, holding a directory per platform.
+     * @param reports      - The directory of the report.
+     * @param platforms    - The analyzed platforms.
+     * @param entryClasses - Classes loaded at start on all platforms (e.g. the initial state), binary names.
+     * @return the report
+     */
+    public Report analyze(Path distribution, Path reports, Collection<RunnerConfiguration.RunnerType> platforms, Collection<String> entryClasses) throws IOException {
+        Path reportFile = reports.resolve(REPORT_FILE);
+        Report previous = readReport(reportFile);
+        Report report = new Report();
+        report.createdAt = System.currentTimeMillis();
+        for (RunnerConfiguration.RunnerType platform : platforms) {
+            PlatformReport platformReport = analyzePlatform(ExportManager.getPlatformDistribution(distribution, platform), entryClasses);
+            PlatformReport previousReport = previous != null ? previous.platforms.get(platform.name()) : null;
+            if (previousReport != null) {
+                platformReport.changes = compare(previousReport, platformReport);
+            }
+            report.platforms.put(platform.name(), platformReport);
+        }
+
+        Files.createDirectories(reports);
+        if (Files.isRegularFile(reportFile)) {
+            Files.move(reportFile, reports.resolve(REPORT_FILE.replace(".json", ".previous.json")), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path tempFile = Files.createTempFile(reports, REPORT_FILE, ".tmp");
+        try {
+            Files.writeString(tempFile, gson.toJson(report), StandardCharsets.UTF_8);
+            Files.move(tempFile, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return report;
+    }
+
+    private PlatformReport analyzePlatform(Path directory, Collection<String> entryClasses) throws IOException {
+        PlatformReport report = new PlatformReport();
+        if (!Files.isDirectory(directory)) {
+            return report;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        List<ZipFile> jars = new ArrayList<>();
+        try {
+            Map<String, ClassLocation> classes = new HashMap<>();
+            // Entry name -> jar name -> entry checksum
+            Map<String, Map<String, Long>> entries = new HashMap<>();
+            Set<String> entryPoints = new LinkedHashSet<>(entryClasses);
+            for (Path file : files) {
+                String path = directory.relativize(file).toString().replace('\\', '/');
+                long size = Files.size(file);
+                report.totalBytes += size;
+                report.files++;
+                if (!isArchive(path)) {
+                    report.assets.put(path, size);
+                    continue;
+                }
+                ZipFile jar = new ZipFile(file.toFile());
+                jars.add(jar);
+                String mainClass = getMainClass(jar);
+                if (mainClass != null) {
+                    entryPoints.add(mainClass);
+                }
+                Enumeration<? extends ZipEntry> jarEntries = jar.entries();
+                while (jarEntries.hasMoreElements()) {
+                    ZipEntry entry = jarEntries.nextElement();
+                    if (entry.isDirectory() || entry.getName().startsWith("META-INF/")) {
+                        continue;
+                    }
+                    entries.computeIfAbsent(entry.getName(), key -> new TreeMap<>()).put(path, entry.getCrc());
+                    if (!entry.getName().endsWith(CLASS_EXTENSION)) {
+                        report.assets.put(path + "!/" + entry.getName(), entry.getSize());
+                        continue;
+                    }
+                    String className = entry.getName().substring(0, entry.getName().length() - CLASS_EXTENSION.length());
+                    classes.putIfAbsent(className, new ClassLocation(jar, entry));
+                    int packageEnd = className.lastIndexOf('/');
+                    PackageSize packageSize = report.packages.computeIfAbsent(packageEnd < 0 ? "" : className.substring(0, packageEnd).replace('/', '.'), key -> new PackageSize());
+                    packageSize.classes++;
+                    packageSize.bytes += Math.max(0, entry.getSize());
+                    packageSize.compressedBytes += Math.max(0, entry.getCompressedSize());
+                }
+            }
+            new TreeMap<>(entries).forEach((name, locations) -> {
+                if (locations.size() > 1) {
+                    Duplicate duplicate = new Duplicate();
+                    duplicate.entry = name;
+                    duplicate.jars.addAll(locations.keySet());
+                    duplicate.sameContent = new HashSet<>(locations.values()).size() == 1;
+                    report.duplicates.add(duplicate);
+                }
+            });
+            report.entryPoints.addAll(entryPoints);
+            countStartupClasses(report, classes, entryPoints);
+        } finally {
+            for (ZipFile jar : jars) {
+                jar.close();
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Walk the class references from the entry points, reading the constant pool of each reached class once.
+     */
+    private static void countStartupClasses(PlatformReport report, Map<String, ClassLocation> classes, Set<String> entryPoints) throws IOException {
+        if (classes.isEmpty()) {
+            return;
+        }
+        Set<String> reached = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        entryPoints.forEach(entryPoint -> pending.add(entryPoint.replace('.', '/')));
+        while (!pending.isEmpty()) {
+            String className = pending.poll();
+            if (!reached.add(className)) {
+                continue;
+            }
+            ClassLocation location = classes.get(className);
+            if (location == null) {
+                report.startupExternalClasses++;
+                continue;
+            }
+            report.startupClasses++;
+            try (InputStream input = location.jar().getInputStream(location.entry())) {
+                for (String reference : readClassReferences(input)) {
+                    if (!reached.contains(reference)) {
+                        pending.add(reference);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the classes referenced by the CONSTANT_Class entries of a class file (array element classes included)
+     */
+    static Set<String> readClassReferences(InputStream classFile) throws IOException {
+        DataInputStream input = new DataInputStream(classFile);
+        if (input.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+        int count = input.readUnsignedShort();
+        String[] utf8 = new String[count];
+        List<Integer> classNames = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = input.readUTF();
+                case 7 -> classNames.add(input.readUnsignedShort());
+                case 8, 16, 19, 20 -> input.skipBytes(2);
+                case 15 -> input.skipBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> input.skipBytes(4);
+                case 5, 6 -> {
+                    // Takes two entries
+                    input.skipBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        Set<String> references = new HashSet<>();
+        for (int nameIndex : classNames) {
+            String name = utf8[nameIndex];
+            if (name == null) {
+                continue;
+            }
+            if (name.startsWith("[")) {
+                int element = name.indexOf('L');
+                if (element < 0) {
+                    continue;
+                }
+                name = name.substring(element + 1, name.length() - 1);
+            }
+            references.add(name);
+        }
+        return references;
+    }
+
+    private static Changes compare(PlatformReport previous, PlatformReport current) {
+        Changes changes = new Changes();
+        changes.totalBytes = current.totalBytes - previous.totalBytes;
+        changes.startupClasses = current.startupClasses - previous.startupClasses;
+        changes.duplicates = current.duplicates.size() - previous.duplicates.size();
+        Map<String, Long> deltas = new HashMap<>();
+        current.packages.forEach((name, size) -> deltas.merge("package:" + name, size.bytes, Long::sum));
+        previous.packages.forEach((name, size) -> deltas.merge("package:" + name, -size.bytes, Long::sum));
+        current.assets.forEach((name, size) -> deltas.merge("asset:" + name, size, Long::sum));
+        previous.assets.forEach((name, size) -> deltas.merge("asset:" + name, -size, Long::sum));
+        deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .sorted(Comparator.comparingLong((Map.Entry<String, Long> delta) -> Math.abs(delta.getValue())).reversed())
+                .limit(MAX_CHANGES)
+                .forEach(delta -> changes.largest.put(delta.getKey(), delta.getValue()));
+        return changes;
+    }
+
+    private static boolean isArchive(String path) {
+        int extension = path.lastIndexOf('.');
+        return extension >= 0 && ARCHIVE_EXTENSIONS.contains(path.substring(extension + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String getMainClass(ZipFile jar) throws IOException {
+        ZipEntry manifestEntry = jar.getEntry(JarFile.MANIFEST_NAME);
+        if (manifestEntry == null) {
+            return null;
+        }
+        try (InputStream input = jar.getInputStream(manifestEntry)) {
+            return new Manifest(input).getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+        }
+    }
+
+    private static Report readReport(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), Report.class);
+        } catch (IOException | JsonParseException e) {
+            Logger.getInstance().debug("Can't read previous distribution analysis " + file, e);
+            return null;
+        }
+    }
+}
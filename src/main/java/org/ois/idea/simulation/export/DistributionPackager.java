@@ -0,0 +1,313 @@
+package org.ois.idea.simulation.export;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import net.lingala.zip4j.io.outputstream.ZipOutputStream;
+import net.lingala.zip4j.model.ZipParameters;
+import net.lingala.zip4j.model.enums.CompressionLevel;
+import net.lingala.zip4j.model.enums.CompressionMethod;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.ExportManager;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Packages the exported distribution into one archive per platform, for QA and the stores.
+ * Files identical in more than one platform are packaged once, in a shared archive.
+ * An index lists, for each platform, where each of its files is packaged and its checksum, with the checksum of each archive.
+ * <p>
+ * Files are streamed into the archives, never held in memory, and the archives are written concurrently.
+ * Already compressed files (images, audio, archives) are stored as is. An archive is rewritten only if its content changed since
+ * the previous packaging.
+ */
+public class DistributionPackager {
+
+    public static final String INDEX_FILE = "index.json";
+    public static final String SHARED_ARCHIVE = "shared.zip";
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "webp", "ogg", "mp3", "m4a", "aac", "opus", "mp4", "webm",
+            "jar", "zip", "gz", "xz", "bz2", "7z", "apk", "aab", "woff", "woff2"
+    );
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final int parallelism;
+
+    public DistributionPackager(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    private static class Index {
+        private int version = 1;
+        // Archive name -> archive
+        private SortedMap<String, Archive> archives = new TreeMap<>();
+        // Platform -> relative path in the platform distribution -> packaged file
+        private SortedMap<String, SortedMap<String, PackagedFile>> platforms = new TreeMap<>();
+    }
+
+    private static class Archive {
+        private String sha256;
+        private long size;
+        // Hash of the archive entries and their content hashes, the archive is up to date if it did not change
+        private String contentHash;
+    }
+
+    private record Source(Path path, String sha256) {}
+
+    private static class PackagedFile {
+        private String archive;
+        private String entry;
+        private String sha256;
+        private long size;
+
+        PackagedFile(String archive, String entry, String sha256, long size) {
+            this.archive = archive;
+            this.entry = entry;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Package the distribution of the platforms.
+     *
+     * @param distribution - The distribution directory, holding a directory per platform.
+     * @param packages     - The directory of the archives and their index.
+     * @param files        - Platform -> relative path -> content hash of the files in its distribution, hashed here if null.
+     * @param cancelled    - Checked between files, the packaging throws a {@link CancellationException} once it returns true.
+     */
+    public void pack(Path distribution, Path packages, Map<RunnerConfiguration.RunnerType, SortedMap<String, String>> files, BooleanSupplier cancelled) throws IOException, InterruptedException {
+        Files.createDirectories(packages);
+        Index previous = readIndex(packages.resolve(INDEX_FILE));
+        Index index = new Index();
+
+        // Content hash -> platforms with such a file
+        Map<String, Set<RunnerConfiguration.RunnerType>> owners = new HashMap<>();
+        Map<RunnerConfiguration.RunnerType, SortedMap<String, String>> platformFiles = new TreeMap<>();
+        for (Map.Entry<RunnerConfiguration.RunnerType, SortedMap<String, String>> platform : files.entrySet()) {
+            Path directory = ExportManager.getPlatformDistribution(distribution, platform.getKey());
+            SortedMap<String, String> hashes = platform.getValue() != null ? platform.getValue() : hashFiles(directory, cancelled);
+            platformFiles.put(platform.getKey(), hashes);
+            hashes.values().forEach(sha256 -> owners.computeIfAbsent(sha256, key -> EnumSet.noneOf(RunnerConfiguration.RunnerType.class)).add(platform.getKey()));
+        }
+
+        // Archive name -> entry name -> source file, in entry order
+        Map<String, SortedMap<String, Source>> archives = new TreeMap<>();
+        Map<String, String> sharedEntries = new HashMap<>();
+        for (Map.Entry<RunnerConfiguration.RunnerType, SortedMap<String, String>> platform : platformFiles.entrySet()) {
+            Path directory = ExportManager.getPlatformDistribution(distribution, platform.getKey());
+            String platformArchive = platform.getKey().name().toLowerCase(Locale.ROOT) + ".zip";
+            SortedMap<String, PackagedFile> packaged = new TreeMap<>();
+            for (Map.Entry<String, String> file : platform.getValue().entrySet()) {
+                Path source = directory.resolve(file.getKey());
+                String sha256 = file.getValue();
+                String archive = platformArchive;
+                String entry = file.getKey();
+                if (owners.get(sha256).size() > 1) {
+                    archive = SHARED_ARCHIVE;
+                    entry = sharedEntries.computeIfAbsent(sha256, key -> getSharedEntry(archives, file.getKey(), key));
+                }
+                archives.computeIfAbsent(archive, key -> new TreeMap<>()).putIfAbsent(entry, new Source(source, sha256));
+                packaged.put(file.getKey(), new PackagedFile(archive, entry, sha256, Files.size(source)));
+            }
+            index.platforms.put(platform.getKey().name(), packaged);
+            // A platform with no own file still gets its (empty) archive
+            archives.computeIfAbsent(platformArchive, key -> new TreeMap<>());
+        }
+
+        // Write the changed archives concurrently, a failure stops the others
+        AtomicBoolean failed = new AtomicBoolean(false);
+        BooleanSupplier stopped = () -> failed.get() || cancelled.getAsBoolean();
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("OIS Packaging", parallelism);
+        try {
+            Map<String, Future<Archive>> written = new TreeMap<>();
+            for (Map.Entry<String, SortedMap<String, Source>> archive : archives.entrySet()) {
+                String contentHash = getContentHash(archive.getValue());
+                Archive known = previous != null ? previous.archives.get(archive.getKey()) : null;
+                Path target = packages.resolve(archive.getKey());
+                if (known != null && contentHash.equals(known.contentHash) && Files.isRegularFile(target) && Files.size(target) == known.size) {
+                    written.put(archive.getKey(), CompletableFuture.completedFuture(known));
+                    continue;
+                }
+                written.put(archive.getKey(), executor.submit(() -> {
+                    try {
+                        return writeArchive(target, archive.getValue(), contentHash, stopped);
+                    } catch (Exception e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<Archive>> archive : written.entrySet()) {
+                index.archives.put(archive.getKey(), archive.getValue().get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof CancellationException cancellation) {
+                throw cancellation;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Archives of a previous packaging no longer in the distribution
+        if (previous != null) {
+            for (String archive : previous.archives.keySet()) {
+                if (!index.archives.containsKey(archive)) {
+                    Files.deleteIfExists(packages.resolve(archive));
+                }
+            }
+        }
+        writeAtomically(packages.resolve(INDEX_FILE), gson.toJson(index));
+        Logger.getInstance().debug(String.format("Packaged %d platforms into %d archives, %d files shared", index.platforms.size(), index.archives.size(), sharedEntries.size()));
+    }
+
+    /**
+     * @return the entry of a shared file, its path in the first platform using it unless another shared file has this path
+     */
+    private static String getSharedEntry(Map<String, SortedMap<String, Source>> archives, String path, String sha256) {
+        SortedMap<String, Source> shared = archives.get(SHARED_ARCHIVE);
+        return shared == null || !shared.containsKey(path) ? path : sha256.substring(0, 12) + "/" + path;
+    }
+
+    private static String getContentHash(SortedMap<String, Source> entries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Source> entry : entries.entrySet()) {
+                digest.update((entry.getKey() + "=" + entry.getValue().sha256() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Archive writeArchive(Path target, SortedMap<String, Source> entries, String contentHash, BooleanSupplier cancelled) throws IOException {
+        Path tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tempFile))) {
+                for (Map.Entry<String, Source> entry : entries.entrySet()) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Packaging cancelled");
+                    }
+                    zip.putNextEntry(getParameters(entry.getKey(), entry.getValue().path()));
+                    try (InputStream input = Files.newInputStream(entry.getValue().path())) {
+                        copy(input, zip, buffer);
+                    }
+                    zip.closeEntry();
+                }
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        Archive archive = new Archive();
+        archive.sha256 = Utils.sha256(target);
+        archive.size = Files.size(target);
+        archive.contentHash = contentHash;
+        return archive;
+    }
+
+    private static ZipParameters getParameters(String entry, Path source) throws IOException {
+        ZipParameters parameters = new ZipParameters();
+        parameters.setFileNameInZip(entry);
+        parameters.setLastModifiedFileTime(Files.getLastModifiedTime(source).toMillis());
+        if (isCompressed(entry)) {
+            // Stored entries need their size and checksum upfront
+            parameters.setCompressionMethod(CompressionMethod.STORE);
+            parameters.setEntrySize(Files.size(source));
+            parameters.setEntryCRC(crc32(source));
+        } else {
+            parameters.setCompressionMethod(CompressionMethod.DEFLATE);
+            parameters.setCompressionLevel(CompressionLevel.NORMAL);
+        }
+        return parameters;
+    }
+
+    static boolean isCompressed(String entry) {
+        int extension = entry.lastIndexOf('.');
+        return extension >= 0 && COMPRESSED_EXTENSIONS.contains(entry.substring(extension + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void copy(InputStream input, OutputStream output, byte[] buffer) throws IOException {
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    private static SortedMap<String, String> hashFiles(Path directory, BooleanSupplier cancelled) throws IOException {
+        SortedMap<String, String> files = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        List<Path> regularFiles;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            regularFiles = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : regularFiles) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Packaging cancelled");
+            }
+            files.put(directory.relativize(file).toString().replace('\\', '/'), Utils.sha256(file));
+        }
+        return files;
+    }
+
+    private static Index readIndex(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), Index.class);
+        } catch (IOException | JsonParseException e) {
+            Logger.getInstance().debug("Can't read packaging index " + file, e);
+            return null;
+        }
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.ois.idea.simulation.export;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.intellij.openapi.application.ApplicationManager;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed cache of exported artifacts.
+ * Each export is an entry, keyed by the fingerprint of its inputs, listing its files (relative path -> content hash).
+ * The file contents are stored once as blobs named after their hash, shared by all the entries.
+ * Entries not used recently are evicted when the cache exceeds its size cap, with the blobs no other entry references.
+ */
+public class ExportCache {
+
+    public static final Path CACHE_PATH = Utils.HOME_PATH.resolve("export-cache");
+    private static final String ENTRY_EXTENSION = ".json";
+
+    private static final long DEFAULT_MAX_SIZE_BYTES = 1024L * 1024 * 1024;
+    private static final Gson gson = new Gson();
+    private static final Type ENTRY_TYPE = new TypeToken<TreeMap<String, String>>() {}.getType();
+
+    private final Path entriesPath;
+    private final Path blobsPath;
+    // Stores and restores run concurrently, the garbage collection runs alone
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+
+    private ExportCache() {
+        this(CACHE_PATH);
+    }
+
+    /**
+     * @param cachePath - The directory of the cache entries and blobs.
+     */
+    ExportCache(Path cachePath) {
+        this.entriesPath = cachePath.resolve("entries");
+        this.blobsPath = cachePath.resolve("blobs");
+    }
+
+    public static ExportCache getInstance() { return ApplicationManager.getApplication().getService(ExportCache.class); }
+
+    public long getMaxSizeBytes() { return maxSizeBytes; }
+
+    public void setMaxSizeBytes(long maxSizeBytes) { this.maxSizeBytes = maxSizeBytes; }
+
+    /**
+     * Store the artifacts of an export.
+     *
+     * @param key       - The fingerprint of the export inputs.
+     * @param directory - The directory holding the exported artifacts.
+     */
+    public void store(String key, Path directory) throws IOException {
+        lock.readLock().lock();
+        try {
+            storeEntry(key, directory);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void storeEntry(String key, Path directory) throws IOException {
+        SortedMap<String, String> files = new TreeMap<>();
+        List<Path> artifacts;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            artifacts = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path artifact : artifacts) {
+            String sha256 = Utils.sha256(artifact);
+            Path blob = getBlob(sha256);
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                Path tempFile = Files.createTempFile(blob.getParent(), sha256, ".tmp");
+                try {
+                    Files.copy(artifact, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored concurrently by another export, same content
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            }
+            files.put(directory.relativize(artifact).toString().replace('\\', '/'), sha256);
+        }
+        Files.createDirectories(entriesPath);
+        Path tempFile = Files.createTempFile(entriesPath, key, ".tmp");
+        try {
+            Files.writeString(tempFile, gson.toJson(files), StandardCharsets.UTF_8);
+            Files.move(tempFile, getEntry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return the files of an entry (relative path -> content hash), null if the cache has no such entry
+     */
+    public SortedMap<String, String> getFiles(String key) {
+        Path entry = getEntry(key);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(Files.readString(entry, StandardCharsets.UTF_8), ENTRY_TYPE);
+        } catch (IOException | JsonParseException e) {
+            Logger.getInstance().debug("Can't read export cache entry " + entry, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the cache has a complete entry for the key, that can be restored
+     */
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return isComplete(getFiles(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isComplete(SortedMap<String, String> files) {
+        if (files == null) {
+            return false;
+        }
+        for (String sha256 : files.values()) {
+            if (!Files.isRegularFile(getBlob(sha256))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check, without hashing, if a directory holds the artifacts of an entry: the same files with the same sizes.
+     */
+    public boolean matches(String key, Path directory) {
+        lock.readLock().lock();
+        try {
+            return matchesEntry(key, directory);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matchesEntry(String key, Path directory) {
+        SortedMap<String, String> files = getFiles(key);
+        if (files == null || !Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            if (walk.filter(Files::isRegularFile).count() != files.size()) {
+                return false;
+            }
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                Path artifact = directory.resolve(file.getKey());
+                if (!Files.isRegularFile(artifact) || Files.size(artifact) != Files.size(getBlob(file.getValue()))) {
+                    return false;
+                }
+            }
+            touch(key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replace the content of a directory with the artifacts of an entry.
+     *
+     * @return false if the cache has no complete entry for the key, the directory is not changed then
+     */
+    public boolean restore(String key, Path directory) throws IOException {
+        lock.readLock().lock();
+        try {
+            return restoreEntry(key, directory, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the artifacts of an entry into a directory, next to its other files.
+     *
+     * @return false if the cache has no complete entry for the key, nothing is copied then
+     */
+    public boolean copyTo(String key, Path directory) throws IOException {
+        lock.readLock().lock();
+        try {
+            return restoreEntry(key, directory, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean restoreEntry(String key, Path directory, boolean replace) throws IOException {
+        SortedMap<String, String> files = getFiles(key);
+        if (!isComplete(files)) {
+            return false;
+        }
+        if (replace) {
+            deleteDirectory(directory);
+        }
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path artifact = directory.resolve(file.getKey());
+            Files.createDirectories(artifact.getParent());
+            Files.copy(getBlob(file.getValue()), artifact, StandardCopyOption.REPLACE_EXISTING);
+        }
+        touch(key);
+        return true;
+    }
+
+    /**
+     * Evict the least recently used entries until the cache is within its size cap, and delete the blobs no entry references.
+     */
+    public void collectGarbage() {
+        if (!Files.isDirectory(entriesPath)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<Path> entries;
+            try (Stream<Path> list = Files.list(entriesPath)) {
+                entries = new ArrayList<>(list.filter(entry -> entry.getFileName().toString().endsWith(ENTRY_EXTENSION)).toList());
+            }
+            // Most recently used first
+            entries.sort(Comparator.comparing(ExportCache::getLastModified).reversed());
+            Set<String> referenced = new HashSet<>();
+            long size = 0;
+            for (Path entry : entries) {
+                String key = entry.getFileName().toString().replace(ENTRY_EXTENSION, "");
+                SortedMap<String, String> files = getFiles(key);
+                long entrySize = 0;
+                Set<String> entryBlobs = new HashSet<>();
+                if (files != null) {
+                    for (String sha256 : files.values()) {
+                        if (!referenced.contains(sha256) && entryBlobs.add(sha256)) {
+                            Path blob = getBlob(sha256);
+                            entrySize += Files.exists(blob) ? Files.size(blob) : 0;
+                        }
+                    }
+                }
+                // The most recent entry is always kept
+                if (files == null || (size > 0 && size + entrySize > maxSizeBytes)) {
+                    Logger.getInstance().debug("Evicting export cache entry " + key);
+                    Files.deleteIfExists(entry);
+                    continue;
+                }
+                size += entrySize;
+                referenced.addAll(entryBlobs);
+            }
+            if (!Files.isDirectory(blobsPath)) {
+                return;
+            }
+            List<Path> blobs;
+            try (Stream<Path> walk = Files.walk(blobsPath)) {
+                blobs = walk.filter(Files::isRegularFile).toList();
+            }
+            for (Path blob : blobs) {
+                if (!referenced.contains(blob.getFileName().toString())) {
+                    Files.deleteIfExists(blob);
+                }
+            }
+        } catch (IOException e) {
+            Logger.getInstance().warn("Can't collect export cache garbage", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Path getEntry(String key) {
+        return entriesPath.resolve(key + ENTRY_EXTENSION);
+    }
+
+    private Path getBlob(String sha256) {
+        return blobsPath.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private void touch(String key) {
+        try {
+            Files.setLastModifiedTime(getEntry(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Logger.getInstance().debug("Can't touch export cache entry " + key, e);
+        }
+    }
+
+    private static FileTime getLastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Delete a directory and its content, if it exists.
+     */
+    public static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            // Children before their parents
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.ois.idea.simulation.export;
+
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprints of the inputs of the export of each platform.
+ * The inputs of all the platforms are the build files, the sources and resources ('src/main') and the 'simulation' directory.
+ * A platform also depends on its own directory (e.g. 'html'), if the project has one, and on the export parameters (debug mode, versions).
+ * <p>
+ * File contents are hashed, so touching a file without changing it does not invalidate the export.
+ * Hashes are reused while the size and modification time of a file are unchanged.
+ */
+public class ExportInputs {
+
+    private static final List<String> BUILD_FILES = List.of("build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts", "gradle.properties");
+    private static final List<String> SHARED_DIRECTORIES = List.of("src/main", "simulation");
+
+    private final Map<Path, FileHash> hashes = new ConcurrentHashMap<>();
+
+    private static class FileHash {
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+
+        FileHash(long size, long lastModified, String sha256) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * @param projectDir - The project directory.
+     * @param platform   - The exported platform.
+     * @param parameters - The export parameters that change the exported artifacts.
+     * @return the hex encoded fingerprint of the inputs of the platform export
+     */
+    public String fingerprint(Path projectDir, RunnerConfiguration.RunnerType platform, Map<String, String> parameters) throws IOException {
+        List<Path> roots = new ArrayList<>();
+        BUILD_FILES.forEach(file -> roots.add(projectDir.resolve(file)));
+        SHARED_DIRECTORIES.forEach(directory -> roots.add(projectDir.resolve(directory)));
+        roots.add(getPlatformDirectory(projectDir, platform));
+
+        MessageDigest digest = newDigest();
+        update(digest, "platform=" + platform);
+        new TreeMap<>(parameters).forEach((key, value) -> update(digest, key + "=" + value));
+        for (Path root : roots) {
+            for (Map.Entry<String, String> file : hashFiles(projectDir, root).entrySet()) {
+                update(digest, file.getKey() + "=" + file.getValue());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the directory of the platform specific sources, it may not exist
+     */
+    public static Path getPlatformDirectory(Path projectDir, RunnerConfiguration.RunnerType platform) {
+        return projectDir.resolve(platform.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return relative path -> content hash of the files under the root (or the root itself if it is a file), in path order
+     */
+    private SortedMap<String, String> hashFiles(Path projectDir, Path root) throws IOException {
+        SortedMap<String, String> files = new TreeMap<>();
+        if (!Files.exists(root)) {
+            return files;
+        }
+        List<Path> regularFiles;
+        try (Stream<Path> walk = Files.walk(root)) {
+            regularFiles = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : regularFiles) {
+            // Separators are normalized, the fingerprint of a project is the same on all systems
+            files.put(projectDir.relativize(file).toString().replace('\\', '/'), hash(file));
+        }
+        return files;
+    }
+
+    /**
+     * @return the hex encoded content hash of a file, computed again only if its size or modification time changed
+     */
+    public String hash(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        FileHash known = hashes.get(file);
+        if (known != null && known.size == attributes.size() && known.lastModified == lastModified) {
+            return known.sha256;
+        }
+        String sha256 = Utils.sha256(file);
+        hashes.put(file, new FileHash(attributes.size(), lastModified, sha256));
+        return sha256;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+}
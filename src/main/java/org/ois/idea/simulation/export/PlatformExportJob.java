@@ -0,0 +1,146 @@
+package org.ois.idea.simulation.export;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.log.Logger;
+import org.ois.idea.simulation.assets.AssetPipeline;
+import org.ois.idea.utils.Utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of a single platform, independent of the other platforms: it has its own progress, can be cancelled alone,
+ * and its failure does not affect the others.
+ * The distribution of the platform is kept if up to date, and restored from the {@link ExportCache} otherwise.
+ * A platform the cache has no entry for was exported by the Gradle export build of all the platforms that ran before the jobs:
+ * its raw resources are replaced by the processed assets (see {@link AssetPipeline#install}) and the result is cached.
+ * Restoring, installing and caching hold one of the export slots, the platform checks run concurrently.
+ */
+public class PlatformExportJob {
+
+    public enum Status {
+        Pending, UpToDate, Restored, Exported, Failed, Cancelled
+    }
+
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final Path distribution;
+    private final RunnerConfiguration.RunnerType platform;
+    private final String key;
+    private final AssetPipeline assets;
+    private final Semaphore exportSlots;
+    private final boolean exported;
+
+    private volatile boolean cancelled;
+    private volatile Status status = Status.Pending;
+    private volatile String failure;
+    private volatile long durationMillis;
+
+    /**
+     * @param distribution     - The directory of the platform artifacts.
+     * @param key              - The fingerprint of the platform export inputs.
+     * @param assets           - The pipeline of the processed assets, built for the platform.
+     * @param exportSlots      - Bounds the jobs writing their distribution at the same time.
+     * @param exported         - True if the Gradle export build ran and succeeded, the distribution holds the artifacts it exported.
+     */
+    public PlatformExportJob(Path distribution, RunnerConfiguration.RunnerType platform, String key, AssetPipeline assets, Semaphore exportSlots, boolean exported) {
+        this.distribution = distribution;
+        this.platform = platform;
+        this.key = key;
+        this.assets = assets;
+        this.exportSlots = exportSlots;
+        this.exported = exported;
+    }
+
+    /**
+     * Run the job, the outcome is the job {@link #getStatus()}.
+     * Only the cancellation of the progress indicator is rethrown, as the platform expects.
+     */
+    public void run(Utils.OISProgressIndicator indicator) {
+        long start = System.nanoTime();
+        // The progress indicator of the job cancels it too
+        ScheduledFuture<?> cancelPoller = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            if (indicator.isCanceled()) {
+                cancel();
+            }
+        }, CANCEL_POLL_MILLIS, CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            status = runExport(indicator);
+        } catch (ProcessCanceledException e) {
+            status = Status.Cancelled;
+            throw e;
+        } catch (InterruptedException e) {
+            status = Status.Cancelled;
+        } catch (Exception e) {
+            status = cancelled ? Status.Cancelled : Status.Failed;
+            failure = StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName());
+        } finally {
+            cancelPoller.cancel(false);
+            durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    private Status runExport(Utils.OISProgressIndicator indicator) throws Exception {
+        ExportCache cache = ExportCache.getInstance();
+        if (cache.matches(key, distribution)) {
+            return Status.UpToDate;
+        }
+        indicator.state(String.format("Waiting for an export slot for '%s'", platform));
+        while (!exportSlots.tryAcquire(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (cancelled) {
+                return Status.Cancelled;
+            }
+        }
+        try {
+            if (cancelled) {
+                return Status.Cancelled;
+            }
+            indicator.state(String.format("Restoring '%s' export from cache", platform));
+            if (cache.restore(key, distribution)) {
+                return Status.Restored;
+            }
+            if (!exported) {
+                throw new IllegalStateException("The Gradle export failed");
+            }
+            if (!Files.isDirectory(distribution)) {
+                throw new IllegalStateException(String.format("The export produced no artifacts at %s", distribution));
+            }
+            indicator.state(String.format("Installing '%s' assets", platform));
+            assets.install(platform, distribution);
+            indicator.state(String.format("Caching '%s' export", platform));
+            cache.store(key, distribution);
+            return Status.Exported;
+        } finally {
+            exportSlots.release();
+        }
+    }
+
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        Logger.getInstance().debug(String.format("Export of '%s' cancelled", platform));
+    }
+
+    public RunnerConfiguration.RunnerType getPlatform() { return platform; }
+
+    public String getKey() { return key; }
+
+    public Path getDistribution() { return distribution; }
+
+    public Status getStatus() { return status; }
+
+    /**
+     * @return the reason the job failed, null if it did not fail
+     */
+    public String getFailure() { return failure; }
+
+    public long getDurationMillis() { return durationMillis; }
+}
@@ -0,0 +1,79 @@
+package org.ois.idea.simulation.profiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Call tree of a collapsed stacks file, each node holding the samples of the frames above it.
+ */
+public class FlameGraph {
+
+    public static class Node {
+        private final String name;
+        private final Node parent;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private long samples;
+
+        private Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public String getName() { return name; }
+
+        public Node getParent() { return parent; }
+
+        public long getSamples() { return samples; }
+
+        /**
+         * @return the children, the most sampled first
+         */
+        public List<Node> getChildren() {
+            List<Node> sorted = new ArrayList<>(children.values());
+            sorted.sort(Comparator.comparingLong(Node::getSamples).reversed());
+            return sorted;
+        }
+    }
+
+    private final Node root;
+
+    private FlameGraph(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param collapsedStacks - A file with 'frame;frame;frame count' lines, root frame first.
+     */
+    public static FlameGraph load(Path collapsedStacks) throws IOException {
+        Node root = new Node("all", null);
+        try (BufferedReader reader = Files.newBufferedReader(collapsedStacks, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                long samples;
+                try {
+                    samples = Long.parseLong(line.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Node node = root;
+                node.samples += samples;
+                for (String frame : line.substring(0, separator).split(";")) {
+                    Node parent = node;
+                    node = parent.children.computeIfAbsent(frame, name -> new Node(name, parent));
+                    node.samples += samples;
+                }
+            }
+        }
+        return new FlameGraph(root);
+    }
+
+    public Node getRoot() { return root; }
+}
@@ -0,0 +1,87 @@
+package org.ois.idea.simulation.profiler;
+
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.utils.ProjectUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Opt-in sampling profiler of the simulations of a project.
+ * When enabled, debug launches sample the simulation thread (see {@link StackSampler}) into a profile directory under 'build/ois/profiles'.
+ */
+public class SimulationProfiler {
+
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+
+    private static final DateTimeFormatter PROFILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Project ideaProject;
+    private volatile boolean enabled;
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+    private volatile Path latestProfile;
+
+    private SimulationProfiler(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+    }
+
+    public static SimulationProfiler getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(SimulationProfiler.class);
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getSampleRate() { return sampleRate; }
+
+    /**
+     * @param sampleRate - Stack samples per second of the simulation thread.
+     */
+    public void setSampleRate(int sampleRate) { this.sampleRate = Math.max(1, sampleRate); }
+
+    /**
+     * Create the directory of a new profile, it becomes the latest profile.
+     *
+     * @param name - The name of the profiled simulation run.
+     * @return the runner system properties to profile into the directory
+     */
+    public Map<String, String> startProfile(String name) throws IOException {
+        Path profile = getProfilesDirectory().resolve(String.format("%s-%s", name, LocalDateTime.now().format(PROFILE_NAME_FORMAT)));
+        Files.createDirectories(profile);
+        latestProfile = profile;
+        return Map.of(
+                StackSampler.PROFILE_DIR_PROPERTY, profile.toAbsolutePath().toString(),
+                StackSampler.SAMPLE_RATE_PROPERTY, String.valueOf(sampleRate)
+        );
+    }
+
+    public Path getProfilesDirectory() {
+        return ProjectUtils.getProjectBasePath(ideaProject).resolve("build").resolve("ois").resolve("profiles");
+    }
+
+    /**
+     * @return the directory of the latest profile of this IDE session, null if no simulation was profiled
+     */
+    public Path getLatestProfile() { return latestProfile; }
+
+    /**
+     * @param profile - A profile directory.
+     * @return the collapsed stacks files of the profile, one per state
+     */
+    public static List<Path> getCollapsedStacks(Path profile) throws IOException {
+        if (profile == null || !Files.isDirectory(profile)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(profile)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(StackSampler.COLLAPSED_EXTENSION)).sorted().toList();
+        }
+    }
+}
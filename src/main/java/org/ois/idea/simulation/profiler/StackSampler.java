@@ -0,0 +1,140 @@
+package org.ois.idea.simulation.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runner side sampling profiler of the simulation thread.
+ * Samples the stack of the thread at a fixed rate, attributes each sample to the IState whose lifecycle method
+ * ({@link StateFrameLocator#STATE_METHODS}) is on the stack, and writes the samples of each state as a collapsed stacks file
+ * ('frame;frame;frame count' lines, root first) named after the state class, in the profile directory.
+ * The files are rewritten periodically and when the runner exits.
+ * <p>
+ * Runs in the runner JVM: only the JDK can be used here.
+ */
+public final class StackSampler {
+
+    /** System property of the runner holding the directory to write the profile into */
+    public static final String PROFILE_DIR_PROPERTY = "org.ois.runner.profileDir";
+    /** System property of the runner holding the number of samples per second */
+    public static final String SAMPLE_RATE_PROPERTY = "org.ois.runner.profileRate";
+    /** Extension of the collapsed stacks files */
+    public static final String COLLAPSED_EXTENSION = ".collapsed";
+    /** File name (without extension) of the samples outside of any state */
+    public static final String NO_STATE = "no-state";
+
+    private static final int DEFAULT_SAMPLE_RATE = 100;
+    private static final long WRITE_INTERVAL_MILLIS = 2000;
+
+    private final Thread target;
+    private final Path profileDirectory;
+    private final long intervalNanos;
+    // State class -> collapsed stack -> samples
+    private final Map<String, Map<String, Integer>> samples = new HashMap<>();
+    private final StateFrameLocator stateFrames;
+
+    private StackSampler(Thread target, Path profileDirectory, int sampleRate) {
+        this.target = target;
+        this.stateFrames = new StateFrameLocator(target.getContextClassLoader());
+        this.profileDirectory = profileDirectory;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / sampleRate;
+    }
+
+    /**
+     * Start sampling a thread, if the runner was started with a profile directory.
+     *
+     * @param target - The simulation thread.
+     */
+    public static void startIfConfigured(Thread target) {
+        String directory = System.getProperty(PROFILE_DIR_PROPERTY);
+        if (directory == null || directory.isBlank()) {
+            return;
+        }
+        int sampleRate = DEFAULT_SAMPLE_RATE;
+        try {
+            sampleRate = Math.max(1, Integer.parseInt(System.getProperty(SAMPLE_RATE_PROPERTY, String.valueOf(DEFAULT_SAMPLE_RATE)).trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("[ois-profiler] Invalid sample rate, using " + DEFAULT_SAMPLE_RATE);
+        }
+        StackSampler sampler = new StackSampler(target, Paths.get(directory), sampleRate);
+        Thread thread = new Thread(sampler::sampleLoop, "OIS-Profiler");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(sampler::write, "OIS-Profiler-Shutdown"));
+        System.out.printf("[ois-profiler] Sampling the simulation thread %d times per second into %s%n", sampleRate, directory);
+    }
+
+    private void sampleLoop() {
+        long nextWrite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_INTERVAL_MILLIS);
+        long nextSample = System.nanoTime();
+        while (target.isAlive()) {
+            // Sample on a fixed schedule, the time taken by each sample does not lower the rate
+            nextSample += intervalNanos;
+            long delay = nextSample - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            } else {
+                // Late, skip the missed samples instead of sampling in a burst
+                nextSample = System.nanoTime();
+            }
+            sample(target.getStackTrace());
+            if (System.nanoTime() - nextWrite > 0) {
+                write();
+                nextWrite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_INTERVAL_MILLIS);
+            }
+        }
+        write();
+    }
+
+    private void sample(StackTraceElement[] stack) {
+        if (stack.length == 0) {
+            return;
+        }
+        StackTraceElement stateFrame = stateFrames.locate(stack);
+        String state = stateFrame != null ? stateFrame.getClassName() : NO_STATE;
+        StringBuilder collapsed = new StringBuilder();
+        for (int i = stack.length - 1; i >= 0; i--) {
+            if (collapsed.length() > 0) {
+                collapsed.append(';');
+            }
+            collapsed.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+        synchronized (samples) {
+            samples.computeIfAbsent(state, key -> new HashMap<>()).merge(collapsed.toString(), 1, Integer::sum);
+        }
+    }
+
+    private synchronized void write() {
+        Map<String, Map<String, Integer>> copy = new HashMap<>();
+        synchronized (samples) {
+            samples.forEach((state, stacks) -> copy.put(state, new HashMap<>(stacks)));
+        }
+        try {
+            Files.createDirectories(profileDirectory);
+            for (Map.Entry<String, Map<String, Integer>> state : copy.entrySet()) {
+                Path file = profileDirectory.resolve(state.getKey() + COLLAPSED_EXTENSION);
+                Path tempFile = profileDirectory.resolve(state.getKey() + COLLAPSED_EXTENSION + ".tmp");
+                try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Integer> stack : state.getValue().entrySet()) {
+                        writer.write(stack.getKey());
+                        writer.write(' ');
+                        writer.write(String.valueOf(stack.getValue()));
+                        writer.write('\n');
+                    }
+                }
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            System.err.println("[ois-profiler] Can't write the profile: " + e.getMessage());
+        }
+    }
+}
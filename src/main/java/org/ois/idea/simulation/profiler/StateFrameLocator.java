@@ -0,0 +1,61 @@
+package org.ois.idea.simulation.profiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locates, in a stack of the simulation thread, the frame of the IState lifecycle method ({@link #STATE_METHODS}) being executed.
+ * The classes are checked once, the results are cached: an instance is used by a single sampling thread.
+ * <p>
+ * Runs in the runner JVM: only the JDK can be used here.
+ */
+public final class StateFrameLocator {
+
+    public static final String STATE_INTERFACE = "org.ois.core.state.IState";
+    public static final Set<String> STATE_METHODS = Set.of("update", "render", "resize");
+
+    private final ClassLoader loader;
+    private final Map<String, Boolean> stateClasses = new HashMap<>();
+
+    /**
+     * @param loader - The class loader of the simulation classes.
+     */
+    public StateFrameLocator(ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @param stack - A stack, top frame first.
+     * @return the innermost frame of a state lifecycle method, null if the thread is not running a state
+     */
+    public StackTraceElement locate(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (STATE_METHODS.contains(frame.getMethodName()) && isState(frame.getClassName())) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private boolean isState(String className) {
+        return stateClasses.computeIfAbsent(className, name -> {
+            try {
+                return implementsState(Class.forName(name, false, loader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    private static boolean implementsState(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Class<?> implemented : current.getInterfaces()) {
+                if (implemented.getName().equals(STATE_INTERFACE) || implementsState(implemented)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
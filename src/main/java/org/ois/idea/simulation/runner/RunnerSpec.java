@@ -0,0 +1,110 @@
+package org.ois.idea.simulation.runner;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * How the desktop simulation runner of a project is launched, as configured by the 'runDesktop' Gradle task.
+ * Resolved once with a Gradle init script and reused until one of the project build files changes.
+ */
+public class RunnerSpec {
+
+    private static final String INIT_SCRIPT_TEMPLATE = "/simulation/runner-spec.gradle.template";
+    private static final String SPEC_TASK = "oisRunnerSpec";
+    private static final List<String> BUILD_FILES = List.of("build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts", "gradle.properties");
+
+    private final String mainClass;
+    private final List<String> classpath;
+    private final List<String> jvmArgs;
+    private final Path workingDirectory;
+    private final String javaExecutable;
+    private final String buildFilesFingerprint;
+
+    private RunnerSpec(Properties spec, String buildFilesFingerprint) {
+        this.mainClass = spec.getProperty("mainClass", "");
+        this.classpath = split(spec.getProperty("classpath", ""), File.pathSeparator);
+        this.jvmArgs = split(spec.getProperty("jvmArgs", ""), "\n");
+        this.workingDirectory = Paths.get(spec.getProperty("workingDir", "."));
+        this.javaExecutable = StringUtils.defaultIfBlank(spec.getProperty("javaExecutable"),
+                Paths.get(System.getProperty("java.home"), "bin", SystemUtils.IS_OS_WINDOWS ? "java.exe" : "java").toString());
+        this.buildFilesFingerprint = buildFilesFingerprint;
+    }
+
+    /**
+     * Run the spec Gradle task of a project and load its output.
+     *
+     * @param projectDir - The Gradle project directory.
+     * @return the runner spec of the project, or null if the project has no 'runDesktop' Java task
+     */
+    public static RunnerSpec resolve(Path projectDir) throws IOException, InterruptedException {
+        String fingerprint = getBuildFilesFingerprint(projectDir);
+        Path specFile = projectDir.resolve("build").resolve("ois").resolve("runner-spec.properties");
+        Path initScript = Files.createTempFile("ois-runner-spec", ".gradle");
+        try {
+            Files.deleteIfExists(specFile);
+            // Forward slashes are valid on all platforms, and are not escapes in the Groovy string
+            Utils.generateFromTemplate(INIT_SCRIPT_TEMPLATE, initScript, Map.of("SPEC_FILE", specFile.toAbsolutePath().toString().replace('\\', '/')));
+            ProjectUtils.runGradleTasks(projectDir, new HashMap<>(), false, "--init-script", initScript.toAbsolutePath().toString(), SPEC_TASK);
+        } finally {
+            Files.deleteIfExists(initScript);
+        }
+        if (!Files.isRegularFile(specFile)) {
+            Logger.getInstance().debug("No 'runDesktop' Java task found at " + projectDir);
+            return null;
+        }
+        Properties spec = new Properties();
+        try (Reader reader = Files.newBufferedReader(specFile, StandardCharsets.UTF_8)) {
+            spec.load(reader);
+        }
+        RunnerSpec runnerSpec = new RunnerSpec(spec, fingerprint);
+        return runnerSpec.mainClass.isBlank() ? null : runnerSpec;
+    }
+
+    /**
+     * @return true if the build files of the project changed since the spec was resolved
+     */
+    public boolean isStale(Path projectDir) {
+        return !buildFilesFingerprint.equals(getBuildFilesFingerprint(projectDir));
+    }
+
+    private static String getBuildFilesFingerprint(Path projectDir) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String buildFile : BUILD_FILES) {
+            File file = projectDir.resolve(buildFile).toFile();
+            fingerprint.append(buildFile).append(':').append(file.lastModified()).append(':').append(file.length()).append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    private static List<String> split(String value, String separator) {
+        List<String> values = new ArrayList<>();
+        for (String token : StringUtils.splitByWholeSeparator(value, separator)) {
+            if (!token.isBlank()) {
+                values.add(token);
+            }
+        }
+        return values;
+    }
+
+    public String getMainClass() { return mainClass; }
+
+    public List<String> getClasspath() { return Collections.unmodifiableList(classpath); }
+
+    public List<String> getJvmArgs() { return Collections.unmodifiableList(jvmArgs); }
+
+    public Path getWorkingDirectory() { return workingDirectory; }
+
+    public String getJavaExecutable() { return javaExecutable; }
+}
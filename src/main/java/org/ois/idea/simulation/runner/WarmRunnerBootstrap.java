@@ -0,0 +1,103 @@
+package org.ois.idea.simulation.runner;
+
+import org.ois.idea.simulation.profiler.StackSampler;
+import org.ois.idea.simulation.telemetry.TelemetryRecorder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Main class of a warm simulation runner JVM.
+ * Started ahead of a launch with the runner classpath, it loads the OIS core classes and then waits on its standard input for the launch.
+ * The launch is given line by line: '{@value #MAIN}' the simulation main class, '{@value #PROPERTY}' system properties (key=value),
+ * '{@value #ARGUMENT}' main arguments, and '{@value #RUN}' to start the simulation.
+ * The project build output is on the classpath as directories and none of its classes are loaded before the launch, so the current build is used.
+ * <p>
+ * Runs outside the IDE: only the JDK (and the other runner side classes of the plugin) can be used here.
+ */
+public final class WarmRunnerBootstrap {
+
+    public static final String READY = "[ois-warm-runner] ready";
+    public static final String STARTED = "[ois-warm-runner] started";
+
+    static final String MAIN = "main=";
+    static final String PROPERTY = "prop=";
+    static final String ARGUMENT = "arg=";
+    static final String RUN = "run";
+
+    private static final String PRELOAD_PACKAGE = "org/ois/core/";
+
+    private WarmRunnerBootstrap() {}
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        int preloaded = preload(ClassLoader.getSystemClassLoader());
+        System.out.printf("%s, %d classes loaded in %dms%n", READY, preloaded, (System.nanoTime() - start) / 1_000_000);
+
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String mainClass = null;
+        List<String> mainArgs = new ArrayList<>();
+        String line;
+        while ((line = input.readLine()) != null && !line.equals(RUN)) {
+            if (line.startsWith(MAIN)) {
+                mainClass = line.substring(MAIN.length());
+            } else if (line.startsWith(PROPERTY)) {
+                String property = line.substring(PROPERTY.length());
+                int separator = property.indexOf('=');
+                System.setProperty(property.substring(0, separator), property.substring(separator + 1));
+            } else if (line.startsWith(ARGUMENT)) {
+                mainArgs.add(line.substring(ARGUMENT.length()));
+            }
+        }
+        if (line == null || mainClass == null) {
+            // Released without a launch
+            return;
+        }
+        // Connects to the plugin if the launch holds a telemetry port
+        TelemetryRecorder.startIfConfigured();
+        // Samples this thread, running the simulation, if the launch holds a profile directory
+        StackSampler.startIfConfigured(Thread.currentThread());
+        Method main = Class.forName(mainClass).getMethod("main", String[].class);
+        System.out.println(STARTED);
+        main.invoke(null, (Object) mainArgs.toArray(new String[0]));
+    }
+
+    /**
+     * Load, without initializing, the OIS core classes of the jars in the classpath.
+     */
+    private static int preload(ClassLoader loader) {
+        int count = 0;
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!entry.endsWith(".jar")) {
+                continue;
+            }
+            try (JarFile jar = new JarFile(entry)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (!name.startsWith(PRELOAD_PACKAGE) || !name.endsWith(".class")) {
+                        continue;
+                    }
+                    try {
+                        Class.forName(name.substring(0, name.length() - ".class".length()).replace('/', '.'), false, loader);
+                        count++;
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        // Loaded on demand at runtime, if at all
+                    }
+                }
+            } catch (IOException e) {
+                // Not a readable jar, nothing to preload
+            }
+        }
+        return count;
+    }
+}
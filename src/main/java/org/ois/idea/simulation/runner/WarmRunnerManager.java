@@ -0,0 +1,280 @@
+package org.ois.idea.simulation.runner;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.*;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.ProjectUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Keeps one paused simulation runner JVM per project, started with the runner classpath and the OIS core classes already loaded.
+ * A launch hands the simulation to the waiting JVM instead of paying Gradle configuration, classpath resolution and JVM startup.
+ * The next runner is started once the launched simulation ends, and is destroyed when the project is closed.
+ * <p>
+ * The runner spec is resolved with a Gradle build, outside the manager lock: the lock is only held to hand over the waiting runner.
+ * <p>
+ * A runner may be started with a classes overlay: a directory put first on its classpath, the classes written there before the launch
+ * replace the ones of the build output (used by the DevMode hot reload).
+ */
+public class WarmRunnerManager implements Disposable {
+
+    private static final long READY_TIMEOUT_SECONDS = 60;
+
+    private final Project ideaProject;
+    // One spec resolution at a time, the others wait for its result
+    private final Object specResolution = new Object();
+
+    // Guarded by the manager lock
+    private RunnerSpec spec;
+    private WarmRunner standby;
+    private volatile boolean disposed;
+
+    private WarmRunnerManager(@NotNull Project ideaProject) {
+        this.ideaProject = ideaProject;
+    }
+
+    public static WarmRunnerManager getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(WarmRunnerManager.class);
+    }
+
+    /**
+     * Start a runner for the next launch in the background, if there isn't one waiting already.
+     */
+    public void prepare() {
+        prepare(null);
+    }
+
+    /**
+     * Start a runner for the next launch in the background, if there isn't one waiting already with the same classes overlay.
+     *
+     * @param classesOverlay - Directory of classes loaded before the build output, null for none.
+     */
+    public void prepare(Path classesOverlay) {
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            try {
+                getStandby(classesOverlay);
+            } catch (Exception e) {
+                Logger.getInstance().debug("Can't prepare a warm simulation runner", e);
+            }
+        });
+    }
+
+    /**
+     * Hand a launch to the waiting runner, starting one if needed.
+     *
+     * @param systemProperties - System properties of the simulation.
+     * @param args             - Arguments of the simulation main class.
+     * @param attach           - Called with the runner process once it is ready, before the launch. Output listeners and consoles should be attached here.
+     * @return the process handler of the launched simulation, or null if the project has no runner that can be started warm
+     */
+    public ProcessHandler launch(Map<String, String> systemProperties, List<String> args, Consumer<ProcessHandler> attach) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        return launch(null, systemProperties, args, attach);
+    }
+
+    /**
+     * Hand a launch to a runner with a classes overlay. The next runner with the same overlay is started right away,
+     * the simulation is expected to be relaunched soon.
+     *
+     * @param classesOverlay - Directory of classes loaded before the build output, null for none.
+     */
+    public ProcessHandler launch(Path classesOverlay, Map<String, String> systemProperties, List<String> args, Consumer<ProcessHandler> attach) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        WarmRunner runner;
+        do {
+            WarmRunner candidate = getStandby(classesOverlay);
+            if (candidate == null) {
+                return null;
+            }
+            // Another launch may have taken the candidate meanwhile
+            runner = takeStandby(candidate);
+        } while (runner == null);
+        runner.awaitReady();
+        if (classesOverlay == null) {
+            runner.handler.addProcessListener(new ProcessAdapter() {
+                @Override
+                public void processTerminated(@NotNull ProcessEvent event) {
+                    if (!disposed) {
+                        prepare();
+                    }
+                }
+            });
+        } else {
+            prepare(classesOverlay);
+        }
+        attach.accept(runner.handler);
+        runner.launch(runner.spec.getMainClass(), systemProperties, args);
+        return runner.handler;
+    }
+
+    /**
+     * @return the runner waiting for the next launch with the current spec and the classes overlay, started if needed.
+     * null if the project has no runner that can be started warm
+     */
+    private WarmRunner getStandby(Path classesOverlay) throws IOException, InterruptedException, ExecutionException {
+        if (disposed) {
+            return null;
+        }
+        RunnerSpec runnerSpec = resolveSpec();
+        if (runnerSpec == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (isStandby(standby, runnerSpec, classesOverlay)) {
+                return standby;
+            }
+        }
+        WarmRunner started = WarmRunner.start(runnerSpec, classesOverlay);
+        WarmRunner replaced;
+        synchronized (this) {
+            if (disposed || isStandby(standby, runnerSpec, classesOverlay)) {
+                // Disposed, or another caller started the same runner meanwhile
+                started.handler.destroyProcess();
+                return disposed ? null : standby;
+            }
+            replaced = standby;
+            standby = started;
+        }
+        if (replaced != null) {
+            replaced.handler.destroyProcess();
+        }
+        return started;
+    }
+
+    private static boolean isStandby(WarmRunner runner, RunnerSpec runnerSpec, Path classesOverlay) {
+        return runner != null && runner.spec == runnerSpec && Objects.equals(runner.classesOverlay, classesOverlay) && !runner.handler.isProcessTerminated();
+    }
+
+    private synchronized WarmRunner takeStandby(WarmRunner candidate) {
+        if (standby != candidate) {
+            return null;
+        }
+        standby = null;
+        return candidate;
+    }
+
+    /**
+     * @return the runner spec of the project, resolved again if the build files changed. Runs a Gradle build, never call it holding the manager lock.
+     */
+    private RunnerSpec resolveSpec() throws IOException, InterruptedException {
+        Path projectDir = ProjectUtils.getProjectBasePath(ideaProject);
+        synchronized (specResolution) {
+            RunnerSpec current;
+            synchronized (this) {
+                current = spec;
+            }
+            if (current != null && !current.isStale(projectDir)) {
+                return current;
+            }
+            RunnerSpec resolved = RunnerSpec.resolve(projectDir);
+            synchronized (this) {
+                spec = resolved;
+            }
+            return resolved;
+        }
+    }
+
+    private void releaseStandby() {
+        WarmRunner released;
+        synchronized (this) {
+            released = standby;
+            standby = null;
+        }
+        if (released != null) {
+            released.handler.destroyProcess();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        releaseStandby();
+    }
+
+    /**
+     * A runner JVM running {@link WarmRunnerBootstrap}.
+     */
+    private static class WarmRunner {
+        private final OSProcessHandler handler;
+        private final RunnerSpec spec;
+        private final Path classesOverlay;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+        private WarmRunner(OSProcessHandler handler, RunnerSpec spec, Path classesOverlay) {
+            this.handler = handler;
+            this.spec = spec;
+            this.classesOverlay = classesOverlay;
+        }
+
+        static WarmRunner start(RunnerSpec spec, Path classesOverlay) throws ExecutionException {
+            List<String> classpath = new ArrayList<>();
+            if (classesOverlay != null) {
+                classpath.add(classesOverlay.toAbsolutePath().toString());
+            }
+            classpath.addAll(spec.getClasspath());
+            classpath.add(PathManager.getJarPathForClass(WarmRunnerBootstrap.class));
+            GeneralCommandLine commandLine = new GeneralCommandLine(spec.getJavaExecutable())
+                    .withParameters(spec.getJvmArgs())
+                    .withParameters("-cp", String.join(File.pathSeparator, classpath), WarmRunnerBootstrap.class.getName())
+                    .withWorkDirectory(spec.getWorkingDirectory().toFile())
+                    .withCharset(StandardCharsets.UTF_8);
+            WarmRunner runner = new WarmRunner(new OSProcessHandler(commandLine), spec, classesOverlay);
+            runner.handler.addProcessListener(new ProcessAdapter() {
+                @Override
+                public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+                    if (!runner.ready.isDone() && event.getText().startsWith(WarmRunnerBootstrap.READY)) {
+                        Logger.getInstance().debug(event.getText().trim());
+                        runner.ready.complete(null);
+                    }
+                }
+
+                @Override
+                public void processTerminated(@NotNull ProcessEvent event) {
+                    runner.ready.completeExceptionally(new IOException("Warm runner exited with code " + event.getExitCode()));
+                }
+            });
+            runner.handler.startNotify();
+            Logger.getInstance().debug("Started a warm simulation runner: " + commandLine.getCommandLineString());
+            return runner;
+        }
+
+        void awaitReady() throws InterruptedException, ExecutionException, TimeoutException {
+            try {
+                ready.get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new ExecutionException(e.getCause());
+            } catch (TimeoutException e) {
+                handler.destroyProcess();
+                throw e;
+            }
+        }
+
+        void launch(String mainClass, Map<String, String> systemProperties, List<String> args) throws IOException {
+            StringBuilder launch = new StringBuilder(WarmRunnerBootstrap.MAIN).append(mainClass).append('\n');
+            systemProperties.forEach((key, value) -> launch.append(WarmRunnerBootstrap.PROPERTY).append(key).append('=').append(value).append('\n'));
+            args.forEach(arg -> launch.append(WarmRunnerBootstrap.ARGUMENT).append(arg).append('\n'));
+            launch.append(WarmRunnerBootstrap.RUN).append('\n');
+            OutputStream input = handler.getProcessInput();
+            input.write(launch.toString().getBytes(StandardCharsets.UTF_8));
+            input.flush();
+        }
+    }
+}
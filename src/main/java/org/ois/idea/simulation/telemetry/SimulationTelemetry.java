@@ -0,0 +1,52 @@
+package org.ois.idea.simulation.telemetry;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Telemetry channels of the simulations of a project.
+ * The views show the telemetry of the latest simulation that was started.
+ */
+public class SimulationTelemetry implements Disposable {
+
+    private final Set<TelemetryServer> channels = ConcurrentHashMap.newKeySet();
+    private volatile TelemetryModel latest;
+
+    private SimulationTelemetry(@NotNull Project ideaProject) {}
+
+    public static SimulationTelemetry getInstance(@NotNull Project ideaProject) {
+        return ideaProject.getService(SimulationTelemetry.class);
+    }
+
+    /**
+     * Open a telemetry channel for a simulation run. The runner should be started with the channel port,
+     * see {@link TelemetryProtocol#PORT_PROPERTY}.
+     *
+     * @param name - The name of the simulation run.
+     * @return the channel, close it when the run ends
+     */
+    public TelemetryServer openChannel(String name) throws IOException {
+        TelemetryModel model = new TelemetryModel(name);
+        TelemetryServer channel = TelemetryServer.open(model, channels::remove);
+        channels.add(channel);
+        latest = model;
+        return channel;
+    }
+
+    /**
+     * @return the telemetry of the latest simulation run, null if none was started
+     */
+    public TelemetryModel getLatest() { return latest; }
+
+    @Override
+    public void dispose() {
+        for (TelemetryServer channel : channels.toArray(new TelemetryServer[0])) {
+            channel.close();
+        }
+    }
+}
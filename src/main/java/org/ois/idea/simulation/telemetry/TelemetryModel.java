@@ -0,0 +1,252 @@
+package org.ois.idea.simulation.telemetry;
+
+import java.util.*;
+
+/**
+ * Telemetry received from a running simulation, holding a bounded history of each series.
+ * Updated by the channel reader and read by the views through {@link #snapshot()}.
+ */
+public class TelemetryModel {
+
+    public static final int HISTORY = 600;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String name;
+    private final Map<Integer, StateTimings> states = new LinkedHashMap<>();
+    private final LongHistory frameTimes = new LongHistory(HISTORY);
+    private final LongHistory heapUsed = new LongHistory(HISTORY);
+    private long heapMax;
+    private long totalGcPauseMillis;
+    private long lastGcPauseMillis;
+    private long droppedFrames;
+    // The state that ran the most in the latest window
+    private int currentStateId = TelemetryProtocol.NO_STATE;
+    private long currentWindow;
+    private long currentNanos;
+    private volatile boolean connected;
+
+    public TelemetryModel(String name) {
+        this.name = name;
+    }
+
+    synchronized void declareState(int stateId, String className) {
+        getState(stateId).className = className;
+    }
+
+    synchronized void record(int type, int stateId, long timestamp, long value) {
+        switch (type) {
+            case TelemetryProtocol.UPDATE -> {
+                StateTimings state = getState(stateId);
+                state.update.add(value);
+                state.window = timestamp;
+                state.windowNanos = value;
+            }
+            case TelemetryProtocol.RENDER -> {
+                StateTimings state = getState(stateId);
+                state.render.add(value);
+                state.windowNanos = state.window == timestamp ? state.windowNanos + value : value;
+                state.window = timestamp;
+                if (timestamp > currentWindow || (timestamp == currentWindow && state.windowNanos > currentNanos)) {
+                    currentStateId = stateId;
+                    currentWindow = timestamp;
+                    currentNanos = state.windowNanos;
+                }
+            }
+            case TelemetryProtocol.FRAME -> frameTimes.add(value);
+            case TelemetryProtocol.GC_PAUSE -> {
+                totalGcPauseMillis += value;
+                lastGcPauseMillis = value;
+            }
+            case TelemetryProtocol.HEAP_USED -> heapUsed.add(value);
+            case TelemetryProtocol.HEAP_MAX -> heapMax = value;
+            case TelemetryProtocol.DROPPED -> droppedFrames += value;
+            default -> {
+                // Unknown record type of a newer runner, ignored
+            }
+        }
+    }
+
+    private StateTimings getState(int stateId) {
+        return states.computeIfAbsent(stateId, id -> new StateTimings());
+    }
+
+    void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public String getName() { return name; }
+
+    public boolean isConnected() { return connected; }
+
+    /**
+     * @return the class name of the state that ran the most in the latest window, null if unknown
+     */
+    public synchronized String getCurrentState() {
+        StateTimings state = states.get(currentStateId);
+        return state != null ? state.className : null;
+    }
+
+    /**
+     * @return a copy of the current telemetry
+     */
+    public synchronized Snapshot snapshot() {
+        long[] frames = frameTimes.toArray();
+        double[] frameTimesMillis = new double[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            frameTimesMillis[i] = frames[i] / 1_000_000.0;
+        }
+        // Frame rate over the last second
+        int count = 0;
+        long elapsed = 0;
+        for (int i = frames.length - 1; i >= 0 && elapsed < NANOS_PER_SECOND; i--) {
+            elapsed += frames[i];
+            count++;
+        }
+        int fps = elapsed > 0 ? (int) Math.round(count * (double) NANOS_PER_SECOND / elapsed) : 0;
+        long[] heap = heapUsed.toArray();
+        double[] heapMegabytes = new double[heap.length];
+        for (int i = 0; i < heap.length; i++) {
+            heapMegabytes[i] = heap[i] / (1024.0 * 1024.0);
+        }
+        List<StateSnapshot> stateSnapshots = new ArrayList<>();
+        for (Map.Entry<Integer, StateTimings> state : states.entrySet()) {
+            StateTimings timings = state.getValue();
+            stateSnapshots.add(new StateSnapshot(
+                    timings.className != null ? timings.className : "#" + state.getKey(),
+                    state.getKey() == currentStateId,
+                    timings.update.averageMillis(), timings.update.maxMillis(),
+                    timings.render.averageMillis(), timings.render.maxMillis()
+            ));
+        }
+        return new Snapshot(connected, fps, frameTimesMillis, heapMegabytes, heapMax / (1024.0 * 1024.0), totalGcPauseMillis, lastGcPauseMillis, droppedFrames, stateSnapshots);
+    }
+
+    private static class StateTimings {
+        private String className;
+        // Time per frame of each window
+        private final LongHistory update = new LongHistory(HISTORY);
+        private final LongHistory render = new LongHistory(HISTORY);
+        // Total time per frame of the latest window of the state
+        private long window;
+        private long windowNanos;
+    }
+
+    /**
+     * The last values of a series, oldest values are overwritten.
+     */
+    private static class LongHistory {
+        private final long[] values;
+        private int next;
+        private int size;
+
+        LongHistory(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+        }
+
+        long[] toArray() {
+            long[] ordered = new long[size];
+            int start = (next - size + values.length) % values.length;
+            for (int i = 0; i < size; i++) {
+                ordered[i] = values[(start + i) % values.length];
+            }
+            return ordered;
+        }
+
+        double averageMillis() {
+            if (size == 0) {
+                return 0;
+            }
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total += values[i];
+            }
+            return total / (double) size / 1_000_000.0;
+        }
+
+        double maxMillis() {
+            long max = 0;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, values[i]);
+            }
+            return max / 1_000_000.0;
+        }
+    }
+
+    public static class StateSnapshot {
+        private final String className;
+        private final boolean current;
+        private final double updateAverageMillis;
+        private final double updateMaxMillis;
+        private final double renderAverageMillis;
+        private final double renderMaxMillis;
+
+        StateSnapshot(String className, boolean current, double updateAverageMillis, double updateMaxMillis, double renderAverageMillis, double renderMaxMillis) {
+            this.className = className;
+            this.current = current;
+            this.updateAverageMillis = updateAverageMillis;
+            this.updateMaxMillis = updateMaxMillis;
+            this.renderAverageMillis = renderAverageMillis;
+            this.renderMaxMillis = renderMaxMillis;
+        }
+
+        public String getClassName() { return className; }
+
+        public boolean isCurrent() { return current; }
+
+        public double getUpdateAverageMillis() { return updateAverageMillis; }
+
+        public double getUpdateMaxMillis() { return updateMaxMillis; }
+
+        public double getRenderAverageMillis() { return renderAverageMillis; }
+
+        public double getRenderMaxMillis() { return renderMaxMillis; }
+    }
+
+    public static class Snapshot {
+        private final boolean connected;
+        private final int fps;
+        private final double[] frameTimesMillis;
+        private final double[] heapUsedMegabytes;
+        private final double heapMaxMegabytes;
+        private final long totalGcPauseMillis;
+        private final long lastGcPauseMillis;
+        private final long droppedFrames;
+        private final List<StateSnapshot> states;
+
+        Snapshot(boolean connected, int fps, double[] frameTimesMillis, double[] heapUsedMegabytes, double heapMaxMegabytes, long totalGcPauseMillis, long lastGcPauseMillis, long droppedFrames, List<StateSnapshot> states) {
+            this.connected = connected;
+            this.fps = fps;
+            this.frameTimesMillis = frameTimesMillis;
+            this.heapUsedMegabytes = heapUsedMegabytes;
+            this.heapMaxMegabytes = heapMaxMegabytes;
+            this.totalGcPauseMillis = totalGcPauseMillis;
+            this.lastGcPauseMillis = lastGcPauseMillis;
+            this.droppedFrames = droppedFrames;
+            this.states = states;
+        }
+
+        public boolean isConnected() { return connected; }
+
+        public int getFps() { return fps; }
+
+        public double[] getFrameTimesMillis() { return frameTimesMillis; }
+
+        public double[] getHeapUsedMegabytes() { return heapUsedMegabytes; }
+
+        public double getHeapMaxMegabytes() { return heapMaxMegabytes; }
+
+        public long getTotalGcPauseMillis() { return totalGcPauseMillis; }
+
+        public long getLastGcPauseMillis() { return lastGcPauseMillis; }
+
+        public long getDroppedFrames() { return droppedFrames; }
+
+        public List<StateSnapshot> getStates() { return states; }
+    }
+}
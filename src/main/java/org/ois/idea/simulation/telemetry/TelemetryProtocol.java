@@ -0,0 +1,39 @@
+package org.ois.idea.simulation.telemetry;
+
+/**
+ * Wire format of the telemetry channel between a simulation runner and the plugin.
+ * The runner connects to a local socket opened by the plugin and streams fixed size records, in big endian:
+ * type (int), state id (int), timestamp nanos (long), value (long).
+ * A {@link #STATE} record is followed by 'value' bytes of the UTF-8 state class name.
+ * <p>
+ * Used by the runner JVM as well: only the JDK can be used here.
+ */
+public final class TelemetryProtocol {
+
+    /** System property of the runner holding the local port to send telemetry to */
+    public static final String PORT_PROPERTY = "org.ois.runner.telemetryPort";
+
+    public static final int RECORD_SIZE = 24;
+
+    /** Declares a state id, followed by its class name */
+    public static final int STATE = 1;
+    /** Time in nanos spent per frame in the update(dt) calls of a state, averaged over a sampling window */
+    public static final int UPDATE = 2;
+    /** Time in nanos spent per frame in the render() calls of a state, averaged over a sampling window */
+    public static final int RENDER = 3;
+    /** Total GC pause in millis since the previous GC record */
+    public static final int GC_PAUSE = 4;
+    /** Used heap in bytes */
+    public static final int HEAP_USED = 5;
+    /** Max heap in bytes */
+    public static final int HEAP_MAX = 6;
+    /** Duration in nanos of a frame, from the start of the previous frame */
+    public static final int FRAME = 7;
+    /** Number of frame records dropped by the runner since the previous drop record, the channel was full */
+    public static final int DROPPED = 8;
+
+    /** State id of records that are not related to a state */
+    public static final int NO_STATE = -1;
+
+    private TelemetryProtocol() {}
+}
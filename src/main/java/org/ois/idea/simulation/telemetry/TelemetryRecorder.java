@@ -0,0 +1,327 @@
+package org.ois.idea.simulation.telemetry;
+
+import org.ois.idea.simulation.profiler.StateFrameLocator;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runner side of the telemetry channel, see {@link TelemetryProtocol}.
+ * <p>
+ * Frame times are measured on the simulation thread by a {@link FrameHook}, posted to the libGDX application of the simulation
+ * and run once at each frame. The hook records into a preallocated ring and never allocates or blocks: when the ring is full
+ * the frame is dropped and counted.
+ * <p>
+ * A daemon thread drains the ring into the socket, and samples the stack of the simulation thread to measure the time spent
+ * in the update and render calls of each IState: the samples of a window, located with a {@link StateFrameLocator}, are
+ * turned into the time per frame of each state with the frames of the window. It also samples the GC pauses and the heap usage.
+ * Frame and state timings need the libGDX application, the GC and heap records are sent in any case.
+ * <p>
+ * Runs in the runner JVM: only the JDK can be used here.
+ */
+public final class TelemetryRecorder {
+
+    /** System property of the runner holding the number of stack samples per second of the state timings */
+    public static final String SAMPLE_RATE_PROPERTY = "org.ois.runner.telemetrySampleRate";
+
+    private static final int CAPACITY = 1 << 12;
+    private static final int MASK = CAPACITY - 1;
+    private static final int BUFFER_RECORDS = 256;
+    private static final int DEFAULT_SAMPLE_RATE = 250;
+    private static final long WINDOW_MILLIS = 100;
+    private static final int UPDATE = 0;
+    private static final int RENDER = 1;
+
+    private static TelemetryRecorder instance;
+
+    // Frames ring, single producer (the simulation thread), single consumer (the telemetry thread)
+    private final long[] frameTimestamps = new long[CAPACITY];
+    private final long[] frameDurations = new long[CAPACITY];
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Set by the frame hook, from the simulation thread
+    private volatile Thread simulationThread;
+
+    // Used by the telemetry thread only
+    private final SocketChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TelemetryProtocol.RECORD_SIZE * BUFFER_RECORDS);
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final long sampleIntervalNanos;
+    private final Map<String, Integer> stateIds = new HashMap<>();
+    // Samples of the current window in the update and render calls, the index is the state id
+    private final List<long[]> stateSamples = new ArrayList<>();
+    private StateFrameLocator stateFrames;
+    private FrameHook frameHook;
+    private boolean frameHookUnavailable;
+    private long windowStart;
+    private long windowSamples;
+    private long windowFrames;
+    private long lastGcMillis;
+
+    private TelemetryRecorder(SocketChannel channel, int sampleRate) {
+        this.channel = channel;
+        this.sampleIntervalNanos = TimeUnit.SECONDS.toNanos(1) / sampleRate;
+        this.lastGcMillis = totalGcMillis();
+    }
+
+    /**
+     * Connect to the plugin, if the runner was started with a telemetry port.
+     */
+    public static synchronized void startIfConfigured() {
+        String port = System.getProperty(TelemetryProtocol.PORT_PROPERTY);
+        if (port == null || port.isBlank() || instance != null) {
+            return;
+        }
+        int sampleRate = DEFAULT_SAMPLE_RATE;
+        try {
+            sampleRate = Math.max(1, Integer.parseInt(System.getProperty(SAMPLE_RATE_PROPERTY, String.valueOf(DEFAULT_SAMPLE_RATE)).trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("[ois-telemetry] Invalid sample rate, using " + DEFAULT_SAMPLE_RATE);
+        }
+        try {
+            TelemetryRecorder recorder = new TelemetryRecorder(SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim()))), sampleRate);
+            Thread sampler = new Thread(recorder::sampleLoop, "OIS-Telemetry");
+            sampler.setDaemon(true);
+            sampler.start();
+            instance = recorder;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("[ois-telemetry] Can't connect to the telemetry channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called by the frame hook on the simulation thread: must not allocate or block.
+     */
+    private void recordFrame(long timestamp, long durationNanos) {
+        long write = writeIndex.get();
+        if (write - readIndex.get() >= CAPACITY) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int slot = (int) (write & MASK);
+        frameTimestamps[slot] = timestamp;
+        frameDurations[slot] = durationNanos;
+        // Publishes the slot to the telemetry thread
+        writeIndex.lazySet(write + 1);
+    }
+
+    private void sampleLoop() {
+        try {
+            putRecord(TelemetryProtocol.HEAP_MAX, TelemetryProtocol.NO_STATE, System.nanoTime(), Runtime.getRuntime().maxMemory());
+            windowStart = System.nanoTime();
+            long windowEnd = windowStart + TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+            while (channel.isOpen()) {
+                // Jittered, a fixed interval would be in phase with the frames and always sample the same calls
+                LockSupport.parkNanos(sampleIntervalNanos / 2 + ThreadLocalRandom.current().nextLong(sampleIntervalNanos));
+                Thread target = simulationThread;
+                if (target != null && target.isAlive()) {
+                    sampleState(target);
+                }
+                if (System.nanoTime() - windowEnd >= 0) {
+                    endWindow();
+                    windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+                }
+            }
+        } catch (IOException e) {
+            // The plugin closed the channel, stop recording
+        }
+    }
+
+    private void sampleState(Thread target) throws IOException {
+        if (stateFrames == null) {
+            stateFrames = new StateFrameLocator(target.getContextClassLoader());
+        }
+        StackTraceElement frame = stateFrames.locate(target.getStackTrace());
+        windowSamples++;
+        if (frame == null) {
+            return;
+        }
+        int call = switch (frame.getMethodName()) {
+            case "update" -> UPDATE;
+            case "render" -> RENDER;
+            default -> -1;
+        };
+        if (call < 0) {
+            return;
+        }
+        Integer stateId = stateIds.get(frame.getClassName());
+        if (stateId == null) {
+            stateId = stateSamples.size();
+            stateIds.put(frame.getClassName(), stateId);
+            stateSamples.add(new long[2]);
+            sendState(stateId, frame.getClassName());
+        }
+        stateSamples.get(stateId)[call]++;
+    }
+
+    /**
+     * Send the frames and the state timings of the window, and sample the GC and the heap.
+     * The state timings of a window without frames are carried over to the next window.
+     */
+    private void endWindow() throws IOException {
+        if (frameHook == null && !frameHookUnavailable) {
+            installFrameHook();
+        }
+        long now = System.nanoTime();
+        windowFrames += drainFrames();
+        if (windowFrames > 0) {
+            if (windowSamples > 0) {
+                double nanosPerSampleAndFrame = (now - windowStart) / (double) windowSamples / windowFrames;
+                for (int stateId = 0; stateId < stateSamples.size(); stateId++) {
+                    long[] samples = stateSamples.get(stateId);
+                    if (samples[UPDATE] + samples[RENDER] == 0) {
+                        // Not running in this window
+                        continue;
+                    }
+                    putRecord(TelemetryProtocol.UPDATE, stateId, now, Math.round(samples[UPDATE] * nanosPerSampleAndFrame));
+                    putRecord(TelemetryProtocol.RENDER, stateId, now, Math.round(samples[RENDER] * nanosPerSampleAndFrame));
+                    samples[UPDATE] = 0;
+                    samples[RENDER] = 0;
+                }
+            }
+            windowStart = now;
+            windowSamples = 0;
+            windowFrames = 0;
+        }
+        long gcMillis = totalGcMillis();
+        if (gcMillis > lastGcMillis) {
+            putRecord(TelemetryProtocol.GC_PAUSE, TelemetryProtocol.NO_STATE, now, gcMillis - lastGcMillis);
+            lastGcMillis = gcMillis;
+        }
+        putRecord(TelemetryProtocol.HEAP_USED, TelemetryProtocol.NO_STATE, now, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        long droppedFrames = dropped.getAndSet(0);
+        if (droppedFrames > 0) {
+            putRecord(TelemetryProtocol.DROPPED, TelemetryProtocol.NO_STATE, now, droppedFrames);
+        }
+        flush();
+    }
+
+    private void installFrameHook() {
+        try {
+            frameHook = FrameHook.install(this);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not a libGDX simulation, only the GC and heap are recorded
+            frameHookUnavailable = true;
+        }
+    }
+
+    private long drainFrames() throws IOException {
+        long write = writeIndex.get();
+        long read = readIndex.get();
+        for (long next = read; next < write; next++) {
+            int slot = (int) (next & MASK);
+            putRecord(TelemetryProtocol.FRAME, TelemetryProtocol.NO_STATE, frameTimestamps[slot], frameDurations[slot]);
+            // Frees the slot for the simulation thread
+            readIndex.lazySet(next + 1);
+        }
+        return write - read;
+    }
+
+    private void sendState(int stateId, String stateClass) throws IOException {
+        byte[] name = stateClass.getBytes(StandardCharsets.UTF_8);
+        putRecord(TelemetryProtocol.STATE, stateId, System.nanoTime(), name.length);
+        flush();
+        ByteBuffer nameBuffer = ByteBuffer.wrap(name);
+        while (nameBuffer.hasRemaining()) {
+            channel.write(nameBuffer);
+        }
+    }
+
+    private void putRecord(int type, int stateId, long timestamp, long value) throws IOException {
+        if (buffer.remaining() < TelemetryProtocol.RECORD_SIZE) {
+            flush();
+        }
+        buffer.putInt(type).putInt(stateId).putLong(timestamp).putLong(value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Runs at the start of every frame of the libGDX application: the runnables posted to the application are run by its loop,
+     * on the simulation thread, once per frame. The hook posts itself again each time.
+     * The libGDX classes are only reached by reflection, the hook is installed once the simulation created its application.
+     */
+    private static final class FrameHook implements Runnable {
+        private static final String GDX_CLASS = "com.badlogic.gdx.Gdx";
+        private static final String APPLICATION_CLASS = "com.badlogic.gdx.Application";
+
+        private final TelemetryRecorder recorder;
+        private final Object application;
+        private final Method postRunnable;
+        // Allocated once, posting does not allocate
+        private final Object[] postArguments = {this};
+        private long frameStart;
+
+        private FrameHook(TelemetryRecorder recorder, Object application, Method postRunnable) {
+            this.recorder = recorder;
+            this.application = application;
+            this.postRunnable = postRunnable;
+        }
+
+        /**
+         * @return the installed hook, null if the simulation did not create its application yet
+         * @throws ReflectiveOperationException if the simulation does not run on libGDX
+         */
+        static FrameHook install(TelemetryRecorder recorder) throws ReflectiveOperationException {
+            Class<?> gdx = Class.forName(GDX_CLASS, true, ClassLoader.getSystemClassLoader());
+            Object application = gdx.getField("app").get(null);
+            if (application == null) {
+                return null;
+            }
+            Method postRunnable = Class.forName(APPLICATION_CLASS, false, gdx.getClassLoader()).getMethod("postRunnable", Runnable.class);
+            FrameHook hook = new FrameHook(recorder, application, postRunnable);
+            hook.post();
+            return hook;
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            if (frameStart == 0) {
+                recorder.simulationThread = Thread.currentThread();
+            } else {
+                recorder.recordFrame(now, now - frameStart);
+            }
+            frameStart = now;
+            post();
+        }
+
+        private void post() {
+            try {
+                postRunnable.invoke(application, postArguments);
+            } catch (ReflectiveOperationException e) {
+                // The application is exiting, no more frames
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.ois.idea.simulation.telemetry;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.ois.idea.log.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Plugin side of the telemetry channel of a single simulation run, see {@link TelemetryProtocol}.
+ * Listens on a local port for the runner to connect, and reads its records into a {@link TelemetryModel}.
+ */
+public class TelemetryServer implements Closeable {
+
+    private static final int BUFFER_RECORDS = 1024;
+    private static final int MAX_STATE_NAME_BYTES = 1024;
+
+    private final ServerSocketChannel server;
+    private final TelemetryModel model;
+    private final Consumer<TelemetryServer> onClose;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile SocketChannel client;
+
+    private TelemetryServer(ServerSocketChannel server, TelemetryModel model, Consumer<TelemetryServer> onClose) {
+        this.server = server;
+        this.model = model;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Open a channel and wait for the runner in the background.
+     *
+     * @param model   - The model to read the telemetry into.
+     * @param onClose - Called with the channel once it is closed.
+     */
+    public static TelemetryServer open(TelemetryModel model, Consumer<TelemetryServer> onClose) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+        TelemetryServer telemetryServer = new TelemetryServer(server, model, onClose);
+        AppExecutorUtil.getAppExecutorService().execute(telemetryServer::serve);
+        return telemetryServer;
+    }
+
+    public int getPort() { return server.socket().getLocalPort(); }
+
+    public TelemetryModel getModel() { return model; }
+
+    private void serve() {
+        try (SocketChannel channel = server.accept()) {
+            client = channel;
+            model.setConnected(true);
+            ByteBuffer buffer = ByteBuffer.allocate(TelemetryProtocol.RECORD_SIZE * BUFFER_RECORDS);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                readRecords(buffer);
+                buffer.compact();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by the plugin
+        } catch (IOException e) {
+            Logger.getInstance().debug("Telemetry channel failed", e);
+        } finally {
+            model.setConnected(false);
+            close();
+        }
+    }
+
+    private void readRecords(ByteBuffer buffer) throws IOException {
+        while (buffer.remaining() >= TelemetryProtocol.RECORD_SIZE) {
+            buffer.mark();
+            int type = buffer.getInt();
+            int stateId = buffer.getInt();
+            long timestamp = buffer.getLong();
+            long value = buffer.getLong();
+            if (type != TelemetryProtocol.STATE) {
+                model.record(type, stateId, timestamp, value);
+                continue;
+            }
+            if (value < 0 || value > MAX_STATE_NAME_BYTES) {
+                throw new IOException("Invalid telemetry state record");
+            }
+            if (buffer.remaining() < value) {
+                // The name is not fully received yet
+                buffer.reset();
+                return;
+            }
+            byte[] name = new byte[(int) value];
+            buffer.get(name);
+            model.declareState(stateId, new String(name, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        onClose.accept(this);
+        try {
+            server.close();
+            SocketChannel channel = client;
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            Logger.getInstance().debug("Failed to close the telemetry channel", e);
+        }
+    }
+}
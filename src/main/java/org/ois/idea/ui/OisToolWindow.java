@@ -11,6 +11,9 @@ import org.jetbrains.annotations.NotNull;
 import org.ois.idea.actions.ViewSelectorAction;
 import org.ois.idea.events.ProjectViewEvents;
 import org.ois.idea.project.OisProject;
+import org.ois.idea.ui.views.console.ConsoleView;
+import org.ois.idea.ui.views.inspector.InspectorView;
+import org.ois.idea.ui.views.profiler.ProfilerView;
 import org.ois.idea.ui.views.project.CreateProjectView;
 import org.ois.idea.ui.views.project.ProjectConfigView;
 
@@ -22,7 +25,7 @@ import java.util.Map;
 public class OisToolWindow extends SimpleToolWindowPanel implements Disposable {
 
     public enum View {
-        Create, Project, Entities, Inspector;
+        Create, Project, Entities, Console, Inspector, Profiler;
 
         public static View toView(String val) {
             switch (val.toLowerCase()) {
@@ -35,16 +38,22 @@ public class OisToolWindow extends SimpleToolWindowPanel implements Disposable {
                 case "entities" -> {
                     return Entities;
                 }
+                case "console" -> {
+                    return Console;
+                }
                 case "inspector" -> {
                     return Inspector;
                 }
+                case "profiler" -> {
+                    return Profiler;
+                }
             }
             return null;
         }
     }
 
     public static String[] getSelectableViews() {
-        return new String[]{View.Project.name(), View.Entities.name(), View.Inspector.name()};
+        return new String[]{View.Project.name(), View.Entities.name(), View.Console.name(), View.Inspector.name(), View.Profiler.name()};
     }
 
     private final MessageBusConnection projectBusConnection;
@@ -64,7 +73,9 @@ public class OisToolWindow extends SimpleToolWindowPanel implements Disposable {
                 View.Create, CreateProjectView.getInstance(project),
                 View.Project, ProjectConfigView.getInstance(project),
                 View.Entities, getDefaultView(View.Entities),
-                View.Inspector, getDefaultView(View.Inspector)
+                View.Console, ConsoleView.getInstance(project),
+                View.Inspector, InspectorView.getInstance(project),
+                View.Profiler, ProfilerView.getInstance(project)
         );
 
         registerListeners();
@@ -120,7 +131,17 @@ public class OisToolWindow extends SimpleToolWindowPanel implements Disposable {
     private ActionGroup getGearActions(ActionManager actionManager) {
         DefaultActionGroup toolbarGroup = new DefaultActionGroup();
 
-        toolbarGroup.addAll(actionManager.getAction("OIS.DebugSimulation"));
+        toolbarGroup.addAll(
+                actionManager.getAction("OIS.DebugSimulation"),
+                actionManager.getAction("OIS.HtmlSimulation"),
+                actionManager.getAction("OIS.AndroidSimulation"),
+                new Separator(),
+                actionManager.getAction("OIS.BenchmarkSimulation"),
+                actionManager.getAction("OIS.ToggleProfiling"),
+                new Separator(),
+                actionManager.getAction("OIS.ToggleWarmRunner"),
+                actionManager.getAction("OIS.ToggleGradleToolingApi")
+        );
 
         return toolbarGroup;
     }
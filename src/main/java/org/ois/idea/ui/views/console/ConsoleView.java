@@ -0,0 +1,276 @@
+package org.ois.idea.ui.views.console;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.utils.log.ILogger;
+import org.ois.idea.simulation.console.LogFilter;
+import org.ois.idea.simulation.console.LogRecord;
+import org.ois.idea.simulation.console.SimulationConsole;
+import org.ois.idea.simulation.console.SimulationLogBuffer;
+import org.ois.idea.ui.views.project.TitledView;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import java.awt.*;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Console of the simulation output, filtered by level, state and text.
+ * The list is virtualized (only the visible rows are rendered, from the buffer) and the filtering runs in the background:
+ * a filter change queries the whole buffer, then the new records are queried in batches.
+ */
+public class ConsoleView extends TitledView {
+
+    private static final int REFRESH_INTERVAL_MILLIS = 250;
+    private static final int FILTER_DELAY_MILLIS = 200;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final String ANY_STATE = "Any State";
+    private static final String NO_STATE = "No State";
+
+    private final SimulationLogBuffer buffer;
+    private final ExecutorService queries = AppExecutorUtil.createBoundedApplicationPoolExecutor("OIS Console", 1);
+    private final Map<ILogger.Level, JCheckBox> levels = new EnumMap<>(ILogger.Level.class);
+    private final JComboBox<String> statesSelector = new JComboBox<>(new String[]{ANY_STATE, NO_STATE});
+    private final SearchTextField searchField = new SearchTextField(false);
+    private final JLabel countLabel = new JLabel();
+    private final RecordsModel records = new RecordsModel();
+    private final JBList<Long> list = new JBList<>(records);
+    private final Timer refreshTimer;
+    private final Timer filterTimer;
+    // Incremented on filter changes, queries of an older filter are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicBoolean querying = new AtomicBoolean(false);
+    private volatile LogFilter filter = LogFilter.all();
+
+    private ConsoleView(@NotNull Project project) {
+        super(project, "Simulation Console");
+        buffer = SimulationConsole.getInstance(project).getBuffer();
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        for (ILogger.Level level : ILogger.Level.values()) {
+            JCheckBox checkBox = new JCheckBox(level.name(), true);
+            checkBox.addActionListener(e -> refilter());
+            levels.put(level, checkBox);
+            controls.add(checkBox);
+        }
+        statesSelector.addActionListener(e -> refilter());
+        controls.add(statesSelector);
+        searchField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+        controls.add(searchField);
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            buffer.clear();
+            refilter();
+        });
+        controls.add(clearButton);
+        controls.add(countLabel);
+        mainPanel.add(controls, BorderLayout.NORTH);
+
+        // Fixed cell sizes, so the list never measures all its rows
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 2);
+        list.setFixedCellWidth(1);
+        list.setCellRenderer(new RecordRenderer());
+        mainPanel.add(new JBScrollPane(list), BorderLayout.CENTER);
+
+        setContent(mainPanel);
+
+        filterTimer = new Timer(FILTER_DELAY_MILLIS, e -> refilter());
+        filterTimer.setRepeats(false);
+        refreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, e -> {
+            if (isShowing()) {
+                refresh();
+            }
+        });
+        refreshTimer.start();
+    }
+
+    public static ConsoleView getInstance(Project project) {
+        return project.getService(ConsoleView.class);
+    }
+
+    private void refilter() {
+        Set<ILogger.Level> accepted = EnumSet.noneOf(ILogger.Level.class);
+        levels.forEach((level, checkBox) -> {
+            if (checkBox.isSelected()) {
+                accepted.add(level);
+            }
+        });
+        filter = new LogFilter(accepted, getSelectedStateId(), searchField.getText());
+        int queryGeneration = generation.incrementAndGet();
+        querying.set(true);
+        long to = buffer.getNextSequence();
+        queries.execute(() -> {
+            long[] found = buffer.query(filter, buffer.getFirstSequence(), to, () -> generation.get() != queryGeneration);
+            SwingUtilities.invokeLater(() -> {
+                if (found != null && generation.get() == queryGeneration) {
+                    records.replace(found, to);
+                    updateCount();
+                    querying.set(false);
+                }
+            });
+        });
+    }
+
+    /**
+     * Query the records appended since the last query, and drop the evicted ones.
+     */
+    private void refresh() {
+        updateStates();
+        long from = records.getQueriedTo();
+        long to = buffer.getNextSequence();
+        if (from >= to || !querying.compareAndSet(false, true)) {
+            return;
+        }
+        int queryGeneration = generation.get();
+        LogFilter queryFilter = filter;
+        queries.execute(() -> {
+            long[] found = buffer.query(queryFilter, from, to, () -> generation.get() != queryGeneration);
+            SwingUtilities.invokeLater(() -> {
+                if (found == null || generation.get() != queryGeneration) {
+                    return;
+                }
+                boolean atEnd = records.getSize() == 0 || list.getLastVisibleIndex() >= records.getSize() - 1;
+                records.dropBefore(buffer.getFirstSequence());
+                records.append(found, to);
+                if (atEnd && records.getSize() > 0) {
+                    list.ensureIndexIsVisible(records.getSize() - 1);
+                }
+                updateCount();
+                querying.set(false);
+            });
+        });
+    }
+
+    private void updateStates() {
+        List<String> keys = buffer.getStateKeys();
+        // The first two items are the 'any' and 'no state' selections
+        for (int i = statesSelector.getItemCount() - 2; i < keys.size(); i++) {
+            statesSelector.addItem(keys.get(i));
+        }
+    }
+
+    private int getSelectedStateId() {
+        int selected = statesSelector.getSelectedIndex();
+        if (selected <= 0) {
+            return LogFilter.ANY_STATE;
+        }
+        return selected == 1 ? SimulationLogBuffer.NO_STATE : selected - 2;
+    }
+
+    private void updateCount() {
+        countLabel.setText(String.format("%,d of %,d lines", records.getSize(), buffer.getNextSequence() - buffer.getFirstSequence()));
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        filterTimer.stop();
+        generation.incrementAndGet();
+        super.dispose();
+    }
+
+    /**
+     * The sequences of the records matching the filter. The records themselves are read from the buffer when rendered.
+     */
+    private static class RecordsModel extends AbstractListModel<Long> {
+        private long[] sequences = new long[0];
+        private int size;
+        private long queriedTo;
+
+        void replace(long[] found, long to) {
+            int previous = size;
+            sequences = found;
+            size = found.length;
+            queriedTo = to;
+            if (previous > 0) {
+                fireIntervalRemoved(this, 0, previous - 1);
+            }
+            if (size > 0) {
+                fireIntervalAdded(this, 0, size - 1);
+            }
+        }
+
+        void append(long[] found, long to) {
+            queriedTo = to;
+            if (found.length == 0) {
+                return;
+            }
+            if (size + found.length > sequences.length) {
+                sequences = Arrays.copyOf(sequences, Math.max(size + found.length, sequences.length * 2));
+            }
+            System.arraycopy(found, 0, sequences, size, found.length);
+            int first = size;
+            size += found.length;
+            fireIntervalAdded(this, first, size - 1);
+        }
+
+        void dropBefore(long firstSequence) {
+            int dropped = 0;
+            while (dropped < size && sequences[dropped] < firstSequence) {
+                dropped++;
+            }
+            if (dropped == 0) {
+                return;
+            }
+            System.arraycopy(sequences, dropped, sequences, 0, size - dropped);
+            size -= dropped;
+            fireIntervalRemoved(this, 0, dropped - 1);
+        }
+
+        long getQueriedTo() { return queriedTo; }
+
+        @Override
+        public int getSize() { return size; }
+
+        @Override
+        public Long getElementAt(int index) { return sequences[index]; }
+    }
+
+    private class RecordRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, "", index, isSelected, cellHasFocus);
+            LogRecord record = buffer.get((Long) value);
+            if (record == null) {
+                return this;
+            }
+            LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(record.getTimestamp()), ZoneId.systemDefault());
+            setText(record.getState() != null
+                    ? String.format("%s [%s] [%s] %s", TIME_FORMAT.format(time), record.getLevel(), record.getState(), record.getText())
+                    : String.format("%s [%s] %s", TIME_FORMAT.format(time), record.getLevel(), record.getText()));
+            if (!isSelected) {
+                switch (record.getLevel()) {
+                    case Error -> setForeground(JBColor.RED);
+                    case Warn -> setForeground(JBColor.ORANGE);
+                    case Debug -> setForeground(JBColor.GRAY);
+                    default -> {
+                    }
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.ois.idea.ui.views.inspector;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.ois.idea.simulation.telemetry.SimulationTelemetry;
+import org.ois.idea.simulation.telemetry.TelemetryModel;
+import org.ois.idea.ui.views.project.TitledView;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+/**
+ * Live telemetry of the latest simulation: frame times, FPS, heap and GC, and the time per frame of each state.
+ */
+public class InspectorView extends TitledView {
+
+    private static final int REFRESH_MILLIS = 250;
+    // Frame budget at 60 FPS
+    private static final double FRAME_BUDGET_MILLIS = 1000.0 / 60;
+    private static final String[] STATE_COLUMNS = {"State", "Update avg (ms/frame)", "Update max (ms/frame)", "Render avg (ms/frame)", "Render max (ms/frame)"};
+
+    private final JLabel summary = new JLabel("No simulation telemetry, run a simulation to inspect it");
+    private final TelemetryChart frameTimeChart = new TelemetryChart("Frame time", "ms");
+    private final TelemetryChart heapChart = new TelemetryChart("Heap", "MB");
+    private final DefaultTableModel statesModel = new DefaultTableModel(STATE_COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Timer refreshTimer;
+
+    private InspectorView(@NotNull Project project) {
+        super(project, "Simulation Inspector");
+
+        JPanel mainPanel = new JPanel();
+        mainPanel.setLayout(new BoxLayout(mainPanel, BoxLayout.Y_AXIS));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        summary.setAlignmentX(Component.LEFT_ALIGNMENT);
+        summary.setBorder(JBUI.Borders.emptyBottom(5));
+        mainPanel.add(summary);
+        frameTimeChart.setAlignmentX(Component.LEFT_ALIGNMENT);
+        mainPanel.add(frameTimeChart);
+        heapChart.setAlignmentX(Component.LEFT_ALIGNMENT);
+        mainPanel.add(heapChart);
+
+        JBTable statesTable = new JBTable(statesModel);
+        JBScrollPane statesPane = new JBScrollPane(statesTable);
+        statesPane.setAlignmentX(Component.LEFT_ALIGNMENT);
+        statesPane.setPreferredSize(JBUI.size(300, 120));
+        mainPanel.add(statesPane);
+
+        setContent(mainPanel);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    public static InspectorView getInstance(Project project) {
+        return project.getService(InspectorView.class);
+    }
+
+    private void refresh() {
+        if (!isShowing()) {
+            return;
+        }
+        TelemetryModel model = SimulationTelemetry.getInstance(getIdeaProject()).getLatest();
+        if (model == null) {
+            return;
+        }
+        TelemetryModel.Snapshot snapshot = model.snapshot();
+        summary.setText(String.format("%s (%s) | FPS: %d | GC pauses: %dms (last %dms)%s",
+                model.getName(), snapshot.isConnected() ? "live" : "ended", snapshot.getFps(),
+                snapshot.getTotalGcPauseMillis(), snapshot.getLastGcPauseMillis(),
+                snapshot.getDroppedFrames() > 0 ? String.format(" | %d frames dropped", snapshot.getDroppedFrames()) : ""));
+        frameTimeChart.setValues(snapshot.getFrameTimesMillis(), FRAME_BUDGET_MILLIS);
+        heapChart.setValues(snapshot.getHeapUsedMegabytes(), snapshot.getHeapMaxMegabytes());
+
+        statesModel.setRowCount(0);
+        for (TelemetryModel.StateSnapshot state : snapshot.getStates()) {
+            String stateName = state.getClassName().substring(state.getClassName().lastIndexOf('.') + 1);
+            statesModel.addRow(new Object[]{
+                    state.isCurrent() ? stateName + " (current)" : stateName,
+                    String.format("%.3f", state.getUpdateAverageMillis()),
+                    String.format("%.3f", state.getUpdateMaxMillis()),
+                    String.format("%.3f", state.getRenderAverageMillis()),
+                    String.format("%.3f", state.getRenderMaxMillis())
+            });
+        }
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+}
@@ -0,0 +1,84 @@
+package org.ois.idea.ui.views.inspector;
+
+import com.intellij.ui.JBColor;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Line chart of the last values of a telemetry series.
+ */
+public class TelemetryChart extends JComponent {
+
+    private final String title;
+    private final String unit;
+    private double[] values = new double[0];
+    private double limit;
+
+    public TelemetryChart(String title, String unit) {
+        this.title = title;
+        this.unit = unit;
+        setPreferredSize(JBUI.size(300, 120));
+        setMinimumSize(JBUI.size(100, 80));
+    }
+
+    /**
+     * @param values - The series values, oldest first.
+     * @param limit  - A reference value drawn as a dashed line (frame budget, max heap...), 0 for none.
+     */
+    public void setValues(double[] values, double limit) {
+        this.values = values;
+        this.limit = limit;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int width = getWidth();
+            int height = getHeight();
+            int top = JBUI.scale(18);
+            int chartHeight = height - top - JBUI.scale(4);
+
+            g.setColor(UIUtil.getPanelBackground());
+            g.fillRect(0, 0, width, height);
+            g.setColor(JBColor.border());
+            g.drawRect(0, top, width - 1, chartHeight);
+
+            double max = limit;
+            double last = 0;
+            for (double value : values) {
+                max = Math.max(max, value);
+            }
+            if (values.length > 0) {
+                last = values[values.length - 1];
+            }
+            g.setColor(UIUtil.getLabelForeground());
+            g.drawString(String.format("%s: %.2f %s (max %.2f)", title, last, unit, max), JBUI.scale(4), top - JBUI.scale(5));
+            if (values.length < 2 || max <= 0) {
+                return;
+            }
+            if (limit > 0) {
+                int y = top + chartHeight - (int) (limit / max * chartHeight);
+                g.setColor(JBColor.RED);
+                g.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1, new float[]{4, 4}, 0));
+                g.drawLine(0, y, width, y);
+                g.setStroke(new BasicStroke(1));
+            }
+            g.setColor(JBColor.BLUE);
+            int[] xs = new int[values.length];
+            int[] ys = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                xs[i] = (int) ((double) i / (values.length - 1) * (width - 1));
+                ys[i] = top + chartHeight - (int) (values[i] / max * chartHeight);
+            }
+            g.drawPolyline(xs, ys, values.length);
+        } finally {
+            g.dispose();
+        }
+    }
+}
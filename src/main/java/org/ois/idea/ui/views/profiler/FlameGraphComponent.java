@@ -0,0 +1,131 @@
+package org.ois.idea.ui.views.profiler;
+
+import com.intellij.ui.JBColor;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import org.ois.idea.simulation.profiler.FlameGraph;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flame graph of a profile: the root at the bottom, each frame as wide as its share of the samples.
+ * Click a frame to zoom into it, click the bottom frame to zoom out.
+ */
+public class FlameGraphComponent extends JComponent {
+
+    private static final int FRAME_HEIGHT = 18;
+    private static final Color[] FRAME_COLORS = {
+            new JBColor(new Color(0xF2A65A), new Color(0xB4703A)),
+            new JBColor(new Color(0xEEC170), new Color(0xA98440)),
+            new JBColor(new Color(0xF58549), new Color(0xB35A2C)),
+            new JBColor(new Color(0xE9D985), new Color(0x9E9150))
+    };
+
+    private FlameGraph.Node zoomed;
+    private final List<Rectangle> frameBounds = new ArrayList<>();
+    private final List<FlameGraph.Node> frameNodes = new ArrayList<>();
+
+    public FlameGraphComponent() {
+        setToolTipText("");
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                FlameGraph.Node node = findNode(e.getPoint());
+                if (node == null) {
+                    return;
+                }
+                zoomed = node == zoomed && node.getParent() != null ? node.getParent() : node;
+                repaint();
+            }
+        });
+    }
+
+    public void setGraph(FlameGraph graph) {
+        zoomed = graph != null ? graph.getRoot() : null;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(JBUI.scale(400), JBUI.scale(FRAME_HEIGHT) * Math.max(10, depth(zoomed) + 1));
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        FlameGraph.Node node = findNode(event.getPoint());
+        if (node == null || zoomed == null) {
+            return null;
+        }
+        return String.format("%s: %d samples (%.1f%%)", node.getName(), node.getSamples(), 100.0 * node.getSamples() / Math.max(1, zoomed.getSamples()));
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setColor(UIUtil.getPanelBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            frameBounds.clear();
+            frameNodes.clear();
+            if (zoomed == null || zoomed.getSamples() == 0) {
+                g.setColor(UIUtil.getLabelForeground());
+                g.drawString("No samples", JBUI.scale(4), JBUI.scale(FRAME_HEIGHT));
+                return;
+            }
+            paintNode(g, zoomed, 0, getWidth(), getHeight() - JBUI.scale(FRAME_HEIGHT), zoomed.getSamples());
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void paintNode(Graphics2D g, FlameGraph.Node node, int x, int width, int y, long totalSamples) {
+        if (width < 1 || y < 0) {
+            return;
+        }
+        int height = JBUI.scale(FRAME_HEIGHT);
+        Rectangle bounds = new Rectangle(x, y, width, height - 1);
+        frameBounds.add(bounds);
+        frameNodes.add(node);
+        g.setColor(FRAME_COLORS[Math.abs(node.getName().hashCode()) % FRAME_COLORS.length]);
+        g.fillRect(bounds.x, bounds.y, bounds.width - 1, bounds.height);
+        if (width > JBUI.scale(20)) {
+            g.setColor(JBColor.BLACK);
+            Shape clip = g.getClip();
+            g.clipRect(bounds.x, bounds.y, bounds.width - 2, bounds.height);
+            g.drawString(node.getName(), bounds.x + JBUI.scale(2), bounds.y + height - JBUI.scale(5));
+            g.setClip(clip);
+        }
+        int childX = x;
+        for (FlameGraph.Node child : node.getChildren()) {
+            int childWidth = (int) ((double) child.getSamples() / totalSamples * getWidth());
+            paintNode(g, child, childX, childWidth, y - height, totalSamples);
+            childX += childWidth;
+        }
+    }
+
+    private FlameGraph.Node findNode(Point point) {
+        for (int i = 0; i < frameBounds.size(); i++) {
+            if (frameBounds.get(i).contains(point)) {
+                return frameNodes.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static int depth(FlameGraph.Node node) {
+        if (node == null) {
+            return 0;
+        }
+        int depth = 0;
+        for (FlameGraph.Node child : node.getChildren()) {
+            depth = Math.max(depth, depth(child) + 1);
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,152 @@
+package org.ois.idea.ui.views.profiler;
+
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+import org.ois.core.project.SimulationManifest;
+import org.ois.idea.events.ProjectStateEvents;
+import org.ois.idea.log.Logger;
+import org.ois.idea.project.OisProject;
+import org.ois.idea.project.OisProjectManager;
+import org.ois.idea.simulation.profiler.FlameGraph;
+import org.ois.idea.simulation.profiler.SimulationProfiler;
+import org.ois.idea.simulation.profiler.StackSampler;
+import org.ois.idea.ui.views.project.TitledView;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flame graphs of the latest profiled simulation, one per state.
+ */
+public class ProfilerView extends TitledView {
+
+    private final JComboBox<ProfileEntry> statesSelector = new JComboBox<>();
+    private final JLabel status = new JLabel("Enable profiling and debug the simulation to profile it");
+    private final FlameGraphComponent flameGraph = new FlameGraphComponent();
+
+    private ProfilerView(@NotNull Project project) {
+        super(project, "Simulation Profiler");
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("State:"));
+        controls.add(statesSelector);
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        controls.add(refreshButton);
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportSelected());
+        controls.add(exportButton);
+        controls.add(status);
+        mainPanel.add(controls, BorderLayout.NORTH);
+        mainPanel.add(new JBScrollPane(flameGraph), BorderLayout.CENTER);
+
+        statesSelector.addActionListener(e -> showSelected());
+
+        setContent(mainPanel);
+
+        // The samplers flush their last samples when the simulation exits
+        projectBusConnection.subscribe(ProjectStateEvents.ON_PROJECT_DEBUG_ENDED, (ProjectStateEvents) () -> SwingUtilities.invokeLater(this::refresh));
+    }
+
+    public static ProfilerView getInstance(Project project) {
+        return project.getService(ProfilerView.class);
+    }
+
+    /**
+     * Load the states of the latest profile.
+     */
+    public void refresh() {
+        Path profile = SimulationProfiler.getInstance(getIdeaProject()).getLatestProfile();
+        statesSelector.removeAllItems();
+        try {
+            List<Path> files = SimulationProfiler.getCollapsedStacks(profile);
+            if (files.isEmpty()) {
+                status.setText(profile == null ? "No profiled simulation" : "No samples yet, refresh while the simulation runs");
+                flameGraph.setGraph(null);
+                return;
+            }
+            Map<String, String> stateKeys = getStateKeysByClass();
+            for (Path file : files) {
+                statesSelector.addItem(new ProfileEntry(file, stateKeys));
+            }
+            status.setText(profile.getFileName().toString());
+        } catch (IOException e) {
+            Logger.getInstance().warn("Can't load the simulation profile", e);
+        }
+    }
+
+    private void showSelected() {
+        ProfileEntry entry = (ProfileEntry) statesSelector.getSelectedItem();
+        if (entry == null) {
+            return;
+        }
+        try {
+            flameGraph.setGraph(FlameGraph.load(entry.file));
+        } catch (IOException e) {
+            Logger.getInstance().warn("Can't load the profile of " + entry, e);
+        }
+    }
+
+    private void exportSelected() {
+        ProfileEntry entry = (ProfileEntry) statesSelector.getSelectedItem();
+        if (entry == null) {
+            return;
+        }
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Collapsed Stacks", "Export the samples of the state as a collapsed stacks file", "collapsed", "txt");
+        VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, getIdeaProject()).save(entry.file.getFileName().toString());
+        if (target == null) {
+            return;
+        }
+        try {
+            Files.copy(entry.file, target.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Logger.getInstance().info("Exported collapsed stacks to " + target.getFile());
+        } catch (IOException e) {
+            Logger.getInstance().error("Can't export the collapsed stacks", e);
+        }
+    }
+
+    private Map<String, String> getStateKeysByClass() {
+        Map<String, String> keys = new HashMap<>();
+        OisProject project = OisProjectManager.getInstance(getIdeaProject()).getProject();
+        SimulationManifest manifest = project != null ? project.getManifest() : null;
+        if (manifest != null && manifest.getStates() != null) {
+            manifest.getStates().forEach((key, className) -> keys.put(className, key));
+        }
+        return keys;
+    }
+
+    private static class ProfileEntry {
+        private final Path file;
+        private final String label;
+
+        ProfileEntry(Path file, Map<String, String> stateKeys) {
+            this.file = file;
+            String name = file.getFileName().toString();
+            String className = name.substring(0, name.length() - StackSampler.COLLAPSED_EXTENSION.length());
+            if (StackSampler.NO_STATE.equals(className)) {
+                this.label = "Outside of states";
+            } else {
+                this.label = stateKeys.containsKey(className) ? String.format("%s (%s)", stateKeys.get(className), className) : className;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+}
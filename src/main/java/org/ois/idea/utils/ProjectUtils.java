@@ -3,21 +3,45 @@ package org.ois.idea.utils;
 import com.intellij.openapi.project.Project;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.CancellationToken;
+import org.gradle.tooling.GradleConnectionException;
 import org.ois.core.project.SimulationManifest;
 import org.ois.core.utils.io.data.formats.JsonFormat;
 import org.ois.idea.log.Logger;
 import org.ois.idea.utils.command.CommandExecutor;
 import org.ois.idea.utils.command.CommandResults;
+import org.ois.idea.utils.command.OutputCollector;
+import org.ois.idea.utils.gradle.GradleConnectionManager;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class ProjectUtils {
 
+    /**
+     * The way Gradle tasks are executed.
+     * ToolingApi keeps a warm connection per project, Cli starts the Gradle wrapper (or installed Gradle) for each call.
+     */
+    public enum GradleBackend {
+        ToolingApi, Cli
+    }
+
+    // Only the last commit of a single branch, the file contents are fetched on checkout
+    private static final List<String> SHALLOW_CLONE_ARGS = List.of("--depth", "1", "--filter=blob:none", "--single-branch");
+
+    private static volatile GradleBackend gradleBackend = GradleBackend.ToolingApi;
+
+    public static GradleBackend getGradleBackend() { return gradleBackend; }
+
+    public static void setGradleBackend(GradleBackend backend) { gradleBackend = backend; }
+
     public static Path getProjectBasePath(Project project) {
         return project.getBasePath() != null ? Paths.get(project.getBasePath()) : Paths.get(".");
     }
@@ -33,19 +57,91 @@ public class ProjectUtils {
     }
 
     public static void cloneRepository(String repositoryUrl, String branch, Path destinationFolder) throws IOException, InterruptedException {
+        cloneRepository(repositoryUrl, branch, destinationFolder, List.of());
+    }
+
+    public static void cloneRepository(String repositoryUrl, Path destinationFolder) throws IOException, InterruptedException {
+        cloneRepository(repositoryUrl, null, destinationFolder, List.of());
+    }
+
+    /**
+     * Shallow clone of a single branch of a repository, without history. File contents are fetched only when checked out.
+     *
+     * @param repositoryUrl     - The repository to clone.
+     * @param branch            - The branch (or tag) to clone, null for the default branch.
+     * @param destinationFolder - The folder to clone the repository into.
+     * @param sparseDirectories - If not empty, only these directories (relative to the repository root) and the root files are checked out.
+     *                            Use {@link #materializeRepository(Path)} to check out the full tree later.
+     */
+    public static void cloneRepository(String repositoryUrl, String branch, Path destinationFolder, List<String> sparseDirectories) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>(List.of("git", "clone"));
+        args.addAll(SHALLOW_CLONE_ARGS);
+        if (!sparseDirectories.isEmpty()) {
+            args.add("--sparse");
+        }
+        if (branch != null) {
+            args.addAll(List.of("--branch", branch));
+        }
+        args.add(repositoryUrl);
         parseCommandResults(
-                new CommandExecutor().exeCommand(List.of("git", "clone", "--branch", branch, repositoryUrl), destinationFolder.toAbsolutePath().toFile()),
-                String.format("clone %s:%s", repositoryUrl, branch)
+                new CommandExecutor().exeCommand(args, destinationFolder.toAbsolutePath().toFile()),
+                branch != null ? String.format("clone %s:%s", repositoryUrl, branch) : String.format("clone %s", repositoryUrl)
+        );
+        if (sparseDirectories.isEmpty()) {
+            return;
+        }
+        List<String> sparseArgs = new ArrayList<>(List.of("git", "sparse-checkout", "set"));
+        sparseArgs.addAll(sparseDirectories);
+        parseCommandResults(
+                new CommandExecutor().exeCommand(sparseArgs, destinationFolder.resolve(getRepositoryName(repositoryUrl)).toAbsolutePath().toFile()),
+                String.format("sparse checkout %s", String.join(",", sparseDirectories))
         );
     }
 
-    public static void cloneRepository(String repositoryUrl, Path destinationFolder) throws IOException, InterruptedException {
+    /**
+     * Check out the full tree of a repository that was cloned with sparse directories. Does nothing if the checkout is not sparse.
+     *
+     * @param repositoryDirectory - The repository working tree.
+     */
+    public static void materializeRepository(Path repositoryDirectory) throws IOException, InterruptedException {
+        File repositoryDir = repositoryDirectory.toAbsolutePath().toFile();
+        CommandResults sparseCheckout = new CommandExecutor().exeCommand(List.of("git", "config", "--bool", "core.sparseCheckout"), repositoryDir);
+        if (!sparseCheckout.isOk() || !"true".equals(sparseCheckout.getStdOut().trim())) {
+            return;
+        }
         parseCommandResults(
-                new CommandExecutor().exeCommand(List.of("git", "clone", repositoryUrl), destinationFolder.toAbsolutePath().toFile()),
-                String.format("clone %s", repositoryUrl)
+                new CommandExecutor().exeCommand(List.of("git", "sparse-checkout", "disable"), repositoryDir),
+                String.format("check out the full tree of %s", repositoryDirectory)
         );
     }
 
+    /**
+     * Run a git command and fail if it did not finish successfully.
+     *
+     * @param workingDirectory - The directory to run the command in.
+     * @param description      - What the command does, used for logging.
+     * @param args             - The git arguments.
+     * @return the standard output of the command
+     */
+    public static String runGitCommand(Path workingDirectory, String description, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(args));
+        // The results hold only the tail of the output, the callers parse all of it
+        OutputCollector output = new OutputCollector();
+        CommandResults results = new CommandExecutor().exeCommand(workingDirectory.toAbsolutePath().toFile(), command, new ArrayList<>(), output);
+        parseCommandResults(results, description);
+        return output.getOutput();
+    }
+
+    /**
+     * @param repositoryUrl - Git repository url or path.
+     * @return the name of the directory 'git clone' creates for the repository
+     */
+    public static String getRepositoryName(String repositoryUrl) {
+        String name = StringUtils.removeEnd(StringUtils.removeEnd(repositoryUrl.trim(), "/"), ".git");
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(':')) + 1);
+    }
+
     private static void parseCommandResults(CommandResults results, String msg) {
         if (results.isOk()) {
             Logger.getInstance().debug(String.format("Finished successfully to %s\n%s", msg, results.getStdOut()));
@@ -57,23 +153,63 @@ public class ProjectUtils {
     }
 
     public static void runGradleTasks(Path workingDir, Map<String, String> environmentVariables, boolean oneByOne, String... gradleTasks) throws IOException, InterruptedException {
+        runGradleTasks(workingDir, environmentVariables, oneByOne, null, gradleTasks);
+    }
+
+    /**
+     * Run Gradle tasks that can be cancelled.
+     * Cancellation is supported by the Tooling API backend only, the Gradle CLI runs the tasks to their end.
+     * If the Tooling API can't be used, the builds that did not run yet are run with the Gradle CLI: the tasks that
+     * already ran (one by one) are not run again.
+     *
+     * @param cancellationToken - Token to cancel the tasks with, null if the tasks can't be cancelled.
+     * @throws BuildCancelledException if the tasks were cancelled.
+     */
+    public static void runGradleTasks(Path workingDir, Map<String, String> environmentVariables, boolean oneByOne, CancellationToken cancellationToken, String... gradleTasks) throws IOException, InterruptedException {
+        List<List<String>> builds = new ArrayList<>();
+        if (oneByOne) {
+            for (String task : gradleTasks) {
+                builds.add(List.of(task));
+            }
+        } else {
+            builds.add(List.of(gradleTasks));
+        }
+        int next = 0;
+        if (gradleBackend == GradleBackend.ToolingApi) {
+            GradleConnectionManager connectionManager = GradleConnectionManager.getInstance();
+            try {
+                for (; next < builds.size(); next++) {
+                    parseCommandResults(
+                            connectionManager.runTasks(workingDir, environmentVariables, builds.get(next), cancellationToken),
+                            getGradleBuildDescription(builds.get(next))
+                    );
+                }
+                return;
+            } catch (BuildCancelledException e) {
+                throw e;
+            } catch (GradleConnectionException e) {
+                // Failed builds are reported as results, this is a failure to use the Tooling API itself
+                Logger.getInstance().warn(String.format("Can't run Gradle tasks with the Tooling API, using the Gradle CLI from: %s", String.join(" ", builds.get(next))), e);
+            }
+        }
+        runGradleTasksWithCli(workingDir, environmentVariables, builds.subList(next, builds.size()));
+    }
+
+    private static String getGradleBuildDescription(List<String> gradleTasks) {
+        return gradleTasks.size() == 1 ? String.format("run gradle task: %s", gradleTasks.get(0)) : String.format("run gradle tasks: %s", String.join(",", gradleTasks));
+    }
+
+    private static void runGradleTasksWithCli(Path workingDir, Map<String, String> environmentVariables, List<List<String>> builds) throws IOException, InterruptedException {
         Path gradleExe = workingDir.resolve(SystemUtils.IS_OS_WINDOWS ? "gradlew.bat" : "gradlew").toAbsolutePath();
         String exe = gradleExe.toString();
         if (!gradleExe.toFile().exists()) {
             exe = "";
         }
         CommandExecutor executor = new CommandExecutor(StringUtils.defaultIfBlank(exe, "gradle"), environmentVariables);
-        if (!oneByOne) {
-            parseCommandResults(
-                    executor.exeCommand(List.of(gradleTasks), workingDir.toFile()),
-                    String.format("run gradle tasks: %s", String.join(",", gradleTasks))
-            );
-            return;
-        }
-        for (String task : gradleTasks) {
+        for (List<String> build : builds) {
             parseCommandResults(
-                    executor.exeCommand(List.of(task), workingDir.toFile()),
-                    String.format("run gradle task: %s", task)
+                    executor.exeCommand(build, workingDir.toFile()),
+                    getGradleBuildDescription(build)
             );
         }
     }
@@ -0,0 +1,176 @@
+package org.ois.idea.utils;
+
+import org.ois.idea.log.Logger;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * A small dependency graph of stages. Each stage starts as soon as all the stages it depends on are completed,
+ * so independent stages run concurrently. The progress is driven by the completed stages and the duration of each stage is recorded.
+ */
+public class TaskPipeline {
+
+    public interface StageAction {
+        void run() throws Exception;
+    }
+
+    /**
+     * Thrown by a stage to stop the pipeline without an error (i.e. nothing to do).
+     * Stages that did not start yet are not executed.
+     */
+    public static class AbortException extends Exception {
+        public AbortException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Stage {
+        private final String name;
+        private final String description;
+        private final StageAction action;
+        private final List<String> dependencies;
+
+        private Stage(String name, String description, StageAction action, List<String> dependencies) {
+            this.name = name;
+            this.description = description;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final String name;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, Long> stageDurations = new ConcurrentHashMap<>();
+    private final Set<String> runningStages = ConcurrentHashMap.newKeySet();
+    private final Set<String> completedStages = ConcurrentHashMap.newKeySet();
+    // The failure (or abort) of the first stage that failed
+    private final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+
+    public TaskPipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a stage to the pipeline.
+     *
+     * @param name         - Unique name of the stage.
+     * @param description  - The text displayed in the progress indicator while the stage is running.
+     * @param action       - The stage logic.
+     * @param dependencies - Names of stages (already added) that must complete before this stage starts.
+     * @return this pipeline
+     */
+    public TaskPipeline stage(String name, String description, StageAction action, String... dependencies) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException(String.format("Stage '%s' already exists", name));
+        }
+        for (String dependency : dependencies) {
+            if (!stages.containsKey(dependency)) {
+                throw new IllegalArgumentException(String.format("Stage '%s' depends on unknown stage '%s'", name, dependency));
+            }
+        }
+        stages.put(name, new Stage(name, description, action, List.of(dependencies)));
+        return this;
+    }
+
+    /**
+     * Run all the stages and wait for them to finish.
+     * If a stage fails the stages that depend on it are skipped, the other stages are completed before the failure is thrown.
+     * If a stage aborts the pipeline, the stages that did not start yet are skipped.
+     *
+     * @param indicator - Progress indicator, updated with the running stages and the fraction of completed stages.
+     * @param executor  - Executor to run the stages on.
+     * @throws AbortException if a stage aborted the pipeline.
+     * @throws Exception      the failure of the first stage that failed.
+     */
+    public void run(Utils.OISProgressIndicator indicator, Executor executor) throws Exception {
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        for (Stage stage : stages.values()) {
+            CompletableFuture<?>[] dependencies = stage.dependencies.stream().map(futures::get).toArray(CompletableFuture[]::new);
+            futures.put(stage.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> runStage(stage, indicator), executor));
+        }
+        try {
+            // Wait for all the stages (not only the first failure) to make sure nothing is left running in the background
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            // The failure of any stage may be reported here, not necessarily the first one
+            Exception failure = firstFailure.get();
+            throw failure != null ? failure : unwrap(e.getCause());
+        } finally {
+            Logger.getInstance().debug(String.format("%s stages duration: %s", name, getStageDurationsSummary()));
+        }
+        indicator.done();
+    }
+
+    private void runStage(Stage stage, Utils.OISProgressIndicator indicator) {
+        if (firstFailure.get() instanceof AbortException) {
+            // Skipped, the pipeline was aborted before the stage started
+            return;
+        }
+        long start = System.nanoTime();
+        runningStages.add(stage.name);
+        try {
+            // Throws if the progress was cancelled, the stage is still cleaned up
+            updateProgress(indicator);
+            stage.action.run();
+        } catch (Exception e) {
+            firstFailure.compareAndSet(null, e);
+            throw new CompletionException(e);
+        } finally {
+            stageDurations.put(stage.name, (System.nanoTime() - start) / 1_000_000);
+            runningStages.remove(stage.name);
+            completedStages.add(stage.name);
+        }
+        updateProgress(indicator);
+    }
+
+    private synchronized void updateProgress(Utils.OISProgressIndicator indicator) {
+        String text = stages.values().stream()
+                .filter(stage -> runningStages.contains(stage.name))
+                .map(stage -> stage.description)
+                .collect(Collectors.joining(", "));
+        double fraction = stages.isEmpty() ? 1 : (double) completedStages.size() / stages.size();
+        if (text.isEmpty()) {
+            indicator.fraction(fraction);
+            return;
+        }
+        indicator.state(text, fraction);
+    }
+
+    private static Exception unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof Exception) {
+            return (Exception) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new RuntimeException(throwable);
+    }
+
+    Set<String> getRunningStages() {
+        return Collections.unmodifiableSet(runningStages);
+    }
+
+    /**
+     * @return the duration in milliseconds of every completed stage, by stage name.
+     */
+    public Map<String, Long> getStageDurations() {
+        return Collections.unmodifiableMap(stageDurations);
+    }
+
+    private String getStageDurationsSummary() {
+        return stages.keySet().stream()
+                .filter(stageDurations::containsKey)
+                .map(stage -> String.format("%s=%dms", stage, stageDurations.get(stage)))
+                .collect(Collectors.joining(", "));
+    }
+}
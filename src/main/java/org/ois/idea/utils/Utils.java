@@ -18,6 +18,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Map;
 
 public class Utils {
@@ -56,6 +59,24 @@ public class Utils {
         }
     }
 
+    /**
+     * @param file - The file to hash, read as a stream.
+     * @return the hex encoded SHA-256 checksum of the file content
+     */
+    public static String sha256(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static void focusOnTool(Project project) {
         ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow("OIS");
         if (toolWindow != null) {
@@ -81,6 +102,11 @@ public class Utils {
             this.indicator.setFraction(fraction);
         }
 
+        public void fraction(double fraction) {
+            this.indicator.checkCanceled();
+            this.indicator.setFraction(fraction);
+        }
+
         public void done() {
             this.indicator.setFraction(1);
         }
@@ -88,6 +114,10 @@ public class Utils {
         public void cancel() {
             this.indicator.cancel();
         }
+
+        public boolean isCanceled() {
+            return this.indicator.isCanceled();
+        }
     }
 
     public abstract static class BackgroundTask extends Task.Backgroundable {
@@ -1,20 +1,22 @@
 package org.ois.idea.utils.command;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.ois.idea.log.Logger;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class CommandExecutor implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -23,9 +25,13 @@ public class CommandExecutor implements Serializable {
     private static final int READER_SHUTDOWN_TIMEOUT_SECONDS = 30;
     private static final int PROCESS_TERMINATION_TIMEOUT_SECONDS = 30;
     private static final int EXECUTION_TIMEOUT_MINUTES = 120;
+    private static final int DEFAULT_OUTPUT_TAIL_LINES = 1000;
 
+    // The process inherits the environment of the IDE, only the variables that should be overridden are kept here
     private final Map<String, String> env;
     private final String executablePath;
+    private int outputTailLines = DEFAULT_OUTPUT_TAIL_LINES;
+    private boolean shellWrapping;
 
     /**
      * Constructor to initialize using a build in executable in the PATH
@@ -47,54 +53,56 @@ public class CommandExecutor implements Serializable {
      * @param env            - Environment variables to use during execution.
      */
     public CommandExecutor(String executablePath, Map<String, String> env) {
-        this.executablePath = resolveExecutablePath(executablePath.trim());
-        Map<String, String> finalEnvMap = new HashMap<>(System.getenv());
-        if (env != null) {
-            Map<String, String> fixedEnvMap = new HashMap<>(env);
-            fixPathEnv(fixedEnvMap);
-            finalEnvMap.putAll(fixedEnvMap);
+        // Resolved with the PATH the process will get, if overridden
+        this.executablePath = ExecutableResolver.resolve(executablePath.trim(), env != null ? env : Collections.emptyMap());
+        if (env == null || env.isEmpty()) {
+            this.env = Collections.emptyMap();
+            return;
         }
-        this.env = new HashMap<>(finalEnvMap);
+        Map<String, String> fixedEnvMap = new HashMap<>(env);
+        fixPathEnv(fixedEnvMap);
+        this.env = Collections.unmodifiableMap(fixedEnvMap);
+    }
+
+    /**
+     * Set the number of trailing output lines (per stream) that are kept for the {@link CommandResults}.
+     * The rest of the output is only passed to the {@link CommandOutputListener}, if provided: callers that parse the output
+     * should collect it with an {@link OutputCollector}.
+     *
+     * @param outputTailLines - The maximum number of lines to keep for each of stdout and stderr.
+     */
+    public void setOutputTailLines(int outputTailLines) {
+        this.outputTailLines = outputTailLines;
+    }
+
+    public int getOutputTailLines() {
+        return outputTailLines;
+    }
+
+    /**
+     * By default, on Unix, the arguments are passed as is to the executable without an intermediate shell.
+     * Enable shell wrapping to run the command through '/bin/sh -c', the arguments are then joined and parsed by the shell.
+     *
+     * @param shellWrapping - True to run the command through a shell.
+     */
+    public void setShellWrapping(boolean shellWrapping) {
+        this.shellWrapping = shellWrapping;
+    }
+
+    public boolean isShellWrapping() {
+        return shellWrapping;
     }
 
     /**
      * Resolves the full path of an executable by searching in common system paths.
+     * The results are memoized, see {@link ExecutableResolver}.
      *
      * @param commandName - The name of the command/executable.
      * @return The resolved full path to the executable.
      * @throws IllegalArgumentException if the executable is not found in the default paths.
      */
     public static String resolveExecutablePath(String commandName) {
-        if (commandName.isBlank()) {
-            // Local binary provided as first arg, no need to resolve
-            return "";
-        }
-        File commandFile = new File(commandName);
-        if (commandFile.exists() && commandFile.canExecute()) {
-            // Specify a binary path, No need to resolve
-            return commandName;
-        }
-        List<String> commonPaths = SystemUtils.IS_OS_WINDOWS
-                ? Arrays.asList(System.getenv("Path").split(";"))
-                : Arrays.asList("/usr/bin", "/bin", "/usr/local/bin", "/sbin");
-
-        for (String path : commonPaths) {
-            File file = new File(path, commandName);
-            if (file.exists() && file.canExecute()) {
-                return file.getAbsolutePath();
-            }
-            if (SystemUtils.IS_OS_WINDOWS) {
-                file = new File(path, commandName + ".bat");
-                if (file.exists() && file.canExecute()) {
-                    return file.getAbsolutePath();
-                }
-            }
-            if (path.toLowerCase().contains(commandName)) {
-                return path;
-            }
-        }
-
-        throw new IllegalArgumentException("Executable '" + commandName + "' not found in default paths.");
+        return ExecutableResolver.resolve(commandName);
     }
 
     /**
@@ -164,7 +172,20 @@ public class CommandExecutor implements Serializable {
      * @return CommandResults object
      */
     public CommandResults exeCommand(File execDir, List<String> args, List<String> credentials) throws InterruptedException, IOException {
-        return exeCommand(execDir, args, credentials, EXECUTION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        return exeCommand(execDir, args, credentials, null);
+    }
+
+    /**
+     * Execute a command in external process, streaming its output while it runs.
+     *
+     * @param execDir     - The execution dir (Usually path to project). Null means current directory.
+     * @param args        - Command arguments.
+     * @param credentials - If specified, the credentials will be concatenated to the other commands. The credentials will be masked in the log output.
+     * @param listener    - If specified, receives every output line as soon as it is produced.
+     * @return CommandResults object, holding only the tail of the output
+     */
+    public CommandResults exeCommand(File execDir, List<String> args, List<String> credentials, CommandOutputListener listener) throws InterruptedException, IOException {
+        return exeCommand(execDir, args, credentials, listener, EXECUTION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
     }
 
     /**
@@ -178,20 +199,37 @@ public class CommandExecutor implements Serializable {
      * @return CommandResults object
      */
     public CommandResults exeCommand(File execDir, List<String> args, List<String> credentials, long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        return exeCommand(execDir, args, credentials, null, timeout, unit);
+    }
+
+    /**
+     * Execute a command in external process.
+     * The output is processed line by line as it arrives, only the last lines are kept (see {@link #setOutputTailLines(int)}).
+     *
+     * @param execDir     - The execution dir (Usually path to project). Null means current directory.
+     * @param args        - Command arguments.
+     * @param credentials - If specified, the credentials will be concatenated to the other commands. The credentials will be masked in the log output.
+     * @param listener    - If specified, receives every output line as soon as it is produced.
+     * @param timeout     - The maximum time to wait for the command execution.
+     * @param unit        - The time unit of the timeout argument.
+     * @return CommandResults object, holding only the tail of the output
+     */
+    public CommandResults exeCommand(File execDir, List<String> args, List<String> credentials, CommandOutputListener listener, long timeout, TimeUnit unit) throws InterruptedException, IOException {
         List<String> command = new ArrayList<>(args);
-        ExecutorService service = Executors.newFixedThreadPool(2);
+        Process process = runProcess(execDir, executablePath, command, credentials, env, shellWrapping);
+        Future<?> inputReaderTask = null;
+        Future<?> errorReaderTask = null;
         try {
-            Process process = runProcess(execDir, executablePath, command, credentials, env);
             // The output stream is not necessary in non-interactive scenarios, therefore we can close it now.
             process.getOutputStream().close();
             try (InputStream inputStream = process.getInputStream(); InputStream errorStream = process.getErrorStream()) {
-                StreamReader inputStreamReader = new StreamReader(inputStream);
-                StreamReader errorStreamReader = new StreamReader(errorStream);
-                service.submit(inputStreamReader);
-                service.submit(errorStreamReader);
+                StreamReader inputStreamReader = new StreamReader(inputStream, false, listener, outputTailLines);
+                StreamReader errorStreamReader = new StreamReader(errorStream, true, listener, outputTailLines);
+                CommandStreamDrainer drainer = CommandStreamDrainer.getInstance();
+                inputReaderTask = drainer.drain(inputStreamReader);
+                errorReaderTask = drainer.drain(errorStreamReader);
                 boolean executionTerminatedProperly = process.waitFor(timeout, unit);
-                service.shutdown();
-                boolean outputReaderTerminatedProperly = service.awaitTermination(READER_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                boolean outputReaderTerminatedProperly = awaitReaders(READER_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS, inputReaderTask, errorReaderTask);
                 boolean terminatedProperly = executionTerminatedProperly && outputReaderTerminatedProperly;
                 return getCommandResults(terminatedProperly, command, inputStreamReader.getOutput(), errorStreamReader.getOutput(), process.exitValue());
             } finally {
@@ -207,7 +245,37 @@ public class CommandExecutor implements Serializable {
                 }
             }
         } finally {
-            service.shutdownNow();
+            // The streams are closed at this point, make sure no reader is left behind
+            cancelReader(inputReaderTask);
+            cancelReader(errorReaderTask);
+        }
+    }
+
+    /**
+     * Wait for the stream readers to finish reading the process output.
+     *
+     * @param timeout - The maximum time to wait for all the readers.
+     * @param unit    - The time unit of the timeout argument.
+     * @param readers - The readers tasks.
+     * @return true if all the readers finished before the timeout elapsed.
+     */
+    private static boolean awaitReaders(long timeout, TimeUnit unit, Future<?>... readers) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> reader : readers) {
+            try {
+                reader.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                Logger.getInstance().debug("Failed to read command output: " + e.getCause().getMessage());
+            }
+        }
+        return true;
+    }
+
+    private static void cancelReader(Future<?> reader) {
+        if (reader != null) {
+            reader.cancel(true);
         }
     }
 
@@ -223,14 +291,21 @@ public class CommandExecutor implements Serializable {
         return commandRes;
     }
 
-    private static Process runProcess(File execDir, String executablePath, List<String> args, List<String> credentials, Map<String, String> env) throws IOException {
-        // Make sure to copy the environment variables map to avoid changing the original map or in case it is immutable.
-        Map<String, String> newEnv = new HashMap<>(env);
-
-        args = formatCommand(args, credentials, executablePath, newEnv);
+    private static Process runProcess(File execDir, String executablePath, List<String> args, List<String> credentials, Map<String, String> env, boolean shellWrapping) throws IOException {
+        Map<String, String> newEnv = env;
+        if (SystemUtils.IS_OS_WINDOWS && !executablePath.isEmpty()) {
+            // Copy on write, the Path variable is modified when formatting a Windows command.
+            newEnv = new HashMap<>(env);
+            String systemPath = System.getenv("Path");
+            if (systemPath != null) {
+                newEnv.putIfAbsent("Path", systemPath);
+            }
+        }
+        args = formatCommand(args, credentials, executablePath, newEnv, shellWrapping);
         logCommand(args);
         ProcessBuilder processBuilder = new ProcessBuilder(args)
                 .directory(execDir);
+        // The process builder environment is already a copy of the IDE environment, only apply the overrides.
         processBuilder.environment().putAll(newEnv);
         return processBuilder.start();
     }
@@ -241,10 +316,11 @@ public class CommandExecutor implements Serializable {
      * @param args           the list of arguments to be included in the command
      * @param credentials    if specified, the credentials will be concatenated to the command
      * @param executablePath the path to the executable to be executed
-     * @param env            environment variables map. It might be modified as part of the formatting process
+     * @param env            environment variables overrides map. It might be modified as part of the formatting process
+     * @param shellWrapping  if true, on Unix, the command is executed through '/bin/sh -c'
      * @return the formatted command as a list of strings, ready for execution
      */
-    private static List<String> formatCommand(List<String> args, List<String> credentials, String executablePath, Map<String, String> env) {
+    static List<String> formatCommand(List<String> args, List<String> credentials, String executablePath, Map<String, String> env, boolean shellWrapping) {
         if (credentials != null) {
             args.addAll(credentials);
         }
@@ -255,6 +331,9 @@ public class CommandExecutor implements Serializable {
             formatWindowsCommand(args, executablePath, env);
             return args;
         }
+        if (shellWrapping) {
+            return formatUnixShellCommand(args, executablePath);
+        }
         return formatUnixCommand(args, executablePath);
     }
 
@@ -276,7 +355,26 @@ public class CommandExecutor implements Serializable {
         args.addAll(0, Arrays.asList("cmd", "/c"));
     }
 
+    /**
+     * Formats a Unix command for direct execution, the arguments are passed to the executable as is.
+     *
+     * @param args           the list of arguments to be included in the command
+     * @param executablePath the path to the executable to be executed
+     * @return the formatted command as a list of strings, ready for execution
+     */
     private static List<String> formatUnixCommand(List<String> args, String executablePath) {
+        args.add(0, executablePath);
+        return args;
+    }
+
+    /**
+     * Formats a Unix command for execution through '/bin/sh -c'. The arguments are joined and re-parsed by the shell.
+     *
+     * @param args           the list of arguments to be included in the command
+     * @param executablePath the path to the executable to be executed
+     * @return the formatted command as a list of strings, ready for execution
+     */
+    private static List<String> formatUnixShellCommand(List<String> args, String executablePath) {
         args.add(0, executablePath.replaceAll(" ", "\\\\ "));
         String strArgs = String.join(" ", args);
         return new ArrayList<String>() {{
@@ -312,26 +410,64 @@ public class CommandExecutor implements Serializable {
         Logger.getInstance().info("Executing command: " + output);
     }
 
-    private static class StreamReader implements Runnable {
+    static class StreamReader implements Runnable {
+        private static final int BUFFER_SIZE = 8192;
+        // Longer lines (i.e. progress bars without line breaks) are truncated to keep the memory bounded
+        private static final int MAX_LINE_LENGTH = 8192;
 
         private final InputStream inputStream;
-        private String output;
+        private final boolean isErrorStream;
+        private final CommandOutputListener listener;
+        private final OutputTail tail;
 
-        StreamReader(InputStream inputStream) {
+        StreamReader(InputStream inputStream, boolean isErrorStream, CommandOutputListener listener, int tailLines) {
             this.inputStream = inputStream;
+            this.isErrorStream = isErrorStream;
+            this.listener = listener;
+            this.tail = new OutputTail(tailLines);
         }
 
         @Override
         public void run() {
-            try {
-                output = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                char[] buffer = new char[BUFFER_SIZE];
+                StringBuilder line = new StringBuilder();
+                boolean lastWasCarriageReturn = false;
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        char c = buffer[i];
+                        if (c == '\n' && lastWasCarriageReturn) {
+                            // '\r\n' line terminator, the line was already flushed at '\r'
+                            lastWasCarriageReturn = false;
+                            continue;
+                        }
+                        lastWasCarriageReturn = c == '\r';
+                        if (c == '\n' || c == '\r') {
+                            onLine(line.toString());
+                            line.setLength(0);
+                        } else if (line.length() < MAX_LINE_LENGTH) {
+                            line.append(c);
+                        }
+                    }
+                }
+                if (!line.isEmpty()) {
+                    onLine(line.toString());
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private void onLine(String line) {
+            tail.add(line);
+            if (listener != null) {
+                listener.onLine(line, isErrorStream);
+            }
+        }
+
         String getOutput() {
-            return this.output;
+            return this.tail.toString();
         }
     }
 }
@@ -0,0 +1,15 @@
+package org.ois.idea.utils.command;
+
+/**
+ * Receives the output of an executed command line by line, as soon as it is produced by the process.
+ * Called from the thread that drains the stream, implementations should return quickly and must be thread safe
+ * when registered for both streams.
+ */
+@FunctionalInterface
+public interface CommandOutputListener {
+    /**
+     * @param line          - A single output line, without the line terminator.
+     * @param isErrorStream - True if the line was written to the process error stream.
+     */
+    void onLine(String line, boolean isErrorStream);
+}
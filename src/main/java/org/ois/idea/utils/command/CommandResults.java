@@ -1,5 +1,10 @@
 package org.ois.idea.utils.command;
 
+/**
+ * Results of a command executed by {@link CommandExecutor}.
+ * The output streams hold only their last lines, for diagnostics: a longer output starts with an omitted lines header.
+ * Callers that parse the output should collect it with an {@link OutputCollector} instead.
+ */
 public class CommandResults {
     private String stdOut;
     private String stdErr;
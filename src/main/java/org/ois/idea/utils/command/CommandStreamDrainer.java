@@ -0,0 +1,71 @@
+package org.ois.idea.utils.command;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide engine that drains the output streams of the commands executed by {@link CommandExecutor}.
+ * Uses virtual threads when running on JDK 21+, otherwise a shared bounded pool of daemon threads that are reused between commands.
+ * The engine lives as long as the plugin, it is shut down when the application service is disposed.
+ */
+public class CommandStreamDrainer implements Disposable {
+
+    private static final String THREAD_NAME_PREFIX = "OIS-Command-Stream-";
+    private static final int MAX_POOL_THREADS = 64;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService executor;
+
+    CommandStreamDrainer() {
+        this.executor = createExecutor();
+    }
+
+    public static CommandStreamDrainer getInstance() { return ApplicationManager.getApplication().getService(CommandStreamDrainer.class); }
+
+    /**
+     * Start draining a stream.
+     *
+     * @param reader - The task reading the stream until its end.
+     * @return A future that is done when the stream was fully read.
+     */
+    public Future<?> drain(Runnable reader) {
+        return executor.submit(reader);
+    }
+
+    private ExecutorService createExecutor() {
+        try {
+            // The plugin targets JDK 17, look up virtual threads at runtime
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Platform threads are reused between commands and terminated after being idle.
+            // When all the threads are busy the reader gets a dedicated thread instead of waiting in a queue,
+            // a queued reader can block the process on a full pipe.
+            return new ThreadPoolExecutor(0, MAX_POOL_THREADS, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), this::newDaemonThread, (task, pool) -> newDaemonThread(task).start());
+        }
+    }
+
+    private Thread newDaemonThread(Runnable task) {
+        Thread thread = new Thread(task, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return the number of platform threads created by the engine, zero with virtual threads
+     */
+    int getCreatedThreads() {
+        return threadCount.get();
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+package org.ois.idea.utils.command;
+
+import org.apache.commons.lang3.SystemUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves executables by searching in common system paths and in the PATH, memoizing the results.
+ * The results are cached per PATH (and PATHEXT on Windows) value: a command resolved with an environment that overrides
+ * them, or after the IDE environment changed, is searched again. {@link #invalidate()} clears all the results
+ * (e.g. once an executable is installed or removed).
+ */
+public class ExecutableResolver {
+
+    private static final String PATH_ENV = SystemUtils.IS_OS_WINDOWS ? "Path" : "PATH";
+    private static final String PATH_EXTENSIONS_ENV = "PATHEXT";
+    private static final List<String> UNIX_COMMON_PATHS = Arrays.asList("/usr/bin", "/bin", "/usr/local/bin", "/sbin");
+    private static final List<String> WINDOWS_DEFAULT_EXTENSIONS = Arrays.asList(".com", ".exe", ".bat", ".cmd");
+
+    // Search environment (PATH and PATHEXT) -> command name -> resolved path
+    private static final Map<String, Map<String, String>> resolvedExecutables = new ConcurrentHashMap<>();
+
+    private ExecutableResolver() {}
+
+    /**
+     * Resolves the full path of an executable with the IDE environment, using the cached result if exists.
+     *
+     * @param commandName - The name of the command/executable.
+     * @return The resolved full path to the executable.
+     * @throws IllegalArgumentException if the executable is not found in the default paths.
+     */
+    public static String resolve(String commandName) {
+        return resolve(commandName, Collections.emptyMap());
+    }
+
+    /**
+     * Resolves the full path of an executable, using the cached result if exists.
+     *
+     * @param commandName - The name of the command/executable.
+     * @param env         - Environment variables overrides of the command, its PATH and PATHEXT are searched instead of the IDE ones.
+     * @return The resolved full path to the executable.
+     * @throws IllegalArgumentException if the executable is not found in the default paths.
+     */
+    public static String resolve(String commandName, Map<String, String> env) {
+        if (commandName.isBlank()) {
+            // Local binary provided as first arg, no need to resolve
+            return "";
+        }
+        String path = getEnv(env, PATH_ENV);
+        String pathExtensions = SystemUtils.IS_OS_WINDOWS ? getEnv(env, PATH_EXTENSIONS_ENV) : null;
+        String searchEnvironment = Objects.toString(path, "") + File.pathSeparator + Objects.toString(pathExtensions, "");
+        return resolvedExecutables.computeIfAbsent(searchEnvironment, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(commandName, name -> search(name, path, pathExtensions));
+    }
+
+    /**
+     * Clear all the resolved executables.
+     */
+    public static void invalidate() {
+        resolvedExecutables.clear();
+    }
+
+    private static String getEnv(Map<String, String> env, String name) {
+        String value = env.get(name);
+        return value != null ? value : System.getenv(name);
+    }
+
+    private static String search(String commandName, String pathEnv, String pathExtensionsEnv) {
+        File commandFile = new File(commandName);
+        if (commandFile.exists() && commandFile.canExecute()) {
+            // Specify a binary path, No need to resolve
+            return commandName;
+        }
+        List<String> searchedPaths = new ArrayList<>();
+        if (!SystemUtils.IS_OS_WINDOWS) {
+            searchedPaths.addAll(UNIX_COMMON_PATHS);
+        }
+        if (pathEnv != null) {
+            for (String path : pathEnv.split(File.pathSeparator)) {
+                if (!path.isBlank() && !searchedPaths.contains(path)) {
+                    searchedPaths.add(path);
+                }
+            }
+        }
+        List<String> extensions = pathExtensionsEnv != null ? Arrays.asList(pathExtensionsEnv.toLowerCase().split(";")) : WINDOWS_DEFAULT_EXTENSIONS;
+
+        for (String path : searchedPaths) {
+            File file = new File(path, commandName);
+            if (file.isFile() && file.canExecute()) {
+                return file.getAbsolutePath();
+            }
+            if (!SystemUtils.IS_OS_WINDOWS) {
+                continue;
+            }
+            for (String extension : extensions) {
+                file = new File(path, commandName + extension);
+                if (!extension.isBlank() && file.isFile() && file.canExecute()) {
+                    return file.getAbsolutePath();
+                }
+            }
+            if (path.toLowerCase().contains(commandName)) {
+                return path;
+            }
+        }
+
+        throw new IllegalArgumentException("Executable '" + commandName + "' not found in default paths.");
+    }
+}
@@ -0,0 +1,77 @@
+package org.ois.idea.utils.command;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output stream that splits the written bytes into UTF-8 lines and passes each complete line to {@link #onLine(String)}.
+ * Lines longer than the limit are truncated, so the memory used by the stream stays bounded.
+ */
+public abstract class LineOutputStream extends OutputStream {
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private boolean lastWasCarriageReturn;
+
+    /**
+     * Called for every complete line, without the line terminator.
+     *
+     * @param line - The line content.
+     */
+    protected abstract void onLine(String line);
+
+    @Override
+    public synchronized void write(int b) {
+        if (b == '\n' && lastWasCarriageReturn) {
+            // '\r\n' line terminator, the line was already flushed at '\r'
+            lastWasCarriageReturn = false;
+            return;
+        }
+        lastWasCarriageReturn = b == '\r';
+        if (b == '\n' || b == '\r') {
+            flushLine();
+        } else if (line.size() < MAX_LINE_LENGTH) {
+            line.write(b);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        int lineStart = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+            append(bytes, lineStart, i - lineStart);
+            lineStart = i + 1;
+            write(b);
+        }
+        append(bytes, lineStart, end - lineStart);
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        lastWasCarriageReturn = false;
+        int allowed = Math.min(length, MAX_LINE_LENGTH - line.size());
+        if (allowed > 0) {
+            line.write(bytes, offset, allowed);
+        }
+    }
+
+    private void flushLine() {
+        onLine(line.toString(StandardCharsets.UTF_8));
+        line.reset();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (line.size() > 0) {
+            flushLine();
+        }
+    }
+}
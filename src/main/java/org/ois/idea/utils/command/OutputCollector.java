@@ -0,0 +1,30 @@
+package org.ois.idea.utils.command;
+
+/**
+ * Collects the full standard output of a command, for the callers that parse it.
+ * The output kept in the {@link CommandResults} is only a tail for diagnostics (see {@link OutputTail}): it may start
+ * with an omitted lines header and miss the beginning of the output.
+ * Only for commands with a small output, the memory is not bounded.
+ */
+public class OutputCollector implements CommandOutputListener {
+
+    private final StringBuilder output = new StringBuilder();
+
+    @Override
+    public synchronized void onLine(String line, boolean isErrorStream) {
+        if (isErrorStream) {
+            return;
+        }
+        if (!output.isEmpty()) {
+            output.append(System.lineSeparator());
+        }
+        output.append(line);
+    }
+
+    /**
+     * @return the lines written to the standard output, joined with the line separator
+     */
+    public synchronized String getOutput() {
+        return output.toString();
+    }
+}
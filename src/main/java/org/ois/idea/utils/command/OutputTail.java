@@ -0,0 +1,53 @@
+package org.ois.idea.utils.command;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded ring buffer that keeps only the last lines of a command output.
+ * Older lines are dropped once the capacity is reached so the memory stays flat no matter how much the process writes.
+ */
+public class OutputTail {
+
+    private final int maxLines;
+    private final Deque<String> lines;
+    private long droppedLines;
+
+    /**
+     * @param maxLines - The maximum number of lines to keep, non-positive value means nothing is kept.
+     */
+    public OutputTail(int maxLines) {
+        this.maxLines = Math.max(0, maxLines);
+        this.lines = new ArrayDeque<>(Math.min(this.maxLines, 1024));
+    }
+
+    public synchronized void add(String line) {
+        if (maxLines == 0) {
+            droppedLines++;
+            return;
+        }
+        if (lines.size() == maxLines) {
+            lines.pollFirst();
+            droppedLines++;
+        }
+        lines.addLast(line);
+    }
+
+    public synchronized long getDroppedLines() {
+        return droppedLines;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        if (droppedLines > 0) {
+            builder.append(String.format("[... %d earlier lines omitted ...]", droppedLines)).append(System.lineSeparator());
+        }
+        String separator = "";
+        for (String line : lines) {
+            builder.append(separator).append(line);
+            separator = System.lineSeparator();
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package org.ois.idea.utils.gradle;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import org.gradle.tooling.BuildCancelledException;
+import org.gradle.tooling.BuildException;
+import org.gradle.tooling.BuildLauncher;
+import org.gradle.tooling.CancellationToken;
+import org.gradle.tooling.GradleConnectionException;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ProjectConnection;
+import org.ois.idea.log.Logger;
+import org.ois.idea.utils.command.CommandResults;
+import org.ois.idea.utils.command.LineOutputStream;
+import org.ois.idea.utils.command.OutputTail;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs Gradle tasks through the Gradle Tooling API.
+ * Keeps a warm connection per project directory, so back-to-back builds reuse the same daemon and skip the client JVM startup.
+ * The connections are closed when the plugin is disposed.
+ */
+public class GradleConnectionManager implements Disposable {
+
+    private static final int OUTPUT_TAIL_LINES = 1000;
+    // Options that take their value as the next argument, i.e. '-D key=value'
+    private static final Set<String> OPTIONS_WITH_VALUE = Set.of(
+            "-D", "--system-prop", "-P", "--project-prop", "-x", "--exclude-task", "-I", "--init-script",
+            "-g", "--gradle-user-home", "-p", "--project-dir", "--max-workers", "--console", "--warning-mode"
+    );
+
+    private final Map<Path, ProjectConnection> connections = new ConcurrentHashMap<>();
+
+    private GradleConnectionManager() {}
+
+    public static GradleConnectionManager getInstance() { return ApplicationManager.getApplication().getService(GradleConnectionManager.class); }
+
+    public CommandResults runTasks(Path projectDir, Map<String, String> environmentVariables, List<String> gradleTasks) {
+        return runTasks(projectDir, environmentVariables, gradleTasks, null);
+    }
+
+    /**
+     * Run Gradle tasks in a project, using the warm connection of the project directory.
+     *
+     * @param projectDir           - The Gradle project directory.
+     * @param environmentVariables - Environment variables to override for the build, empty to inherit the IDE environment.
+     * @param gradleTasks          - Gradle tasks and command line arguments, as would be passed to the Gradle CLI.
+     * @param cancellationToken    - Token to cancel the build with, null if the build can't be cancelled.
+     * @return CommandResults object, holding the tail of the build output. A failed build results with a non-zero exit code.
+     * @throws GradleConnectionException if the build could not be executed with the Tooling API, the connection is closed.
+     * @throws BuildCancelledException   if the build was cancelled.
+     */
+    public CommandResults runTasks(Path projectDir, Map<String, String> environmentVariables, List<String> gradleTasks, CancellationToken cancellationToken) {
+        List<String> tasks = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        splitTasksAndArguments(gradleTasks, tasks, arguments);
+
+        OutputTail stdOut = new OutputTail(OUTPUT_TAIL_LINES);
+        OutputTail stdErr = new OutputTail(OUTPUT_TAIL_LINES);
+        CommandResults results = new CommandResults();
+        Logger.getInstance().info(String.format("Executing Gradle tasks (Tooling API) at '%s': %s", projectDir, String.join(" ", gradleTasks)));
+        try (LineOutputStream out = toTail(stdOut); LineOutputStream err = toTail(stdErr)) {
+            BuildLauncher launcher = getConnection(projectDir).newBuild()
+                    .forTasks(tasks.toArray(new String[0]))
+                    .withArguments(arguments)
+                    .setStandardOutput(out)
+                    .setStandardError(err);
+            if (environmentVariables != null && !environmentVariables.isEmpty()) {
+                // The Tooling API replaces the whole environment of the build
+                Map<String, String> env = new HashMap<>(System.getenv());
+                env.putAll(environmentVariables);
+                launcher.setEnvironmentVariables(env);
+            }
+            if (cancellationToken != null) {
+                launcher.withCancellationToken(cancellationToken);
+            }
+            launcher.run();
+            results.setExitCode(0);
+        } catch (BuildException e) {
+            stdErr.add(e.getMessage());
+            if (e.getCause() != null) {
+                stdErr.add(e.getCause().getMessage());
+            }
+            results.setExitCode(1);
+        } catch (BuildCancelledException e) {
+            throw e;
+        } catch (GradleConnectionException | IllegalStateException e) {
+            // The connection is broken (i.e. the daemon died), the next build opens a new one
+            close(projectDir);
+            throw e;
+        }
+        results.setStdOut(stdOut.toString());
+        results.setStdErr(stdErr.toString());
+        return results;
+    }
+
+    static void splitTasksAndArguments(List<String> gradleTasks, List<String> tasks, List<String> arguments) {
+        boolean isOptionValue = false;
+        for (String token : gradleTasks) {
+            if (isOptionValue || token.startsWith("-")) {
+                arguments.add(token);
+                isOptionValue = !isOptionValue && OPTIONS_WITH_VALUE.contains(token);
+            } else {
+                tasks.add(token);
+            }
+        }
+    }
+
+    private ProjectConnection getConnection(Path projectDir) {
+        return connections.computeIfAbsent(projectDir.toAbsolutePath().normalize(), dir -> {
+            Logger.getInstance().debug("Opening Gradle connection at " + dir);
+            return GradleConnector.newConnector().forProjectDirectory(dir.toFile()).connect();
+        });
+    }
+
+    /**
+     * Close the warm connection of a project directory, if exists.
+     *
+     * @param projectDir - The Gradle project directory.
+     */
+    public void close(Path projectDir) {
+        ProjectConnection connection = connections.remove(projectDir.toAbsolutePath().normalize());
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (RuntimeException e) {
+            Logger.getInstance().debug("Failed to close the Gradle connection at " + projectDir, e);
+        }
+    }
+
+    private static LineOutputStream toTail(OutputTail tail) {
+        return new LineOutputStream() {
+            @Override
+            protected void onLine(String line) {
+                tail.add(line);
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        for (Path projectDir : new ArrayList<>(connections.keySet())) {
+            close(projectDir);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.ois.idea.log;
+
+import com.intellij.notification.NotificationType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class NotificationBatcherTest {
+
+    private static final Map<NotificationType, Integer> RATE_LIMITS = Map.of(
+            NotificationType.INFORMATION, 10,
+            NotificationType.WARNING, 10,
+            NotificationType.ERROR, 5
+    );
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testDuplicatesAreCoalesced() {
+        NotificationBatcher batcher = new NotificationBatcher(100, RATE_LIMITS, clock::get);
+        for (int i = 0; i < 3; i++) {
+            batcher.offer("OIS", "same", NotificationType.WARNING, null);
+        }
+        batcher.offer("OIS", "other", NotificationType.WARNING, null);
+
+        NotificationBatcher.Batch batch = batcher.drain();
+
+        assertEquals(2, batch.getDelivered().size());
+        assertEquals("same (x3)", batch.getDelivered().get(0).getDetails());
+        assertEquals("other", batch.getDelivered().get(1).getDetails());
+        assertEquals(0, batch.getSuppressed());
+    }
+
+    @Test
+    public void testFullQueueDropsAndSummarizes() {
+        NotificationBatcher batcher = new NotificationBatcher(3, RATE_LIMITS, clock::get);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 3, batcher.offer("OIS", "message " + i, NotificationType.INFORMATION, null));
+        }
+
+        NotificationBatcher.Batch batch = batcher.drain();
+
+        assertEquals(3, batch.getDelivered().size());
+        assertEquals(2, batch.getSuppressed());
+        // Drained notifications free the queue
+        assertTrue(batcher.offer("OIS", "message", NotificationType.INFORMATION, null));
+    }
+
+    @Test
+    public void testRateLimitRefillsWithTime() {
+        NotificationBatcher batcher = new NotificationBatcher(100, RATE_LIMITS, clock::get);
+        offerErrors(batcher, 8);
+        NotificationBatcher.Batch batch = batcher.drain();
+        assertEquals(5, batch.getDelivered().size());
+        assertEquals(3, batch.getSuppressed());
+
+        offerErrors(batcher, 8);
+        assertEquals(0, batcher.drain().getDelivered().size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        offerErrors(batcher, 8);
+        assertEquals(2, batcher.drain().getDelivered().size());
+    }
+
+    @Test
+    public void testBalloonOnlyForDeliveredErrors() {
+        NotificationBatcher batcher = new NotificationBatcher(100, Map.of(NotificationType.ERROR, 1), clock::get);
+        batcher.offer("OIS Error", "first", NotificationType.ERROR, "first");
+        batcher.offer("OIS Error", "second", NotificationType.ERROR, "second");
+
+        NotificationBatcher.Batch batch = batcher.drain();
+        assertEquals(1, batch.getDelivered().size());
+        assertEquals("first", batch.getBalloon());
+
+        // Every error of the batch is rate limited, no balloon
+        batcher.offer("OIS Error", "third", NotificationType.ERROR, "third");
+        batch = batcher.drain();
+        assertTrue(batch.getDelivered().isEmpty());
+        assertNull(batch.getBalloon());
+    }
+
+    @Test
+    public void testBalloonOfTheLatestOccurrenceOfCoalescedErrors() {
+        NotificationBatcher batcher = new NotificationBatcher(100, RATE_LIMITS, clock::get);
+        batcher.offer("OIS Error", "a", NotificationType.ERROR, "a");
+        batcher.offer("OIS Error", "b", NotificationType.ERROR, "b");
+        batcher.offer("OIS Error", "a", NotificationType.ERROR, "a");
+
+        assertEquals("a", batcher.drain().getBalloon());
+    }
+
+    @Test
+    public void testConcurrentProducersAndDrain() throws Exception {
+        int producers = 8;
+        int perProducer = 50_000;
+        int maxPending = 1_000;
+        NotificationBatcher batcher = new NotificationBatcher(maxPending, RATE_LIMITS, clock::get);
+        NotificationType[] types = RATE_LIMITS.keySet().toArray(new NotificationType[0]);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CyclicBarrier start = new CyclicBarrier(producers + 1);
+        List<Future<?>> offers = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            offers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    NotificationType type = types[(producer + i) % types.length];
+                    // A few distinct messages, so batches coalesce
+                    String details = type + " " + (i % 7);
+                    batcher.offer("OIS", details, type, type == NotificationType.ERROR ? details : null);
+                }
+                return null;
+            }));
+        }
+
+        boolean producing = true;
+        long total = 0;
+        long drains = 0;
+        long startNanos = System.nanoTime();
+        start.await();
+        while (producing) {
+            producing = !offers.stream().allMatch(Future::isDone);
+            clock.addAndGet(DRAIN_INTERVAL_NANOS);
+            NotificationBatcher.Batch batch = batcher.drain();
+            drains++;
+            Map<NotificationType, Integer> deliveredPerType = new EnumMap<>(NotificationType.class);
+            for (NotificationBatcher.Delivery delivery : batch.getDelivered()) {
+                deliveredPerType.merge(delivery.getType(), 1, Integer::sum);
+                total += delivery.getCount();
+            }
+            total += batch.getSuppressed();
+            deliveredPerType.forEach((type, delivered) -> assertTrue(type + " over its rate limit", delivered <= RATE_LIMITS.get(type)));
+            if (batch.getBalloon() != null) {
+                assertTrue("Balloon of an undelivered error", batch.getDelivered().stream()
+                        .anyMatch(delivery -> delivery.getType() == NotificationType.ERROR && batch.getBalloon().equals(delivery.getDetails().replaceAll(" \\(x\\d+\\)$", ""))));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        for (Future<?> offer : offers) {
+            offer.get();
+        }
+        executor.shutdownNow();
+        // What was queued after the last drain
+        NotificationBatcher.Batch last = batcher.drain();
+        total += last.getSuppressed() + last.getDelivered().stream().mapToInt(NotificationBatcher.Delivery::getCount).sum();
+
+        // Every notification is either delivered (possibly coalesced) or counted in a summary
+        assertEquals((long) producers * perProducer, total);
+        System.out.printf("%d notifications from %d threads in %dms, %d drains%n",
+                producers * perProducer, producers, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), drains);
+    }
+
+    private static void offerErrors(NotificationBatcher batcher, int count) {
+        for (int i = 0; i < count; i++) {
+            batcher.offer("OIS Error", "error " + i, NotificationType.ERROR, "error " + i);
+        }
+    }
+}
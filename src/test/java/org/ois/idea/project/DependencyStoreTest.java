@@ -0,0 +1,116 @@
+package org.ois.idea.project;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.TestGitRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+public class DependencyStoreTest extends BasePlatformTestCase {
+
+    private Path root;
+    private String repositoryUrl;
+    private DependencyStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = Files.createTempDirectory("ois-store");
+        repositoryUrl = TestGitRepository.create(Files.createDirectories(root.resolve("remote")));
+        store = new DependencyStore(root.resolve("dependencies"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtil.delete(root.toFile());
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testCheckoutOfATag() throws Exception {
+        Path checkout = root.resolve("dependencies").resolve("core").resolve("1.0.0").resolve(TestGitRepository.NAME);
+
+        store.checkout(repositoryUrl, TestGitRepository.TAG, checkout, List.of());
+
+        assertTrue(Files.isRegularFile(checkout.resolve(TestGitRepository.OTHER_FILE)));
+        assertFalse(Files.exists(checkout.resolve(TestGitRepository.MAIN_ONLY_FILE)));
+        // A worktree of the shallow mirror
+        assertTrue(Files.isRegularFile(checkout.resolve(".git")));
+        assertEquals("true", TestGitRepository.git(getMirror(), "rev-parse", "--is-shallow-repository"));
+    }
+
+    public void testSparseCheckoutFromTheMirrorIsMaterialized() throws Exception {
+        Path versions = root.resolve("dependencies").resolve("plugin");
+        store.checkout(repositoryUrl, TestGitRepository.TAG, versions.resolve("1.0.0").resolve(TestGitRepository.NAME), List.of());
+        Path checkout = versions.resolve("main").resolve(TestGitRepository.NAME);
+
+        // The mirror exists, the default branch is fetched into it
+        store.checkout(repositoryUrl, null, checkout, List.of(TestGitRepository.SPARSE_DIRECTORY));
+
+        assertTrue(Files.isRegularFile(checkout.resolve(TestGitRepository.SPARSE_DIRECTORY).resolve("Const.java")));
+        assertFalse(Files.exists(checkout.resolve(TestGitRepository.OTHER_FILE)));
+        ProjectUtils.materializeRepository(checkout);
+        assertTrue(Files.isRegularFile(checkout.resolve(TestGitRepository.OTHER_FILE)));
+        assertTrue(Files.isRegularFile(checkout.resolve(TestGitRepository.MAIN_ONLY_FILE)));
+    }
+
+    public void testFailedCheckoutIsRemovedBeforeTheRetry() throws Exception {
+        Path checkout = root.resolve("dependencies").resolve("plugin").resolve("1.0.0").resolve(TestGitRepository.NAME);
+
+        try {
+            // The worktree is created, then the sparse checkout fails
+            store.checkout(repositoryUrl, TestGitRepository.TAG, checkout, List.of("../outside"));
+            fail("The checkout of an invalid sparse directory succeeded");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        assertFalse(Files.exists(checkout));
+        assertEquals(1, countWorktrees(getMirror()));
+
+        store.checkout(repositoryUrl, null, checkout, List.of(TestGitRepository.SPARSE_DIRECTORY));
+        assertTrue(Files.isRegularFile(checkout.resolve(TestGitRepository.SPARSE_DIRECTORY).resolve("Const.java")));
+    }
+
+    public void testGarbageCollectionCompactsTheMirror() throws Exception {
+        Path versions = root.resolve("dependencies").resolve("core");
+        Path evicted = versions.resolve("1.0.0");
+        Path recent = versions.resolve("2.0.0");
+        store.checkout(repositoryUrl, TestGitRepository.TAG, evicted.resolve(TestGitRepository.NAME), List.of());
+        store.checkout(repositoryUrl, null, recent.resolve(TestGitRepository.NAME), List.of());
+        Files.setLastModifiedTime(evicted, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        store.setMaxSizeBytes(1);
+
+        store.collectGarbage();
+
+        assertFalse(Files.exists(evicted));
+        // Versions used in the last hour are kept, with their objects
+        assertEquals(2, countWorktrees(getMirror()));
+        TestGitRepository.git(recent.resolve(TestGitRepository.NAME), "status");
+        assertTrue(Files.isRegularFile(recent.resolve(TestGitRepository.NAME).resolve(TestGitRepository.MAIN_ONLY_FILE)));
+
+        // Without versions, the mirror is deleted
+        Files.setLastModifiedTime(recent, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        store.collectGarbage();
+        assertFalse(Files.exists(recent));
+        assertFalse(Files.exists(getMirror()));
+    }
+
+    private Path getMirror() {
+        return root.resolve("dependencies").resolve("mirrors").resolve(TestGitRepository.NAME + ".git");
+    }
+
+    /**
+     * @return the number of worktrees of the mirror, including the mirror itself
+     */
+    private static long countWorktrees(Path mirror) throws Exception {
+        return TestGitRepository.git(mirror, "worktree", "list", "--porcelain").lines().filter(line -> line.startsWith("worktree ")).count();
+    }
+}
@@ -0,0 +1,31 @@
+package org.ois.idea.simulation;
+
+import com.intellij.util.execution.ParametersListUtil;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DevModeSimulationTest {
+
+    @Test
+    public void testReloadLatencyBudget() {
+        assertFalse(DevModeSimulation.isOverBudget(List.of()));
+        assertFalse(DevModeSimulation.isOverBudget(List.of(200L, 300L, 4000L)));
+        assertTrue(DevModeSimulation.isOverBudget(List.of(200L, 1500L, 4000L)));
+        assertEquals(300L, DevModeSimulation.getMedian(List.of(200L, 300L, 400L, 4000L)));
+    }
+
+    @Test
+    public void testGradleTaskKeepsTheDevModeDirInOneArgument() {
+        String devModeDir = Paths.get(System.getProperty("java.io.tmpdir"), "ois_My Game_dev").toString();
+
+        List<String> arguments = ParametersListUtil.parse(SimulationManager.getDevModeTask(Paths.get(devModeDir)));
+
+        assertEquals(List.of("runDesktop", "--info", "-D", "org.ois.runner.devModeDir=" + devModeDir), arguments);
+    }
+}
@@ -0,0 +1,95 @@
+package org.ois.idea.simulation;
+
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.process.NopProcessHandler;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RunSessionRegistryTest extends BasePlatformTestCase {
+
+    private static final int LAUNCHES = 10_000;
+    private static final String TASK = "runDesktop --info -D org.ois.runner.debugMode=true";
+
+    public void testLaunchesDoNotAccumulateConfigurationsOrListeners() {
+        RunSessionRegistry registry = RunSessionRegistry.getInstance(getProject());
+        ExecutionListener events = getProject().getMessageBus().syncPublisher(ExecutionManager.EXECUTION_TOPIC);
+        String executorId = DefaultRunExecutor.EXECUTOR_ID;
+        AtomicInteger delivered = new AtomicInteger();
+        RunnerAndConfigurationSettings first = registry.getConfiguration(TASK, getProject().getBasePath());
+        int configurations = RunManager.getInstance(getProject()).getAllSettings().size();
+
+        for (int i = 0; i < LAUNCHES; i++) {
+            assertSame(first, registry.getConfiguration(TASK, getProject().getBasePath()));
+            ExecutionEnvironment environment = new ExecutionEnvironment();
+            ProcessHandler handler = new NopProcessHandler();
+            Disposable session = registry.openSession(environment, new CountingListener(delivered));
+            // Every other launch fails to start
+            if (i % 2 == 0) {
+                events.processStarted(executorId, environment, handler);
+                events.processTerminated(executorId, environment, handler, 0);
+            } else {
+                events.processNotStarted(executorId, environment);
+            }
+            assertTrue(Disposer.isDisposed(session));
+        }
+
+        assertEquals(configurations, RunManager.getInstance(getProject()).getAllSettings().size());
+        assertEquals(0, registry.getActiveSessionCount());
+        // Started launches deliver two events, failed ones a single event
+        int expectedEvents = LAUNCHES / 2 * 2 + LAUNCHES / 2;
+        assertEquals(expectedEvents, delivered.get());
+
+        // The listeners of the ended launches were removed, a new launch is the only one called
+        ExecutionEnvironment environment = new ExecutionEnvironment();
+        registry.openSession(environment, new CountingListener(delivered));
+        events.processNotStarted(executorId, new ExecutionEnvironment());
+        events.processNotStarted(executorId, environment);
+        assertEquals(expectedEvents + 1, delivered.get());
+        assertEquals(0, registry.getActiveSessionCount());
+    }
+
+    public void testSessionDisposedBeforeTheLaunchEndsStopsListening() {
+        RunSessionRegistry registry = RunSessionRegistry.getInstance(getProject());
+        ExecutionEnvironment environment = new ExecutionEnvironment();
+        AtomicInteger delivered = new AtomicInteger();
+
+        Disposer.dispose(registry.openSession(environment, new CountingListener(delivered)));
+        getProject().getMessageBus().syncPublisher(ExecutionManager.EXECUTION_TOPIC).processNotStarted(DefaultRunExecutor.EXECUTOR_ID, environment);
+
+        assertEquals(0, delivered.get());
+        assertEquals(0, registry.getActiveSessionCount());
+    }
+
+    private static class CountingListener implements ExecutionListener {
+        private final AtomicInteger delivered;
+
+        CountingListener(AtomicInteger delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void processStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler) {
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler, int exitCode) {
+            delivered.incrementAndGet();
+        }
+    }
+}
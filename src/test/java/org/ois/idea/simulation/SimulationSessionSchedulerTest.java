@@ -0,0 +1,76 @@
+package org.ois.idea.simulation;
+
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationSessionSchedulerTest {
+
+    @Test
+    public void testCancelRunsEveryHandlerOnce() {
+        SimulationSessionScheduler.SessionScope scope = new SimulationSessionScheduler.SessionScope();
+        AtomicInteger stopped = new AtomicInteger();
+        scope.onCancel(stopped::incrementAndGet);
+        scope.onCancel(stopped::incrementAndGet);
+
+        scope.cancel();
+        scope.cancel();
+
+        assertTrue(scope.isCancelled());
+        assertEquals(2, stopped.get());
+    }
+
+    @Test
+    public void testHandlerRegisteredAfterCancelRunsImmediately() {
+        SimulationSessionScheduler.SessionScope scope = new SimulationSessionScheduler.SessionScope();
+        scope.cancel();
+        AtomicInteger stopped = new AtomicInteger();
+        scope.onCancel(stopped::incrementAndGet);
+
+        assertEquals(1, stopped.get());
+    }
+
+    @Test
+    public void testCompleteEndsTheScope() {
+        SimulationSessionScheduler.SessionScope scope = new SimulationSessionScheduler.SessionScope();
+        assertFalse(scope.isEnded());
+
+        scope.complete();
+
+        assertTrue(scope.isEnded());
+        assertFalse(scope.isCancelled());
+    }
+
+    @Test
+    public void testConcurrentCancelAndRegistrationRunTheHandlerOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                SimulationSessionScheduler.SessionScope scope = new SimulationSessionScheduler.SessionScope();
+                AtomicInteger stopped = new AtomicInteger();
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> register = executor.submit(() -> {
+                    start.await();
+                    scope.onCancel(stopped::incrementAndGet);
+                    return null;
+                });
+                Future<?> cancel = executor.submit(() -> {
+                    start.await();
+                    scope.cancel();
+                    return null;
+                });
+                register.get(10, TimeUnit.SECONDS);
+                cancel.get(10, TimeUnit.SECONDS);
+
+                assertEquals(1, stopped.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.ois.idea.simulation;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SimulationSessionThreadsTest extends BasePlatformTestCase {
+
+    private static final int SESSIONS = 3_000;
+    private static final int BATCH = 50;
+    private static final String SESSION_THREAD_PREFIX = "OIS-Simulation-Session-";
+    // Idle threads the shared IDE pools may keep after the sessions, far below a thread per session
+    private static final int POOL_SLACK = 64;
+
+    public void testShortSessionsLeaveNoThreads() throws Exception {
+        SimulationSessionScheduler scheduler = SimulationSessionScheduler.getInstance(getProject());
+        int baseline = Thread.activeCount();
+
+        for (int batch = 0; batch < SESSIONS / BATCH; batch++) {
+            CountDownLatch ended = new CountDownLatch(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                switch (i % 3) {
+                    case 0 -> scheduler.schedule("completes", null, SimulationSessionScheduler.SessionScope::complete, ended::countDown);
+                    case 1 -> scheduler.schedule("fails", null, scope -> {
+                        throw new IllegalStateException("session failed");
+                    }, ended::countDown);
+                    // Stopped by its deadline, ends once cancelled
+                    default -> scheduler.schedule("deadline", Duration.ofMillis(1), scope -> scope.onCancel(scope::complete), ended::countDown);
+                }
+            }
+            await(ended);
+        }
+
+        assertEquals(0, scheduler.getActiveSessionCount());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (countSessionThreads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, countSessionThreads());
+        assertTrue("Live threads grew from " + baseline + " to " + Thread.activeCount(), Thread.activeCount() <= baseline + POOL_SLACK);
+    }
+
+    private static void await(CountDownLatch ended) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        // Sessions are queued from the event dispatch thread the test runs on
+        while (!ended.await(10, TimeUnit.MILLISECONDS)) {
+            PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+            assertTrue("Sessions did not end", System.nanoTime() < deadline);
+        }
+    }
+
+    private static long countSessionThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith(SESSION_THREAD_PREFIX))
+                .count();
+    }
+}
@@ -0,0 +1,158 @@
+package org.ois.idea.simulation.assets;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.simulation.export.ExportCache;
+import org.ois.idea.utils.ProjectUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AssetPipelineTest extends BasePlatformTestCase {
+
+    private static final List<RunnerConfiguration.RunnerType> PLATFORMS = List.of(RunnerConfiguration.RunnerType.Desktop, RunnerConfiguration.RunnerType.Html);
+
+    private Path projectDirectory;
+    private Path resources;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        projectDirectory = ProjectUtils.getProjectBasePath(getProject());
+        resources = AssetPipeline.getResourcesDirectory(projectDirectory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            ExportCache.deleteDirectory(projectDirectory.resolve("src"));
+            ExportCache.deleteDirectory(projectDirectory.resolve("build"));
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testAssetsAreProcessedAgainOnlyWhenTheyChange() throws Exception {
+        AssetPipeline pipeline = AssetPipeline.getInstance(getProject());
+        CountingProcessor counting = new CountingProcessor();
+        pipeline.registerProcessor(counting);
+        write("data/first.txt", "first");
+        write("data/second.txt", "second");
+        write("readme.md", "copied");
+        Files.createDirectories(resources.resolve("ui/buttons.atlas"));
+        ImageIO.write(AtlasPackerTest.image(16, 16, 0xFFFF0000), "png", resources.resolve("ui/buttons.atlas/play.png").toFile());
+
+        pipeline.build(PLATFORMS, () -> false);
+        assertEquals(4, counting.processed.get());
+        for (RunnerConfiguration.RunnerType platform : PLATFORMS) {
+            Path output = AssetPipeline.getOutputDirectory(projectDirectory, platform);
+            assertEquals("FIRST", Files.readString(output.resolve("data/first.txt")));
+            assertEquals("copied", Files.readString(output.resolve("readme.md")));
+            assertTrue(Files.isRegularFile(output.resolve("ui/buttons.png")));
+            assertTrue(Files.isRegularFile(output.resolve("ui/buttons.atlas.json")));
+        }
+
+        // Nothing changed, the outputs come from the cache
+        pipeline.build(PLATFORMS, () -> false);
+        assertEquals(4, counting.processed.get());
+
+        write("data/first.txt", "first, changed");
+        Files.delete(resources.resolve("data/second.txt"));
+        pipeline.build(PLATFORMS, () -> false);
+        assertEquals(6, counting.processed.get());
+        for (RunnerConfiguration.RunnerType platform : PLATFORMS) {
+            Path output = AssetPipeline.getOutputDirectory(projectDirectory, platform);
+            assertEquals("FIRST, CHANGED", Files.readString(output.resolve("data/first.txt")));
+            assertFalse(Files.exists(output.resolve("data/second.txt")));
+        }
+    }
+
+    public void testInstallReplacesTheExportedResources() throws Exception {
+        write("data/level.json", "{}");
+        write("data/unused.json", "{}");
+        AssetPipeline pipeline = AssetPipeline.getInstance(getProject());
+        pipeline.build(List.of(RunnerConfiguration.RunnerType.Html), () -> false);
+        Path processed = AssetPipeline.getOutputDirectory(projectDirectory, RunnerConfiguration.RunnerType.Html);
+        Files.delete(processed.resolve("data/unused.json"));
+        Files.writeString(processed.resolve("data/level.json"), "{\"processed\":true}");
+        // The export put the raw resources under 'html/assets'
+        Path distribution = projectDirectory.resolve("build/distribution/html");
+        Files.createDirectories(distribution.resolve("assets/data"));
+        Files.writeString(distribution.resolve("assets/data/level.json"), "{}");
+        Files.writeString(distribution.resolve("assets/data/unused.json"), "{}");
+        Files.writeString(distribution.resolve("index.html"), "html");
+
+        pipeline.install(RunnerConfiguration.RunnerType.Html, distribution);
+
+        assertEquals("{\"processed\":true}", Files.readString(distribution.resolve("assets/data/level.json")));
+        assertFalse(Files.exists(distribution.resolve("assets/data/unused.json")));
+        assertEquals("html", Files.readString(distribution.resolve("index.html")));
+    }
+
+    /**
+     * Builds the Html assets of a project with large images to downscale, then builds them again with nothing changed.
+     */
+    public void testCachedBuildBenchmark() throws Exception {
+        // New content on each run, the first build is never served by the cache of a previous run
+        Random random = new Random();
+        for (int i = 0; i < 16; i++) {
+            BufferedImage image = new BufferedImage(2048, 2048, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, random.nextInt());
+            Path file = resources.resolve(String.format(Locale.ROOT, "textures/texture%d.png", i));
+            Files.createDirectories(file.getParent());
+            ImageIO.write(image, "png", file.toFile());
+        }
+        AssetPipeline pipeline = AssetPipeline.getInstance(getProject());
+
+        long start = System.nanoTime();
+        pipeline.build(List.of(RunnerConfiguration.RunnerType.Html), () -> false);
+        long cold = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        pipeline.build(List.of(RunnerConfiguration.RunnerType.Html), () -> false);
+        long cached = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Html assets of 16 textures of 2048x2048: %dms processed, %dms cached%n", cold, cached);
+
+        BufferedImage scaled = ImageIO.read(AssetPipeline.getOutputDirectory(projectDirectory, RunnerConfiguration.RunnerType.Html).resolve("textures/texture0.png").toFile());
+        assertEquals(new ImageDownscaler().getMaxDimension(), scaled.getWidth());
+        assertTrue("The cached build took " + cached + "ms", cached < cold);
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = resources.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    /**
+     * Upper cases the text files, counting its processing.
+     */
+    private static class CountingProcessor implements AssetProcessor {
+        // A new id on each run, the assets are not in the cache of a previous run
+        private final String id = "counting-" + UUID.randomUUID();
+        private final AtomicInteger processed = new AtomicInteger();
+
+        @Override
+        public String getId() { return id; }
+
+        @Override
+        public boolean accepts(Asset asset, RunnerConfiguration.RunnerType platform) {
+            return "txt".equals(asset.getExtension());
+        }
+
+        @Override
+        public void process(Asset asset, RunnerConfiguration.RunnerType platform, Path output) throws IOException {
+            processed.incrementAndGet();
+            Path target = output.resolve(asset.getPath());
+            Files.createDirectories(target.getParent());
+            Files.writeString(target, Files.readString(asset.getLocation()).toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.ois.idea.simulation.assets;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ois.core.runner.RunnerConfiguration;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class AtlasPackerTest {
+
+    private final AtlasPacker packer = new AtlasPacker();
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ois-atlas");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testPacksTheImagesWithoutOverlap() throws IOException {
+        Map<String, Integer> colors = new LinkedHashMap<>();
+        colors.put("play", 0xFFFF0000);
+        colors.put("quit", 0xFF00FF00);
+        colors.put("icons/star", 0xFF0000FF);
+        colors.put("icons/heart", 0xFFFFFF00);
+        Asset atlas = atlas("ui/buttons.atlas", Map.of(
+                "play.png", image(120, 40, colors.get("play")),
+                "quit.png", image(100, 40, colors.get("quit")),
+                "icons/star.png", image(32, 32, colors.get("icons/star")),
+                "icons/heart.png", image(30, 60, colors.get("icons/heart"))
+        ));
+        Files.writeString(atlas.getLocation().resolve("notes.txt"), "not an image");
+        atlas = reload(atlas);
+        assertTrue(packer.accepts(atlas, RunnerConfiguration.RunnerType.Desktop));
+
+        Path output = root.resolve("output");
+        packer.process(atlas, RunnerConfiguration.RunnerType.Desktop, output);
+
+        BufferedImage texture = ImageIO.read(output.resolve("ui/buttons.png").toFile());
+        JsonObject description = JsonParser.parseString(Files.readString(output.resolve("ui/buttons.atlas.json"))).getAsJsonObject();
+        assertEquals("buttons.png", description.get("texture").getAsString());
+        assertEquals(texture.getWidth(), description.get("width").getAsInt());
+        assertEquals(texture.getHeight(), description.get("height").getAsInt());
+        assertEquals(1, Integer.bitCount(texture.getWidth()));
+        assertEquals(1, Integer.bitCount(texture.getHeight()));
+
+        JsonObject regions = description.getAsJsonObject("regions");
+        assertEquals(colors.keySet(), regions.keySet());
+        List<int[]> placed = new ArrayList<>();
+        for (String name : regions.keySet()) {
+            JsonObject region = regions.getAsJsonObject(name);
+            int[] bounds = {region.get("x").getAsInt(), region.get("y").getAsInt(), region.get("width").getAsInt(), region.get("height").getAsInt()};
+            assertTrue(name, bounds[0] + bounds[2] <= texture.getWidth() && bounds[1] + bounds[3] <= texture.getHeight());
+            for (int[] other : placed) {
+                assertFalse(name + " overlaps", bounds[0] < other[0] + other[2] && other[0] < bounds[0] + bounds[2] && bounds[1] < other[1] + other[3] && other[1] < bounds[1] + bounds[3]);
+            }
+            placed.add(bounds);
+            // The corners of the region are the image
+            assertEquals(name, (int) colors.get(name), texture.getRGB(bounds[0], bounds[1]));
+            assertEquals(name, (int) colors.get(name), texture.getRGB(bounds[0] + bounds[2] - 1, bounds[1] + bounds[3] - 1));
+        }
+    }
+
+    @Test
+    public void testAcceptsAtlasDirectoriesOnly() throws IOException {
+        Asset image = new Asset("ui/logo.png", root.resolve("logo.png"), new TreeMap<>(Map.of("", root.resolve("logo.png"))), "hash");
+        Asset directory = new Asset("ui/buttons", root, new TreeMap<>(Map.of("play.png", root.resolve("play.png"))), "hash");
+
+        assertFalse(packer.accepts(image, RunnerConfiguration.RunnerType.Desktop));
+        assertFalse(packer.accepts(directory, RunnerConfiguration.RunnerType.Desktop));
+    }
+
+    @Test(expected = IOException.class)
+    public void testAtlasLargerThanTheMaximumTexture() throws IOException {
+        Asset atlas = atlas("huge.atlas", Map.of("wide.png", image(5000, 4, 0xFF000000)));
+
+        packer.process(atlas, RunnerConfiguration.RunnerType.Desktop, root.resolve("output"));
+    }
+
+    private Asset atlas(String path, Map<String, BufferedImage> images) throws IOException {
+        Path location = root.resolve("resources").resolve(path);
+        for (Map.Entry<String, BufferedImage> image : images.entrySet()) {
+            Path file = location.resolve(image.getKey());
+            Files.createDirectories(file.getParent());
+            ImageIO.write(image.getValue(), "png", file.toFile());
+        }
+        return reload(new Asset(path, location, new TreeMap<>(), "hash"));
+    }
+
+    private static Asset reload(Asset asset) throws IOException {
+        SortedMap<String, Path> files = new TreeMap<>();
+        try (Stream<Path> walk = Files.walk(asset.getLocation())) {
+            walk.filter(Files::isRegularFile).forEach(file -> files.put(asset.getLocation().relativize(file).toString().replace('\\', '/'), file));
+        }
+        return new Asset(asset.getPath(), asset.getLocation(), files, asset.getHash());
+    }
+
+    static BufferedImage image(int width, int height, int argb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+}
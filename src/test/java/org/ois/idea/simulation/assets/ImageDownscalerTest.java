@@ -0,0 +1,95 @@
+package org.ois.idea.simulation.assets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ois.core.runner.RunnerConfiguration;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ImageDownscalerTest {
+
+    private final ImageDownscaler downscaler = new ImageDownscaler();
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ois-downscaler");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testAcceptsHtmlImagesOnly() throws IOException {
+        Asset image = asset("ui/logo.PNG", AtlasPackerTest.image(4, 4, 0xFF000000), "png");
+        Asset text = new Asset("data/level.json", root.resolve("level.json"), new TreeMap<>(Map.of("", root.resolve("level.json"))), "hash");
+
+        assertTrue(downscaler.accepts(image, RunnerConfiguration.RunnerType.Html));
+        assertFalse(downscaler.accepts(image, RunnerConfiguration.RunnerType.Desktop));
+        assertFalse(downscaler.accepts(text, RunnerConfiguration.RunnerType.Html));
+    }
+
+    @Test
+    public void testLargeImagesKeepTheirAspectRatio() throws IOException {
+        downscaler.setMaxDimension(256);
+        Asset wide = asset("ui/background.png", AtlasPackerTest.image(3000, 1500, 0xFF336699), "png");
+        Asset tall = asset("ui/tower.jpg", AtlasPackerTest.image(300, 900, 0xFF336699), "jpg");
+
+        downscaler.process(wide, RunnerConfiguration.RunnerType.Html, root.resolve("output"));
+        downscaler.process(tall, RunnerConfiguration.RunnerType.Html, root.resolve("output"));
+
+        BufferedImage scaledWide = ImageIO.read(root.resolve("output/ui/background.png").toFile());
+        assertEquals(256, scaledWide.getWidth());
+        assertEquals(128, scaledWide.getHeight());
+        assertEquals(0xFF336699, scaledWide.getRGB(128, 64));
+        BufferedImage scaledTall = ImageIO.read(root.resolve("output/ui/tower.jpg").toFile());
+        assertEquals(85, scaledTall.getWidth());
+        assertEquals(256, scaledTall.getHeight());
+    }
+
+    @Test
+    public void testSmallImagesAreCopied() throws IOException {
+        Asset small = asset("ui/icon.png", AtlasPackerTest.image(64, 32, 0xFF00FF00), "png");
+
+        downscaler.process(small, RunnerConfiguration.RunnerType.Html, root.resolve("output"));
+
+        assertArrayEquals(Files.readAllBytes(small.getLocation()), Files.readAllBytes(root.resolve("output/ui/icon.png")));
+    }
+
+    @Test
+    public void testTheMaximumDimensionIsPartOfTheId() {
+        String id = downscaler.getId();
+        downscaler.setMaxDimension(512);
+
+        assertNotEquals(id, downscaler.getId());
+    }
+
+    private Asset asset(String path, BufferedImage image, String format) throws IOException {
+        BufferedImage written = image;
+        if ("jpg".equals(format)) {
+            written = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            written.getGraphics().drawImage(image, 0, 0, null);
+        }
+        Path file = root.resolve("resources").resolve(path);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(written, format, file.toFile());
+        return new Asset(path, file, new TreeMap<>(Map.of("", file)), "hash");
+    }
+}
@@ -0,0 +1,123 @@
+package org.ois.idea.simulation.benchmark;
+
+import org.junit.Test;
+import org.ois.core.state.IState;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeadlessBenchmarkTest {
+
+    @Test
+    public void testLifecycleOfTheBenchmarkedState() throws Exception {
+        CountingState.calls.clear();
+        long[] frameNanos = new long[10];
+        long[] frameBytes = new long[10];
+
+        Map<String, Number> metrics = HeadlessBenchmark.run(CountingState.class, 10, 5, 0.5f, 640, 480, frameNanos, frameBytes);
+
+        List<String> expected = new ArrayList<>(List.of("enter 0", "resize 640x480"));
+        for (int i = 0; i < 15; i++) {
+            expected.add("update 0.5");
+        }
+        expected.addAll(List.of("exit", "dispose"));
+        assertEquals(expected, CountingState.calls);
+        assertEquals(10, metrics.get("frames").intValue());
+        assertEquals(5, metrics.get("warmupFrames").intValue());
+        assertTrue(metrics.get("frameTimeMaxMicros").doubleValue() >= metrics.get("frameTimeP50Micros").doubleValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnlyStatesAreBenchmarked() throws Exception {
+        HeadlessBenchmark.run(String.class, 1, 0, 0.5f, 640, 480, new long[1], new long[1]);
+    }
+
+    @Test
+    public void testRegressionsAboveThresholdAndNoise() {
+        Map<String, Double> baseline = Map.of("frameTimeMeanMicros", 100.0, "frameTimeP50Micros", 0.5, "allocatedBytesPerFrame", 1000.0);
+        Map<String, Number> metrics = Map.of(
+                // +20%
+                "frameTimeMeanMicros", 120.0,
+                // +100% but below the noise floor of the metric
+                "frameTimeP50Micros", 1.0,
+                // +5%
+                "allocatedBytesPerFrame", 1050.0,
+                // Not in the baseline
+                "frameTimeP99Micros", 500.0
+        );
+
+        List<String> regressions = HeadlessBenchmark.compare(baseline, metrics, 0.1);
+
+        assertEquals(List.of("frameTimeMeanMicros 120.0 > 100.0 (+20%)"), regressions);
+    }
+
+    @Test
+    public void testReadReport() throws Exception {
+        Path report = Files.createTempFile("benchmark", ".json");
+        try {
+            Files.writeString(report, "{\n  \"state\": \"org.example.GameState\",\n  \"measured\": \"update\",\n  \"frames\": 600,\n"
+                    + "  \"frameTimeMeanMicros\": 12.5,\n  \"allocationRateMBPerSecond\": 1.5E-4,\n"
+                    + "  \"regressions\": [\"frameTimeMeanMicros 12.5 > 10.0 (+25%)\", \"a \\\"quoted\\\" one\"]\n}\n", StandardCharsets.UTF_8);
+
+            Map<String, Double> metrics = HeadlessBenchmark.readMetrics(report);
+            assertEquals(600.0, metrics.get("frames"), 0);
+            assertEquals(12.5, metrics.get("frameTimeMeanMicros"), 0);
+            assertEquals(1.5E-4, metrics.get("allocationRateMBPerSecond"), 0);
+            assertEquals(List.of("frameTimeMeanMicros 12.5 > 10.0 (+25%)", "a \"quoted\" one"), HeadlessBenchmark.readRegressions(report));
+        } finally {
+            Files.delete(report);
+        }
+    }
+
+    public static class CountingState implements IState {
+        static final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void enter(Object... parameters) {
+            calls.add("enter " + parameters.length);
+        }
+
+        @Override
+        public void exit() {
+            calls.add("exit");
+        }
+
+        @Override
+        public void pause() {
+            calls.add("pause");
+        }
+
+        @Override
+        public void resume() {
+            calls.add("resume");
+        }
+
+        @Override
+        public void resize(int width, int height) {
+            calls.add("resize " + width + "x" + height);
+        }
+
+        @Override
+        public void render() {
+            calls.add("render");
+        }
+
+        @Override
+        public boolean update(float dt) {
+            calls.add("update " + dt);
+            return true;
+        }
+
+        @Override
+        public void dispose() {
+            calls.add("dispose");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.ois.idea.simulation.console;
+
+import org.junit.Test;
+import org.ois.core.utils.log.ILogger;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SimulationLogBufferTest {
+
+    private static final ILogger.Level[] LEVELS = ILogger.Level.values();
+
+    @Test
+    public void testQueriesMatchAFullScanAfterEviction() {
+        SimulationLogBuffer buffer = new SimulationLogBuffer(1000);
+        int[] states = {SimulationLogBuffer.NO_STATE, buffer.getStateId("menu"), buffer.getStateId("game")};
+        Random random = new Random(42);
+        for (int i = 0; i < 2500; i++) {
+            buffer.append(LEVELS[random.nextInt(LEVELS.length)], states[random.nextInt(states.length)], (i % 10 == 0 ? "Needle " : "line ") + i);
+        }
+        assertEquals(1500, buffer.getFirstSequence());
+        assertNull(buffer.get(1499));
+
+        List<LogFilter> filters = new ArrayList<>();
+        for (int state : new int[]{LogFilter.ANY_STATE, states[0], states[1], states[2]}) {
+            for (Set<ILogger.Level> levels : List.of(EnumSet.allOf(ILogger.Level.class), EnumSet.of(LEVELS[0]), EnumSet.of(LEVELS[1], LEVELS[LEVELS.length - 1]))) {
+                filters.add(new LogFilter(levels, state, ""));
+                filters.add(new LogFilter(levels, state, "needle"));
+            }
+        }
+        for (LogFilter filter : filters) {
+            assertArrayEquals(scan(buffer, filter, 0, buffer.getNextSequence()), buffer.query(filter, 0, buffer.getNextSequence(), () -> false));
+            assertArrayEquals(scan(buffer, filter, 1800, 2200), buffer.query(filter, 1800, 2200, () -> false));
+        }
+    }
+
+    @Test
+    public void testClearKeepsTheSequence() {
+        SimulationLogBuffer buffer = new SimulationLogBuffer(10);
+        buffer.append(LEVELS[0], SimulationLogBuffer.NO_STATE, "before");
+        buffer.clear();
+        long sequence = buffer.append(LEVELS[0], buffer.getStateId("game"), "after");
+
+        assertEquals(1, sequence);
+        assertArrayEquals(new long[]{1}, buffer.query(LogFilter.all(), 0, buffer.getNextSequence(), () -> false));
+        assertEquals("game", buffer.get(1).getState());
+    }
+
+    @Test
+    public void testCancelledQuery() {
+        SimulationLogBuffer buffer = new SimulationLogBuffer(10);
+        buffer.append(LEVELS[0], SimulationLogBuffer.NO_STATE, "line");
+
+        assertNull(buffer.query(LogFilter.all(), 0, buffer.getNextSequence(), () -> true));
+    }
+
+    @Test
+    public void testSequenceIndexGrowsAcrossTheRing() {
+        SequenceIndex index = new SequenceIndex();
+        for (long sequence = 0; sequence < 10; sequence++) {
+            index.add(sequence);
+        }
+        for (long sequence = 0; sequence < 8; sequence++) {
+            index.removeFirst(sequence);
+        }
+        // Wraps around, then grows
+        for (long sequence = 10; sequence < 40; sequence++) {
+            index.add(sequence);
+        }
+        index.removeFirst(100);
+
+        assertEquals(32, index.size());
+        assertEquals(8, index.get(0));
+        assertEquals(39, index.get(31));
+        assertEquals(2, index.lowerBound(10));
+        assertEquals(32, index.lowerBound(40));
+    }
+
+    /**
+     * Queries over a full buffer of a million records, while a writer keeps appending.
+     * The writer must never wait long for the buffer lock.
+     */
+    @Test
+    public void testQueriesOfAMillionRecordsDoNotBlockTheWriter() throws Exception {
+        int capacity = 1_000_000;
+        SimulationLogBuffer buffer = new SimulationLogBuffer(capacity);
+        int[] states = {SimulationLogBuffer.NO_STATE, buffer.getStateId("menu"), buffer.getStateId("game")};
+        for (int i = 0; i < capacity; i++) {
+            // Errors are rare, as in a real log
+            ILogger.Level level = i % 1000 == 0 ? LEVELS[LEVELS.length - 1] : LEVELS[i % (LEVELS.length - 1)];
+            buffer.append(level, states[i % states.length], "frame " + i + " rendered");
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong maxAppendNanos = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            long i = 0;
+            while (writing.get()) {
+                long start = System.nanoTime();
+                buffer.append(LEVELS[0], SimulationLogBuffer.NO_STATE, "writer " + i++);
+                maxAppendNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+            }
+        });
+        writer.start();
+        Map<String, LogFilter> filters = new LinkedHashMap<>();
+        filters.put("all", LogFilter.all());
+        filters.put("errors", new LogFilter(EnumSet.of(LEVELS[LEVELS.length - 1]), LogFilter.ANY_STATE, ""));
+        filters.put("state", new LogFilter(EnumSet.allOf(ILogger.Level.class), states[2], ""));
+        filters.put("text", new LogFilter(EnumSet.allOf(ILogger.Level.class), LogFilter.ANY_STATE, "frame 99"));
+        try {
+            for (Map.Entry<String, LogFilter> filter : filters.entrySet()) {
+                long start = System.nanoTime();
+                long[] matches = buffer.query(filter.getValue(), 0, buffer.getNextSequence(), () -> false);
+                System.out.printf("Query '%s' of %d records: %d matches in %dms%n", filter.getKey(), capacity, matches.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                assertTrue(matches.length > 0);
+            }
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+        System.out.printf("Longest append during the queries: %.2fms%n", maxAppendNanos.get() / 1e6);
+        assertTrue("The writer was blocked for " + maxAppendNanos.get() / 1_000_000 + "ms", maxAppendNanos.get() < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    private static long[] scan(SimulationLogBuffer buffer, LogFilter filter, long from, long to) {
+        List<Long> matches = new ArrayList<>();
+        for (long sequence = from; sequence < to; sequence++) {
+            LogRecord record = buffer.get(sequence);
+            if (record == null) {
+                continue;
+            }
+            int state = record.getState() == null ? SimulationLogBuffer.NO_STATE : buffer.getStateId(record.getState());
+            if (filter.acceptsLevel(record.getLevel().ordinal()) && filter.acceptsState(state) && filter.acceptsText(record.getText())) {
+                matches.add(sequence);
+            }
+        }
+        return matches.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,218 @@
+package org.ois.idea.simulation.export;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.simulation.ExportManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+public class DistributionAnalyzerTest {
+
+    private static final List<RunnerConfiguration.RunnerType> DESKTOP = List.of(RunnerConfiguration.RunnerType.Desktop);
+
+    private final DistributionAnalyzer analyzer = new DistributionAnalyzer();
+    private Path root;
+    private Path distribution;
+    private Path desktop;
+    private Path reports;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ois-analyzer");
+        distribution = root.resolve("distribution");
+        desktop = ExportManager.getPlatformDistribution(distribution, RunnerConfiguration.RunnerType.Desktop);
+        Files.createDirectories(desktop);
+        reports = root.resolve("reports");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ExportCache.deleteDirectory(root);
+    }
+
+    @Test
+    public void testSizesDuplicatesAndStartupClasses() throws IOException {
+        Map<String, byte[]> simulation = new LinkedHashMap<>();
+        for (Class<?> type : List.of(Main.class, Helper.class, Leaf.class, Unused.class)) {
+            simulation.put(getEntry(type), getClassFile(type));
+        }
+        simulation.put("assets/logo.png", new byte[100]);
+        simulation.put("config.json", "{\"desktop\":true}".getBytes(StandardCharsets.UTF_8));
+        writeJar(desktop.resolve("simulation.jar"), Main.class.getName(), simulation);
+        writeJar(desktop.resolve("libs/library.jar"), null, Map.of(
+                getEntry(Leaf.class), getClassFile(Leaf.class),
+                "config.json", "{\"library\":true}".getBytes(StandardCharsets.UTF_8)
+        ));
+        Files.write(desktop.resolve("music.ogg"), new byte[1000]);
+
+        DistributionAnalyzer.PlatformReport report = analyzer.analyze(distribution, reports, DESKTOP, List.of()).getPlatforms().get("Desktop");
+
+        assertEquals(getDirectorySize(desktop), report.getTotalBytes());
+        // Main, Helper and Leaf, the unused class is not reached
+        assertEquals(3, report.getStartupClasses());
+        assertNull(report.getChanges());
+
+        JsonObject written = readReport(reports.resolve(DistributionAnalyzer.REPORT_FILE)).getAsJsonObject("Desktop");
+        assertEquals(3, written.get("files").getAsInt());
+        assertEquals(List.of(Main.class.getName()), new Gson().fromJson(written.get("entryPoints"), List.class));
+        assertTrue(written.get("startupExternalClasses").getAsInt() > 0);
+        JsonObject testPackage = written.getAsJsonObject("packages").getAsJsonObject(getClass().getPackageName());
+        // Leaf is counted in both jars
+        assertEquals(5, testPackage.get("classes").getAsInt());
+        JsonObject assets = written.getAsJsonObject("assets");
+        assertEquals(1000, assets.get("music.ogg").getAsLong());
+        assertEquals(100, assets.get("simulation.jar!/assets/logo.png").getAsLong());
+
+        Map<String, JsonObject> duplicates = new HashMap<>();
+        for (JsonElement duplicate : written.getAsJsonArray("duplicates")) {
+            duplicates.put(duplicate.getAsJsonObject().get("entry").getAsString(), duplicate.getAsJsonObject());
+        }
+        assertEquals(Set.of(getEntry(Leaf.class), "config.json"), duplicates.keySet());
+        assertTrue(duplicates.get(getEntry(Leaf.class)).get("sameContent").getAsBoolean());
+        assertFalse(duplicates.get("config.json").get("sameContent").getAsBoolean());
+        JsonArray jars = duplicates.get("config.json").getAsJsonArray("jars");
+        assertEquals(2, jars.size());
+    }
+
+    @Test
+    public void testChangesSinceThePreviousExport() throws IOException {
+        writeJar(desktop.resolve("simulation.jar"), Main.class.getName(), Map.of(getEntry(Main.class), getClassFile(Main.class), getEntry(Helper.class), getClassFile(Helper.class)));
+        Files.write(desktop.resolve("music.ogg"), new byte[1000]);
+        analyzer.analyze(distribution, reports, DESKTOP, List.of());
+
+        writeJar(desktop.resolve("simulation.jar"), Main.class.getName(), Map.of(getEntry(Main.class), getClassFile(Main.class), getEntry(Helper.class), getClassFile(Helper.class), getEntry(Leaf.class), getClassFile(Leaf.class)));
+        Files.write(desktop.resolve("music.ogg"), new byte[5000]);
+        long size = getDirectorySize(desktop);
+        DistributionAnalyzer.PlatformReport report = analyzer.analyze(distribution, reports, DESKTOP, List.of()).getPlatforms().get("Desktop");
+
+        DistributionAnalyzer.Changes changes = report.getChanges();
+        assertNotNull(changes);
+        assertEquals(1, changes.getStartupClasses());
+        assertEquals(size - readReport(reports.resolve("distribution-analysis.previous.json")).getAsJsonObject("Desktop").get("totalBytes").getAsLong(), changes.getTotalBytes());
+        JsonObject largest = readReport(reports.resolve(DistributionAnalyzer.REPORT_FILE)).getAsJsonObject("Desktop").getAsJsonObject("changes").getAsJsonObject("largest");
+        assertEquals(4000, largest.get("asset:music.ogg").getAsLong());
+        assertTrue(largest.get("package:" + getClass().getPackageName()).getAsLong() > 0);
+    }
+
+    @Test
+    public void testEntryClassesAreStartupRoots() throws IOException {
+        writeJar(desktop.resolve("simulation.jar"), null, Map.of(getEntry(Helper.class), getClassFile(Helper.class), getEntry(Leaf.class), getClassFile(Leaf.class), getEntry(Unused.class), getClassFile(Unused.class)));
+
+        assertEquals(0, analyzer.analyze(distribution, reports, DESKTOP, List.of()).getPlatforms().get("Desktop").getStartupClasses());
+        assertEquals(2, analyzer.analyze(distribution, reports, DESKTOP, List.of(Helper.class.getName())).getPlatforms().get("Desktop").getStartupClasses());
+    }
+
+    @Test
+    public void testClassReferencesOfArrays() throws IOException {
+        Set<String> references;
+        try (InputStream input = new ByteArrayInputStream(getClassFile(Unused.class))) {
+            references = DistributionAnalyzer.readClassReferences(input);
+        }
+
+        assertTrue(references.contains(getEntry(Leaf.class).replace(".class", "")));
+        assertTrue(references.stream().noneMatch(reference -> reference.startsWith("[")));
+    }
+
+    /**
+     * Analyzes a desktop distribution made of the libraries of the test classpath, from the Gson entry point.
+     */
+    @Test
+    public void testAnalysisBenchmark() throws Exception {
+        long bytes = 0;
+        for (Class<?> type : List.of(Gson.class, Test.class)) {
+            Path jar = Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+            Files.copy(jar, desktop.resolve(jar.getFileName()));
+            bytes += Files.size(jar);
+        }
+
+        long start = System.nanoTime();
+        DistributionAnalyzer.PlatformReport report = analyzer.analyze(distribution, reports, DESKTOP, List.of(Gson.class.getName())).getPlatforms().get("Desktop");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Analysis of %dKB of jars: %d startup classes in %dms%n", bytes / 1024, report.getStartupClasses(), millis);
+
+        assertTrue(report.getStartupClasses() > 10);
+    }
+
+    private static void writeJar(Path file, String mainClass, Map<String, byte[]> entries) throws IOException {
+        Files.createDirectories(file.getParent());
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (mainClass != null) {
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+        }
+        try (OutputStream output = Files.newOutputStream(file); JarOutputStream jar = new JarOutputStream(output, manifest)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                jar.putNextEntry(new ZipEntry(entry.getKey()));
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private static String getEntry(Class<?> type) {
+        return type.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] getClassFile(Class<?> type) throws IOException {
+        try (InputStream input = type.getClassLoader().getResourceAsStream(getEntry(type))) {
+            return Objects.requireNonNull(input).readAllBytes();
+        }
+    }
+
+    private static long getDirectorySize(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            long size = 0;
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private static JsonObject readReport(Path file) throws IOException {
+        return JsonParser.parseString(Files.readString(file)).getAsJsonObject().getAsJsonObject("platforms");
+    }
+
+    public static class Main {
+        public static void main(String[] args) {
+            new Helper().run();
+        }
+    }
+
+    public static class Helper {
+        void run() {
+            new Leaf();
+        }
+    }
+
+    public static class Leaf {
+    }
+
+    public static class Unused {
+        Object leaves() {
+            return new Leaf[1][1];
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.ois.idea.simulation.export;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.ois.core.runner.RunnerConfiguration;
+import org.ois.idea.simulation.ExportManager;
+import org.ois.idea.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class DistributionPackagerTest extends BasePlatformTestCase {
+
+    private static final FileTime OLD = FileTime.fromMillis(0);
+
+    private Path root;
+    private Path distribution;
+    private Path packages;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = Files.createTempDirectory("ois-packager");
+        distribution = root.resolve("distribution");
+        packages = root.resolve("packages");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            ExportCache.deleteDirectory(root);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testIdenticalFilesArePackagedOnce() throws Exception {
+        write(RunnerConfiguration.RunnerType.Desktop, "simulation.jar", "desktop");
+        write(RunnerConfiguration.RunnerType.Desktop, "assets/logo.png", "logo");
+        write(RunnerConfiguration.RunnerType.Html, "index.html", "html");
+        write(RunnerConfiguration.RunnerType.Html, "assets/logo.png", "logo");
+
+        new DistributionPackager(2).pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop, RunnerConfiguration.RunnerType.Html), () -> false);
+
+        JsonObject index = readIndex();
+        assertEquals(Set.of("desktop.zip", "html.zip", DistributionPackager.SHARED_ARCHIVE), index.getAsJsonObject("archives").keySet());
+        assertEquals(DistributionPackager.SHARED_ARCHIVE, getFile(index, RunnerConfiguration.RunnerType.Desktop, "assets/logo.png").get("archive").getAsString());
+        assertEquals(DistributionPackager.SHARED_ARCHIVE, getFile(index, RunnerConfiguration.RunnerType.Html, "assets/logo.png").get("archive").getAsString());
+        assertEquals("desktop.zip", getFile(index, RunnerConfiguration.RunnerType.Desktop, "simulation.jar").get("archive").getAsString());
+        try (ZipFile shared = new ZipFile(packages.resolve(DistributionPackager.SHARED_ARCHIVE).toFile())) {
+            assertEquals(1, shared.size());
+        }
+        assertPackaged(index);
+    }
+
+    public void testSharedFilesWithTheSamePathDoNotCollide() throws Exception {
+        // Two different shared files are both at "config.json" in some platform
+        write(RunnerConfiguration.RunnerType.Desktop, "config.json", "first");
+        write(RunnerConfiguration.RunnerType.Html, "config.json", "second");
+        write(RunnerConfiguration.RunnerType.Html, "copy.json", "first");
+        write(RunnerConfiguration.RunnerType.Android, "config.json", "second");
+
+        new DistributionPackager(2).pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.values()), () -> false);
+
+        JsonObject index = readIndex();
+        assertEquals(getFile(index, RunnerConfiguration.RunnerType.Desktop, "config.json").get("entry"), getFile(index, RunnerConfiguration.RunnerType.Html, "copy.json").get("entry"));
+        assertEquals(getFile(index, RunnerConfiguration.RunnerType.Html, "config.json").get("entry"), getFile(index, RunnerConfiguration.RunnerType.Android, "config.json").get("entry"));
+        try (ZipFile shared = new ZipFile(packages.resolve(DistributionPackager.SHARED_ARCHIVE).toFile())) {
+            assertEquals(2, shared.size());
+        }
+        assertPackaged(index);
+    }
+
+    public void testCompressedFilesAreStored() throws Exception {
+        write(RunnerConfiguration.RunnerType.Desktop, "simulation.jar", "jar");
+        write(RunnerConfiguration.RunnerType.Desktop, "assets/music.OGG", "music");
+        write(RunnerConfiguration.RunnerType.Desktop, "assets/logo.png", "logo");
+        write(RunnerConfiguration.RunnerType.Desktop, "assets/level.json", "{}".repeat(1000));
+
+        new DistributionPackager(1).pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop), () -> false);
+
+        try (ZipFile archive = new ZipFile(packages.resolve("desktop.zip").toFile())) {
+            assertEquals(ZipEntry.STORED, archive.getEntry("simulation.jar").getMethod());
+            assertEquals(ZipEntry.STORED, archive.getEntry("assets/music.OGG").getMethod());
+            assertEquals(ZipEntry.STORED, archive.getEntry("assets/logo.png").getMethod());
+            assertEquals(ZipEntry.DEFLATED, archive.getEntry("assets/level.json").getMethod());
+        }
+        assertPackaged(readIndex());
+        assertFalse(DistributionPackager.isCompressed("assets/png"));
+    }
+
+    public void testOnlyChangedArchivesAreRewritten() throws Exception {
+        write(RunnerConfiguration.RunnerType.Desktop, "simulation.jar", "desktop");
+        write(RunnerConfiguration.RunnerType.Html, "index.html", "html");
+        DistributionPackager packager = new DistributionPackager(2);
+        packager.pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop, RunnerConfiguration.RunnerType.Html), () -> false);
+        Files.setLastModifiedTime(packages.resolve("desktop.zip"), OLD);
+        Files.setLastModifiedTime(packages.resolve("html.zip"), OLD);
+
+        write(RunnerConfiguration.RunnerType.Desktop, "simulation.jar", "desktop, changed");
+        packager.pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop, RunnerConfiguration.RunnerType.Html), () -> false);
+
+        assertFalse(OLD.equals(Files.getLastModifiedTime(packages.resolve("desktop.zip"))));
+        assertEquals(OLD, Files.getLastModifiedTime(packages.resolve("html.zip")));
+        assertPackaged(readIndex());
+
+        // A platform no longer packaged loses its archive
+        packager.pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop), () -> false);
+        assertFalse(Files.exists(packages.resolve("html.zip")));
+        assertPackaged(readIndex());
+    }
+
+    public void testCancelledPackaging() throws Exception {
+        write(RunnerConfiguration.RunnerType.Desktop, "simulation.jar", "desktop");
+
+        try {
+            new DistributionPackager(1).pack(distribution, packages, allFiles(RunnerConfiguration.RunnerType.Desktop), () -> true);
+            fail("The cancelled packaging completed");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        assertFalse(Files.exists(packages.resolve(DistributionPackager.INDEX_FILE)));
+    }
+
+    /**
+     * Packages the platforms sharing most of their assets, serially then concurrently, then again with nothing changed.
+     */
+    public void testPackagingBenchmark() throws Exception {
+        Random random = new Random(7);
+        byte[] content = new byte[256 * 1024];
+        for (int i = 0; i < 60; i++) {
+            random.nextBytes(content);
+            for (RunnerConfiguration.RunnerType platform : RunnerConfiguration.RunnerType.values()) {
+                write(platform, "assets/texture" + i + ".png", content);
+            }
+            for (RunnerConfiguration.RunnerType platform : RunnerConfiguration.RunnerType.values()) {
+                random.nextBytes(content);
+                write(platform, "classes/Class" + i + ".class", content);
+            }
+        }
+
+        long serial = pack(new DistributionPackager(1), root.resolve("serial"));
+        long parallel = pack(new DistributionPackager(RunnerConfiguration.RunnerType.values().length + 1), packages);
+        long upToDate = pack(new DistributionPackager(RunnerConfiguration.RunnerType.values().length + 1), packages);
+        System.out.printf("Packaging of %d platforms: %dms serially, %dms concurrently, %dms up to date%n", RunnerConfiguration.RunnerType.values().length, serial, parallel, upToDate);
+
+        JsonObject index = readIndex();
+        assertPackaged(index);
+        // The shared assets are packaged once, not once per platform
+        long sharedSize = index.getAsJsonObject("archives").getAsJsonObject(DistributionPackager.SHARED_ARCHIVE).get("size").getAsLong();
+        assertTrue(sharedSize < 2L * 60 * content.length);
+        assertTrue("Up to date packaging took " + upToDate + "ms", upToDate < parallel);
+    }
+
+    private long pack(DistributionPackager packager, Path target) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        packager.pack(distribution, target, allFiles(RunnerConfiguration.RunnerType.values()), () -> false);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Each file of each platform is in the archive the index says, with the checksum the index says.
+     */
+    private void assertPackaged(JsonObject index) throws IOException {
+        JsonObject archives = index.getAsJsonObject("archives");
+        for (String archive : archives.keySet()) {
+            assertEquals(archives.getAsJsonObject(archive).get("sha256").getAsString(), Utils.sha256(packages.resolve(archive)));
+        }
+        JsonObject platforms = index.getAsJsonObject("platforms");
+        for (String platform : platforms.keySet()) {
+            Path directory = ExportManager.getPlatformDistribution(distribution, RunnerConfiguration.RunnerType.valueOf(platform));
+            JsonObject files = platforms.getAsJsonObject(platform);
+            for (String path : files.keySet()) {
+                JsonObject file = files.getAsJsonObject(path);
+                assertEquals(Utils.sha256(directory.resolve(path)), file.get("sha256").getAsString());
+                try (ZipFile archive = new ZipFile(packages.resolve(file.get("archive").getAsString()).toFile())) {
+                    ZipEntry entry = archive.getEntry(file.get("entry").getAsString());
+                    assertNotNull(platform + " " + path, entry);
+                    try (InputStream input = archive.getInputStream(entry)) {
+                        assertTrue(Arrays.equals(Files.readAllBytes(directory.resolve(path)), input.readAllBytes()));
+                    }
+                }
+            }
+        }
+    }
+
+    private JsonObject readIndex() throws IOException {
+        return JsonParser.parseString(Files.readString(packages.resolve(DistributionPackager.INDEX_FILE))).getAsJsonObject();
+    }
+
+    private static JsonObject getFile(JsonObject index, RunnerConfiguration.RunnerType platform, String path) {
+        return index.getAsJsonObject("platforms").getAsJsonObject(platform.name()).getAsJsonObject(path);
+    }
+
+    private static Map<RunnerConfiguration.RunnerType, SortedMap<String, String>> allFiles(RunnerConfiguration.RunnerType... platforms) {
+        // No known hashes, the packager hashes the files
+        Map<RunnerConfiguration.RunnerType, SortedMap<String, String>> files = new EnumMap<>(RunnerConfiguration.RunnerType.class);
+        for (RunnerConfiguration.RunnerType platform : platforms) {
+            files.put(platform, null);
+        }
+        return files;
+    }
+
+    private void write(RunnerConfiguration.RunnerType platform, String path, String content) throws IOException {
+        write(platform, path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(RunnerConfiguration.RunnerType platform, String path, byte[] content) throws IOException {
+        Path file = ExportManager.getPlatformDistribution(distribution, platform).resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,102 @@
+package org.ois.idea.simulation.export;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.ois.core.runner.RunnerConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class ExportCacheTest extends BasePlatformTestCase {
+
+    private Path root;
+    private Path distribution;
+    private ExportCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = Files.createTempDirectory("ois-export-cache");
+        distribution = root.resolve("distribution");
+        cache = new ExportCache(root.resolve("cache"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            ExportCache.deleteDirectory(root);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testEachPlatformOfACombinedExportIsCachedAndRestoredAlone() throws IOException {
+        // One export writes all the platforms
+        Path desktop = platformDirectory(RunnerConfiguration.RunnerType.Desktop);
+        Path html = platformDirectory(RunnerConfiguration.RunnerType.Html);
+        write(desktop.resolve("simulation.jar"), "desktop");
+        write(html.resolve("index.html"), "html");
+        write(html.resolve("assets/logo.png"), "logo");
+        cache.store("desktop-key", desktop);
+        cache.store("html-key", html);
+        assertTrue(cache.contains("desktop-key"));
+        assertFalse(cache.contains("android-key"));
+
+        // The next export rewrites the whole distribution directory
+        ExportCache.deleteDirectory(distribution);
+        write(desktop.resolve("simulation.jar"), "desktop, changed");
+
+        assertFalse(cache.matches("desktop-key", desktop));
+        assertFalse(cache.matches("html-key", html));
+        assertTrue(cache.restore("html-key", html));
+        assertTrue(cache.matches("html-key", html));
+        assertEquals("logo", Files.readString(html.resolve("assets/logo.png")));
+        // Restoring a platform does not touch the others
+        assertEquals("desktop, changed", Files.readString(desktop.resolve("simulation.jar")));
+    }
+
+    public void testRestoreReplacesTheDirectory() throws IOException {
+        Path desktop = platformDirectory(RunnerConfiguration.RunnerType.Desktop);
+        write(desktop.resolve("simulation.jar"), "desktop");
+        cache.store("key", desktop);
+        write(desktop.resolve("leftover.txt"), "leftover");
+
+        assertFalse(cache.matches("key", desktop));
+        assertTrue(cache.restore("key", desktop));
+        assertFalse(Files.exists(desktop.resolve("leftover.txt")));
+        assertTrue(cache.matches("key", desktop));
+        assertFalse(cache.restore("unknown", desktop));
+    }
+
+    public void testGarbageCollectionKeepsTheRecentEntriesWithinTheCap() throws IOException {
+        Path desktop = platformDirectory(RunnerConfiguration.RunnerType.Desktop);
+        write(desktop.resolve("shared.txt"), "shared");
+        write(desktop.resolve("simulation.jar"), "x".repeat(1000));
+        cache.store("old", desktop);
+        write(desktop.resolve("simulation.jar"), "y".repeat(1000));
+        cache.store("recent", desktop);
+        // Entries are ordered by their last use
+        Files.setLastModifiedTime(root.resolve("cache").resolve("entries").resolve("old.json"), FileTime.fromMillis(0));
+        cache.setMaxSizeBytes(1500);
+
+        cache.collectGarbage();
+
+        assertFalse(cache.contains("old"));
+        assertTrue(cache.contains("recent"));
+        // The blobs of the evicted entry are deleted, the shared ones are kept
+        try (Stream<Path> blobs = Files.walk(root.resolve("cache").resolve("blobs"))) {
+            assertEquals(2, blobs.filter(Files::isRegularFile).count());
+        }
+    }
+
+    private Path platformDirectory(RunnerConfiguration.RunnerType platform) {
+        return distribution.resolve(platform.name().toLowerCase());
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
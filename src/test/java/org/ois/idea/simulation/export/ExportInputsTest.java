@@ -0,0 +1,85 @@
+package org.ois.idea.simulation.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ois.core.runner.RunnerConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ExportInputsTest {
+
+    private static final Map<String, String> PARAMETERS = Map.of("debugMode", "false");
+
+    private Path projectDir;
+
+    @Before
+    public void setUp() throws IOException {
+        projectDir = Files.createTempDirectory("ois-export-inputs");
+        write("build.gradle", "plugins { id 'org.ois.simulation' }");
+        write("src/main/java/org/example/GameState.java", "class GameState {}");
+        write("simulation/simulation.ois", "{}");
+        write("html/index.html", "<html/>");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ExportCache.deleteDirectory(projectDir);
+    }
+
+    @Test
+    public void testTouchedFilesKeepTheFingerprint() throws IOException {
+        ExportInputs inputs = new ExportInputs();
+        String before = inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS);
+        Path state = projectDir.resolve("src/main/java/org/example/GameState.java");
+        Files.setLastModifiedTime(state, FileTime.fromMillis(Files.getLastModifiedTime(state).toMillis() + 10_000));
+
+        assertEquals(before, inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS));
+        assertEquals(before, new ExportInputs().fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS));
+    }
+
+    @Test
+    public void testSharedInputsChangeEveryPlatform() throws IOException {
+        ExportInputs inputs = new ExportInputs();
+        String desktop = inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS);
+        String html = inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Html, PARAMETERS);
+
+        write("src/main/java/org/example/GameState.java", "class GameState { int score; }");
+
+        assertNotEquals(desktop, inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS));
+        assertNotEquals(html, inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Html, PARAMETERS));
+    }
+
+    @Test
+    public void testPlatformDirectoryChangesOnlyItsPlatform() throws IOException {
+        ExportInputs inputs = new ExportInputs();
+        String desktop = inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS);
+        String html = inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Html, PARAMETERS);
+
+        write("html/index.html", "<html><body/></html>");
+
+        assertEquals(desktop, inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS));
+        assertNotEquals(html, inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Html, PARAMETERS));
+    }
+
+    @Test
+    public void testParametersChangeTheFingerprint() throws IOException {
+        ExportInputs inputs = new ExportInputs();
+
+        assertNotEquals(inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, PARAMETERS),
+                inputs.fingerprint(projectDir, RunnerConfiguration.RunnerType.Desktop, Map.of("debugMode", "true")));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = projectDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,58 @@
+package org.ois.idea.simulation.profiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlameGraphTest {
+
+    private Path collapsedStacks;
+
+    @Before
+    public void setUp() throws IOException {
+        collapsedStacks = Files.createTempFile("ois-profile", StackSampler.COLLAPSED_EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(collapsedStacks);
+    }
+
+    @Test
+    public void testSamplesAreSummedUpTheCallTree() throws IOException {
+        Files.write(collapsedStacks, List.of(
+                "Main.main;GameState.update;Physics.step 30",
+                "Main.main;GameState.update;Ai.think 50",
+                "Main.main;GameState.render 20"
+        ));
+
+        FlameGraph.Node root = FlameGraph.load(collapsedStacks).getRoot();
+
+        assertEquals(100, root.getSamples());
+        FlameGraph.Node main = root.getChildren().get(0);
+        assertEquals("Main.main", main.getName());
+        FlameGraph.Node update = main.getChildren().get(0);
+        assertEquals("GameState.update", update.getName());
+        assertEquals(80, update.getSamples());
+        // The most sampled children first
+        assertEquals(List.of("Ai.think", "Physics.step"), update.getChildren().stream().map(FlameGraph.Node::getName).toList());
+        assertEquals(main, update.getParent());
+    }
+
+    @Test
+    public void testMalformedLinesAreSkipped() throws IOException {
+        Files.write(collapsedStacks, List.of("", "no-count", "Main.main x", " 5", "Main.main 7"));
+
+        FlameGraph.Node root = FlameGraph.load(collapsedStacks).getRoot();
+
+        assertEquals(7, root.getSamples());
+        assertEquals(1, root.getChildren().size());
+    }
+}
@@ -0,0 +1,104 @@
+package org.ois.idea.simulation.profiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ois.idea.simulation.runner.WarmRunnerBootstrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class StackSamplerTest {
+
+    private static final int SAMPLE_RATE = 200;
+    private static final long RUN_MILLIS = 1000;
+
+    private Path profileDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        profileDirectory = Files.createTempDirectory("ois-profile");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(profileDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testSamplesAreWrittenPerState() throws Exception {
+        Process simulation = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-D" + StackSampler.PROFILE_DIR_PROPERTY + "=" + profileDirectory,
+                "-D" + StackSampler.SAMPLE_RATE_PROPERTY + "=" + SAMPLE_RATE,
+                "-cp", System.getProperty("java.class.path"), ProfiledSimulation.class.getName())
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        assertTrue(simulation.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, simulation.exitValue());
+
+        Path stateProfile = profileDirectory.resolve(BusyState.class.getName() + StackSampler.COLLAPSED_EXTENSION);
+        FlameGraph.Node root = FlameGraph.load(stateProfile).getRoot();
+        long expected = SAMPLE_RATE * RUN_MILLIS / 1000;
+        System.out.printf("%d samples of the state over %dms at %d samples per second%n", root.getSamples(), RUN_MILLIS, SAMPLE_RATE);
+        // Sleeping between samples is not exact, and the first samples may run before the state
+        assertTrue("Too few samples: " + root.getSamples(), root.getSamples() >= expected / 2);
+        assertTrue("Too many samples: " + root.getSamples(), root.getSamples() <= expected * 2);
+        assertNotNull(findFrame(root, BusyState.class.getName() + ".update"));
+    }
+
+    private static FlameGraph.Node findFrame(FlameGraph.Node node, String name) {
+        if (node.getName().equals(name)) {
+            return node;
+        }
+        for (FlameGraph.Node child : node.getChildren()) {
+            FlameGraph.Node found = findFrame(child, name);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stands for a simulation main class, as started by the {@link WarmRunnerBootstrap} with a profile directory.
+     */
+    public static class ProfiledSimulation {
+        public static void main(String[] args) {
+            StackSampler.startIfConfigured(Thread.currentThread());
+            BusyState state = new BusyState();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+            while (System.nanoTime() < end) {
+                state.update(1 / 60f);
+            }
+        }
+    }
+
+    public static class BusyState extends StateFrameLocatorTest.TestState {
+        private final int[] values = new int[4096];
+        private long seed = 1;
+
+        @Override
+        public boolean update(float dt) {
+            // Stacks are sampled at safepoints, sorting keeps the samples inside the state instead of the simulation loop
+            for (int i = 0; i < values.length; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                values[i] = (int) (seed >>> 33);
+            }
+            Arrays.sort(values);
+            return values[0] <= values[values.length - 1];
+        }
+    }
+}
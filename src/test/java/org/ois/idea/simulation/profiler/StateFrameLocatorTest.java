@@ -0,0 +1,85 @@
+package org.ois.idea.simulation.profiler;
+
+import org.junit.Test;
+import org.ois.core.state.IState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StateFrameLocatorTest {
+
+    private final StateFrameLocator locator = new StateFrameLocator(getClass().getClassLoader());
+
+    @Test
+    public void testLocatesTheInnermostStateMethod() {
+        StackTraceElement[] stack = {
+                frame("java.util.ArrayList", "add"),
+                frame(TestState.class.getName(), "render"),
+                frame("org.ois.core.state.StateManager", "render"),
+                frame(TestState.class.getName(), "update"),
+                frame("org.ois.core.Simulation", "render")
+        };
+
+        assertEquals(stack[1], locator.locate(stack));
+    }
+
+    @Test
+    public void testIgnoresLifecycleNamesOfOtherClasses() {
+        StackTraceElement[] stack = {
+                frame("org.ois.core.state.StateManager", "update"),
+                frame("org.example.NotLoaded", "render"),
+                frame(TestState.class.getName(), "enter")
+        };
+
+        assertNull(locator.locate(stack));
+    }
+
+    @Test
+    public void testLocatesSubclassesOfStates() {
+        StackTraceElement[] stack = {frame(TestSubState.class.getName(), "resize")};
+
+        assertEquals(stack[0], locator.locate(stack));
+    }
+
+    private static StackTraceElement frame(String className, String methodName) {
+        return new StackTraceElement(className, methodName, null, -1);
+    }
+
+    public static class TestState implements IState {
+        @Override
+        public void enter(Object... parameters) {
+        }
+
+        @Override
+        public void exit() {
+        }
+
+        @Override
+        public void pause() {
+        }
+
+        @Override
+        public void resume() {
+        }
+
+        @Override
+        public void resize(int width, int height) {
+        }
+
+        @Override
+        public void render() {
+        }
+
+        @Override
+        public boolean update(float dt) {
+            return true;
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+
+    public static class TestSubState extends TestState {
+    }
+}
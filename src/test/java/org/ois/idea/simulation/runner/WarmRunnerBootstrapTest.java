@@ -0,0 +1,140 @@
+package org.ois.idea.simulation.runner;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WarmRunnerBootstrapTest {
+
+    private static final String FIRST_FRAME = "first frame";
+    private static final int LAUNCHES = 5;
+
+    @Test
+    public void testLaunchPassesPropertiesAndArguments() throws Exception {
+        Process runner = startRunner();
+        try {
+            BufferedReader output = reader(runner);
+            assertTrue(readUntil(output, WarmRunnerBootstrap.READY).startsWith(WarmRunnerBootstrap.READY));
+            launch(runner, "ois.test.value=a=b", "first", "second");
+
+            readUntil(output, WarmRunnerBootstrap.STARTED);
+            assertEquals(FIRST_FRAME + " a=b [first, second]", readUntil(output, FIRST_FRAME));
+            assertTrue(runner.waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, runner.exitValue());
+        } finally {
+            runner.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testReleasedWithoutALaunch() throws Exception {
+        Process runner = startRunner();
+        try {
+            readUntil(reader(runner), WarmRunnerBootstrap.READY);
+            runner.getOutputStream().close();
+
+            assertTrue(runner.waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, runner.exitValue());
+        } finally {
+            runner.destroyForcibly();
+        }
+    }
+
+    /**
+     * Time to first frame of a simulation main class started in a new JVM, and handed to a warm runner started ahead of time.
+     * Gradle configuration, which the warm runner skips as well, is not part of the measure.
+     */
+    @Test
+    public void testTimeToFirstFrame() throws Exception {
+        List<Long> cold = new ArrayList<>();
+        List<Long> warm = new ArrayList<>();
+        for (int i = 0; i < LAUNCHES; i++) {
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(getJava(), "-cp", System.getProperty("java.class.path"), TestSimulation.class.getName())
+                    .redirectErrorStream(true).start();
+            try {
+                readUntil(reader(process), FIRST_FRAME);
+                cold.add(System.nanoTime() - start);
+            } finally {
+                process.destroyForcibly();
+            }
+
+            Process runner = startRunner();
+            try {
+                BufferedReader output = reader(runner);
+                readUntil(output, WarmRunnerBootstrap.READY);
+                start = System.nanoTime();
+                launch(runner, "ois.test.value=warm");
+                readUntil(output, FIRST_FRAME);
+                warm.add(System.nanoTime() - start);
+            } finally {
+                runner.destroyForcibly();
+            }
+        }
+        long coldMedian = median(cold);
+        long warmMedian = median(warm);
+        System.out.printf("Time to first frame over %d launches: new JVM %.1fms, warm runner %.1fms%n", LAUNCHES, coldMedian / 1e6, warmMedian / 1e6);
+        assertTrue("The warm runner is slower than a new JVM", warmMedian < coldMedian);
+    }
+
+    private static Process startRunner() throws IOException {
+        return new ProcessBuilder(getJava(), "-cp", System.getProperty("java.class.path"), WarmRunnerBootstrap.class.getName())
+                .redirectErrorStream(true).start();
+    }
+
+    private static void launch(Process runner, String property, String... arguments) throws IOException {
+        Writer input = new OutputStreamWriter(runner.getOutputStream(), StandardCharsets.UTF_8);
+        input.write(WarmRunnerBootstrap.MAIN + TestSimulation.class.getName() + "\n");
+        input.write(WarmRunnerBootstrap.PROPERTY + property + "\n");
+        for (String argument : arguments) {
+            input.write(WarmRunnerBootstrap.ARGUMENT + argument + "\n");
+        }
+        input.write(WarmRunnerBootstrap.RUN + "\n");
+        input.flush();
+    }
+
+    private static BufferedReader reader(Process process) {
+        return new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static String readUntil(BufferedReader output, String prefix) throws IOException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new AssertionError("The process ended before printing: " + prefix);
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static String getJava() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    /**
+     * Stands for a simulation main class, prints its first frame and exits.
+     */
+    public static class TestSimulation {
+        public static void main(String[] args) {
+            System.out.println(FIRST_FRAME + " " + System.getProperty("ois.test.value") + " " + List.of(args));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.ois.idea.simulation.telemetry;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TelemetryModelTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void testFrameTimesAndFps() {
+        TelemetryModel model = new TelemetryModel("test");
+        long timestamp = 0;
+        for (int i = 0; i < 120; i++) {
+            timestamp += 20 * MILLIS;
+            model.record(TelemetryProtocol.FRAME, TelemetryProtocol.NO_STATE, timestamp, 20 * MILLIS);
+        }
+
+        TelemetryModel.Snapshot snapshot = model.snapshot();
+        assertEquals(50, snapshot.getFps());
+        assertEquals(120, snapshot.getFrameTimesMillis().length);
+        assertEquals(20.0, snapshot.getFrameTimesMillis()[0], 0);
+    }
+
+    @Test
+    public void testFpsBeforeAFullSecond() {
+        TelemetryModel model = new TelemetryModel("test");
+        for (int i = 0; i < 10; i++) {
+            model.record(TelemetryProtocol.FRAME, TelemetryProtocol.NO_STATE, i, 10 * MILLIS);
+        }
+
+        assertEquals(100, model.snapshot().getFps());
+    }
+
+    @Test
+    public void testStateTimings() {
+        TelemetryModel model = new TelemetryModel("test");
+        model.declareState(0, "org.example.MenuState");
+        model.declareState(1, "org.example.GameState");
+        recordWindow(model, 0, 100, 1 * MILLIS, 2 * MILLIS);
+        recordWindow(model, 1, 100, 3 * MILLIS, 5 * MILLIS);
+        recordWindow(model, 1, 200, 5 * MILLIS, 7 * MILLIS);
+
+        List<TelemetryModel.StateSnapshot> states = model.snapshot().getStates();
+        assertEquals(2, states.size());
+        TelemetryModel.StateSnapshot menu = states.get(0);
+        assertEquals("org.example.MenuState", menu.getClassName());
+        assertFalse(menu.isCurrent());
+        TelemetryModel.StateSnapshot game = states.get(1);
+        assertTrue(game.isCurrent());
+        assertEquals(4.0, game.getUpdateAverageMillis(), 1e-9);
+        assertEquals(5.0, game.getUpdateMaxMillis(), 1e-9);
+        assertEquals(6.0, game.getRenderAverageMillis(), 1e-9);
+        assertEquals(7.0, game.getRenderMaxMillis(), 1e-9);
+    }
+
+    @Test
+    public void testCurrentStateRanTheMostInTheLatestWindow() {
+        TelemetryModel model = new TelemetryModel("test");
+        assertNull(model.getCurrentState());
+        model.declareState(0, "org.example.HudState");
+        model.declareState(1, "org.example.GameState");
+        recordWindow(model, 1, 100, 8 * MILLIS, 4 * MILLIS);
+        recordWindow(model, 0, 100, 1 * MILLIS, 1 * MILLIS);
+        assertEquals("org.example.GameState", model.getCurrentState());
+
+        recordWindow(model, 0, 200, 1 * MILLIS, 1 * MILLIS);
+        assertEquals("org.example.HudState", model.getCurrentState());
+    }
+
+    @Test
+    public void testHeapGcAndDroppedFrames() {
+        TelemetryModel model = new TelemetryModel("test");
+        model.record(TelemetryProtocol.HEAP_MAX, TelemetryProtocol.NO_STATE, 0, 512 * 1024 * 1024L);
+        model.record(TelemetryProtocol.HEAP_USED, TelemetryProtocol.NO_STATE, 1, 64 * 1024 * 1024L);
+        model.record(TelemetryProtocol.GC_PAUSE, TelemetryProtocol.NO_STATE, 2, 3);
+        model.record(TelemetryProtocol.GC_PAUSE, TelemetryProtocol.NO_STATE, 3, 4);
+        model.record(TelemetryProtocol.DROPPED, TelemetryProtocol.NO_STATE, 4, 10);
+        // Unknown types of a newer runner are ignored
+        model.record(99, TelemetryProtocol.NO_STATE, 5, 1);
+
+        TelemetryModel.Snapshot snapshot = model.snapshot();
+        assertEquals(512.0, snapshot.getHeapMaxMegabytes(), 0);
+        assertArrayEquals(new double[]{64.0}, snapshot.getHeapUsedMegabytes(), 0);
+        assertEquals(7, snapshot.getTotalGcPauseMillis());
+        assertEquals(4, snapshot.getLastGcPauseMillis());
+        assertEquals(10, snapshot.getDroppedFrames());
+    }
+
+    private static void recordWindow(TelemetryModel model, int stateId, long window, long updateNanos, long renderNanos) {
+        model.record(TelemetryProtocol.UPDATE, stateId, window, updateNanos);
+        model.record(TelemetryProtocol.RENDER, stateId, window, renderNanos);
+    }
+}
@@ -0,0 +1,66 @@
+package org.ois.idea.utils;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ProjectUtilsGitTest extends BasePlatformTestCase {
+
+    private Path root;
+    private String repositoryUrl;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = Files.createTempDirectory("ois-git");
+        repositoryUrl = TestGitRepository.create(root);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtil.delete(root.toFile());
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testShallowCloneOfATag() throws Exception {
+        Path destination = Files.createDirectories(root.resolve("clone"));
+
+        ProjectUtils.cloneRepository(repositoryUrl, TestGitRepository.TAG, destination);
+
+        Path repository = destination.resolve(TestGitRepository.NAME);
+        assertEquals("true", TestGitRepository.git(repository, "rev-parse", "--is-shallow-repository"));
+        assertEquals("1", TestGitRepository.git(repository, "rev-list", "--count", "HEAD"));
+        assertTrue(Files.isRegularFile(repository.resolve(TestGitRepository.OTHER_FILE)));
+        assertFalse(Files.exists(repository.resolve(TestGitRepository.MAIN_ONLY_FILE)));
+    }
+
+    public void testSparseCloneIsMaterialized() throws Exception {
+        Path destination = Files.createDirectories(root.resolve("sparse"));
+
+        ProjectUtils.cloneRepository(repositoryUrl, null, destination, List.of(TestGitRepository.SPARSE_DIRECTORY));
+
+        Path repository = destination.resolve(TestGitRepository.NAME);
+        assertTrue(Files.isRegularFile(repository.resolve("README.md")));
+        assertTrue(Files.isRegularFile(repository.resolve(TestGitRepository.SPARSE_DIRECTORY).resolve("Const.java")));
+        assertFalse(Files.exists(repository.resolve(TestGitRepository.OTHER_FILE)));
+
+        ProjectUtils.materializeRepository(repository);
+        assertTrue(Files.isRegularFile(repository.resolve(TestGitRepository.OTHER_FILE)));
+        assertTrue(Files.isRegularFile(repository.resolve(TestGitRepository.MAIN_ONLY_FILE)));
+        // Nothing left to check out
+        ProjectUtils.materializeRepository(repository);
+        assertEquals("false", TestGitRepository.git(repository, "config", "--bool", "core.sparseCheckout"));
+    }
+
+    public void testRepositoryName() {
+        assertEquals("ois-core", ProjectUtils.getRepositoryName("https://github.com/attiasas/ois-core.git"));
+        assertEquals("ois-core", ProjectUtils.getRepositoryName("git@github.com:attiasas/ois-core"));
+        assertEquals("origin", ProjectUtils.getRepositoryName("file:///tmp/repos/origin.git/"));
+    }
+}
@@ -0,0 +1,101 @@
+package org.ois.idea.utils;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TaskPipelineTest extends BasePlatformTestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Stages without dependencies run in the order they were added
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            executor.shutdownNow();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testStagesRunAfterTheirDependencies() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        TaskPipeline pipeline = new TaskPipeline("test")
+                .stage("a", "A", () -> ran.add("a"))
+                .stage("b", "B", () -> ran.add("b"), "a")
+                .stage("c", "C", () -> ran.add("c"), "a", "b");
+
+        pipeline.run(new Utils.OISProgressIndicator(new EmptyProgressIndicator()), executor);
+
+        assertEquals(List.of("a", "b", "c"), ran);
+        assertEquals(3, pipeline.getStageDurations().size());
+    }
+
+    public void testCancelledStageIsNotLeftRunning() throws Exception {
+        EmptyProgressIndicator progress = new EmptyProgressIndicator();
+        progress.cancel();
+        List<String> ran = new CopyOnWriteArrayList<>();
+        TaskPipeline pipeline = new TaskPipeline("test").stage("a", "A", () -> ran.add("a"));
+
+        try {
+            pipeline.run(new Utils.OISProgressIndicator(progress), executor);
+            fail("The cancelled pipeline completed");
+        } catch (ProcessCanceledException e) {
+            // Expected
+        }
+        assertEmpty(ran);
+        assertEmpty(pipeline.getRunningStages());
+    }
+
+    public void testAbortSkipsTheStagesThatDidNotStart() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        TaskPipeline pipeline = new TaskPipeline("test")
+                .stage("resolve", "Resolve", () -> {
+                    throw new TaskPipeline.AbortException("nothing to do");
+                })
+                .stage("independent", "Independent", () -> ran.add("independent"))
+                .stage("dependent", "Dependent", () -> ran.add("dependent"), "resolve");
+
+        try {
+            pipeline.run(new Utils.OISProgressIndicator(new EmptyProgressIndicator()), executor);
+            fail("The aborted pipeline completed");
+        } catch (TaskPipeline.AbortException e) {
+            assertEquals("nothing to do", e.getMessage());
+        }
+        assertEmpty(ran);
+    }
+
+    public void testReportsTheFirstFailedStage() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        TaskPipeline pipeline = new TaskPipeline("test")
+                .stage("first", "First", () -> {
+                    throw new IOException("first failure");
+                })
+                .stage("second", "Second", () -> {
+                    throw new IllegalStateException("second failure");
+                })
+                .stage("independent", "Independent", () -> ran.add("independent"))
+                .stage("dependent", "Dependent", () -> ran.add("dependent"), "first");
+
+        try {
+            pipeline.run(new Utils.OISProgressIndicator(new EmptyProgressIndicator()), executor);
+            fail("The failed pipeline completed");
+        } catch (IOException e) {
+            assertEquals("first failure", e.getMessage());
+        }
+        // A failure only skips the stages that depend on the failed stage
+        assertEquals(List.of("independent"), ran);
+    }
+}
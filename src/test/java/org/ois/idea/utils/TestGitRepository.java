@@ -0,0 +1,69 @@
+package org.ois.idea.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local bare repository served through a file:// URL, so clones honor the depth and filter options like a remote one.
+ * History: the first commit (README, 'plugin' and 'docs' directories) is tagged {@link #TAG}, the second one adds {@link #MAIN_ONLY_FILE} on 'main'.
+ */
+public final class TestGitRepository {
+
+    public static final String NAME = "origin";
+    public static final String TAG = "v1.0.0";
+    public static final String SPARSE_DIRECTORY = "plugin";
+    public static final String OTHER_FILE = "docs/guide.md";
+    public static final String MAIN_ONLY_FILE = "docs/changes.md";
+
+    private TestGitRepository() {
+    }
+
+    /**
+     * @param root - Directory to create the repository in.
+     * @return the file:// URL of the bare repository
+     */
+    public static String create(Path root) throws IOException, InterruptedException {
+        Path work = root.resolve("work");
+        Files.createDirectories(work.resolve(SPARSE_DIRECTORY));
+        Files.createDirectories(work.resolve("docs"));
+        git(root, "init", "-q", "-b", "main", work.toString());
+        Files.writeString(work.resolve("README.md"), "readme\n");
+        Files.writeString(work.resolve(SPARSE_DIRECTORY).resolve("Const.java"), "class Const {}\n");
+        Files.writeString(work.resolve(OTHER_FILE), "guide\n");
+        commit(work, "first");
+        git(work, "tag", TAG);
+        Files.writeString(work.resolve(MAIN_ONLY_FILE), "changes\n");
+        commit(work, "second");
+
+        Path bare = root.resolve(NAME + ".git");
+        git(root, "clone", "-q", "--bare", work.toString(), bare.toString());
+        // Served like a hosted repository, which supports partial clones
+        git(bare, "config", "uploadpack.allowFilter", "true");
+        return bare.toUri().toString();
+    }
+
+    private static void commit(Path work, String message) throws IOException, InterruptedException {
+        git(work, "add", "-A");
+        git(work, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+    }
+
+    /**
+     * Run git, failing on errors.
+     *
+     * @return the trimmed standard output
+     */
+    public static String git(Path directory, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IOException(String.format("'%s' failed: %s", String.join(" ", command), output));
+        }
+        return output.trim();
+    }
+}
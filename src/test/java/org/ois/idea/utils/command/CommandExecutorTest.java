@@ -0,0 +1,150 @@
+package org.ois.idea.utils.command;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandExecutorTest {
+
+    private static final String NL = System.lineSeparator();
+    // Arguments a shell would split, expand or unquote
+    private static final List<String> SPECIAL_ARGS = List.of("with space", "\"double quoted\"", "'single quoted'", "$HOME", "${PATH}",
+            "$(echo injected)", "`echo injected`", "a;b", "a|b", "a&&b", "*", "back\\slash", "tab\there", "");
+
+    @Test
+    public void testUnixCommandPassesTheArgumentsAsIs() {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        List<String> command = CommandExecutor.formatCommand(new ArrayList<>(SPECIAL_ARGS), List.of("--token", "secret value"), "/usr/bin/tool", new HashMap<>(), false);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("/usr/bin/tool");
+        expected.addAll(SPECIAL_ARGS);
+        expected.add("--token");
+        expected.add("secret value");
+        assertEquals(expected, command);
+    }
+
+    @Test
+    public void testUnixShellWrappingJoinsTheArguments() {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        List<String> command = CommandExecutor.formatCommand(new ArrayList<>(List.of("build", "--info")), null, "/opt/my tools/gradle", new HashMap<>(), true);
+
+        assertEquals(List.of("/bin/sh", "-c", "/opt/my\\ tools/gradle build --info"), command);
+    }
+
+    @Test
+    public void testUnixCommandArgumentsReachTheProcessUnchanged() throws IOException, InterruptedException {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        List<String> args = new ArrayList<>();
+        args.add("%s\\n");
+        args.addAll(SPECIAL_ARGS);
+        List<String> command = CommandExecutor.formatCommand(args, null, CommandExecutor.resolveExecutablePath("printf"), new HashMap<>(), false);
+
+        Process process = new ProcessBuilder(command).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor());
+        assertEquals(String.join("\n", SPECIAL_ARGS) + "\n", output);
+    }
+
+    @Test
+    public void testStreamReaderSplitsAllLineTerminators() {
+        List<String> received = new ArrayList<>();
+        CommandExecutor.StreamReader reader = new CommandExecutor.StreamReader(stream("unix\nwindows\r\nprogress\rlast"), false,
+                (line, isErrorStream) -> received.add(line), 10);
+        reader.run();
+
+        assertEquals(List.of("unix", "windows", "progress", "last"), received);
+        assertEquals("unix" + NL + "windows" + NL + "progress" + NL + "last", reader.getOutput());
+    }
+
+    @Test
+    public void testStreamReaderPassesTheStreamToTheListener() {
+        List<Boolean> streams = new ArrayList<>();
+        new CommandExecutor.StreamReader(stream("error\n"), true, (line, isErrorStream) -> streams.add(isErrorStream), 10).run();
+
+        assertEquals(List.of(true), streams);
+    }
+
+    @Test
+    public void testStreamReaderTruncatesLongLines() {
+        CommandExecutor.StreamReader reader = new CommandExecutor.StreamReader(stream("x".repeat(100_000) + "\nshort\n"), false, null, 10);
+        reader.run();
+
+        String[] lines = reader.getOutput().split(NL);
+        assertEquals(8192, lines[0].length());
+        assertEquals("short", lines[1]);
+    }
+
+    @Test
+    public void testStreamReaderKeepsTheTailOfALargeOutput() {
+        long lines = 2_000_000;
+        long[] received = new long[1];
+        CommandExecutor.StreamReader reader = new CommandExecutor.StreamReader(new LinesInputStream(lines), false,
+                (line, isErrorStream) -> received[0]++, 100);
+        reader.run();
+
+        // The listener gets every line, only the tail is kept
+        assertEquals(lines, received[0]);
+        String[] output = reader.getOutput().split(NL);
+        assertEquals(101, output.length);
+        assertEquals("[... 1999900 earlier lines omitted ...]", output[0]);
+        assertEquals("line 1999900", output[1]);
+        assertEquals("line 1999999", output[100]);
+    }
+
+    @Test
+    public void testOutputCollectorKeepsTheFullStandardOutput() {
+        OutputCollector collector = new OutputCollector();
+        CommandExecutor.StreamReader output = new CommandExecutor.StreamReader(new LinesInputStream(5000), false, collector, 10);
+        CommandExecutor.StreamReader error = new CommandExecutor.StreamReader(stream("warning\n"), true, collector, 10);
+        output.run();
+        error.run();
+
+        // The tail is truncated for diagnostics, parsing callers get every line
+        assertEquals("[... 4990 earlier lines omitted ...]", output.getOutput().split(NL)[0]);
+        String[] lines = collector.getOutput().split(NL);
+        assertEquals(5000, lines.length);
+        assertEquals("line 0", lines[0]);
+        assertEquals("line 4999", lines[4999]);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Generates numbered lines as they are read, the output is never held in memory.
+     */
+    private static class LinesInputStream extends InputStream {
+        private final long lines;
+        private long next;
+        private byte[] current = new byte[0];
+        private int position;
+
+        LinesInputStream(long lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (next == lines) {
+                    return -1;
+                }
+                current = ("line " + next++ + "\n").getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return current[position++];
+        }
+    }
+}
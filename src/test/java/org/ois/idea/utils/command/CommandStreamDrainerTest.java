@@ -0,0 +1,119 @@
+package org.ois.idea.utils.command;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandStreamDrainerTest {
+
+    private static final int COMMANDS = 1000;
+
+    @Test
+    public void testReusesThreadsBetweenCommands() throws Exception {
+        CommandStreamDrainer drainer = new CommandStreamDrainer();
+        try {
+            for (int i = 0; i < COMMANDS; i++) {
+                byte[] output = ("output " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                drainer.drain(() -> readFully(new ByteArrayInputStream(output))).get(10, TimeUnit.SECONDS);
+            }
+            // Sequential commands run on the idle threads of the previous ones, a few more may start while a finished thread returns to the pool
+            assertTrue("Created " + drainer.getCreatedThreads() + " threads", drainer.getCreatedThreads() <= 8);
+        } finally {
+            drainer.dispose();
+        }
+    }
+
+    @Test
+    public void testBusyReadersNeverWaitInQueue() throws Exception {
+        CommandStreamDrainer drainer = new CommandStreamDrainer();
+        // More readers than the pool threads, each blocked until all of them started (like processes blocked on full pipes)
+        int readers = 100;
+        CountDownLatch started = new CountDownLatch(readers);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < readers; i++) {
+                drainer.drain(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            drainer.dispose();
+        }
+    }
+
+    /**
+     * Drains the output of short 'echo' commands on the shared engine and on a pool created per command (the previous implementation).
+     * Prints the time per command of both, only the thread creation is asserted: timings are too noisy to gate on.
+     */
+    @Test
+    public void testEchoCommandsBenchmark() throws Exception {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        String echo = CommandExecutor.resolveExecutablePath("echo");
+        CommandStreamDrainer drainer = new CommandStreamDrainer();
+        try {
+            // Warmup of both paths
+            runEchoCommands(echo, 50, drainer);
+            runEchoCommands(echo, 50, null);
+
+            long shared = runEchoCommands(echo, COMMANDS, drainer);
+            long perCommand = runEchoCommands(echo, COMMANDS, null);
+
+            System.out.printf("%d echo commands: shared drainer %.1fus/command, pool per command %.1fus/command%n", COMMANDS,
+                    shared / 1000.0 / COMMANDS, perCommand / 1000.0 / COMMANDS);
+            assertTrue("Created " + drainer.getCreatedThreads() + " threads", drainer.getCreatedThreads() <= 8);
+        } finally {
+            drainer.dispose();
+        }
+    }
+
+    /**
+     * @param drainer - The shared engine, null to drain on a new pool of two threads per command.
+     * @return the elapsed nanos
+     */
+    private static long runEchoCommands(String echo, int commands, CommandStreamDrainer drainer) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < commands; i++) {
+            Process process = new ProcessBuilder(List.of(echo, "command " + i)).start();
+            process.getOutputStream().close();
+            ExecutorService pool = drainer == null ? Executors.newFixedThreadPool(2) : null;
+            try {
+                Future<?> output = drainer != null ? drainer.drain(() -> readFully(process.getInputStream())) : pool.submit(() -> readFully(process.getInputStream()));
+                Future<?> error = drainer != null ? drainer.drain(() -> readFully(process.getErrorStream())) : pool.submit(() -> readFully(process.getErrorStream()));
+                assertEquals(0, process.waitFor());
+                output.get(10, TimeUnit.SECONDS);
+                error.get(10, TimeUnit.SECONDS);
+            } finally {
+                if (pool != null) {
+                    pool.shutdownNow();
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void readFully(InputStream stream) {
+        try (stream) {
+            stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.ois.idea.utils.command;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutableResolverTest {
+
+    private String command;
+
+    @Before
+    public void setUp() {
+        Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        command = "ois-test-tool-" + System.nanoTime();
+    }
+
+    @Test
+    public void testResolvesFromThePathOfTheCommand() throws IOException {
+        Path directory = Files.createTempDirectory("path");
+        Path executable = createExecutable(directory);
+
+        assertEquals(executable.toString(), ExecutableResolver.resolve(command, Map.of("PATH", "/not/here:" + directory)));
+    }
+
+    @Test
+    public void testCachedPerPath() throws IOException {
+        Path first = createExecutable(Files.createTempDirectory("first"));
+        Path second = createExecutable(Files.createTempDirectory("second"));
+        Map<String, String> firstPath = Map.of("PATH", first.getParent().toString());
+        assertEquals(first.toString(), ExecutableResolver.resolve(command, firstPath));
+
+        // The cached result is returned without looking at the file system
+        Files.delete(first);
+        assertEquals(first.toString(), ExecutableResolver.resolve(command, firstPath));
+        // Another PATH is searched again
+        assertEquals(second.toString(), ExecutableResolver.resolve(command, Map.of("PATH", second.getParent().toString())));
+
+        ExecutableResolver.invalidate();
+        try {
+            ExecutableResolver.resolve(command, firstPath);
+            fail("The removed executable was resolved after the cache was invalidated");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDirectoriesAreNotExecutables() throws IOException {
+        Path directory = Files.createTempDirectory("path");
+        Files.createDirectory(directory.resolve(command));
+        Path executable = createExecutable(Files.createTempDirectory("other"));
+
+        assertEquals(executable.toString(), ExecutableResolver.resolve(command, Map.of("PATH", directory + ":" + executable.getParent())));
+    }
+
+    /**
+     * Compares the lookup of a cached executable with a search of the file system, the cost every command paid before the cache.
+     */
+    @Test
+    public void testLookupBenchmark() throws IOException {
+        Path executable = createExecutable(Files.createTempDirectory("path"));
+        Map<String, String> env = Map.of("PATH", String.join(":", "/not/here", "/nor/here", executable.getParent().toString()));
+        int searches = 2_000;
+        int lookups = 200_000;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            ExecutableResolver.invalidate();
+            ExecutableResolver.resolve(command, env);
+        }
+        double searchNanos = (System.nanoTime() - start) / (double) searches;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            ExecutableResolver.resolve(command, env);
+        }
+        double lookupNanos = (System.nanoTime() - start) / (double) lookups;
+
+        System.out.printf("Executable resolution: search %.0fns, cached lookup %.0fns%n", searchNanos, lookupNanos);
+        assertTrue(lookupNanos < searchNanos);
+    }
+
+    private Path createExecutable(Path directory) throws IOException {
+        Path executable = directory.resolve(command);
+        Files.writeString(executable, "#!/bin/sh\n");
+        assertTrue(executable.toFile().setExecutable(true));
+        return executable;
+    }
+}
@@ -0,0 +1,54 @@
+package org.ois.idea.utils.command;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutputTailTest {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void testKeepsAllLinesUnderCapacity() {
+        OutputTail tail = new OutputTail(3);
+        tail.add("first");
+        tail.add("second");
+
+        assertEquals(0, tail.getDroppedLines());
+        assertEquals("first" + NL + "second", tail.toString());
+    }
+
+    @Test
+    public void testKeepsOnlyTheLastLines() {
+        OutputTail tail = new OutputTail(3);
+        for (int i = 1; i <= 5; i++) {
+            tail.add("line " + i);
+        }
+
+        assertEquals(2, tail.getDroppedLines());
+        assertEquals("[... 2 earlier lines omitted ...]" + NL + "line 3" + NL + "line 4" + NL + "line 5", tail.toString());
+    }
+
+    @Test
+    public void testNonPositiveCapacityKeepsNothing() {
+        OutputTail tail = new OutputTail(-1);
+        tail.add("dropped");
+
+        assertEquals(1, tail.getDroppedLines());
+        assertEquals("[... 1 earlier lines omitted ...]" + NL, tail.toString());
+    }
+
+    @Test
+    public void testLargeOutputKeepsTheTailOnly() {
+        OutputTail tail = new OutputTail(1000);
+        for (int i = 0; i < 5_000_000; i++) {
+            tail.add("line " + i);
+        }
+
+        assertEquals(4_999_000, tail.getDroppedLines());
+        String[] lines = tail.toString().split(NL);
+        assertEquals(1001, lines.length);
+        assertEquals("line 4999000", lines[1]);
+        assertEquals("line 4999999", lines[1000]);
+    }
+}
@@ -0,0 +1,58 @@
+package org.ois.idea.utils.gradle;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.ois.idea.utils.ProjectUtils;
+import org.ois.idea.utils.command.ExecutableResolver;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * Compares running Gradle builds on a warm Tooling API connection with starting the Gradle CLI for each build.
+ * Needs an installed Gradle (in the PATH) to create the wrapper that both backends build with, skipped without it.
+ */
+public class GradleBackendBenchmarkTest extends BasePlatformTestCase {
+
+    private static final int BUILDS = 5;
+
+    public void testToolingApiAgainstCli() throws Exception {
+        try {
+            ExecutableResolver.resolve("gradle");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Gradle is not installed, skipping the Gradle backends benchmark");
+            return;
+        }
+        Path projectDir = Files.createTempDirectory("gradle-backends");
+        ProjectUtils.GradleBackend backend = ProjectUtils.getGradleBackend();
+        try {
+            Files.writeString(projectDir.resolve("settings.gradle"), "rootProject.name = 'gradle-backends'\n");
+            Files.writeString(projectDir.resolve("build.gradle"), "tasks.register('hello') { doLast { println 'hello' } }\n");
+            ProjectUtils.setGradleBackend(ProjectUtils.GradleBackend.Cli);
+            ProjectUtils.runGradleTasks(projectDir, new HashMap<>(), false, "wrapper");
+
+            double cliMillis = timeBuilds(projectDir, ProjectUtils.GradleBackend.Cli);
+            double toolingApiMillis = timeBuilds(projectDir, ProjectUtils.GradleBackend.ToolingApi);
+
+            System.out.printf("Gradle build of a trivial task: CLI %.0fms, Tooling API %.0fms%n", cliMillis, toolingApiMillis);
+        } finally {
+            ProjectUtils.setGradleBackend(backend);
+            GradleConnectionManager.getInstance().close(projectDir);
+            FileUtil.delete(projectDir.toFile());
+        }
+    }
+
+    /**
+     * @return the average time of a build, after a first build that starts the daemon (and opens the connection)
+     */
+    private static double timeBuilds(Path projectDir, ProjectUtils.GradleBackend backend) throws Exception {
+        ProjectUtils.setGradleBackend(backend);
+        ProjectUtils.runGradleTasks(projectDir, new HashMap<>(), false, "hello");
+        long start = System.nanoTime();
+        for (int i = 0; i < BUILDS; i++) {
+            ProjectUtils.runGradleTasks(projectDir, new HashMap<>(), false, "hello");
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / BUILDS;
+    }
+}